@@ -23,5 +23,39 @@ public enum AggregationFunction {
   SUM,
   LATEST,
   MIN,
-  MAX
+  MAX,
+  // Percentiles of the merged distributions of the data points, only for measures of the DISTRIBUTION type
+  P50(50),
+  P90(90),
+  P95(95),
+  P99(99);
+
+  private final double percentile;
+
+  AggregationFunction() {
+    this(-1);
+  }
+
+  AggregationFunction(double percentile) {
+    this.percentile = percentile;
+  }
+
+  /**
+   * Returns {@code true} if this function computes a percentile of distributions.
+   */
+  public boolean isPercentile() {
+    return percentile >= 0;
+  }
+
+  /**
+   * Returns the percentile computed by this function, between 0 and 100.
+   *
+   * @throws IllegalStateException if this function doesn't compute a percentile
+   */
+  public double getPercentile() {
+    if (!isPercentile()) {
+      throw new IllegalStateException(this + " is not a percentile function");
+    }
+    return percentile;
+  }
 }
@@ -23,5 +23,6 @@ import io.cdap.cdap.api.annotation.Beta;
 @Beta
 public enum MeasureType {
   COUNTER,
-  GAUGE
+  GAUGE,
+  DISTRIBUTION
 }
@@ -16,6 +16,10 @@
 
 package io.cdap.cdap.api.dataset.lib.cube;
 
+import io.cdap.cdap.api.metrics.Distribution;
+
+import javax.annotation.Nullable;
+
 /**
  * A single measurement in the {@link CubeFact}.
  */
@@ -23,6 +27,7 @@ public class Measurement {
   private final String name;
   private final MeasureType type;
   private final long value;
+  private final Distribution distribution;
 
   /**
    * Creates a {@link Measurement}.
@@ -34,6 +39,20 @@ public class Measurement {
     this.name = name;
     this.type = type;
     this.value = value;
+    this.distribution = null;
+  }
+
+  /**
+   * Creates a {@link Measurement} of the {@link MeasureType#DISTRIBUTION} type, whose value is the number of values
+   * in the distribution.
+   * @param name name of the measurement
+   * @param distribution distribution of the measured values
+   */
+  public Measurement(String name, Distribution distribution) {
+    this.name = name;
+    this.type = MeasureType.DISTRIBUTION;
+    this.value = distribution.getCount();
+    this.distribution = distribution;
   }
 
   /**
@@ -45,6 +64,7 @@ public class Measurement {
     this.name = name;
     this.type = measurement.getType();
     this.value = measurement.getValue();
+    this.distribution = measurement.getDistribution();
   }
 
   /**
@@ -67,4 +87,13 @@ public class Measurement {
   public long getValue() {
     return value;
   }
+
+  /**
+   * @return distribution of this {@link Measurement} if it is of the {@link MeasureType#DISTRIBUTION} type,
+   *         otherwise {@code null}
+   */
+  @Nullable
+  public Distribution getDistribution() {
+    return distribution;
+  }
 }
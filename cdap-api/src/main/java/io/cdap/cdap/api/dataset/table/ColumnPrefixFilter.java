@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.api.dataset.table;
+
+import io.cdap.cdap.api.annotation.Beta;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.Arrays;
+
+/**
+ * {@link Filter} that only returns the columns whose name starts with the given prefix. Rows that have no such
+ * column are not returned.
+ */
+@Beta
+public final class ColumnPrefixFilter implements Filter {
+
+  private final byte[] prefix;
+
+  /**
+   * Creates a filter for the given column prefix.
+   * @param prefix prefix of the columns to return
+   */
+  public ColumnPrefixFilter(byte[] prefix) {
+    this.prefix = Arrays.copyOf(prefix, prefix.length);
+  }
+
+  /**
+   * Creates a filter for the given column prefix.
+   * @param prefix prefix of the columns to return
+   */
+  public ColumnPrefixFilter(String prefix) {
+    this(Bytes.toBytes(prefix));
+  }
+
+  public byte[] getPrefix() {
+    return Arrays.copyOf(prefix, prefix.length);
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnPrefixFilter{" +
+      "prefix=" + Bytes.toStringBinary(prefix) +
+      '}';
+  }
+}
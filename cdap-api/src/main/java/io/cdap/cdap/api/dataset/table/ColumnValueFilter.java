@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.api.dataset.table;
+
+import io.cdap.cdap.api.annotation.Beta;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.Arrays;
+
+/**
+ * {@link Filter} that only returns the rows in which the value of the given column compares to the given value
+ * with the given operator. Values are compared lexicographically as unsigned bytes, which is the same as the
+ * numeric order for non-negative numbers encoded with {@link Bytes}. Rows that don't have the column are not returned.
+ * <p>
+ * This filter only decides which rows are returned. All the columns of the matching rows are returned.
+ */
+@Beta
+public final class ColumnValueFilter implements Filter {
+
+  /**
+   * Operators for comparing the column value with the value of the filter.
+   */
+  public enum CompareOp {
+    EQUAL,
+    NOT_EQUAL,
+    LESS,
+    LESS_OR_EQUAL,
+    GREATER,
+    GREATER_OR_EQUAL
+  }
+
+  private final byte[] column;
+  private final CompareOp op;
+  private final byte[] value;
+
+  /**
+   * Creates a filter for the given column, operator and value.
+   * @param column the column to compare
+   * @param op how to compare the column value with the given value
+   * @param value the value to compare with
+   */
+  public ColumnValueFilter(byte[] column, CompareOp op, byte[] value) {
+    this.column = Arrays.copyOf(column, column.length);
+    this.op = op;
+    this.value = Arrays.copyOf(value, value.length);
+  }
+
+  /**
+   * Creates a filter for the given column, operator and value.
+   * @param column the column to compare
+   * @param op how to compare the column value with the given value
+   * @param value the value to compare with
+   */
+  public ColumnValueFilter(String column, CompareOp op, String value) {
+    this(Bytes.toBytes(column), op, Bytes.toBytes(value));
+  }
+
+  public byte[] getColumn() {
+    return Arrays.copyOf(column, column.length);
+  }
+
+  public CompareOp getOp() {
+    return op;
+  }
+
+  public byte[] getValue() {
+    return Arrays.copyOf(value, value.length);
+  }
+
+  /**
+   * Returns {@code true} if the given column value satisfies this filter.
+   */
+  public boolean matches(byte[] columnValue) {
+    int cmp = Bytes.compareTo(columnValue, value);
+    switch (op) {
+      case EQUAL:
+        return cmp == 0;
+      case NOT_EQUAL:
+        return cmp != 0;
+      case LESS:
+        return cmp < 0;
+      case LESS_OR_EQUAL:
+        return cmp <= 0;
+      case GREATER:
+        return cmp > 0;
+      case GREATER_OR_EQUAL:
+        return cmp >= 0;
+      default:
+        throw new IllegalStateException("Unknown operator " + op);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueFilter{" +
+      "column=" + Bytes.toStringBinary(column) +
+      ", op=" + op +
+      ", value=" + Bytes.toStringBinary(value) +
+      '}';
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.api.dataset.table;
+
+import io.cdap.cdap.api.annotation.Beta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link Filter} that combines other filters. A row is only returned if it passes all the filters, and only
+ * the columns that pass all the column filters are returned.
+ */
+@Beta
+public final class FilterList implements Filter {
+
+  private final List<Filter> filters;
+
+  /**
+   * Creates a filter that combines the given filters.
+   * @param filters the filters to combine
+   */
+  public FilterList(Filter... filters) {
+    this(Arrays.asList(filters));
+  }
+
+  /**
+   * Creates a filter that combines the given filters.
+   * @param filters the filters to combine
+   */
+  public FilterList(List<Filter> filters) {
+    this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+  }
+
+  public List<Filter> getFilters() {
+    return filters;
+  }
+
+  @Override
+  public String toString() {
+    return "FilterList{" +
+      "filters=" + filters +
+      '}';
+  }
+}
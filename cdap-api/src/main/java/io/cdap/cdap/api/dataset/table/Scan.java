@@ -19,6 +19,7 @@ package io.cdap.cdap.api.dataset.table;
 import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.api.common.Bytes;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -35,6 +36,9 @@ public class Scan {
   private final byte[] stopRow;
   @Nullable
   private final Filter filter;
+  @Nullable
+  private byte[][] columns;
+  private int limit = -1;
 
   private final Map<String, String> properties = new HashMap<>();
 
@@ -70,6 +74,29 @@ public class Scan {
     properties.put(property, value);
   }
 
+  /**
+   * Sets the columns to return for each row. Only the rows that have at least one of the columns are returned.
+   * Filters of this scan are evaluated on all columns of a row, whether they are returned or not.
+   *
+   * @param columns the columns to return; {@code null} means all columns are returned
+   * @return this scan
+   */
+  public Scan setColumns(@Nullable byte[]... columns) {
+    this.columns = columns == null ? null : Arrays.copyOf(columns, columns.length);
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of rows to return.
+   *
+   * @param limit the maximum number of rows to return; a non-positive value means no limit
+   * @return this scan
+   */
+  public Scan setLimit(int limit) {
+    this.limit = limit;
+    return this;
+  }
+
   @Nullable
   public byte[] getStartRow() {
     return startRow;
@@ -85,6 +112,21 @@ public class Scan {
     return filter;
   }
 
+  /**
+   * @return the columns to return, or {@code null} if all columns are returned
+   */
+  @Nullable
+  public byte[][] getColumns() {
+    return columns == null ? null : Arrays.copyOf(columns, columns.length);
+  }
+
+  /**
+   * @return the maximum number of rows to return, or a non-positive value if there is no limit
+   */
+  public int getLimit() {
+    return limit;
+  }
+
   public Map<String, String> getProperties() {
     return Collections.unmodifiableMap(properties);
   }
@@ -95,7 +137,24 @@ public class Scan {
       "startRow=" + Bytes.toStringBinary(startRow) +
       ", stopRow=" + Bytes.toStringBinary(stopRow) +
       ", filter=" + filter +
+      ", columns=" + toStringBinary(columns) +
+      ", limit=" + limit +
       ", properties=" + properties +
       '}';
   }
+
+  @Nullable
+  private static String toStringBinary(@Nullable byte[][] columns) {
+    if (columns == null) {
+      return null;
+    }
+    StringBuilder builder = new StringBuilder("[");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(Bytes.toStringBinary(columns[i]));
+    }
+    return builder.append(']').toString();
+  }
 }
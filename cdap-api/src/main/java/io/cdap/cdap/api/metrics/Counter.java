@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.api.metrics;
+
+import io.cdap.cdap.api.annotation.Beta;
+
+/**
+ * A handle for incrementing a counter metric. The metric is resolved when the handle is created, hence incrementing
+ * through a handle is cheaper than {@link MetricsCollector#increment(String, long)} for metrics updated frequently.
+ */
+@Beta
+public interface Counter {
+
+  /**
+   * Increments the metric at the current time.
+   * @param delta the value to increment by
+   */
+  void increment(long delta);
+}
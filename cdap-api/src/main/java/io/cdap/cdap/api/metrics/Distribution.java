@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.api.metrics;
+
+import io.cdap.cdap.api.annotation.Beta;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable summary of the distribution of the values of a metric, from which percentiles can be estimated.
+ * <p>
+ * Values are counted in buckets with fixed boundaries: values below 16 have a bucket each, and every larger power
+ * of two range is split into 16 buckets of equal width. Hence the bucket of a value doesn't depend on the other
+ * values, and distributions are merged by adding the counts of their buckets. Percentiles are estimated with
+ * a relative error of at most 1/32. Negative values are counted as 0.
+ * <p>
+ * Instances of this class are immutable.
+ */
+@Beta
+public final class Distribution {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The largest bucket, which contains {@link Long#MAX_VALUE}.
+   */
+  public static final int MAX_BUCKET = getBucket(Long.MAX_VALUE);
+
+  private static final Distribution EMPTY = new Distribution(new int[0], new long[0]);
+
+  // the non-empty buckets in increasing order, and their counts
+  private final int[] buckets;
+  private final long[] counts;
+
+  /**
+   * Creates a distribution with the given counts of the given buckets.
+   *
+   * @param buckets the buckets in increasing order, each between 0 and {@link #MAX_BUCKET}
+   * @param counts the positive counts of the buckets
+   */
+  public Distribution(int[] buckets, long[] counts) {
+    if (buckets.length != counts.length) {
+      throw new IllegalArgumentException("The number of buckets " + buckets.length +
+                                           " is not the same as the number of counts " + counts.length);
+    }
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] < 0 || buckets[i] > MAX_BUCKET || (i > 0 && buckets[i] <= buckets[i - 1])) {
+        throw new IllegalArgumentException("Buckets must be in increasing order between 0 and " + MAX_BUCKET + ": "
+                                             + Arrays.toString(buckets));
+      }
+      if (counts[i] <= 0) {
+        throw new IllegalArgumentException("Counts must be positive: " + Arrays.toString(counts));
+      }
+    }
+    this.buckets = Arrays.copyOf(buckets, buckets.length);
+    this.counts = Arrays.copyOf(counts, counts.length);
+  }
+
+  /**
+   * Returns an empty distribution.
+   */
+  public static Distribution empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the distribution of the given values.
+   */
+  public static Distribution of(long... values) {
+    long[] bucketCounts = new long[MAX_BUCKET + 1];
+    for (long value : values) {
+      bucketCounts[getBucket(value)]++;
+    }
+    return fromBucketCounts(bucketCounts);
+  }
+
+  /**
+   * Returns the distribution with the given counts, indexed by bucket.
+   *
+   * @param bucketCounts the count of each bucket, which has at most {@link #MAX_BUCKET} + 1 elements
+   */
+  public static Distribution fromBucketCounts(long[] bucketCounts) {
+    int size = 0;
+    for (long count : bucketCounts) {
+      if (count > 0) {
+        size++;
+      }
+    }
+    int[] buckets = new int[size];
+    long[] counts = new long[size];
+    int idx = 0;
+    for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+      if (bucketCounts[bucket] > 0) {
+        buckets[idx] = bucket;
+        counts[idx++] = bucketCounts[bucket];
+      }
+    }
+    return new Distribution(buckets, counts);
+  }
+
+  /**
+   * Returns the bucket that counts the given value.
+   */
+  public static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return value < 0 ? 0 : (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the smallest value counted by the given bucket.
+   */
+  public static long getLowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket) << shift;
+  }
+
+  /**
+   * Returns the largest value counted by the given bucket.
+   */
+  public static long getUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    return getLowerBound(bucket) + (1L << shift) - 1;
+  }
+
+  /**
+   * Returns the non-empty buckets of this distribution in increasing order.
+   */
+  public int[] getBuckets() {
+    return Arrays.copyOf(buckets, buckets.length);
+  }
+
+  /**
+   * Returns the counts of the buckets returned by {@link #getBuckets()}.
+   */
+  public long[] getCounts() {
+    return Arrays.copyOf(counts, counts.length);
+  }
+
+  /**
+   * Returns the number of values in this distribution.
+   */
+  public long getCount() {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * Returns {@code true} if this distribution has no values.
+   */
+  public boolean isEmpty() {
+    return buckets.length == 0;
+  }
+
+  /**
+   * Returns the distribution of the values of this and the given distribution.
+   */
+  public Distribution merge(Distribution other) {
+    if (other.isEmpty()) {
+      return this;
+    }
+    if (isEmpty()) {
+      return other;
+    }
+    int[] mergedBuckets = new int[buckets.length + other.buckets.length];
+    long[] mergedCounts = new long[mergedBuckets.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < buckets.length || j < other.buckets.length) {
+      if (j == other.buckets.length || (i < buckets.length && buckets[i] < other.buckets[j])) {
+        mergedBuckets[size] = buckets[i];
+        mergedCounts[size++] = counts[i++];
+      } else if (i == buckets.length || other.buckets[j] < buckets[i]) {
+        mergedBuckets[size] = other.buckets[j];
+        mergedCounts[size++] = other.counts[j++];
+      } else {
+        mergedBuckets[size] = buckets[i];
+        mergedCounts[size++] = counts[i++] + other.counts[j++];
+      }
+    }
+    return new Distribution(Arrays.copyOf(mergedBuckets, size), Arrays.copyOf(mergedCounts, size));
+  }
+
+  /**
+   * Returns an estimate of the given percentile of the values, which is the middle of the bucket that contains
+   * the percentile.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the estimated value, or 0 if this distribution is empty
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    if (isEmpty()) {
+      return 0;
+    }
+    // the rank of the value at the percentile, starting from 1
+    long rank = Math.max(1L, (long) Math.ceil(getCount() * percentile / 100));
+    long seen = 0;
+    int idx = 0;
+    while (idx < buckets.length - 1 && seen + counts[idx] < rank) {
+      seen += counts[idx++];
+    }
+    long lowerBound = getLowerBound(buckets[idx]);
+    return lowerBound + (getUpperBound(buckets[idx]) - lowerBound) / 2;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    Distribution other = (Distribution) o;
+    return Arrays.equals(buckets, other.buckets) && Arrays.equals(counts, other.counts);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(buckets) + Arrays.hashCode(counts);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("Distribution{");
+    for (int i = 0; i < buckets.length; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append('[').append(getLowerBound(buckets[i])).append(", ").append(getUpperBound(buckets[i]))
+        .append("]=").append(counts[i]);
+    }
+    return builder.append('}').toString();
+  }
+}
@@ -34,5 +34,30 @@ public interface Metrics {
    * @param value The value to be set.
    */
   void gauge(String metricName, long value);
+
+  /**
+   * Returns a handle for increasing the specific metric, which should be kept for metrics that are increased
+   * frequently. A delta that does not fit in an int is applied in several steps.
+   * @param metricName Name of the counter. Use alphanumeric characters in metric names.
+   */
+  default Counter counter(String metricName) {
+    return delta -> {
+      long remaining = delta;
+      while (remaining > Integer.MAX_VALUE || remaining < Integer.MIN_VALUE) {
+        int step = remaining > 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        count(metricName, step);
+        remaining -= step;
+      }
+      count(metricName, (int) remaining);
+    };
+  }
+
+  /**
+   * Returns a handle for setting the specific metric, which should be kept for metrics that are set frequently.
+   * @param metricName Name of the counter. Use alphanumeric characters in metric names.
+   */
+  default Gauge gauge(String metricName) {
+    return value -> gauge(metricName, value);
+  }
 }
 
@@ -37,4 +37,30 @@ public interface MetricsCollector {
    * @param value value of the metric.
    */
   void gauge(String metricName, long value);
+
+  /**
+   * Adds a value to the {@link Distribution} of a metric at the current time, from which percentiles of the values
+   * can be queried. The default implementation ignores the value, for collectors that don't support distributions.
+   * @param metricName Name of the metric.
+   * @param value value to add to the distribution of the metric.
+   */
+  default void distribution(String metricName, long value) {
+    // no-op
+  }
+
+  /**
+   * Returns a handle for incrementing a metric, which should be kept for metrics that are incremented frequently.
+   * @param metricName Name of the metric.
+   */
+  default Counter counter(String metricName) {
+    return delta -> increment(metricName, delta);
+  }
+
+  /**
+   * Returns a handle for gauging a metric, which should be kept for metrics that are gauged frequently.
+   * @param metricName Name of the metric.
+   */
+  default Gauge gauge(String metricName) {
+    return value -> gauge(metricName, value);
+  }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.api.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link Distribution}.
+ */
+public class DistributionTest {
+
+  @Test
+  public void testBuckets() {
+    // every value is between the bounds of its bucket, and the buckets are contiguous
+    Assert.assertEquals(0, Distribution.getBucket(-5));
+    long previousUpperBound = -1;
+    for (int bucket = 0; bucket <= Distribution.MAX_BUCKET; bucket++) {
+      long lowerBound = Distribution.getLowerBound(bucket);
+      long upperBound = Distribution.getUpperBound(bucket);
+      Assert.assertEquals(previousUpperBound + 1, lowerBound);
+      Assert.assertEquals(bucket, Distribution.getBucket(lowerBound));
+      Assert.assertEquals(bucket, Distribution.getBucket(upperBound));
+      previousUpperBound = upperBound;
+    }
+    Assert.assertEquals(Long.MAX_VALUE, previousUpperBound);
+  }
+
+  @Test
+  public void testPercentiles() {
+    Distribution distribution = Distribution.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    Assert.assertEquals(10, distribution.getCount());
+    Assert.assertEquals(1, distribution.getPercentile(0));
+    Assert.assertEquals(5, distribution.getPercentile(50));
+    Assert.assertEquals(10, distribution.getPercentile(95));
+    Assert.assertEquals(10, distribution.getPercentile(100));
+    Assert.assertEquals(0, Distribution.empty().getPercentile(50));
+
+    // percentiles of large values are within the relative error
+    Random random = new Random(0);
+    long[] values = new long[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i + 1) * 1000L + random.nextInt(1000);
+    }
+    distribution = Distribution.of(values);
+    for (int percentile : new int[] { 50, 90, 99 }) {
+      long expected = values[values.length * percentile / 100 - 1];
+      Assert.assertEquals(expected, distribution.getPercentile(percentile), expected / 32.0);
+    }
+  }
+
+  @Test
+  public void testMerge() {
+    Distribution first = Distribution.of(1, 100, 100, 5000);
+    Distribution second = Distribution.of(2, 100, 1000000);
+    Distribution merged = first.merge(second);
+    Assert.assertEquals(Distribution.of(1, 2, 100, 100, 100, 5000, 1000000), merged);
+    Assert.assertEquals(merged, second.merge(first));
+    Assert.assertEquals(first, first.merge(Distribution.empty()));
+    Assert.assertEquals(first, Distribution.empty().merge(first));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnorderedBuckets() {
+    new Distribution(new int[] { 2, 1 }, new long[] { 1, 1 });
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.api.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the default methods of {@link Metrics}.
+ */
+public class MetricsTest {
+
+  @Test
+  public void testCounterLargeDelta() {
+    List<Integer> deltas = new ArrayList<>();
+    Metrics metrics = new Metrics() {
+      @Override
+      public void count(String metricName, int delta) {
+        deltas.add(delta);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    Counter counter = metrics.counter("metric");
+    for (long delta : new long[] { 0L, 5L, -5L, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 10L,
+                                   3L * Integer.MIN_VALUE - 7L, 100L * Integer.MAX_VALUE + 1L }) {
+      deltas.clear();
+      counter.increment(delta);
+      // The delta is split into steps that add up to it, none of them exceeding the int range
+      long total = 0L;
+      for (int step : deltas) {
+        total += step;
+      }
+      Assert.assertEquals(delta, total);
+    }
+  }
+}
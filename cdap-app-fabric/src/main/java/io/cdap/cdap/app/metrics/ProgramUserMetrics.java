@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.app.metrics;
 
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.MetricsContext;
@@ -42,4 +44,14 @@ public class ProgramUserMetrics implements Metrics {
   public void gauge(String metricName, long value) {
     metricsContext.gauge(metricName, value);
   }
+
+  @Override
+  public Counter counter(String metricName) {
+    return metricsContext.counter(metricName);
+  }
+
+  @Override
+  public Gauge gauge(String metricName) {
+    return metricsContext.gauge(metricName);
+  }
 }
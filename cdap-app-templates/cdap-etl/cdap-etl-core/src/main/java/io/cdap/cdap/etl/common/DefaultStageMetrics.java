@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.etl.common;
 
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.common.plugin.Caller;
@@ -70,6 +72,17 @@ public class DefaultStageMetrics implements StageMetrics, Externalizable {
     });
   }
 
+  @Override
+  public Counter counter(String metricName) {
+    // only resolving the handle goes through the caller, since updating it doesn't log
+    return caller.callUnchecked(() -> metrics.counter(prefix + metricName));
+  }
+
+  @Override
+  public Gauge gauge(String metricName) {
+    return caller.callUnchecked(() -> metrics.gauge(prefix + metricName));
+  }
+
   @Override
   public void pipelineCount(final String metricName, final int delta) {
     caller.callUnchecked(new Callable<Void>() {
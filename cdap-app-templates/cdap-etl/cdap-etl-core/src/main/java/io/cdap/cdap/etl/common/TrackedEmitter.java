@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.etl.common;
 
+import io.cdap.cdap.api.metrics.Counter;
 import io.cdap.cdap.api.preview.DataTracer;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.InvalidEntry;
@@ -30,23 +31,28 @@ import java.util.Map;
  */
 public class TrackedEmitter<T> implements Emitter<T> {
   private final Emitter<T> delegate;
-  private final StageMetrics stageMetrics;
   private final String emitMetricName;
+  // handles of the metrics are resolved once, since they are updated for every record
+  private final Counter emitCounter;
+  private final Counter errorCounter;
+  private final Counter alertCounter;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
 
   public TrackedEmitter(Emitter<T> delegate, StageMetrics stageMetrics, String emitMetricName, DataTracer dataTracer,
                         StageStatisticsCollector collector) {
     this.delegate = delegate;
-    this.stageMetrics = stageMetrics;
     this.emitMetricName = emitMetricName;
+    this.emitCounter = stageMetrics.counter(emitMetricName);
+    this.errorCounter = stageMetrics.counter(Constants.Metrics.RECORDS_ERROR);
+    this.alertCounter = stageMetrics.counter(Constants.Metrics.RECORDS_ALERT);
     this.dataTracer = dataTracer;
     this.collector = collector;
   }
 
   @Override
   public void emit(T value) {
-    stageMetrics.count(emitMetricName, 1);
+    emitCounter.increment(1);
     if (emitMetricName.equals(Constants.Metrics.RECORDS_OUT)) {
       collector.incrementOutputRecordCount();
     }
@@ -58,7 +64,7 @@ public class TrackedEmitter<T> implements Emitter<T> {
 
   @Override
   public void emitError(InvalidEntry<T> value) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ERROR, 1);
+    errorCounter.increment(1);
     collector.incrementErrorRecordCount();
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ERROR, value);
@@ -68,7 +74,7 @@ public class TrackedEmitter<T> implements Emitter<T> {
 
   @Override
   public void emitAlert(Map<String, String> payload) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ALERT, 1);
+    alertCounter.increment(1);
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ALERT, payload);
     }
@@ -593,6 +593,17 @@ public final class Constants {
     public static final String METRICS_MINIMUM_RESOLUTION_SECONDS = "metrics.minimum.resolution.seconds";
     public static final String MINIMUM_RESOLUTION_RETENTION_SECONDS =
       "metrics.data.table.retention.minimum.resolution.seconds";
+    // Write metrics only to the minimum resolution and roll them up into the coarser resolutions periodically
+    public static final String ROLL_UP_ENABLED = "metrics.rollup.enabled";
+    public static final String ROLL_UP_INTERVAL_SECONDS = "metrics.rollup.interval.seconds";
+    public static final String ROLL_UP_DELAY_SECONDS = "metrics.rollup.delay.seconds";
+    public static final String ROLL_UP_TIMEOUT_SECONDS = "metrics.rollup.timeout.seconds";
+    // Cache the closed time buckets of metric queries in the metrics query service
+    public static final String QUERY_CACHE_ENABLED = "metrics.query.cache.enabled";
+    public static final String QUERY_CACHE_MIN_RESOLUTION_SECONDS = "metrics.query.cache.min.resolution.seconds";
+    public static final String QUERY_CACHE_CLOSED_DELAY_SECONDS = "metrics.query.cache.closed.delay.seconds";
+    public static final String QUERY_CACHE_MAX_AGE_SECONDS = "metrics.query.cache.max.age.seconds";
+    public static final String QUERY_CACHE_MAX_DATA_POINTS = "metrics.query.cache.max.data.points";
     // Key prefix for retention seconds. The actual key is suffixed by the table resolution.
     public static final String RETENTION_SECONDS = "metrics.data.table.retention.resolution.";
     public static final int MINUTE_RESOLUTION = 60;
@@ -610,6 +621,8 @@ public final class Constants {
     public static final String DEFAULT_ENTITY_TABLE_NAME = "metrics.entity";
     public static final String DEFAULT_METRIC_TABLE_PREFIX = "metrics.table";
 
+    public static final String METRICS_HBASE_INC_COALESCE_MAX_CELLS = "metrics.hbase.increment.coalesce.max.cells";
+    public static final String METRICS_HBASE_INC_COALESCE_WINDOW_MS = "metrics.hbase.increment.coalesce.window.ms";
     public static final String METRICS_HBASE_MAX_SCAN_THREADS = "metrics.hbase.max.scan.threads";
     public static final String METRICS_HBASE_TABLE_SPLITS = "metrics.table.splits";
     public static final String METRICS_TABLE_HBASE_SPLIT_POLICY = "metrics.table.hbase.split.policy";
@@ -723,6 +736,14 @@ public final class Constants {
         public static final String WRITE_BYTES = "dataset.store.bytes";
       }
 
+      /**
+       * Metrics table metrics
+       */
+      public static final class MetricsTable {
+        public static final String INCREMENT_REQUESTED_COUNT = "metricsTable.increment.requested.count";
+        public static final String INCREMENT_WRITTEN_COUNT = "metricsTable.increment.written.count";
+      }
+
       /**
        * Logs metrics
        */
@@ -1208,6 +1229,8 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_PRUNE_INTERVAL_SECONDS = "data.local.storage.prune.interval.seconds";
+  public static final String CFG_DATA_LEVELDB_ROW_FILTER_ENABLED = "data.local.storage.row.filter.enabled";
 
   /**
    * Defaults for Data Fabric.
@@ -1216,6 +1239,8 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final long DEFAULT_DATA_LEVELDB_PRUNE_INTERVAL_SECONDS = 3600L;
+  public static final boolean DEFAULT_DATA_LEVELDB_ROW_FILTER_ENABLED = true;
 
   /**
    * Used for upgrade and backwards compatability
@@ -1316,10 +1341,12 @@ public final class Constants {
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_REBALANCE_INTERVAL_SECONDS = "messaging.cache.rebalance.interval.seconds";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
     public static final String METADATA_TABLE_NAME = "messaging.metadata.table.name";
+    public static final String NUM_SHARDS = "messaging.num.shards";
     public static final String MESSAGE_TABLE_NAME = "messaging.message.table.name";
     public static final String MESSAGE_TABLE_HBASE_SPLITS = "messaging.message.table.hbase.splits";
     public static final String PAYLOAD_TABLE_NAME = "messaging.payload.table.name";
@@ -1331,10 +1358,16 @@ public final class Constants {
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
       "messaging.coprocessor.metadata.cache.update.frequency.seconds";
 
+    public static final String GROUP_COMMIT_LINGER_MS = "messaging.group.commit.linger.ms";
+    public static final String GROUP_COMMIT_MAX_REQUESTS = "messaging.group.commit.max.requests";
+    public static final String MAX_PENDING_STORE_REQUESTS = "messaging.max.pending.store.requests";
+
     public static final String HTTP_SERVER_WORKER_THREADS = "messaging.http.server.worker.threads";
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_MAX_POLL_TIMEOUT_MS = "messaging.http.server.max.poll.timeout.ms";
+    public static final String HTTP_SERVER_MAX_POLL_REQUESTS = "messaging.http.server.max.poll.requests";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
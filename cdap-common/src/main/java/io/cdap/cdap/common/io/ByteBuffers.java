@@ -20,7 +20,10 @@ import io.cdap.cdap.api.common.Bytes;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.util.function.Consumer;
 
 /**
  * A utility class that helps to use a {@link ByteBuffer} correctly and efficiently.
@@ -30,6 +33,7 @@ public final class ByteBuffers {
   public static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap(new byte[0]);
 
   private static final int MAX_BUFFER_SIZE = 64 * 1024;
+  private static final Consumer<ByteBuffer> DIRECT_BUFFER_RELEASER = createDirectBufferReleaser();
 
   /**
    * Writes all remaining bytes of a {@link ByteBuffer} to an {@link OutputStream}. The position and limit of
@@ -83,6 +87,53 @@ public final class ByteBuffers {
     return Bytes.toBytes(buffer);
   }
 
+  /**
+   * Releases the memory of a direct or memory mapped {@link ByteBuffer} without waiting for it to be garbage
+   * collected. The buffer must not be accessed after this call. This method is a no-op for heap buffers,
+   * or if the JVM doesn't support releasing the buffer explicitly.
+   */
+  public static void release(ByteBuffer buffer) {
+    if (buffer.isDirect()) {
+      DIRECT_BUFFER_RELEASER.accept(buffer);
+    }
+  }
+
+  /**
+   * Creates a {@link Consumer} that invokes the cleaner of a direct {@link ByteBuffer}, using
+   * {@code sun.misc.Unsafe.invokeCleaner} on Java 9+ and the {@code cleaner()} method of the buffer on Java 8.
+   */
+  private static Consumer<ByteBuffer> createDirectBufferReleaser() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      return buffer -> {
+        try {
+          invokeCleaner.invoke(unsafe, buffer);
+        } catch (Exception e) {
+          // Leave the buffer to be released by garbage collection
+        }
+      };
+    } catch (Exception e) {
+      // Not Java 9+, try the Java 8 way
+    }
+
+    return buffer -> {
+      try {
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      } catch (Exception e) {
+        // Leave the buffer to be released by garbage collection
+      }
+    };
+  }
+
   private ByteBuffers() {
   }
 }
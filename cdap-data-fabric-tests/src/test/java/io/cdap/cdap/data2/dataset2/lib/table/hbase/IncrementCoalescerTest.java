@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.hbase;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link IncrementCoalescer}.
+ */
+public class IncrementCoalescerTest {
+
+  private static final byte[] R1 = Bytes.toBytes("r1");
+  private static final byte[] R2 = Bytes.toBytes("r2");
+  private static final byte[] C1 = Bytes.toBytes("c1");
+  private static final byte[] C2 = Bytes.toBytes("c2");
+
+  @Test
+  public void testCoalesce() {
+    IncrementCoalescer coalescer = new IncrementCoalescer(3);
+    Assert.assertTrue(coalescer.isEmpty());
+
+    Assert.assertFalse(coalescer.add(R1, ImmutableMap.of(C1, 1L, C2, 2L)));
+    // Use a different array with the same content, which should be merged
+    Assert.assertFalse(coalescer.add(Bytes.toBytes("r1"), ImmutableMap.of(Bytes.toBytes("c1"), 10L)));
+
+    NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    updates.put(R1, new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    updates.get(R1).put(C2, 20L);
+    updates.put(R2, new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    updates.get(R2).put(C1, 5L);
+    // The third distinct cell reaches the maximum
+    Assert.assertTrue(coalescer.add(updates));
+
+    NavigableMap<byte[], NavigableMap<byte[], Long>> drained = coalescer.drain();
+    Assert.assertTrue(coalescer.isEmpty());
+    Assert.assertEquals(2, drained.size());
+    Assert.assertEquals(11L, (long) drained.get(R1).get(C1));
+    Assert.assertEquals(22L, (long) drained.get(R1).get(C2));
+    Assert.assertEquals(5L, (long) drained.get(R2).get(C1));
+    Assert.assertEquals(5L, coalescer.getRequestedCells());
+    Assert.assertEquals(3L, coalescer.getMergedCells());
+
+    // Restored increments are merged with the new ones, without being counted again
+    Assert.assertFalse(coalescer.add(R2, ImmutableMap.of(C1, 1L)));
+    coalescer.restore(drained);
+    Assert.assertEquals(6L, coalescer.getRequestedCells());
+    Assert.assertEquals(0L, coalescer.getMergedCells());
+    drained = coalescer.drain();
+    Assert.assertEquals(6L, (long) drained.get(R2).get(C1));
+    Assert.assertEquals(11L, (long) drained.get(R1).get(C1));
+    Assert.assertEquals(3L, coalescer.getMergedCells());
+  }
+}
@@ -16,13 +16,11 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.util.concurrent.Uninterruptibles;
@@ -34,9 +32,12 @@ import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
 import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
 import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
+import io.cdap.cdap.api.metrics.Distribution;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.Fact;
@@ -50,6 +51,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -58,6 +60,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.SortedSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -76,6 +79,10 @@ public class DefaultCube implements Cube, MeteredDataset {
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
   // hard-limit on max records to scan
   private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
+  // max number of facts to buffer before writing them during roll-up
+  private static final int ROLL_UP_BATCH_SIZE = 1000;
+  // number of time buckets of a coarser resolution that are rolled up with one scan per aggregation
+  private static final int ROLL_UP_WINDOW_BUCKETS = 60;
   private static final EnumSet<AggregationOption> PARTITION_AGG_OPTIONS = EnumSet.of(AggregationOption.LATEST,
                                                                                      AggregationOption.SUM);
 
@@ -83,6 +90,12 @@ public class DefaultCube implements Cube, MeteredDataset {
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
   private final ExecutorService executorService;
+  private final int finestResolution;
+  // resolutions other than the finest and the totals, in ascending order, which can be rolled up
+  private final int[] rollUpResolutions;
+
+  // facts older than this many seconds are written to all resolutions, negative if facts are not rolled up
+  private volatile long rollUpMaxLateSecs = -1L;
 
   @Nullable
   private MetricsCollector metrics;
@@ -96,6 +109,10 @@ public class DefaultCube implements Cube, MeteredDataset {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
     this.aggregationAliasMap = aggregationAliasMap;
+    this.finestResolution = Arrays.stream(resolutions).min().orElse(0);
+    this.rollUpResolutions = Arrays.stream(resolutions)
+      .filter(resolution -> resolution != finestResolution && resolution != Integer.MAX_VALUE)
+      .sorted().toArray();
     this.executorService = new ThreadPoolExecutor(0, resolutions.length, 30, TimeUnit.SECONDS,
                                                   new LinkedBlockingQueue<>(),
                                                   Threads.createDaemonThreadFactory("metrics-table-%d"));
@@ -132,9 +149,43 @@ public class DefaultCube implements Cube, MeteredDataset {
       }
     }
 
+    int addedCount = write(toWrite);
+
+    incrementMetric("cube.cubeFact.add.request.count", 1);
+    incrementMetric("cube.cubeFact.added.count", facts.size());
+    incrementMetric("cube.tsFact.created.count", toWrite.size());
+    incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
+    incrementMetric("cube.tsFact.added.count", addedCount);
+  }
+
+  /**
+   * Writes the given facts to the fact tables of all resolutions. If facts are rolled up, only the facts too late to
+   * be rolled up are written to the resolutions that are rolled up.
+   *
+   * @return the number of facts written to all the fact tables
+   */
+  private int write(List<Fact> toWrite) {
+    List<Fact> tooLate = toWrite;
+    long rollUpMaxLateSecs = this.rollUpMaxLateSecs;
+    if (rollUpMaxLateSecs >= 0) {
+      long tooLateTs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - rollUpMaxLateSecs;
+      tooLate = new ArrayList<>();
+      for (Fact fact : toWrite) {
+        if (fact.getTimestamp() < tooLateTs) {
+          tooLate.add(fact);
+        }
+      }
+    }
+
+    int addedCount = 0;
     Map<Integer, Future<?>> futures = new HashMap<>();
     for (Map.Entry<Integer, FactTable> table : resolutionToFactTable.entrySet()) {
-      futures.put(table.getKey(), executorService.submit(() -> table.getValue().add(toWrite)));
+      boolean rolledUp = rollUpMaxLateSecs >= 0 && Arrays.binarySearch(rollUpResolutions, table.getKey()) >= 0;
+      List<Fact> tableFacts = rolledUp ? tooLate : toWrite;
+      if (!tableFacts.isEmpty()) {
+        futures.put(table.getKey(), executorService.submit(() -> table.getValue().add(tableFacts)));
+        addedCount += tableFacts.size();
+      }
     }
 
     boolean failed = false;
@@ -161,12 +212,113 @@ public class DefaultCube implements Cube, MeteredDataset {
     if (failed) {
       throw new RuntimeException(failedMessage.append(".").toString(), failedException);
     }
+    return addedCount;
+  }
 
-    incrementMetric("cube.cubeFact.add.request.count", 1);
-    incrementMetric("cube.cubeFact.added.count", facts.size());
-    incrementMetric("cube.tsFact.created.count", toWrite.size());
-    incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
-    incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
+  /**
+   * Starts writing facts only to the fact tables of the finest resolution and of the totals, which cuts the number of
+   * writes per fact. The other resolutions are filled by {@link #rollUp(long, long)} instead. Facts that are older
+   * than the given age when they are added are still written to all resolutions, since the finest resolution may no
+   * longer hold them when they are rolled up.
+   *
+   * @param maxLateSecs age in seconds of the facts that are still rolled up
+   */
+  public void startRollUp(long maxLateSecs) {
+    Preconditions.checkArgument(maxLateSecs >= 0, "Max age %s of the rolled up facts is negative", maxLateSecs);
+    rollUpMaxLateSecs = maxLateSecs;
+  }
+
+  /**
+   * Rolls up the facts in the given time range into the resolutions that are not written by {@link #add(Collection)}.
+   * Each resolution is aggregated from the next finer one: counters and distributions are summed up and gauges take
+   * their latest value. Every time bucket that overlaps the range is aggregated from its start and its value replaces
+   * the stored one, hence rolling up a time range again is safe, and needed after facts are added to it.
+   *
+   * @param startTs start of the time range in seconds, inclusive
+   * @param endTs end of the time range in seconds, exclusive
+   */
+  public void rollUp(long startTs, long endTs) {
+    Preconditions.checkArgument(startTs < endTs, "Start %s of the roll-up is not before its end %s", startTs, endTs);
+
+    FactTable finestTable = resolutionToFactTable.get(finestResolution);
+    Map<String, Boolean> gauges = new HashMap<>();
+    int scannedCount = 0;
+    int rolledUpCount = 0;
+    int sourceResolution = finestResolution;
+    for (int resolution : rollUpResolutions) {
+      FactTable sourceTable = resolutionToFactTable.get(sourceResolution);
+      FactTable table = resolutionToFactTable.get(resolution);
+      // a time bucket can span several rows of the finer resolution, so it is aggregated within a window of buckets
+      long windowSize = (long) resolution * ROLL_UP_WINDOW_BUCKETS;
+      for (long windowTs = startTs / resolution * resolution; windowTs < endTs; windowTs += windowSize) {
+        long windowEndTs = Math.min(windowTs + windowSize, endTs);
+        for (Aggregation agg : aggregations.values()) {
+          List<DimensionValue> dimensionValues = new ArrayList<>();
+          for (String dimensionName : agg.getDimensionNames()) {
+            dimensionValues.add(new DimensionValue(dimensionName, null));
+          }
+          Map<RollUpKey, Measurement> rolledUp = new LinkedHashMap<>();
+          FactScanner scanner = sourceTable.scan(new FactScan(windowTs, windowEndTs - 1, Collections.emptyList(),
+                                                              dimensionValues));
+          try {
+            while (scanner.hasNext()) {
+              FactScanResult result = scanner.next();
+              scannedCount++;
+              boolean gauge = gauges.computeIfAbsent(result.getMeasureName(), finestTable::isGauge);
+              rollUp(result, resolution, gauge, rolledUp);
+            }
+          } finally {
+            scanner.close();
+          }
+
+          List<Fact> facts = new ArrayList<>();
+          for (Map.Entry<RollUpKey, Measurement> measurement : rolledUp.entrySet()) {
+            facts.add(new Fact(measurement.getKey().timestamp, measurement.getKey().dimensionValues,
+                               measurement.getValue()));
+            if (facts.size() >= ROLL_UP_BATCH_SIZE) {
+              table.put(facts);
+              rolledUpCount += facts.size();
+              facts.clear();
+            }
+          }
+          if (!facts.isEmpty()) {
+            table.put(facts);
+            rolledUpCount += facts.size();
+          }
+        }
+      }
+      sourceResolution = resolution;
+    }
+
+    incrementMetric("cube.rollUp.request.count", 1);
+    incrementMetric("cube.rollUp.scan.records.count", scannedCount);
+    incrementMetric("cube.rollUp.tsFact.added.count", rolledUpCount);
+  }
+
+  /**
+   * Aggregates the time values of a scanned measure into the measurements of the given resolution.
+   */
+  private static void rollUp(FactScanResult result, int resolution, boolean gauge,
+                             Map<RollUpKey, Measurement> rolledUp) {
+    String measureName = result.getMeasureName();
+    if (!result.getDistributions().isEmpty()) {
+      for (Map.Entry<Long, Distribution> distribution : result.getDistributions().entrySet()) {
+        rolledUp.merge(new RollUpKey(result, distribution.getKey() / resolution * resolution),
+                       new Measurement(measureName, distribution.getValue()),
+                       (m1, m2) -> new Measurement(measureName, m1.getDistribution().merge(m2.getDistribution())));
+      }
+      return;
+    }
+    // time values are ordered by timestamp, hence the last value of a gauge in a time bucket is its latest
+    for (TimeValue timeValue : result) {
+      RollUpKey key = new RollUpKey(result, timeValue.getTimestamp() / resolution * resolution);
+      if (gauge) {
+        rolledUp.put(key, new Measurement(measureName, MeasureType.GAUGE, timeValue.getValue()));
+      } else {
+        rolledUp.merge(key, new Measurement(measureName, MeasureType.COUNTER, timeValue.getValue()),
+                       (m1, m2) -> new Measurement(measureName, MeasureType.COUNTER, m1.getValue() + m2.getValue()));
+      }
+    }
   }
 
   @Override
@@ -255,12 +407,14 @@ public class DefaultCube implements Cube, MeteredDataset {
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
     FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    // {dimension values, measure} -> {time -> distribution}s of the measures queried by percentile
+    Table<Map<String, String>, String, Map<Long, Distribution>> distributions = HashBasedTable.create();
+    Table<Map<String, String>, String, TimeSeriesBuffer> resultMap = getTimeSeries(query, scanner, distributions);
 
     incrementMetric("cube.query.request.success.count", 1);
     incrementMetric("cube.query.result.size", resultMap.size());
 
-    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
+    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap, distributions);
     incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
 
     return timeSeries;
@@ -374,9 +528,10 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+  private Table<Map<String, String>, String, TimeSeriesBuffer> getTimeSeries(
+    CubeQuery query, FactScanner scanner, Table<Map<String, String>, String, Map<Long, Distribution>> distributions) {
+    // {dimension values, measure} -> time series, aggregated by timestamp once all facts are scanned
+    Table<Map<String, String>, String, TimeSeriesBuffer> result = HashBasedTable.create();
 
     int count = 0;
     while (scanner.hasNext()) {
@@ -411,96 +566,135 @@ public class DefaultCube implements Cube, MeteredDataset {
         continue;
       }
 
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
+      AggregationFunction measureFunction = query.getMeasurements().get(next.getMeasureName());
+      if (measureFunction != null && measureFunction.isPercentile()) {
+        // the percentiles are computed once the distributions of all the facts are merged
+        Map<Long, Distribution> measureDistributions = distributions.get(seriesDimensions, next.getMeasureName());
+        if (measureDistributions == null) {
+          measureDistributions = new HashMap<>();
+          distributions.put(seriesDimensions, next.getMeasureName(), measureDistributions);
         }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
+        for (Map.Entry<Long, Distribution> entry : next.getDistributions().entrySet()) {
+          measureDistributions.merge(entry.getKey(), entry.getValue(), Distribution::merge);
+        }
+        if (++count >= MAX_RECORDS_TO_SCAN) {
+          break;
         }
+        continue;
+      }
+
+      TimeSeriesBuffer timeValues = result.get(seriesDimensions, next.getMeasureName());
+      if (timeValues == null) {
+        timeValues = new TimeSeriesBuffer();
+        result.put(seriesDimensions, next.getMeasureName(), timeValues);
+      }
+      for (TimeValue timeValue : next) {
+        timeValues.add(timeValue.getTimestamp(), timeValue.getValue());
       }
       if (++count >= MAX_RECORDS_TO_SCAN) {
         break;
       }
     }
+
+    for (Table.Cell<Map<String, String>, String, TimeSeriesBuffer> cell : result.cellSet()) {
+      cell.getValue().aggregate(query.getMeasurements().get(cell.getColumnKey()));
+    }
+
+    for (Table.Cell<Map<String, String>, String, Map<Long, Distribution>> cell : distributions.cellSet()) {
+      double percentile = query.getMeasurements().get(cell.getColumnKey()).getPercentile();
+      TimeSeriesBuffer timeValues = new TimeSeriesBuffer();
+      for (Map.Entry<Long, Distribution> entry : cell.getValue().entrySet()) {
+        timeValues.add(entry.getKey(), entry.getValue().getPercentile(percentile));
+      }
+      // there is one value per timestamp, which only need to be sorted
+      timeValues.aggregate(AggregationFunction.LATEST);
+      result.put(cell.getRowKey(), cell.getColumnKey(), timeValues);
+    }
     return result;
   }
 
   private Collection<TimeSeries> convertToQueryResult(
-    CubeQuery query, Table<Map<String, String>, String, Map<Long, Long>> resultTable) {
+    CubeQuery query, Table<Map<String, String>, String, TimeSeriesBuffer> resultTable,
+    Table<Map<String, String>, String, Map<Long, Distribution>> distributions) {
     List<TimeSeries> result = new ArrayList<>();
-    // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
-      // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
-        // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = new ArrayList<>();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
-        }
-        Collections.sort(timeValues);
-        List<TimeValue> resultTimeValues = new ArrayList<>();
+    TimeSeriesInterpolator interpolator = new TimeSeriesInterpolator(query.getInterpolator(), query.getResolution());
+    // iterating each groupValue dimensions and measure
+    for (Table.Cell<Map<String, String>, String, TimeSeriesBuffer> cell : resultTable.cellSet()) {
+      // generating time series for a grouping and a measure, transforming the sorted time values in place
+      TimeSeriesBuffer timeValues = cell.getValue();
+
+      AggregationOption aggregationOption = query.getAggregationOption();
+      // this should not happen in production, since the check has been made in the handler
+      if (query.getLimit() <= 0) {
+        throw new IllegalArgumentException("The query limit cannot be less than 0");
+      }
+      // only partition the data points if the data points are larger than the required limit and only do it for
+      // option LATEST and SUM.
+      if (query.getLimit() < timeValues.size() && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
+        Map<Long, Distribution> measureDistributions = distributions.get(cell.getRowKey(), cell.getColumnKey());
+        partition(timeValues, query.getLimit(), aggregationOption, measureDistributions,
+                  query.getMeasurements().get(cell.getColumnKey()));
+      } else {
+        // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
+        interpolator.interpolate(timeValues, query.getLimit());
+      }
+      result.add(new TimeSeries(cell.getColumnKey(), cell.getRowKey(), timeValues.asList()));
+    }
+    return result;
+  }
 
-        AggregationOption aggregationOption = query.getAggregationOption();
-        // this should not happen in production, since the check has been made in the handler
-        if (query.getLimit() <= 0) {
-          throw new IllegalArgumentException("The query limit cannot be less than 0");
-        }
-        // only partition the data points if the data points are larger than the required limit and only do it for
-        // option LATEST and SUM.
-        if (query.getLimit() < timeValues.size() && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
-          int partitionSize = timeValues.size() / query.getLimit();
-          int remainder = timeValues.size() % query.getLimit();
-          // ignore the first reminderth data points
-          for (List<TimeValue> interval : Iterables.partition(timeValues.subList(remainder,
-                                                                                 timeValues.size()), partitionSize)) {
-            // for LATEST we only need to get the last data point in the interval
-            if (aggregationOption.equals(AggregationOption.LATEST)) {
-              resultTimeValues.add(interval.get(interval.size() - 1));
-              continue;
-            }
-            // for SUM we want to sum up all the values in the interval
-            if (aggregationOption.equals(AggregationOption.SUM)) {
-              long sum = interval.stream().mapToLong(TimeValue::getValue).sum();
-              resultTimeValues.add(new TimeValue(interval.get(interval.size() - 1).getTimestamp(), sum));
-            }
-          }
-        } else {
-          // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
-          PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-            new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-          while (timeValueItor.hasNext()) {
-            TimeValue timeValue = timeValueItor.next();
-            resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-            if (++count >= query.getLimit()) {
-              break;
-            }
-          }
+  /**
+   * Partitions the data points of the given time series into the given number of intervals, each represented by a
+   * data point at the end of the interval. The first data points that don't fill an interval are ignored.
+   */
+  private void partition(TimeSeriesBuffer timeValues, int limit, AggregationOption aggregationOption,
+                         @Nullable Map<Long, Distribution> distributions, AggregationFunction function) {
+    int partitionSize = timeValues.size() / limit;
+    int remainder = timeValues.size() % limit;
+    // the data point of an interval is never after the start of the interval, hence it can be replaced in place
+    for (int i = 0; i < limit; i++) {
+      int start = remainder + i * partitionSize;
+      int end = start + partitionSize;
+      long value;
+      if (aggregationOption.equals(AggregationOption.LATEST)) {
+        // for LATEST we only need to get the last data point in the interval
+        value = timeValues.getValue(end - 1);
+      } else if (distributions == null) {
+        // for SUM we want to sum up all the values in the interval
+        value = 0;
+        for (int j = start; j < end; j++) {
+          value += timeValues.getValue(j);
         }
-        result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
+      } else {
+        value = getPercentile(timeValues, start, end, distributions, function.getPercentile());
       }
+      timeValues.set(i, timeValues.getTimestamp(end - 1), value);
+    }
+    timeValues.resize(limit);
+  }
+
+  /**
+   * Returns the percentile of the merged distributions of the given interval, since percentiles cannot be summed.
+   */
+  private long getPercentile(TimeSeriesBuffer timeValues, int start, int end,
+                             Map<Long, Distribution> distributions, double percentile) {
+    Distribution merged = Distribution.empty();
+    for (int i = start; i < end; i++) {
+      Distribution distribution = distributions.get(timeValues.getTimestamp(i));
+      if (distribution != null) {
+        merged = merged.merge(distribution);
+      }
+    }
+    return merged.getPercentile(percentile);
+  }
+
+  /**
+   * Writes the increments that are buffered by the fact tables of all resolutions, if any.
+   */
+  public void flush() {
+    for (FactTable factTable : resolutionToFactTable.values()) {
+      factTable.flush();
     }
-    return result;
   }
 
   @Override
@@ -540,4 +734,38 @@ public class DefaultCube implements Cube, MeteredDataset {
     }
 
   }
+
+  /**
+   * Identifies a time bucket of a measure with the given dimension values during roll-up.
+   */
+  private static final class RollUpKey {
+    private final List<DimensionValue> dimensionValues;
+    private final String measureName;
+    private final long timestamp;
+
+    private RollUpKey(FactScanResult result, long timestamp) {
+      this.dimensionValues = result.getDimensionValues();
+      this.measureName = result.getMeasureName();
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RollUpKey that = (RollUpKey) o;
+      return timestamp == that.timestamp
+        && Objects.equals(dimensionValues, that.dimensionValues)
+        && Objects.equals(measureName, that.measureName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dimensionValues, measureName, timestamp);
+    }
+  }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A time series that keeps its data points in primitive arrays of timestamps and values, which avoids boxing each
+ * data point of the possibly many time series of a query.
+ * <p>
+ * Data points can be added in any order and with the same timestamp. They are sorted and combined by timestamp with
+ * {@link #aggregate(AggregationFunction)}, after which the time series can be transformed in place.
+ */
+final class TimeSeriesBuffer {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] timestamps;
+  private long[] values;
+  private int size;
+  // whether the data points were added in the order of their timestamps
+  private boolean sorted;
+
+  TimeSeriesBuffer() {
+    this.timestamps = new long[INITIAL_CAPACITY];
+    this.values = new long[INITIAL_CAPACITY];
+    this.sorted = true;
+  }
+
+  /**
+   * Adds a data point to the end of this time series.
+   */
+  void add(long timestamp, long value) {
+    if (size == timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    if (size > 0 && timestamp < timestamps[size - 1]) {
+      sorted = false;
+    }
+    timestamps[size] = timestamp;
+    values[size++] = value;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the timestamp of the data point at the given index, which may be beyond the size while the time series
+   * is transformed in place.
+   */
+  long getTimestamp(int index) {
+    return timestamps[index];
+  }
+
+  /**
+   * Returns the value of the data point at the given index, which may be beyond the size while the time series
+   * is transformed in place.
+   */
+  long getValue(int index) {
+    return values[index];
+  }
+
+  /**
+   * Replaces the data point at the given index, which must be less than the size.
+   */
+  void set(int index, long timestamp, long value) {
+    timestamps[index] = timestamp;
+    values[index] = value;
+  }
+
+  /**
+   * Changes the number of data points of this time series. Data points beyond the current size keep their values
+   * until they are replaced with {@link #set(int, long, long)}.
+   */
+  void resize(int newSize) {
+    if (newSize > timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, newSize);
+      values = Arrays.copyOf(values, newSize);
+    }
+    size = newSize;
+  }
+
+  /**
+   * Sorts the data points by timestamp and combines the values of the data points with the same timestamp with the
+   * given function. Data points with the same timestamp are combined in the order they were added.
+   */
+  void aggregate(AggregationFunction function) {
+    if (!sorted) {
+      sort();
+    }
+    int newSize = 0;
+    for (int i = 0; i < size; i++) {
+      if (newSize > 0 && timestamps[newSize - 1] == timestamps[i]) {
+        values[newSize - 1] = combine(function, values[newSize - 1], values[i]);
+      } else {
+        timestamps[newSize] = timestamps[i];
+        values[newSize++] = values[i];
+      }
+    }
+    size = newSize;
+  }
+
+  /**
+   * Returns a view of the data points as {@link TimeValue}s, which are created as they are read. The view reflects
+   * changes of this time series.
+   */
+  List<TimeValue> asList() {
+    return new TimeValueList();
+  }
+
+  private static long combine(AggregationFunction function, long current, long value) {
+    switch (function) {
+      case SUM:
+        return current + value;
+      case MAX:
+        return Math.max(current, value);
+      case MIN:
+        return Math.min(current, value);
+      case LATEST:
+        return value;
+      default:
+        // should never happen: developer error
+        throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+  }
+
+  /**
+   * Sorts the data points by timestamp with a stable bottom-up merge sort.
+   */
+  private void sort() {
+    long[] srcTimestamps = timestamps;
+    long[] srcValues = values;
+    long[] destTimestamps = new long[timestamps.length];
+    long[] destValues = new long[values.length];
+    for (int width = 1; width < size; width *= 2) {
+      for (int low = 0; low < size; low += 2 * width) {
+        int mid = Math.min(low + width, size);
+        int high = Math.min(low + 2 * width, size);
+        int i = low;
+        int j = mid;
+        for (int k = low; k < high; k++) {
+          if (j >= high || (i < mid && srcTimestamps[i] <= srcTimestamps[j])) {
+            destTimestamps[k] = srcTimestamps[i];
+            destValues[k] = srcValues[i++];
+          } else {
+            destTimestamps[k] = srcTimestamps[j];
+            destValues[k] = srcValues[j++];
+          }
+        }
+      }
+      long[] swap = srcTimestamps;
+      srcTimestamps = destTimestamps;
+      destTimestamps = swap;
+      swap = srcValues;
+      srcValues = destValues;
+      destValues = swap;
+    }
+    timestamps = srcTimestamps;
+    values = srcValues;
+    sorted = true;
+  }
+
+  /**
+   * A read-only {@link List} view of the data points.
+   */
+  private final class TimeValueList extends AbstractList<TimeValue> implements RandomAccess {
+
+    @Override
+    public TimeValue get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+      }
+      return new TimeValue(timestamps[index], values[index]);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
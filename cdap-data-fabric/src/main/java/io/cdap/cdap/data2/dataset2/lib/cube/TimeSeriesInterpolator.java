@@ -16,15 +16,9 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
-import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.PeekingIterator;
 import io.cdap.cdap.api.dataset.lib.cube.Interpolator;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 
-import java.util.Collection;
-import java.util.Iterator;
 import javax.annotation.Nullable;
 
 /**
@@ -45,99 +39,72 @@ import javax.annotation.Nullable;
  *   t1  t2  t3  t4  t5
  *   5   -   -   -   3
  *   5   5   5   5   3
+ *
+ * The time series is interpolated in place, without creating an object for each data point.
  */
-class TimeSeriesInterpolator implements Iterable<TimeValue> {
+final class TimeSeriesInterpolator {
 
-  private final Collection<TimeValue> timeSeries;
   @Nullable
   private final Interpolator interpolator;
   private final int resolution;
 
-  TimeSeriesInterpolator(Collection<TimeValue> timeValues, @Nullable Interpolator interpolator, int resolution) {
-    this.timeSeries = ImmutableList.copyOf(timeValues);
+  TimeSeriesInterpolator(@Nullable Interpolator interpolator, int resolution) {
     this.interpolator = interpolator;
     this.resolution = resolution;
   }
 
-  @Override
-  public Iterator<TimeValue> iterator() {
-    return new InterpolatedAggregatorIterator();
-  }
-
-  private class InterpolatedAggregatorIterator extends AbstractIterator<TimeValue> {
-
-    private long currentTs;
-    BiDirectionalPeekingIterator timeseries;
-
-    InterpolatedAggregatorIterator() {
-      timeseries = new BiDirectionalPeekingIterator(Iterators.peekingIterator(timeSeries.iterator()));
-      if (timeseries.hasNext()) {
-        currentTs = timeseries.peek().getTimestamp();
-      }
+  /**
+   * Interpolates the given time series, which must be sorted by timestamp, and keeps at most the given number of
+   * its first data points.
+   */
+  void interpolate(TimeSeriesBuffer timeSeries, int limit) {
+    int size = timeSeries.size();
+    if (interpolator == null || size < 2) {
+      timeSeries.resize(Math.min(size, limit));
+      return;
     }
 
-    @Override
-    protected TimeValue computeNext() {
-      long currentTsValue = 0;
-      // no more data points in the timeseries
-      if (!timeseries.hasNext()) {
-        return endOfData();
-      }
-
-      // move the iterator to the next point in this timeseries if this is an actual data point and not interpolated.
-      if (timeseries.peek().getTimestamp() == currentTs) {
-        currentTsValue += timeseries.peek().getValue();
-        timeseries.next();
-      } else if (interpolator != null && timeseries.peekBefore() != null) {
-        // don't interpolate unless we're in between data points
-        currentTsValue += interpolator.interpolate(timeseries.peekBefore(), timeseries.peek(), currentTs);
-      }
-
-      TimeValue output = new TimeValue(currentTs, currentTsValue);
-      if (timeseries.hasNext()) {
-        // increment the currentTs by resolution to get the next data point.
-        currentTs = (interpolator == null) ? timeseries.peek().getTimestamp() : currentTs + resolution;
-      }
-      return output;
+    // the position of the last data point once the missing data points are filled in
+    long position = 0;
+    for (int i = 1; i < size; i++) {
+      position += getMissingCount(timeSeries.getTimestamp(i - 1), timeSeries.getTimestamp(i)) + 1;
     }
-
-    /**
-     * Iterator that allows peeking on the next value and also retrieving the last value, which will be null
-     * if there was no last value.  Used to allow interpolating between two datapoints in a timeseries.
-     */
-    public final class BiDirectionalPeekingIterator implements PeekingIterator<TimeValue> {
-      PeekingIterator<TimeValue> iter;
-      TimeValue lastValue;
-
-      BiDirectionalPeekingIterator(PeekingIterator<TimeValue> iter) {
-        this.iter = iter;
-        this.lastValue = null;
-      }
-
-      @Override
-      public TimeValue peek() {
-        return iter.peek();
+    int newSize = (int) Math.min(position + 1, limit);
+    timeSeries.resize(newSize);
+
+    // moves the data points from the last to their positions, which are never before their current positions,
+    // so that every data point is read before its index is written to
+    for (int i = size - 1; i >= 0; i--) {
+      long timestamp = timeSeries.getTimestamp(i);
+      long value = timeSeries.getValue(i);
+      if (position < newSize) {
+        timeSeries.set((int) position, timestamp, value);
       }
-
-      @Override
-      public boolean hasNext() {
-        return iter.hasNext();
+      if (i == 0) {
+        break;
       }
 
-      @Override
-      public TimeValue next() {
-        lastValue = iter.next();
-        return lastValue;
-      }
-
-      @Override
-      public void remove() {
-        iter.remove();
-      }
-
-      public TimeValue peekBefore() {
-        return lastValue;
+      long previousTimestamp = timeSeries.getTimestamp(i - 1);
+      long missingCount = getMissingCount(previousTimestamp, timestamp);
+      long previousPosition = position - missingCount - 1;
+      if (missingCount > 0 && previousPosition + 1 < newSize) {
+        TimeValue start = new TimeValue(previousTimestamp, timeSeries.getValue(i - 1));
+        TimeValue end = new TimeValue(timestamp, value);
+        long missingTimestamp = previousTimestamp + resolution;
+        for (long p = previousPosition + 1; p < position && p < newSize; p++) {
+          timeSeries.set((int) p, missingTimestamp, interpolator.interpolate(start, end, missingTimestamp));
+          missingTimestamp += resolution;
+        }
       }
+      position = previousPosition;
     }
   }
+
+  /**
+   * Returns the number of data points at the resolution that are missing between the given timestamps.
+   */
+  private long getMissingCount(long previousTimestamp, long timestamp) {
+    long gap = timestamp - previousTimestamp;
+    return gap <= resolution ? 0 : (gap - 1) / resolution;
+  }
 }
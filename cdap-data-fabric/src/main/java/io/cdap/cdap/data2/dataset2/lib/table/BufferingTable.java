@@ -18,7 +18,9 @@ package io.cdap.cdap.data2.dataset2.lib.table;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.cdap.cdap.api.annotation.ReadOnly;
@@ -29,7 +31,6 @@ import io.cdap.cdap.api.data.batch.Split;
 import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
 import io.cdap.cdap.api.dataset.table.ConflictDetection;
-import io.cdap.cdap.api.dataset.table.Filter;
 import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
@@ -37,6 +38,7 @@ import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.TableProperties;
 import io.cdap.cdap.api.dataset.table.TableSplit;
+import io.cdap.cdap.api.metrics.Counter;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.common.conf.Constants;
 import org.apache.tephra.Transaction;
@@ -44,6 +46,7 @@ import org.apache.tephra.TransactionAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,7 +56,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
 /**
@@ -74,7 +76,9 @@ import javax.annotation.Nullable;
  *       Given the snapshot isolation tx model, this can be improved in future implementations.
  * <p>
  * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet).
+ *       Setting the {@link #WRITE_BUFFER_OFF_HEAP_SIZE} property keeps the changes outside of the java heap and
+ *       spills them to a local file when they exceed the given size.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -86,6 +90,19 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   protected static final byte[] DELETE_MARKER = new byte[0];
 
+  /**
+   * Dataset property for keeping the uncommitted changes outside of the java heap. The value is the maximum number
+   * of bytes of direct memory used by a table instance for buffering changes, after which they are spilled to a
+   * local file. If not set, changes are kept on the heap.
+   */
+  public static final String WRITE_BUFFER_OFF_HEAP_SIZE = "dataset.table.write.buffer.offheap.size";
+
+  /**
+   * Dataset property for the local directory to spill the off-heap write buffer to. Defaults to the
+   * {@code java.io.tmpdir} directory.
+   */
+  public static final String WRITE_BUFFER_SPILL_DIR = "dataset.table.write.buffer.spill.dir";
+
   // name of the table
   private final String name;
   // conflict detection level
@@ -94,16 +111,26 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private final byte[] nameAsTxChangePrefix;
   // Whether read-less increments should be used when increment() is called
   private final boolean enableReadlessIncrements;
+  // Direct memory shared by the off-heap write buffers of this table, or null if the write buffers are on the heap
+  private final OffHeapWriteBuffer.ChunkPool chunkPool;
+  // Directory to spill the off-heap write buffer to
+  private final File spillDir;
 
   // In-memory buffer that keeps not yet persisted data. It is row->(column->value) map. Value can be null which means
   // that the corresponded column was removed.
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
+  private WriteBuffer buff;
 
   // Keeps track of what was persisted so far
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
+  private WriteBuffer toUndo;
 
-  // Report data ops metrics to
-  private MetricsCollector metricsCollector;
+  // Buffer released by the last transaction, which is reused as the in-memory buffer after next commit
+  private WriteBuffer spareBuff;
+
+  // Handles of the data ops metrics, which are resolved once when the metrics collector is set
+  private Counter readCounter;
+  private Counter writeCounter;
+  private Counter writeBytesCounter;
+  private Counter opCounter;
 
   // the current transaction
   protected Transaction tx;
@@ -145,12 +172,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     this.name = name;
     this.conflictLevel = TableProperties.getConflictDetection(properties, ConflictDetection.ROW);
     this.enableReadlessIncrements = enableReadlessIncrements;
+    String offHeapBufferSize = properties.get(WRITE_BUFFER_OFF_HEAP_SIZE);
+    this.chunkPool = offHeapBufferSize == null
+      ? null : new OffHeapWriteBuffer.ChunkPool(Long.parseLong(offHeapBufferSize));
+    String spillDir = properties.get(WRITE_BUFFER_SPILL_DIR);
+    this.spillDir = new File(spillDir == null ? System.getProperty("java.io.tmpdir") : spillDir);
     // TODO: having central dataset management service will allow us to use table ids instead of names, which will
     //       reduce changeset size transferred to/from server
     // we want it to be of format length+value to avoid conflicts like table="ab", row="cd" vs table="abc", row="d"
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
-    this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    this.buff = createWriteBuffer();
   }
 
   /**
@@ -227,6 +259,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   /**
    * Scans range of rows from persistent store for a given {@link Scan}.
    * NOTE: persisted store can also be in-memory, it is called "persisted" to distinguish from in-memory buffer.
+   * Implementations must return only the rows and columns that pass the filter and the column projection of the
+   * scan, up to the limit of the scan; see {@link ScanEvaluator}.
    * @param scan scan configuration
    * @return instance of {@link Scanner}, never null
    * @throws Exception
@@ -254,14 +288,30 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public void setMetricsCollector(MetricsCollector metricsCollector) {
-    this.metricsCollector = metricsCollector;
+    this.readCounter = metricsCollector.counter(Constants.Metrics.Name.Dataset.READ_COUNT);
+    this.writeCounter = metricsCollector.counter(Constants.Metrics.Name.Dataset.WRITE_COUNT);
+    this.writeBytesCounter = metricsCollector.counter(Constants.Metrics.Name.Dataset.WRITE_BYTES);
+    this.opCounter = metricsCollector.counter(Constants.Metrics.Name.Dataset.OP_COUNT);
   }
 
   @Override
   public void close() throws IOException {
     // releasing resources
+    if (buff != null) {
+      buff.close();
+    }
+    if (toUndo != null) {
+      toUndo.close();
+    }
+    if (spareBuff != null) {
+      spareBuff.close();
+    }
+    if (chunkPool != null) {
+      chunkPool.close();
+    }
     buff = null;
     toUndo = null;
+    spareBuff = null;
   }
 
   @Override
@@ -273,7 +323,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
-    toUndo = null;
+    releaseUndo();
     this.tx = tx;
   }
 
@@ -308,17 +358,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Collection<byte[]> getRowChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (byte[] changedRow : buff.keySet()) {
-      changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
+    List<byte[]> changes = new ArrayList<>();
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = buff.scan(null, null);
+    while (rows.hasNext()) {
+      changes.add(Bytes.add(getNameAsTxChangePrefix(), rows.next().getKey()));
     }
     return changes;
   }
 
   private Collection<byte[]> getColumnChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
+    List<byte[]> changes = new ArrayList<>();
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = buff.scan(null, null);
+    while (rows.hasNext()) {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange = rows.next();
       if (rowChange.getValue() == null) {
         // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
         //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
@@ -342,13 +395,15 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
       toUndo = buff;
-      // clearing up in-memory buffer by initializing new map.
-      // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
-      // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
-      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      // clearing up in-memory buffer by swapping in the buffer released by the previous tx.
+      // NOTE: we want to swap buffers here so that if no changes are made we re-use same instance in next tx
+      buff = spareBuff == null ? createWriteBuffer() : spareBuff;
+      spareBuff = null;
       // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
       //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
-      persist(toUndo);
+      for (NavigableMap<byte[], NavigableMap<byte[], Update>> batch : toUndo.batches()) {
+        persist(batch);
+      }
     }
     return true;
   }
@@ -357,7 +412,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
-    toUndo = null;
+    releaseUndo();
     tx = null;
   }
 
@@ -365,13 +420,30 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public boolean rollbackTx() throws Exception {
     buff.clear();
     if (toUndo != null) {
-      undo(toUndo);
-      toUndo = null;
+      for (NavigableMap<byte[], NavigableMap<byte[], Update>> batch : toUndo.batches()) {
+        undo(batch);
+      }
+      releaseUndo();
     }
     tx = null;
     return true;
   }
 
+  private WriteBuffer createWriteBuffer() {
+    return chunkPool == null ? new OnHeapWriteBuffer() : new OffHeapWriteBuffer(chunkPool, spillDir);
+  }
+
+  /**
+   * Clears the buffer of the persisted changes, keeping it for reuse by the next commit.
+   */
+  private void releaseUndo() {
+    if (toUndo != null) {
+      toUndo.clear();
+      spareBuff = toUndo;
+      toUndo = null;
+    }
+  }
+
   protected void ensureTransactionIsStarted() {
     if (tx == null) {
       throw new DataSetException("Attempt to perform a data operation without a transaction");
@@ -415,7 +487,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     reportRead(1);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
     // NOTE: since we cannot tell the exact column set, we always have to go to persisted store.
     //       potential improvement: do not fetch columns available in in-mem buffer (we know them at this point)
@@ -467,7 +539,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         rowColumns.putAll(persistedRow);
 
         byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
+        NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
@@ -500,24 +572,12 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
-    NavigableMap<byte[], Update> colVals = buff.get(row);
-    boolean newRow = false;
-    if (colVals == null) {
-      colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      newRow = true;
-    }
     for (int i = 0; i < columns.length; i++) {
-      // NOTE: we copy passed column's and value's byte arrays to protect buffer against possible changes of these
-      // arrays on client
       if (values[i] != null && values[i].length == 0) {
         warnAboutEmptyValue(columns[i]);
       }
-      colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
-    }
-    if (newRow) {
-      // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
-      buff.put(copy(row), colVals);
     }
+    buff.put(row, columns, values);
   }
 
   /**
@@ -620,14 +680,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     ensureTransactionIsStarted();
     if (enableReadlessIncrements) {
-      NavigableMap<byte[], Update> colVals = buff.get(row);
-      if (colVals == null) {
-        colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        buff.put(row, colVals);
-      }
-      for (int i = 0; i < columns.length; i++) {
-        colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
-      }
+      buff.increment(row, columns, amounts);
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
     } else {
       internalIncrementAndGet(row, columns, amounts);
@@ -695,9 +748,12 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    ScanEvaluator evaluator = new ScanEvaluator(scan);
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferRows = scanBuffer(scan, evaluator);
     try {
-      return new BufferingScanner(bufferMap, scanPersisted(scan));
+      // the limit cannot be pushed down if rows in the buffer can be merged into the result
+      Scan persistedScan = scan.getLimit() > 0 && bufferRows.hasNext() ? withoutLimit(scan) : scan;
+      return new BufferingScanner(bufferRows, scanPersisted(persistedScan), evaluator, scan.getLimit());
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
           ", scan: " + scan.toString(), e);
@@ -705,52 +761,32 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
-    byte[] startRow = scan.getStartRow();
-    byte[] stopRow = scan.getStopRow();
-    if (startRow == null && stopRow == null) {
-      bufferMap = buff;
-    } else if (startRow == null) {
-      bufferMap = buff.headMap(stopRow, false);
-    } else if (stopRow == null) {
-      bufferMap = buff.tailMap(startRow, true);
-    } else {
-      bufferMap = buff.subMap(startRow, true, stopRow, false);
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> scanBuffer(Scan scan,
+                                                                               final ScanEvaluator evaluator) {
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = buff.scan(scan.getStartRow(), scan.getStopRow());
+    if (evaluator.getFuzzyRowFilters().isEmpty()) {
+      return rows;
     }
-    bufferMap = applyFilter(bufferMap, scan.getFilter());
-    return bufferMap;
+    return Iterators.filter(rows, new Predicate<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
+      @Override
+      public boolean apply(Map.Entry<byte[], NavigableMap<byte[], Update>> entry) {
+        return evaluator.acceptRow(entry.getKey());
+      }
+    });
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> applyFilter(
-                                                        NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap,
-                                                        @Nullable Filter filter) {
-    if (filter == null) {
-      return bufferMap;
-    }
-
-    // todo: currently we support only FuzzyRowFilter as an experimental feature
-    if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : bufferMap.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
-        }
-      }
-      return result;
-    } else {
-      throw new DataSetException("Unknown filter type: " + filter);
+  private static Scan withoutLimit(Scan scan) {
+    Scan result = new Scan(scan.getStartRow(), scan.getStopRow(), scan.getFilter()).setColumns(scan.getColumns());
+    for (Map.Entry<String, String> property : scan.getProperties().entrySet()) {
+      result.setProperty(property.getKey(), property.getValue());
     }
+    return result;
   }
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
-    boolean rowDeleted = buffCols == null && buff.containsKey(row);
-    if (rowDeleted) {
-      return Collections.emptyMap();
-    }
+    NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
     Map<byte[], byte[]> persisted = getPersisted(row, null);
 
@@ -767,7 +803,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
     // if nothing locally, return all from server
     if (buffCols == null) {
@@ -922,18 +958,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void reportWrite(int numOps, int dataSize) {
-    if (metricsCollector != null) {
-      metricsCollector.increment(Constants.Metrics.Name.Dataset.WRITE_COUNT, numOps);
-      metricsCollector.increment(Constants.Metrics.Name.Dataset.WRITE_BYTES, dataSize);
-      metricsCollector.increment(Constants.Metrics.Name.Dataset.OP_COUNT, numOps);
+    if (opCounter != null) {
+      writeCounter.increment(numOps);
+      writeBytesCounter.increment(dataSize);
+      opCounter.increment(numOps);
     }
   }
 
   private void reportRead(int numOps) {
-    if (metricsCollector != null) {
+    if (opCounter != null) {
       // todo: report amount of data being read
-      metricsCollector.increment(Constants.Metrics.Name.Dataset.READ_COUNT, numOps);
-      metricsCollector.increment(Constants.Metrics.Name.Dataset.OP_COUNT, numOps);
+      readCounter.increment(numOps);
+      opCounter.increment(numOps);
     }
   }
 
@@ -962,11 +998,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // they get annotated
 
   @ReadOnly
-  private Iterator<byte[]> getBufferKeyIterator(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
-    final Iterator<byte[]> iterator = buffer.keySet().iterator();
-    return new AbstractIterator<byte[]>() {
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> getBufferIterator(
+    final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator) {
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
       @Override
-      protected byte[] computeNext() {
+      protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
         return BufferingTable.this.hasNext(iterator) ? BufferingTable.this.next(iterator) : endOfData();
       }
     };
@@ -982,39 +1018,52 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return iterator.next();
   }
 
-  @ReadOnly
-  private NavigableMap<byte[], Update> getFromBuffer(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer,
-                                                     byte[] key) {
-    return buffer.get(key);
-  }
-
   /**
    * Scanner implementation that overlays buffered data on top of already persisted data.
    */
   private class BufferingScanner implements Scanner {
-    private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
     private final Scanner persistedScanner;
-    private final Iterator<byte[]> keyIter;
+    private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferIter;
+    private final ScanEvaluator evaluator;
+    private final int limit;
+    private Map.Entry<byte[], NavigableMap<byte[], Update>> currentEntry;
     private byte[] currentKey;
     private Row currentRow;
+    private int returned;
 
-    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
-      this.buffer = buffer;
-      this.keyIter = getBufferKeyIterator(buffer);
-      if (this.keyIter.hasNext()) {
-        currentKey = keyIter.next();
-      }
+    private BufferingScanner(Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferRows,
+                             Scanner persistedScanner, ScanEvaluator evaluator, int limit) {
+      this.bufferIter = getBufferIterator(bufferRows);
+      advanceBuffer();
       this.persistedScanner = persistedScanner;
       this.currentRow = this.persistedScanner.next();
+      this.evaluator = evaluator;
+      this.limit = limit;
     }
 
     @Nullable
     @Override
     public Row next() {
-      if (currentKey == null && currentRow == null) {
-        // out of rows
+      if (limit > 0 && returned >= limit) {
         return null;
       }
+      // out of rows when both the buffer and the persisted scanner are exhausted
+      while (currentKey != null || currentRow != null) {
+        Row result = nextMerged();
+        if (result != null) {
+          returned++;
+          return result;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the next row, or {@code null} if the next row has buffered changes and does not pass the scan
+     * filter after the changes are merged.
+     */
+    @Nullable
+    private Row nextMerged() {
       reportRead(1);
       int order;
       if (currentKey == null) {
@@ -1027,28 +1076,51 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         order = Bytes.compareTo(currentKey, currentRow.getRow());
       }
 
-      Row result;
       if (order > 0) {
-        // persisted row comes first or buffer is empty
-        result = currentRow;
+        // persisted row comes first or buffer is empty. The persisted scan already applied the filter.
+        Row result = currentRow;
         currentRow = persistedScanner.next();
-      } else if (order < 0) {
-        // buffer row comes first or persisted scanner is empty
-        Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), null);
-        result = new Result(copy(currentKey), persistedRow);
+        return result;
+      }
 
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+      byte[] row = order < 0 ? copy(currentKey) : currentRow.getRow();
+      Map<byte[], byte[]> persisted;
+      if (!evaluator.isRowKeyOnly()) {
+        // The persisted scan filtered the row based on the persisted columns only, hence the row needs to be
+        // read again to have all the columns needed for evaluating the filter on the merged row.
+        persisted = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        try {
+          NavigableMap<byte[], byte[]> columns = getPersisted(row, evaluator.getColumnsToRead());
+          if (columns != null) {
+            persisted.putAll(columns);
+          }
+        } catch (Exception e) {
+          LOG.debug("scan failed for table: " + getTransactionAwareName() + ", row: " + Bytes.toStringBinary(row), e);
+          throw new DataSetException("scan failed", e);
+        }
+      } else if (order < 0) {
+        persisted = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
       } else {
-        // if currentKey and currentRow are equal, merge and advance both
-        Map<byte[], byte[]> persisted = currentRow.getColumns();
-        mergeToPersisted(persisted, getFromBuffer(buffer, currentKey), null);
-        result = new Result(currentRow.getRow(), persisted);
+        persisted = currentRow.getColumns();
+      }
+      mergeToPersisted(persisted, currentEntry.getValue(), null);
 
+      if (order == 0) {
+        // if currentKey and currentRow are equal, advance both
         currentRow = persistedScanner.next();
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
       }
-      return result;
+      advanceBuffer();
+
+      if (evaluator.isRowKeyOnly()) {
+        return new Result(row, persisted);
+      }
+      NavigableMap<byte[], byte[]> columns = evaluator.apply(row, persisted);
+      return columns == null ? null : new Result(row, columns);
+    }
+
+    private void advanceBuffer() {
+      currentEntry = bufferIter.hasNext() ? bufferIter.next() : null;
+      currentKey = currentEntry == null ? null : currentEntry.getKey();
     }
 
     @Override
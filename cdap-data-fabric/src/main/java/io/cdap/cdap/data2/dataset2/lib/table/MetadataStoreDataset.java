@@ -31,6 +31,7 @@ import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
 import io.cdap.cdap.proto.id.ApplicationId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProgramId;
@@ -57,6 +58,11 @@ public class MetadataStoreDataset extends AbstractDataset {
    */
   private static final byte[] COLUMN = Bytes.toBytes("c");
 
+  /**
+   * Number of regions to scan concurrently for scans over arbitrary ranges, which can cover the whole table.
+   */
+  private static final int FULL_SCAN_PARALLELISM = 4;
+
   private final Table table;
   private final Gson gson;
 
@@ -405,7 +411,7 @@ public class MetadataStoreDataset extends AbstractDataset {
     byte[] startKey = startId.getKey();
     byte[] stopKey = stopId == null ? Bytes.stopKeyForPrefix(startKey) : stopId.getKey();
 
-    try (Scanner scan = table.scan(startKey, stopKey)) {
+    try (Scanner scan = table.scan(createFullScan(startKey, stopKey))) {
       Row next;
       while ((next = scan.next()) != null) {
         byte[] columnValue = next.get(COLUMN);
@@ -442,7 +448,7 @@ public class MetadataStoreDataset extends AbstractDataset {
     byte[] stopKey = Bytes.stopKeyForPrefix(prefix);
 
     try {
-      try (Scanner scan = table.scan(prefix, stopKey)) {
+      try (Scanner scan = table.scan(createFullScan(prefix, stopKey))) {
         Row next;
         while ((next = scan.next()) != null) {
           String columnValue = next.getString(COLUMN);
@@ -567,6 +573,15 @@ public class MetadataStoreDataset extends AbstractDataset {
     }
   }
 
+  /**
+   * Creates a {@link Scan} for a range that can cover many regions of the table, which are then scanned in parallel.
+   */
+  private Scan createFullScan(byte[] startKey, byte[] stopKey) {
+    Scan scan = new Scan(startKey, stopKey);
+    scan.setProperty(HBaseTable.SCAN_PARALLELISM, String.valueOf(FULL_SCAN_PARALLELISM));
+    return scan;
+  }
+
   // TODO: We should avoid this duplicate code. CDAP-7569.
   private ImmutablePair<byte[], byte[]> getFuzzyKeyFor(MDSKey key) {
     byte[] keyBytes = key.getKey();
@@ -91,5 +91,13 @@ public interface MetricsTable extends Dataset {
    */
   Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter);
 
+  /**
+   * Writes any increments that are buffered by this client to the underlying storage. By default, all writes are
+   * applied immediately and this method does nothing.
+   */
+  default void flush() {
+    // no-op
+  }
+
 }
 
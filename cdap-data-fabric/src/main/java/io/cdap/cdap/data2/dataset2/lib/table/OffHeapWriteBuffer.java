@@ -0,0 +1,614 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
+import io.cdap.cdap.common.io.ByteBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link WriteBuffer} that keeps the changes outside of the java heap, in a skip list laid out in memory chunks.
+ * Chunks are acquired from a {@link ChunkPool} of direct memory until the memory limit of the pool is reached,
+ * after which new chunks are memory mapped from a temporary file in the spill directory. Direct memory chunks are
+ * returned to the pool on {@link #clear()}, so that a table buffering a lot of changes doesn't allocate memory in
+ * every transaction, while all the buffers of the table together stay within the memory limit. Memory mapped chunks
+ * are unmapped on {@link #clear()}.
+ * <p>
+ * Every cell is stored as a skip list node, with pointers to the next nodes for each level of the node:
+ * <pre>
+ *   [value pointer (8)][height (1)][row length (4)][column length (4)][next pointers (8 * height)][row][column]
+ * </pre>
+ * The value of a cell is stored separately, so that it can be replaced without moving the node:
+ * <pre>
+ *   [type (1)]                        for deletes
+ *   [type (1)][length (4)][value]     for puts
+ *   [type (1)][amount (8)]            for increments
+ * </pre>
+ * A pointer has the chunk index in the high 32 bits and the offset in the chunk in the low 32 bits. Nodes are
+ * never removed until the buffer is cleared, hence iterators are not affected by changes made while iterating.
+ * <p>
+ * This class is not thread safe.
+ */
+final class OffHeapWriteBuffer implements WriteBuffer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapWriteBuffer.class);
+
+  static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  // Maximum number of cells in each of the batches returned by the batches() method
+  private static final int BATCH_SIZE = 10000;
+  private static final int MAX_HEIGHT = 16;
+  private static final long NIL = -1L;
+  private static final byte[] EMPTY = new byte[0];
+
+  private static final int VALUE_POINTER_OFFSET = 0;
+  private static final int HEIGHT_OFFSET = 8;
+  private static final int ROW_LENGTH_OFFSET = 9;
+  private static final int COLUMN_LENGTH_OFFSET = 13;
+  private static final int NEXT_OFFSET = 17;
+
+  private static final byte TYPE_DELETE = 0;
+  private static final byte TYPE_PUT = 1;
+  private static final byte TYPE_INCREMENT = 2;
+
+  private final ChunkPool chunkPool;
+  private final File spillDir;
+  private final List<ByteBuffer> chunks = new ArrayList<>();
+  private final BitSet spilledChunks = new BitSet();
+  private final long[] head = new long[MAX_HEIGHT];
+  // Predecessors of the node being inserted, reused across inserts
+  private final long[] prev = new long[MAX_HEIGHT];
+
+  private int position;
+  private int height;
+  private int generation;
+  private Path spillFile;
+  private FileChannel spillChannel;
+  private long spillSize;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param chunkPool the pool to acquire direct memory chunks from before spilling to a file
+   * @param spillDir the directory to create the spill file in
+   */
+  OffHeapWriteBuffer(ChunkPool chunkPool, File spillDir) {
+    this.chunkPool = chunkPool;
+    this.spillDir = spillDir;
+    Arrays.fill(head, NIL);
+  }
+
+  @VisibleForTesting
+  OffHeapWriteBuffer(long maxMemory, int chunkSize, File spillDir) {
+    this(new ChunkPool(maxMemory, chunkSize), spillDir);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head[0] == NIL;
+  }
+
+  @Nullable
+  @Override
+  public NavigableMap<byte[], Update> getRow(byte[] row) {
+    long node = seek(row, EMPTY, false);
+    if (node == NIL || compareRow(node, row) != 0) {
+      return null;
+    }
+    NavigableMap<byte[], Update> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    readColumns(node, row, columns);
+    return columns;
+  }
+
+  @Override
+  public void put(byte[] row, byte[][] columns, byte[][] values) {
+    for (int i = 0; i < columns.length; i++) {
+      long node = find(row, columns[i]);
+      setValue(node == NIL ? insert(row, columns[i]) : node, new PutValue(values[i]));
+    }
+  }
+
+  @Override
+  public void increment(byte[] row, byte[][] columns, long[] amounts) {
+    for (int i = 0; i < columns.length; i++) {
+      long node = find(row, columns[i]);
+      if (node == NIL) {
+        setValue(insert(row, columns[i]), new IncrementValue(amounts[i]));
+      } else {
+        setValue(node, Updates.mergeUpdates(getValue(node), new IncrementValue(amounts[i])));
+      }
+    }
+  }
+
+  @Override
+  public Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> scan(@Nullable byte[] startRow,
+                                                                        @Nullable final byte[] stopRow) {
+    final long startNode = startRow == null ? head[0] : seek(startRow, EMPTY, false);
+    final int scanGeneration = generation;
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
+
+      private long node = startNode;
+
+      @Override
+      protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
+        // Pointers are no longer valid once the buffer is cleared
+        if (node == NIL || scanGeneration != generation) {
+          return endOfData();
+        }
+        byte[] row = getRowKey(node);
+        if (stopRow != null && Bytes.compareTo(row, stopRow) >= 0) {
+          return endOfData();
+        }
+        NavigableMap<byte[], Update> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        node = readColumns(node, row, columns);
+        return Maps.immutableEntry(row, columns);
+      }
+    };
+  }
+
+  @Override
+  public Iterable<NavigableMap<byte[], NavigableMap<byte[], Update>>> batches() {
+    return () -> new AbstractIterator<NavigableMap<byte[], NavigableMap<byte[], Update>>>() {
+
+      private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = scan(null, null);
+
+      @Override
+      protected NavigableMap<byte[], NavigableMap<byte[], Update>> computeNext() {
+        if (!rows.hasNext()) {
+          return endOfData();
+        }
+        NavigableMap<byte[], NavigableMap<byte[], Update>> batch = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        int cells = 0;
+        while (cells < BATCH_SIZE && rows.hasNext()) {
+          Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+          batch.put(row.getKey(), row.getValue());
+          cells += row.getValue().size();
+        }
+        return batch;
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    // Bumping the generation ends all iterators, so that no released chunk is accessed after this
+    generation++;
+    for (int i = 0; i < chunks.size(); i++) {
+      ByteBuffer chunk = chunks.get(i);
+      if (spilledChunks.get(i)) {
+        // Unmap the file region now instead of waiting for garbage collection
+        ByteBuffers.release(chunk);
+      } else {
+        chunkPool.release(chunk);
+      }
+    }
+    chunks.clear();
+    spilledChunks.clear();
+    position = 0;
+    height = 0;
+    Arrays.fill(head, NIL);
+    deleteSpillFile();
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+
+  /**
+   * Returns {@code true} if some of the changes are stored in the spill file.
+   */
+  @VisibleForTesting
+  boolean isSpilled() {
+    return spillChannel != null;
+  }
+
+  /**
+   * Returns the first node with a key greater than or equal to the given row and column, or {@link #NIL} if there
+   * is no such node. If {@code recordPrev} is {@code true}, the predecessors of that node at every level are
+   * recorded in {@link #prev}.
+   */
+  private long seek(byte[] row, byte[] column, boolean recordPrev) {
+    long node = NIL;
+    long next = NIL;
+    for (int level = height - 1; level >= 0; level--) {
+      next = getNext(node, level);
+      while (next != NIL && compare(next, row, column) < 0) {
+        node = next;
+        next = getNext(node, level);
+      }
+      if (recordPrev) {
+        prev[level] = node;
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Returns the node of the given cell, or {@link #NIL} if the cell is not in the buffer. The predecessors of the
+   * cell are recorded for a subsequent {@link #insert(byte[], byte[])}.
+   */
+  private long find(byte[] row, byte[] column) {
+    long node = seek(row, column, true);
+    return node != NIL && compare(node, row, column) == 0 ? node : NIL;
+  }
+
+  /**
+   * Inserts a new node without value for the given cell, after the predecessors recorded by the last
+   * {@link #find(byte[], byte[])} of the same cell.
+   */
+  private long insert(byte[] row, byte[] column) {
+    int nodeHeight = randomHeight();
+    for (int level = height; level < nodeHeight; level++) {
+      prev[level] = NIL;
+    }
+    height = Math.max(height, nodeHeight);
+
+    int keyOffset = NEXT_OFFSET + nodeHeight * Bytes.SIZEOF_LONG;
+    long node = allocate(keyOffset + row.length + column.length);
+    ByteBuffer chunk = getChunk(node);
+    int offset = getOffset(node);
+    chunk.putLong(offset + VALUE_POINTER_OFFSET, NIL);
+    chunk.put(offset + HEIGHT_OFFSET, (byte) nodeHeight);
+    chunk.putInt(offset + ROW_LENGTH_OFFSET, row.length);
+    chunk.putInt(offset + COLUMN_LENGTH_OFFSET, column.length);
+    write(chunk, offset + keyOffset, row);
+    write(chunk, offset + keyOffset + row.length, column);
+
+    for (int level = 0; level < nodeHeight; level++) {
+      setNext(node, level, getNext(prev[level], level));
+      setNext(prev[level], level, node);
+    }
+    return node;
+  }
+
+  /**
+   * Reads the columns of the given row, starting from the given node, into the given map.
+   *
+   * @return the first node of the next row, or {@link #NIL} if there is no more row
+   */
+  private long readColumns(long node, byte[] row, NavigableMap<byte[], Update> columns) {
+    while (node != NIL && compareRow(node, row) == 0) {
+      columns.put(getColumnKey(node), getValue(node));
+      node = getNext(node, 0);
+    }
+    return node;
+  }
+
+  private static int randomHeight() {
+    int height = 1;
+    while (height < MAX_HEIGHT && ThreadLocalRandom.current().nextInt(4) == 0) {
+      height++;
+    }
+    return height;
+  }
+
+  private int compare(long node, byte[] row, byte[] column) {
+    int cmp = compareRow(node, row);
+    if (cmp != 0) {
+      return cmp;
+    }
+    ByteBuffer chunk = getChunk(node);
+    int offset = getOffset(node);
+    int rowLength = chunk.getInt(offset + ROW_LENGTH_OFFSET);
+    return compare(chunk, getKeyOffset(chunk, offset) + rowLength,
+                   chunk.getInt(offset + COLUMN_LENGTH_OFFSET), column);
+  }
+
+  private int compareRow(long node, byte[] row) {
+    ByteBuffer chunk = getChunk(node);
+    int offset = getOffset(node);
+    return compare(chunk, getKeyOffset(chunk, offset), chunk.getInt(offset + ROW_LENGTH_OFFSET), row);
+  }
+
+  /**
+   * Compares the bytes in the given chunk with the given key in lexicographical order of unsigned bytes,
+   * the same as {@link Bytes#compareTo(byte[], byte[])}.
+   */
+  private static int compare(ByteBuffer chunk, int offset, int length, byte[] key) {
+    int minLength = Math.min(length, key.length);
+    for (int i = 0; i < minLength; i++) {
+      int a = chunk.get(offset + i) & 0xff;
+      int b = key[i] & 0xff;
+      if (a != b) {
+        return a - b;
+      }
+    }
+    return length - key.length;
+  }
+
+  private byte[] getRowKey(long node) {
+    ByteBuffer chunk = getChunk(node);
+    int offset = getOffset(node);
+    return read(chunk, getKeyOffset(chunk, offset), chunk.getInt(offset + ROW_LENGTH_OFFSET));
+  }
+
+  private byte[] getColumnKey(long node) {
+    ByteBuffer chunk = getChunk(node);
+    int offset = getOffset(node);
+    return read(chunk, getKeyOffset(chunk, offset) + chunk.getInt(offset + ROW_LENGTH_OFFSET),
+                chunk.getInt(offset + COLUMN_LENGTH_OFFSET));
+  }
+
+  private static int getKeyOffset(ByteBuffer chunk, int offset) {
+    return offset + NEXT_OFFSET + chunk.get(offset + HEIGHT_OFFSET) * Bytes.SIZEOF_LONG;
+  }
+
+  private long getNext(long node, int level) {
+    if (node == NIL) {
+      return head[level];
+    }
+    return getChunk(node).getLong(getOffset(node) + NEXT_OFFSET + level * Bytes.SIZEOF_LONG);
+  }
+
+  private void setNext(long node, int level, long next) {
+    if (node == NIL) {
+      head[level] = next;
+    } else {
+      getChunk(node).putLong(getOffset(node) + NEXT_OFFSET + level * Bytes.SIZEOF_LONG, next);
+    }
+  }
+
+  @Nullable
+  private Update getValue(long node) {
+    long pointer = getChunk(node).getLong(getOffset(node) + VALUE_POINTER_OFFSET);
+    if (pointer == NIL) {
+      return null;
+    }
+    ByteBuffer chunk = getChunk(pointer);
+    int offset = getOffset(pointer);
+    switch (chunk.get(offset)) {
+      case TYPE_DELETE:
+        return new PutValue(null);
+      case TYPE_PUT:
+        return new PutValue(read(chunk, offset + 1 + Bytes.SIZEOF_INT, chunk.getInt(offset + 1)));
+      case TYPE_INCREMENT:
+        return new IncrementValue(chunk.getLong(offset + 1));
+      default:
+        // should not happen: values are only written by setValue
+        throw new IllegalStateException("Unknown value type " + chunk.get(offset));
+    }
+  }
+
+  private void setValue(long node, Update update) {
+    byte type;
+    byte[] bytes = null;
+    int size;
+    if (update instanceof IncrementValue) {
+      type = TYPE_INCREMENT;
+      size = 1 + Bytes.SIZEOF_LONG;
+    } else {
+      bytes = ((PutValue) update).getValue();
+      type = bytes == null ? TYPE_DELETE : TYPE_PUT;
+      size = bytes == null ? 1 : 1 + Bytes.SIZEOF_INT + bytes.length;
+    }
+
+    // Overwrite the current value if it has the same size, otherwise the new value is appended
+    ByteBuffer nodeChunk = getChunk(node);
+    long pointer = nodeChunk.getLong(getOffset(node) + VALUE_POINTER_OFFSET);
+    if (pointer == NIL || getValueSize(pointer) != size) {
+      pointer = allocate(size);
+      nodeChunk.putLong(getOffset(node) + VALUE_POINTER_OFFSET, pointer);
+    }
+
+    ByteBuffer chunk = getChunk(pointer);
+    int offset = getOffset(pointer);
+    chunk.put(offset, type);
+    if (type == TYPE_INCREMENT) {
+      chunk.putLong(offset + 1, ((IncrementValue) update).getValue());
+    } else if (type == TYPE_PUT) {
+      chunk.putInt(offset + 1, bytes.length);
+      write(chunk, offset + 1 + Bytes.SIZEOF_INT, bytes);
+    }
+  }
+
+  private int getValueSize(long pointer) {
+    ByteBuffer chunk = getChunk(pointer);
+    int offset = getOffset(pointer);
+    switch (chunk.get(offset)) {
+      case TYPE_DELETE:
+        return 1;
+      case TYPE_PUT:
+        return 1 + Bytes.SIZEOF_INT + chunk.getInt(offset + 1);
+      default:
+        return 1 + Bytes.SIZEOF_LONG;
+    }
+  }
+
+  /**
+   * Allocates the given number of bytes and returns the pointer to them.
+   */
+  private long allocate(int size) {
+    if (chunks.isEmpty() || chunks.get(chunks.size() - 1).capacity() - position < size) {
+      chunks.add(newChunk(Math.max(size, chunkPool.getChunkSize())));
+      position = 0;
+    }
+    long pointer = ((long) (chunks.size() - 1) << 32) | position;
+    position += size;
+    return pointer;
+  }
+
+  private ByteBuffer newChunk(int size) {
+    ByteBuffer chunk = chunkPool.acquire(size);
+    if (chunk != null) {
+      return chunk;
+    }
+
+    // Out of direct memory, spill to a memory mapped file
+    try {
+      if (spillChannel == null) {
+        spillFile = Files.createTempFile(spillDir.toPath(), "write-buffer", ".spill");
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LOG.debug("Write buffer exceeded {} bytes of memory, spilling to {}", chunkPool.getMaxMemory(), spillFile);
+      }
+      chunk = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillSize, size);
+      spillSize += size;
+      spilledChunks.set(chunks.size());
+      return chunk;
+    } catch (IOException e) {
+      throw new DataSetException("Failed to spill write buffer to " + spillDir, e);
+    }
+  }
+
+  private void deleteSpillFile() {
+    if (spillChannel == null) {
+      return;
+    }
+    try {
+      spillChannel.close();
+      Files.deleteIfExists(spillFile);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete write buffer spill file {}", spillFile, e);
+    }
+    spillChannel = null;
+    spillFile = null;
+    spillSize = 0L;
+  }
+
+  private ByteBuffer getChunk(long pointer) {
+    return chunks.get((int) (pointer >>> 32));
+  }
+
+  private static int getOffset(long pointer) {
+    return (int) pointer;
+  }
+
+  private static byte[] read(ByteBuffer chunk, int offset, int length) {
+    byte[] bytes = new byte[length];
+    chunk.position(offset);
+    chunk.get(bytes);
+    return bytes;
+  }
+
+  private static void write(ByteBuffer chunk, int offset, byte[] bytes) {
+    chunk.position(offset);
+    chunk.put(bytes);
+  }
+
+  /**
+   * A pool of direct memory chunks shared by the {@link OffHeapWriteBuffer}s of a table, which limits the total
+   * direct memory used by those buffers. Released chunks of the regular size are kept for reuse, while larger ones
+   * are freed right away. This class is not thread safe.
+   */
+  static final class ChunkPool {
+
+    private final long maxMemory;
+    private final int chunkSize;
+    private final Deque<ByteBuffer> freeChunks = new ArrayDeque<>();
+    private long allocatedMemory;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxMemory maximum number of bytes of direct memory to allocate
+     */
+    ChunkPool(long maxMemory) {
+      this(maxMemory, DEFAULT_CHUNK_SIZE);
+    }
+
+    @VisibleForTesting
+    ChunkPool(long maxMemory, int chunkSize) {
+      Preconditions.checkArgument(maxMemory >= 0, "The maximum memory must not be negative");
+      Preconditions.checkArgument(chunkSize > 0, "The chunk size must be positive");
+      this.maxMemory = maxMemory;
+      this.chunkSize = chunkSize;
+    }
+
+    long getMaxMemory() {
+      return maxMemory;
+    }
+
+    int getChunkSize() {
+      return chunkSize;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory currently allocated, including the free chunks.
+     */
+    @VisibleForTesting
+    long getAllocatedMemory() {
+      return allocatedMemory;
+    }
+
+    /**
+     * Returns a chunk of the given size, or {@code null} if allocating it would exceed the memory limit.
+     */
+    @Nullable
+    ByteBuffer acquire(int size) {
+      if (size == chunkSize && !freeChunks.isEmpty()) {
+        return freeChunks.pop();
+      }
+      if (allocatedMemory + size > maxMemory) {
+        return null;
+      }
+      allocatedMemory += size;
+      return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Returns a chunk acquired from this pool. The chunk must not be used after this call.
+     */
+    void release(ByteBuffer chunk) {
+      if (chunk.capacity() == chunkSize) {
+        chunk.clear();
+        freeChunks.push(chunk);
+      } else {
+        free(chunk);
+      }
+    }
+
+    /**
+     * Frees all the free chunks. Chunks that are still in use are freed when they are released.
+     */
+    void close() {
+      while (!freeChunks.isEmpty()) {
+        free(freeChunks.pop());
+      }
+    }
+
+    private void free(ByteBuffer chunk) {
+      allocatedMemory -= chunk.capacity();
+      ByteBuffers.release(chunk);
+    }
+  }
+}
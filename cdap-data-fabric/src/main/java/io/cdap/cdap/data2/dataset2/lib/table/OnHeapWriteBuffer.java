@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.collect.Maps;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link WriteBuffer} that keeps all changes in a {@link ConcurrentSkipListMap} on the java heap.
+ */
+final class OnHeapWriteBuffer implements WriteBuffer {
+
+  private final NavigableMap<byte[], NavigableMap<byte[], Update>> buff =
+    new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+
+  @Override
+  public boolean isEmpty() {
+    return buff.isEmpty();
+  }
+
+  @Nullable
+  @Override
+  public NavigableMap<byte[], Update> getRow(byte[] row) {
+    return buff.get(row);
+  }
+
+  @Override
+  public void put(byte[] row, byte[][] columns, byte[][] values) {
+    NavigableMap<byte[], Update> colVals = getOrCreateRow(row);
+    for (int i = 0; i < columns.length; i++) {
+      // NOTE: we copy passed column's and value's byte arrays to protect buffer against possible changes of these
+      // arrays on client
+      colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
+    }
+  }
+
+  @Override
+  public void increment(byte[] row, byte[][] columns, long[] amounts) {
+    NavigableMap<byte[], Update> colVals = getOrCreateRow(row);
+    for (int i = 0; i < columns.length; i++) {
+      Update update = Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i]));
+      colVals.put(copy(columns[i]), update);
+    }
+  }
+
+  @Override
+  public Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> scan(@Nullable byte[] startRow,
+                                                                        @Nullable byte[] stopRow) {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
+    if (startRow == null && stopRow == null) {
+      bufferMap = buff;
+    } else if (startRow == null) {
+      bufferMap = buff.headMap(stopRow, false);
+    } else if (stopRow == null) {
+      bufferMap = buff.tailMap(startRow, true);
+    } else {
+      bufferMap = buff.subMap(startRow, true, stopRow, false);
+    }
+    return bufferMap.entrySet().iterator();
+  }
+
+  @Override
+  public Iterable<NavigableMap<byte[], NavigableMap<byte[], Update>>> batches() {
+    return Collections.singletonList(buff);
+  }
+
+  @Override
+  public void clear() {
+    buff.clear();
+  }
+
+  @Override
+  public void close() {
+    buff.clear();
+  }
+
+  private NavigableMap<byte[], Update> getOrCreateRow(byte[] row) {
+    NavigableMap<byte[], Update> colVals = buff.get(row);
+    if (colVals == null) {
+      colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
+      buff.put(copy(row), colVals);
+    }
+    return colVals;
+  }
+
+  @Nullable
+  private static byte[] copy(@Nullable byte[] bytes) {
+    return bytes == null ? null : Arrays.copyOf(bytes, bytes.length);
+  }
+}
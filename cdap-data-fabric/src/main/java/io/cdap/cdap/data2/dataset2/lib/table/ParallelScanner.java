@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import io.cdap.cdap.api.dataset.DataSetException;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import org.apache.twill.common.Threads;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Scanner} that scans a list of disjoint key ranges in parallel and returns their rows in the order of
+ * the ranges. If the ranges are sorted, the rows are returned in key order.
+ * <p>
+ * Up to the given number of ranges are scanned concurrently by the threads of an executor, which is usually shared
+ * by all the scans of a table. The rows of a range are buffered in a bounded queue until they are consumed, and the
+ * scan of the next range starts when all the rows of a range are consumed. If the executor has no idle thread,
+ * ranges are submitted again later, and the range that is next to be consumed is scanned by the calling thread.
+ */
+public final class ParallelScanner implements Scanner {
+
+  // Marks the end of the rows of a range in the queue of the range
+  private static final Row END_OF_RANGE = new Result(new byte[0], Collections.emptyMap());
+
+  private final List<RangeScan> rangeScans;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private int current;
+  private int submitted;
+
+  /**
+   * Creates an executor for running the range scans of {@link ParallelScanner}s. It rejects tasks when all of its
+   * threads are busy, which the scanners handle by scanning in the calling thread.
+   *
+   * @param maxThreads the maximum number of threads
+   * @param threadNameFormat the format of the thread names
+   */
+  public static ExecutorService createExecutor(int maxThreads, String threadNameFormat) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                                                         new SynchronousQueue<>(),
+                                                         Threads.createDaemonThreadFactory(threadNameFormat));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Creates a scanner over the given ranges.
+   *
+   * @param rangeScanners opens the scanner of each range, in the order of the ranges
+   * @param executor the executor to scan the ranges with, which is not shut down by this scanner
+   * @param parallelism the maximum number of ranges to scan concurrently
+   * @param bufferSize the maximum number of rows to buffer for each range being scanned
+   */
+  public ParallelScanner(List<? extends Callable<Scanner>> rangeScanners, ExecutorService executor,
+                         int parallelism, int bufferSize) {
+    Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive: %s", parallelism);
+    Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive: %s", bufferSize);
+    this.rangeScans = new ArrayList<>(rangeScanners.size());
+    for (Callable<Scanner> rangeScanner : rangeScanners) {
+      rangeScans.add(new RangeScan(rangeScanner, bufferSize));
+    }
+    this.executor = executor;
+    this.parallelism = parallelism;
+    submitRangeScans();
+  }
+
+  @Nullable
+  @Override
+  public Row next() {
+    while (current < rangeScans.size()) {
+      RangeScan rangeScan = rangeScans.get(current);
+      if (current == submitted) {
+        // The range is not submitted to the executor, hence it is scanned by the calling thread
+        submitted++;
+      }
+      Row row;
+      try {
+        row = rangeScan.next();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DataSetException("Interrupted while scanning", e);
+      } catch (Exception e) {
+        throw new DataSetException("Failed to scan range " + current, e);
+      }
+      if (row != null) {
+        return row;
+      }
+      // release the rows of the completed range and start scanning the next ranges
+      rangeScans.set(current++, null);
+      submitRangeScans();
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {
+    // interrupts the range scans that are still running, which close their scanners
+    for (int i = current; i < submitted; i++) {
+      rangeScans.get(i).cancel();
+    }
+  }
+
+  /**
+   * Submits the ranges after the submitted ones to the executor, up to the parallelism.
+   */
+  private void submitRangeScans() {
+    while (submitted < rangeScans.size() && submitted - current < parallelism) {
+      RangeScan rangeScan = rangeScans.get(submitted);
+      try {
+        rangeScan.future = executor.submit(rangeScan);
+      } catch (RejectedExecutionException e) {
+        // All threads of the executor are busy. Try again when the current range is consumed.
+        return;
+      }
+      submitted++;
+    }
+  }
+
+  /**
+   * Scans one range, either by a thread of the executor into a bounded queue followed by {@link #END_OF_RANGE},
+   * or by the calling thread if it is not submitted to the executor.
+   */
+  private static final class RangeScan implements Runnable {
+
+    private final Callable<Scanner> scannerOpener;
+    private final BlockingQueue<Row> queue;
+    // the future of the scan in the executor, or null if it is scanned by the calling thread
+    private Future<?> future;
+    // the scanner when scanned by the calling thread
+    private Scanner scanner;
+    // only read after END_OF_RANGE is taken from the queue, which guarantees its visibility
+    private Throwable failure;
+
+    RangeScan(Callable<Scanner> scannerOpener, int bufferSize) {
+      this.scannerOpener = scannerOpener;
+      this.queue = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    @Override
+    public void run() {
+      try {
+        try (Scanner scanner = scannerOpener.call()) {
+          Row row = scanner.next();
+          while (row != null) {
+            queue.put(row);
+            row = scanner.next();
+          }
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Throwable t) {
+          failure = t;
+        }
+        queue.put(END_OF_RANGE);
+      } catch (InterruptedException e) {
+        // the parallel scanner is closed, hence no one is waiting for the rows anymore
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Returns the next row of the range, or {@code null} if there is no more row.
+     */
+    @Nullable
+    Row next() throws Exception {
+      if (future == null) {
+        if (scanner == null) {
+          scanner = scannerOpener.call();
+        }
+        Row row = scanner.next();
+        if (row == null) {
+          scanner.close();
+        }
+        return row;
+      }
+
+      Row row = queue.take();
+      if (row != END_OF_RANGE) {
+        return row;
+      }
+      if (failure != null) {
+        Throwables.propagateIfPossible(failure, Exception.class);
+        throw new RuntimeException(failure);
+      }
+      return null;
+    }
+
+    void cancel() {
+      if (future != null) {
+        future.cancel(true);
+      } else if (scanner != null) {
+        scanner.close();
+      }
+    }
+  }
+}
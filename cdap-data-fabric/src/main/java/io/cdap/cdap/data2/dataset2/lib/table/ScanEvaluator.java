@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
+import io.cdap.cdap.api.dataset.table.ColumnPrefixFilter;
+import io.cdap.cdap.api.dataset.table.ColumnValueFilter;
+import io.cdap.cdap.api.dataset.table.Filter;
+import io.cdap.cdap.api.dataset.table.FilterList;
+import io.cdap.cdap.api.dataset.table.Scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates the {@link Filter} and the column projection of a {@link Scan} on rows. Table implementations use it
+ * to apply the parts of a scan that are not pushed down to the storage.
+ * <p>
+ * A filter is either a {@link FuzzyRowFilter}, a {@link ColumnValueFilter}, a {@link ColumnPrefixFilter}, or
+ * a {@link FilterList} of them. Value filters are evaluated on all the columns of a row, before the column prefix
+ * filters and the projection are applied.
+ */
+public final class ScanEvaluator {
+
+  private final List<FuzzyRowFilter> fuzzyRowFilters = new ArrayList<>();
+  private final List<ColumnValueFilter> valueFilters = new ArrayList<>();
+  private final List<byte[]> columnPrefixes = new ArrayList<>();
+  @Nullable
+  private final byte[][] columns;
+
+  /**
+   * Creates an instance for the given scan.
+   *
+   * @throws DataSetException if the scan has a filter of unsupported type
+   */
+  public ScanEvaluator(Scan scan) {
+    if (scan.getFilter() != null) {
+      addFilter(scan.getFilter());
+    }
+    this.columns = scan.getColumns();
+  }
+
+  /**
+   * Returns {@code true} if the scan only filters on row keys and returns all columns, which means every row
+   * returned by the storage for the row key filters can be returned as is.
+   */
+  public boolean isRowKeyOnly() {
+    return columns == null && valueFilters.isEmpty() && columnPrefixes.isEmpty();
+  }
+
+  public List<FuzzyRowFilter> getFuzzyRowFilters() {
+    return Collections.unmodifiableList(fuzzyRowFilters);
+  }
+
+  public List<ColumnValueFilter> getValueFilters() {
+    return Collections.unmodifiableList(valueFilters);
+  }
+
+  public List<byte[]> getColumnPrefixes() {
+    return Collections.unmodifiableList(columnPrefixes);
+  }
+
+  /**
+   * Returns the columns that need to be read from the storage for evaluating the scan, which are the projected
+   * columns plus the columns of the value filters, sorted. Returns {@code null} if all columns are needed.
+   */
+  @Nullable
+  public byte[][] getColumnsToRead() {
+    if (columns == null) {
+      return null;
+    }
+    TreeSet<byte[]> result = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    Collections.addAll(result, columns);
+    for (ColumnValueFilter filter : valueFilters) {
+      result.add(filter.getColumn());
+    }
+    return result.toArray(new byte[result.size()][]);
+  }
+
+  /**
+   * Returns {@code true} if the given row key passes all the row key filters of the scan.
+   */
+  public boolean acceptRow(byte[] row) {
+    for (FuzzyRowFilter fuzzyRowFilter : fuzzyRowFilters) {
+      if (fuzzyRowFilter.filterRow(row) != FuzzyRowFilter.ReturnCode.INCLUDE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the filter and the column projection of the scan to a row.
+   *
+   * @param row the row key
+   * @param rowColumns the columns of the row, which must include all the columns given by {@link #getColumnsToRead()}
+   * @return the columns to return for the row, or {@code null} if the row should not be returned
+   */
+  @Nullable
+  public NavigableMap<byte[], byte[]> apply(byte[] row, Map<byte[], byte[]> rowColumns) {
+    if (!acceptRow(row)) {
+      return null;
+    }
+    for (ColumnValueFilter valueFilter : valueFilters) {
+      byte[] value = rowColumns.get(valueFilter.getColumn());
+      if (value == null || !valueFilter.matches(value)) {
+        return null;
+      }
+    }
+
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    if (columns == null) {
+      for (Map.Entry<byte[], byte[]> entry : rowColumns.entrySet()) {
+        if (hasColumnPrefixes(entry.getKey())) {
+          result.put(entry.getKey(), entry.getValue());
+        }
+      }
+    } else {
+      for (byte[] column : columns) {
+        byte[] value = rowColumns.get(column);
+        if (value != null && hasColumnPrefixes(column)) {
+          result.put(column, value);
+        }
+      }
+    }
+    return result.isEmpty() ? null : result;
+  }
+
+  private boolean hasColumnPrefixes(byte[] column) {
+    for (byte[] prefix : columnPrefixes) {
+      if (column.length < prefix.length || Bytes.compareTo(column, 0, prefix.length, prefix, 0, prefix.length) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void addFilter(Filter filter) {
+    if (filter instanceof FilterList) {
+      for (Filter child : ((FilterList) filter).getFilters()) {
+        addFilter(child);
+      }
+    } else if (filter instanceof FuzzyRowFilter) {
+      fuzzyRowFilters.add((FuzzyRowFilter) filter);
+    } else if (filter instanceof ColumnValueFilter) {
+      valueFilters.add((ColumnValueFilter) filter);
+    } else if (filter instanceof ColumnPrefixFilter) {
+      columnPrefixes.add(((ColumnPrefixFilter) filter).getPrefix());
+    } else {
+      throw new DataSetException("Unknown filter type: " + filter);
+    }
+  }
+}
@@ -19,8 +19,10 @@ package io.cdap.cdap.data2.dataset2.lib.table;
 import com.google.common.collect.Lists;
 import io.cdap.cdap.api.common.Bytes;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Provides handy methods for simple table splits calculation.
@@ -79,6 +81,47 @@ public class SplitsUtil {
     return ranges;
   }
 
+  /**
+   * Computes splits that are aligned with the region boundaries of a table, clipped to the given start and stop.
+   * Each split covers one or more consecutive regions. If the number of splits is given and there are more regions
+   * than that in the range, consecutive regions are grouped into that many splits of (almost) even region count.
+   *
+   * @param numSplits Desired number of splits. If greater than zero, at most this many splits will be returned.
+   *                  If less or equal to zero, one split per region is returned.
+   * @param start If non-null, the returned splits will only cover keys that are greater or equal.
+   * @param stop If non-null, the returned splits will only cover keys that are less.
+   * @param regionStartKeys the sorted start keys of the regions of the table
+   */
+  public static List<KeyRange> regionGetSplits(int numSplits, @Nullable byte[] start, @Nullable byte[] stop,
+                                               byte[][] regionStartKeys) {
+    // if the range is empty, return no splits
+    if (start != null && stop != null && Bytes.compareTo(start, stop) >= 0) {
+      return Collections.emptyList();
+    }
+    // region boundaries within the range. The first region starts with the empty key, which is never a boundary.
+    List<byte[]> bounds = new ArrayList<>();
+    for (byte[] key : regionStartKeys) {
+      if (key.length > 0 && (start == null || Bytes.compareTo(key, start) > 0)
+        && (stop == null || Bytes.compareTo(key, stop) < 0)) {
+        bounds.add(key);
+      }
+    }
+
+    int numRegions = bounds.size() + 1;
+    if (numSplits <= 0 || numSplits > numRegions) {
+      numSplits = numRegions;
+    }
+    List<KeyRange> ranges = new ArrayList<>(numSplits);
+    byte[] current = start;
+    for (int i = 1; i < numSplits; i++) {
+      byte[] next = bounds.get((int) ((long) i * numRegions / numSplits) - 1);
+      ranges.add(new KeyRange(current, next));
+      current = next;
+    }
+    ranges.add(new KeyRange(current, stop));
+    return ranges;
+  }
+
   // helper method to approximate a row key as a long value. Takes the first 7 bytes from the key and prepends a 0x0;
   // if the key is less than 7 bytes, pads it with zeros to the right.
   static long longForKey(byte[] key, boolean isStop) {
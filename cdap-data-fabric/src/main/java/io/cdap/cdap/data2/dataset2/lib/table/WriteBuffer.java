@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * A sorted buffer of the changes made by a transaction to a {@link BufferingTable}. Changes are kept as
+ * row->(column->{@link Update}) and are always ordered by row and then by column.
+ * <p>
+ * Implementations never keep references to the byte arrays passed to the write methods.
+ */
+interface WriteBuffer extends Closeable {
+
+  /**
+   * Returns {@code true} if there is no change in this buffer.
+   */
+  boolean isEmpty();
+
+  /**
+   * Returns the buffered changes of the given row, or {@code null} if the row has no change.
+   */
+  @Nullable
+  NavigableMap<byte[], Update> getRow(byte[] row);
+
+  /**
+   * Buffers the given values for the given columns of a row. A {@code null} value means the column is deleted.
+   */
+  void put(byte[] row, byte[][] columns, byte[][] values);
+
+  /**
+   * Buffers increments for the given columns of a row, merged with the changes already buffered for them
+   * as defined by {@link Updates#mergeUpdates(Update, Update)}.
+   */
+  void increment(byte[] row, byte[][] columns, long[] amounts);
+
+  /**
+   * Returns an iterator over the buffered rows in the given range. Changes made to the buffer while iterating
+   * may or may not be reflected by the iterator, but they never cause the iteration to fail.
+   *
+   * @param startRow the first row to include, or {@code null} to start from the first row
+   * @param stopRow the row to stop at (exclusive), or {@code null} to iterate to the last row
+   */
+  Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> scan(@Nullable byte[] startRow, @Nullable byte[] stopRow);
+
+  /**
+   * Returns all the buffered changes as a sequence of sorted batches, to be used for persisting or undoing them.
+   */
+  Iterable<NavigableMap<byte[], NavigableMap<byte[], Update>>> batches();
+
+  /**
+   * Removes all the changes from this buffer. The buffer can be reused after this call.
+   */
+  void clear();
+
+  /**
+   * Releases all resources held by this buffer. The buffer cannot be used after this call.
+   */
+  @Override
+  void close();
+}
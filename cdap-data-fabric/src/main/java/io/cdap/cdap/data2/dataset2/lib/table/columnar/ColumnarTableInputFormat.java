@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.columnar;
+
+import io.cdap.cdap.api.dataset.table.Row;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link FileInputFormat} for files written by {@link TableSnapshotExporter}. The key of each record is the row key
+ * and the value is the {@link Row}. The columns to read can be restricted with {@link #setColumns}, in which case
+ * the chunks of all other columns are skipped.
+ * <p>
+ * The files are not splittable, each file is read by a single task.
+ */
+public class ColumnarTableInputFormat extends FileInputFormat<byte[], Row> {
+
+  public static final String COLUMNS = "cdap.table.columnar.input.columns";
+
+  /**
+   * Sets the columns to read. Rows that have none of these columns are skipped.
+   */
+  public static void setColumns(Configuration conf, byte[]... columns) {
+    conf.set(COLUMNS, Stream.of(columns).map(Base64.getEncoder()::encodeToString).collect(Collectors.joining(",")));
+  }
+
+  /**
+   * Returns the columns to read, or {@code null} if all the columns should be read.
+   */
+  @Nullable
+  public static List<byte[]> getColumns(Configuration conf) {
+    String columns = conf.get(COLUMNS);
+    if (columns == null) {
+      return null;
+    }
+    List<byte[]> result = new ArrayList<>();
+    for (String column : columns.split(",")) {
+      if (!column.isEmpty()) {
+        result.add(Base64.getDecoder().decode(column));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  protected boolean isSplitable(JobContext context, Path filename) {
+    return false;
+  }
+
+  @Override
+  public RecordReader<byte[], Row> createRecordReader(InputSplit split, TaskAttemptContext context) {
+    return new ColumnarTableRecordReader();
+  }
+
+  /**
+   * A {@link RecordReader} that reads a whole file with a {@link ColumnarTableReader}.
+   */
+  private static final class ColumnarTableRecordReader extends RecordReader<byte[], Row> {
+
+    private ColumnarTableReader reader;
+    private long length;
+    private Row row;
+    private boolean finished;
+
+    @Override
+    public void initialize(InputSplit inputSplit, TaskAttemptContext context) throws IOException {
+      FileSplit split = (FileSplit) inputSplit;
+      Configuration conf = context.getConfiguration();
+      Path path = split.getPath();
+      FileSystem fs = path.getFileSystem(conf);
+      length = split.getLength();
+      reader = new ColumnarTableReader(fs.open(path), getColumns(conf));
+    }
+
+    @Override
+    public boolean nextKeyValue() {
+      row = reader.next();
+      if (row == null) {
+        finished = true;
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public byte[] getCurrentKey() {
+      return row == null ? null : row.getRow();
+    }
+
+    @Override
+    public Row getCurrentValue() {
+      return row;
+    }
+
+    @Override
+    public float getProgress() {
+      // The number of rows of a file is not known upfront, hence the progress is only known at the end
+      return finished || length == 0 ? 1.0f : 0.0f;
+    }
+
+    @Override
+    public void close() {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+}
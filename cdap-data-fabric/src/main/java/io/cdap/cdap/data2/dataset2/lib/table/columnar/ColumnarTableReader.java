@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.columnar;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Scanner} over the rows of a stream in the format written by {@link ColumnarTableWriter}. Only the
+ * requested columns are decoded, the chunks of all other columns are skipped. Rows that have none of the requested
+ * columns are not returned.
+ */
+public final class ColumnarTableReader implements Scanner {
+
+  private final DataInputStream input;
+  private final Set<byte[]> columns;
+  private final List<byte[]> blockKeys;
+  private final List<NavigableMap<byte[], byte[]>> blockRows;
+  private int blockPosition;
+  private boolean finished;
+
+  /**
+   * Creates a reader that returns all the columns.
+   *
+   * @param input the stream to read from, which is closed when this reader is closed
+   */
+  public ColumnarTableReader(InputStream input) throws IOException {
+    this(input, null);
+  }
+
+  /**
+   * Creates a reader.
+   *
+   * @param input the stream to read from, which is closed when this reader is closed
+   * @param columns the columns to return, or {@code null} to return all the columns
+   */
+  public ColumnarTableReader(InputStream input, @Nullable Collection<byte[]> columns) throws IOException {
+    this.input = new DataInputStream(new BufferedInputStream(input));
+    if (columns == null) {
+      this.columns = null;
+    } else {
+      this.columns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+      this.columns.addAll(columns);
+    }
+    this.blockKeys = new ArrayList<>();
+    this.blockRows = new ArrayList<>();
+
+    try {
+      byte[] magic = new byte[ColumnarTableWriter.MAGIC.length];
+      this.input.readFully(magic);
+      if (!Arrays.equals(magic, ColumnarTableWriter.MAGIC)) {
+        throw new IOException("Not a columnar table file");
+      }
+      byte version = this.input.readByte();
+      if (version != ColumnarTableWriter.VERSION) {
+        throw new IOException("Unsupported columnar table file version " + version);
+      }
+    } catch (IOException e) {
+      Closeables.closeQuietly(this.input);
+      throw e;
+    }
+  }
+
+  @Nullable
+  @Override
+  public Row next() {
+    try {
+      while (true) {
+        while (blockPosition < blockKeys.size()) {
+          int position = blockPosition++;
+          NavigableMap<byte[], byte[]> rowColumns = blockRows.get(position);
+          if (!rowColumns.isEmpty()) {
+            return new Result(blockKeys.get(position), rowColumns);
+          }
+        }
+        if (finished || !readBlock()) {
+          finished = true;
+          return null;
+        }
+      }
+    } catch (IOException e) {
+      throw new DataSetException("Failed to read columnar table file", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    Closeables.closeQuietly(input);
+  }
+
+  /**
+   * Reads the next block into {@link #blockKeys} and {@link #blockRows}.
+   *
+   * @return {@code false} if there are no more blocks
+   */
+  private boolean readBlock() throws IOException {
+    blockKeys.clear();
+    blockRows.clear();
+    blockPosition = 0;
+
+    int rows = input.readInt();
+    if (rows == 0) {
+      return false;
+    }
+    for (int i = 0; i < rows; i++) {
+      blockKeys.add(readBytes());
+      blockRows.add(new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    }
+
+    int columnCount = input.readInt();
+    for (int i = 0; i < columnCount; i++) {
+      byte[] column = readBytes();
+      int chunkLength = input.readInt();
+      if (columns != null && !columns.contains(column)) {
+        ByteStreams.skipFully(input, chunkLength);
+        continue;
+      }
+      byte[] presence = new byte[(rows + 7) / 8];
+      input.readFully(presence);
+      for (int row = 0; row < rows; row++) {
+        if ((presence[row / 8] & (1 << (row % 8))) != 0) {
+          blockRows.get(row).put(column, readBytes());
+        }
+      }
+    }
+    return true;
+  }
+
+  private byte[] readBytes() throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+}
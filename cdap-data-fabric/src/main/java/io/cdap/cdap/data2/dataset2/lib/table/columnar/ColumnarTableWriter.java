@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.columnar;
+
+import com.google.common.base.Preconditions;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Row;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes table rows to a stream in the columnar table format. Rows are grouped into blocks, and within a block
+ * the row keys and the values of each column are stored together, so that readers can skip the columns they don't
+ * need without decoding them.
+ * <p>
+ * The format is:
+ * <pre>
+ *   file   := MAGIC VERSION block* int(0)
+ *   block  := int(rowCount) key{rowCount} int(columnCount) column{columnCount}
+ *   key    := int(length) bytes
+ *   column := int(nameLength) name int(chunkLength) presence value*
+ *   presence := bitmap of rowCount bits, with a bit set for every row that has a value in the column
+ *   value  := int(length) bytes, for every row that has a value in the column
+ * </pre>
+ * The chunk length of a column covers its presence bitmap and values. Columns are sorted by name within a block.
+ */
+public final class ColumnarTableWriter implements Closeable {
+
+  static final byte[] MAGIC = Bytes.toBytes("CTBL");
+  static final byte VERSION = 1;
+
+  public static final int DEFAULT_BLOCK_ROWS = 10000;
+  public static final int DEFAULT_BLOCK_SIZE = 8 * 1024 * 1024;
+
+  private final DataOutputStream output;
+  private final int blockRows;
+  private final int blockSize;
+  private final List<Row> block;
+  private long blockBytes;
+  private long rowCount;
+  private boolean closed;
+
+  /**
+   * Creates a writer with the default block limits.
+   *
+   * @param output the stream to write to, which is closed when this writer is closed
+   */
+  public ColumnarTableWriter(OutputStream output) throws IOException {
+    this(output, DEFAULT_BLOCK_ROWS, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Creates a writer.
+   *
+   * @param output the stream to write to, which is closed when this writer is closed
+   * @param blockRows the maximum number of rows in a block
+   * @param blockSize the approximate maximum size of the values of a block in bytes, after which the block is
+   *                  written even if it has less than {@code blockRows} rows
+   */
+  public ColumnarTableWriter(OutputStream output, int blockRows, int blockSize) throws IOException {
+    Preconditions.checkArgument(blockRows > 0, "Block rows must be positive: %s", blockRows);
+    Preconditions.checkArgument(blockSize > 0, "Block size must be positive: %s", blockSize);
+    this.output = new DataOutputStream(new BufferedOutputStream(output));
+    this.blockRows = blockRows;
+    this.blockSize = blockSize;
+    this.block = new ArrayList<>();
+    this.output.write(MAGIC);
+    this.output.writeByte(VERSION);
+  }
+
+  /**
+   * Adds a row. Rows should be written in the order they should be read, and rows without columns are ignored.
+   */
+  public void write(Row row) throws IOException {
+    Preconditions.checkState(!closed, "Writer is already closed");
+    Map<byte[], byte[]> columns = row.getColumns();
+    if (columns.isEmpty()) {
+      return;
+    }
+    block.add(row);
+    blockBytes += row.getRow().length;
+    for (Map.Entry<byte[], byte[]> column : columns.entrySet()) {
+      blockBytes += column.getKey().length + column.getValue().length;
+    }
+    rowCount++;
+    if (block.size() >= blockRows || blockBytes >= blockSize) {
+      writeBlock();
+    }
+  }
+
+  /**
+   * Returns the number of rows written so far.
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      writeBlock();
+      output.writeInt(0);
+    } finally {
+      output.close();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if (block.isEmpty()) {
+      return;
+    }
+    int rows = block.size();
+    output.writeInt(rows);
+    for (Row row : block) {
+      output.writeInt(row.getRow().length);
+      output.write(row.getRow());
+    }
+
+    // Collect the values of each column, indexed by the position of the row in the block
+    Map<byte[], byte[][]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < rows; i++) {
+      for (Map.Entry<byte[], byte[]> column : block.get(i).getColumns().entrySet()) {
+        columns.computeIfAbsent(column.getKey(), k -> new byte[rows][])[i] = column.getValue();
+      }
+    }
+
+    output.writeInt(columns.size());
+    ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+    DataOutputStream chunkOutput = new DataOutputStream(chunk);
+    for (Map.Entry<byte[], byte[][]> column : columns.entrySet()) {
+      byte[][] values = column.getValue();
+      byte[] presence = new byte[(rows + 7) / 8];
+      for (int i = 0; i < rows; i++) {
+        if (values[i] != null) {
+          presence[i / 8] |= 1 << (i % 8);
+        }
+      }
+      chunk.reset();
+      chunkOutput.write(presence);
+      for (byte[] value : values) {
+        if (value != null) {
+          chunkOutput.writeInt(value.length);
+          chunkOutput.write(value);
+        }
+      }
+      chunkOutput.flush();
+
+      output.writeInt(column.getKey().length);
+      output.write(column.getKey());
+      output.writeInt(chunk.size());
+      chunk.writeTo(output);
+    }
+
+    block.clear();
+    blockBytes = 0;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.columnar;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.Split;
+import io.cdap.cdap.api.data.batch.SplitReader;
+import io.cdap.cdap.api.dataset.lib.FileSet;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scan;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.api.dataset.table.TableSplit;
+import io.cdap.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exports the rows of a {@link Table} to files in the columnar table format, which can be read with
+ * {@link ColumnarTableInputFormat}. The export sees the rows as of the transaction of the table, hence it is a
+ * consistent snapshot of the table as long as it runs in a single transaction.
+ * <p>
+ * One file is written per split of the table, named {@code part-NNNNN}. Each file is written to a hidden temporary
+ * file first and renamed when complete, so that readers never see partially written files. If the splits are
+ * {@link TableSplit}s, the table is read with a single scan that is split into files at the split boundaries,
+ * which allows the table to scan the splits concurrently (see {@link HBaseTable#SCAN_PARALLELISM}). Other kinds of
+ * splits are read one after another with the {@link SplitReader} of the table.
+ */
+public final class TableSnapshotExporter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TableSnapshotExporter.class);
+
+  private TableSnapshotExporter() {
+  }
+
+  /**
+   * Exports a table to a directory of a {@link FileSet}.
+   *
+   * @param table the table to export, in the transaction whose snapshot should be exported
+   * @param fileSet the file set to export to
+   * @param relativePath the directory in the file set to write to
+   * @param numSplits the desired number of files, which is passed to {@link Table#getSplits(int, byte[], byte[])}
+   * @return the number of exported rows
+   */
+  public static long export(Table table, FileSet fileSet, String relativePath, int numSplits) throws IOException {
+    return export(table, fileSet.getLocation(relativePath), numSplits);
+  }
+
+  /**
+   * Exports a table to a directory.
+   *
+   * @param table the table to export, in the transaction whose snapshot should be exported
+   * @param directory the directory to write to
+   * @param numSplits the desired number of files, which is passed to {@link Table#getSplits(int, byte[], byte[])}
+   * @return the number of exported rows
+   */
+  public static long export(Table table, Location directory, int numSplits) throws IOException {
+    if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+      throw new IOException("Failed to create directory " + directory);
+    }
+
+    List<Split> splits = table.getSplits(numSplits, null, null);
+    List<TableSplit> tableSplits = new ArrayList<>(splits.size());
+    for (Split split : splits) {
+      if (split instanceof TableSplit) {
+        tableSplits.add((TableSplit) split);
+      }
+    }
+
+    long rows;
+    if (splits.isEmpty()) {
+      rows = 0;
+    } else if (tableSplits.size() == splits.size()) {
+      rows = exportTableSplits(table, directory, tableSplits);
+    } else {
+      rows = exportSplits(table, directory, splits);
+    }
+    LOG.debug("Exported {} rows in {} files to {}", rows, splits.size(), directory);
+    return rows;
+  }
+
+  /**
+   * Exports the rows of the given key ranges with one scan, writing the rows of each range to its own file.
+   */
+  private static long exportTableSplits(Table table, Location directory, List<TableSplit> splits) throws IOException {
+    Scan scan = new Scan(splits.get(0).getStart(), splits.get(splits.size() - 1).getStop());
+    scan.setProperty(HBaseTable.SCAN_PARALLELISM, String.valueOf(splits.size()));
+
+    long rows = 0;
+    try (Scanner scanner = table.scan(scan)) {
+      Row row = scanner.next();
+      for (int i = 0; i < splits.size(); i++) {
+        // The last file takes all the remaining rows
+        byte[] stop = i == splits.size() - 1 ? null : splits.get(i).getStop();
+        try (PartWriter writer = new PartWriter(directory, i)) {
+          while (row != null && (stop == null || Bytes.compareTo(row.getRow(), stop) < 0)) {
+            writer.write(row);
+            row = scanner.next();
+          }
+          rows += writer.commit();
+        }
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Exports the rows of the given splits one after another, using the {@link SplitReader} of the table.
+   */
+  private static long exportSplits(Table table, Location directory, List<Split> splits) throws IOException {
+    long rows = 0;
+    for (int i = 0; i < splits.size(); i++) {
+      SplitReader<byte[], Row> reader = table.createSplitReader(splits.get(i));
+      try (PartWriter writer = new PartWriter(directory, i)) {
+        reader.initialize(splits.get(i));
+        while (reader.nextKeyValue()) {
+          writer.write(reader.getCurrentValue());
+        }
+        rows += writer.commit();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while exporting split " + i + " to " + directory);
+      } finally {
+        reader.close();
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Writes one file of the export to a temporary file, which is renamed when committed or deleted otherwise.
+   */
+  private static final class PartWriter implements Closeable {
+
+    private final Location location;
+    private final Location tmpLocation;
+    private final ColumnarTableWriter writer;
+    private boolean committed;
+
+    PartWriter(Location directory, int part) throws IOException {
+      String name = String.format("part-%05d", part);
+      this.location = directory.append(name);
+      this.tmpLocation = directory.append("." + name + ".tmp");
+      this.writer = new ColumnarTableWriter(tmpLocation.getOutputStream());
+    }
+
+    void write(Row row) throws IOException {
+      writer.write(row);
+    }
+
+    /**
+     * Completes the file and returns the number of rows written.
+     */
+    long commit() throws IOException {
+      writer.close();
+      if (tmpLocation.renameTo(location) == null) {
+        throw new IOException("Failed to rename " + tmpLocation + " to " + location);
+      }
+      committed = true;
+      return writer.getRowCount();
+    }
+
+    @Override
+    public void close() {
+      if (committed) {
+        return;
+      }
+      try {
+        writer.close();
+      } catch (IOException e) {
+        LOG.trace("Failed to close {}", tmpLocation, e);
+      }
+      try {
+        tmpLocation.delete();
+      } catch (IOException e) {
+        LOG.warn("Failed to delete {}", tmpLocation, e);
+      }
+    }
+  }
+}
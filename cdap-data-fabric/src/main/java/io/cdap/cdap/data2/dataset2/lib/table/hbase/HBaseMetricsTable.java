@@ -21,8 +21,10 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetSpecification;
+import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.TableProperties;
+import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.logging.LogSamplers;
@@ -47,6 +49,7 @@ import org.apache.hadoop.hbase.client.Increment;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.twill.common.Threads;
@@ -54,13 +57,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -68,8 +75,13 @@ import javax.annotation.Nullable;
 
 /**
  * An HBase metrics table client.
+ * <p>
+ * If {@link Constants.Metrics#METRICS_HBASE_INC_COALESCE_WINDOW_MS} is positive, increments are merged on the
+ * client per row and column, and written as a single batch at the end of each window or when too many distinct
+ * cells are pending. All other operations and {@link #close()} write the pending increments first, so that they
+ * always see the effect of the increments made through this client.
  */
-public class HBaseMetricsTable implements MetricsTable {
+public class HBaseMetricsTable implements MetricsTable, MeteredDataset {
 
   private static final Logger LOG = LoggerFactory.getLogger(HBaseMetricsTable.class);
   // Exponentially log less on executor rejected execution due to limit threads
@@ -82,6 +94,13 @@ public class HBaseMetricsTable implements MetricsTable {
   private final byte[] columnFamily;
   private AbstractRowKeyDistributor rowKeyDistributor;
   private ExecutorService scanExecutor;
+  @Nullable
+  private IncrementCoalescer incrementCoalescer;
+  @Nullable
+  private ScheduledExecutorService incrementFlusher;
+  private MetricsCollector metricsCollector;
+  private long reportedRequestedCells;
+  private long reportedMergedCells;
 
   public HBaseMetricsTable(DatasetContext datasetContext, DatasetSpecification spec,
                            Configuration hConf, HBaseTableUtil tableUtil, CConfiguration cConf) throws IOException {
@@ -94,6 +113,21 @@ public class HBaseMetricsTable implements MetricsTable {
     // todo: make configurable
     this.mutator = tableUtil.createBufferedMutator(table, HBaseTableUtil.DEFAULT_WRITE_BUFFER_SIZE);
     this.columnFamily = TableProperties.getColumnFamilyBytes(spec.getProperties());
+
+    long coalesceWindowMillis = cConf.getLong(Constants.Metrics.METRICS_HBASE_INC_COALESCE_WINDOW_MS);
+    if (coalesceWindowMillis > 0) {
+      this.incrementCoalescer =
+        new IncrementCoalescer(cConf.getInt(Constants.Metrics.METRICS_HBASE_INC_COALESCE_MAX_CELLS));
+      this.incrementFlusher = Executors.newSingleThreadScheduledExecutor(
+        Threads.createDaemonThreadFactory("metrics-hbase-increment-flusher"));
+      this.incrementFlusher.scheduleWithFixedDelay(this::flushIncrementsQuietly, coalesceWindowMillis,
+                                                   coalesceWindowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void setMetricsCollector(MetricsCollector metricsCollector) {
+    this.metricsCollector = metricsCollector;
   }
 
   private void initializeVars(CConfiguration cConf, DatasetSpecification spec) {
@@ -128,6 +162,7 @@ public class HBaseMetricsTable implements MetricsTable {
   @Override
   @Nullable
   public byte[] get(byte[] row, byte[] column) {
+    flushIncrements();
     try {
       byte[] distributedKey = createDistributedRowKey(row);
       Get get = tableUtil.buildGet(distributedKey)
@@ -146,6 +181,7 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
+    flushIncrements();
     List<Put> puts = Lists.newArrayList();
     for (Map.Entry<byte[], ? extends SortedMap<byte[], Long>> row : updates.entrySet()) {
       byte[] distributedKey = createDistributedRowKey(row.getKey());
@@ -165,6 +201,7 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public void putBytes(SortedMap<byte[], ? extends SortedMap<byte[], byte[]>> updates) {
+    flushIncrements();
     List<Put> puts = Lists.newArrayList();
     for (Map.Entry<byte[], ? extends SortedMap<byte[], byte[]>> row : updates.entrySet()) {
       byte[] distributedKey = createDistributedRowKey(row.getKey());
@@ -184,6 +221,7 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+    flushIncrements();
     try {
       byte[] distributedKey = createDistributedRowKey(row);
       if (newValue == null) {
@@ -205,6 +243,12 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public void increment(byte[] row, Map<byte[], Long> increments) {
+    if (incrementCoalescer != null) {
+      if (incrementCoalescer.add(row, increments)) {
+        flushIncrements();
+      }
+      return;
+    }
     byte[] distributedKey = createDistributedRowKey(row);
     Put increment = getIncrementalPut(distributedKey, increments);
     try {
@@ -244,6 +288,118 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+    if (incrementCoalescer != null) {
+      if (incrementCoalescer.add(updates)) {
+        flushIncrements();
+      }
+      return;
+    }
+    writeIncrements(updates);
+  }
+
+  @Override
+  public void flush() {
+    flushIncrements();
+  }
+
+  /**
+   * Writes the increments that are pending in the {@link #incrementCoalescer}, if any. If writing fails, the
+   * increments that were not written are kept pending to be retried.
+   */
+  private void flushIncrements() {
+    IncrementCoalescer coalescer = incrementCoalescer;
+    if (coalescer == null) {
+      return;
+    }
+    // Holding the lock until the increments are written guarantees that they are visible after this method returns,
+    // even if they were drained concurrently by the flusher thread
+    synchronized (coalescer) {
+      if (coalescer.isEmpty()) {
+        return;
+      }
+      NavigableMap<byte[], NavigableMap<byte[], Long>> updates = coalescer.drain();
+      reportCoalescing(coalescer);
+      writeCoalescedIncrements(coalescer, updates);
+    }
+  }
+
+  /**
+   * Writes the pending increments from the flusher thread.
+   */
+  private void flushIncrementsQuietly() {
+    try {
+      flushIncrements();
+    } catch (Exception e) {
+      LOG.warn("Failed to write increments on table {}, will retry", tableId, e);
+    }
+  }
+
+  /**
+   * Writes increments drained from the given coalescer. HBase reports the failure of each row separately, so a row
+   * that cannot be incremented because one of its existing values is not a long is dropped without affecting the
+   * other rows. The rows that failed for any other reason are restored into the coalescer before the failure is
+   * propagated.
+   */
+  private void writeCoalescedIncrements(IncrementCoalescer coalescer,
+                                        NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+    // Maps the distributed row keys back to the keys of the updates
+    Map<byte[], byte[]> rowKeys = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    List<Put> puts = new ArrayList<>(updates.size());
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+      byte[] distributedKey = createDistributedRowKey(row.getKey());
+      rowKeys.put(distributedKey, row.getKey());
+      puts.add(getIncrementalPut(distributedKey, row.getValue()));
+    }
+
+    try {
+      mutator.mutate(puts);
+      mutator.flush();
+    } catch (RetriesExhaustedWithDetailsException e) {
+      // Only the rows reported in the exception failed, the others were written and must not be retried
+      NavigableMap<byte[], NavigableMap<byte[], Long>> failed = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (int i = 0; i < e.getNumExceptions(); i++) {
+        byte[] row = rowKeys.get(e.getRow(i).getRow());
+        if (row == null) {
+          continue;
+        }
+        if (isInvalidIncrement(e.getCause(i))) {
+          LOG.warn("Dropping increments of row {} on table {}, as it has a value that is not convertible to long",
+                   Bytes.toStringBinary(row), tableId);
+        } else {
+          failed.put(row, updates.get(row));
+        }
+      }
+      if (!failed.isEmpty()) {
+        coalescer.restore(failed);
+        throw new DataSetException("Increment failed for " + failed.size() + " rows on table " + tableId, e);
+      }
+    } catch (IOException e) {
+      coalescer.restore(updates);
+      throw new DataSetException("Increment failed on table " + tableId, e);
+    }
+  }
+
+  private static boolean isInvalidIncrement(@Nullable Throwable t) {
+    // there is no other way to extract that from the HBase exception than string match
+    return t != null && t.getMessage() != null && t.getMessage().contains("isn't 64 bits wide");
+  }
+
+  private void reportCoalescing(IncrementCoalescer coalescer) {
+    long requestedCells = coalescer.getRequestedCells();
+    long mergedCells = coalescer.getMergedCells();
+    LOG.trace("Writing increments on table {}, coalesced {} cells into {} since the last write", tableId,
+              requestedCells - reportedRequestedCells, mergedCells - reportedMergedCells);
+    MetricsCollector metrics = metricsCollector;
+    if (metrics != null) {
+      metrics.increment(Constants.Metrics.Name.MetricsTable.INCREMENT_REQUESTED_COUNT,
+                        requestedCells - reportedRequestedCells);
+      metrics.increment(Constants.Metrics.Name.MetricsTable.INCREMENT_WRITTEN_COUNT, mergedCells - reportedMergedCells);
+    }
+    reportedRequestedCells = requestedCells;
+    reportedMergedCells = mergedCells;
+  }
+
+  private void writeIncrements(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
     List<Put> puts = Lists.newArrayList();
     for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
       byte[] distributedKey = createDistributedRowKey(row.getKey());
@@ -266,6 +422,7 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public long incrementAndGet(byte[] row, byte[] column, long delta) {
+    flushIncrements();
     byte[] distributedKey = createDistributedRowKey(row);
     Increment increment = new Increment(distributedKey);
     increment.addColumn(columnFamily, column, delta);
@@ -286,6 +443,7 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public void delete(byte[] row, byte[][] columns) {
+    flushIncrements();
     byte[] distributedKey = createDistributedRowKey(row);
     DeleteBuilder delete = tableUtil.buildDelete(distributedKey);
     for (byte[] column : columns) {
@@ -301,6 +459,7 @@ public class HBaseMetricsTable implements MetricsTable {
   @Override
   public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow,
                       @Nullable FuzzyRowFilter filter) {
+    flushIncrements();
     ScanBuilder scanBuilder = configureRangeScan(tableUtil.buildScan(), startRow, stopRow, filter);
     try {
       ResultScanner resultScanner = getScanner(scanBuilder);
@@ -346,9 +505,16 @@ public class HBaseMetricsTable implements MetricsTable {
   @Override
   public void close() throws IOException {
     try {
-      mutator.close();
+      if (incrementFlusher != null) {
+        incrementFlusher.shutdown();
+      }
+      flushIncrements();
     } finally {
-      table.close();
+      try {
+        mutator.close();
+      } finally {
+        table.close();
+      }
     }
   }
 }
@@ -26,18 +26,25 @@ import com.google.common.collect.Maps;
 import io.cdap.cdap.api.annotation.ReadOnly;
 import io.cdap.cdap.api.annotation.WriteOnly;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.batch.Split;
 import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetSpecification;
-import io.cdap.cdap.api.dataset.table.Filter;
+import io.cdap.cdap.api.dataset.table.ColumnValueFilter;
+import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.TableProperties;
+import io.cdap.cdap.api.dataset.table.TableSplit;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.table.BufferingTable;
 import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import io.cdap.cdap.data2.dataset2.lib.table.IncrementValue;
+import io.cdap.cdap.data2.dataset2.lib.table.KeyRange;
+import io.cdap.cdap.data2.dataset2.lib.table.ParallelScanner;
 import io.cdap.cdap.data2.dataset2.lib.table.PutValue;
+import io.cdap.cdap.data2.dataset2.lib.table.ScanEvaluator;
+import io.cdap.cdap.data2.dataset2.lib.table.SplitsUtil;
 import io.cdap.cdap.data2.dataset2.lib.table.Update;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import io.cdap.cdap.data2.util.TableId;
@@ -58,7 +65,11 @@ import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.OperationWithAttributes;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionCodec;
@@ -74,6 +85,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -96,6 +109,18 @@ public class HBaseTable extends BufferingTable {
 
   public static final String SAFE_INCREMENTS = "dataset.table.safe.readless.increments";
 
+  /**
+   * Number of regions to scan concurrently in a scan that covers multiple regions. It can be set in the
+   * scan properties, runtime arguments or dataset properties, and defaults to scanning serially.
+   */
+  public static final String SCAN_PARALLELISM = "dataset.table.scan.parallelism";
+
+  // Maximum number of threads for scanning regions, shared by the parallel scans of all tables in the process.
+  // When they are all busy, scans continue in the threads that consume them.
+  private static final int MAX_SCAN_THREADS = 16;
+  private static final ExecutorService SCAN_EXECUTOR = ParallelScanner.createExecutor(MAX_SCAN_THREADS,
+                                                                                      "hbase-table-scanner-%d");
+
   private final HBaseTableUtil tableUtil;
   private final Table table;
   private final BufferedMutator mutator;
@@ -114,6 +139,7 @@ public class HBaseTable extends BufferingTable {
   private final Map<String, String> properties;
 
   private byte[] encodedTx;
+  private byte[][] regionStartKeys;
 
   public HBaseTable(DatasetContext datasetContext, DatasetSpecification spec, Map<String, String> args,
                     CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil) throws IOException {
@@ -165,6 +191,7 @@ public class HBaseTable extends BufferingTable {
     super.startTx(tx);
     // set this to null in case it was left over - for whatever reason - by the previous tx
     encodedTx = null;
+    regionStartKeys = null;
   }
 
   @Override
@@ -187,6 +214,26 @@ public class HBaseTable extends BufferingTable {
     return success;
   }
 
+  /**
+   * Returns splits that are aligned with the region boundaries of the table, such that each split is served
+   * by one or more whole regions.
+   */
+  @Override
+  public List<Split> getSplits(int numSplits, byte[] start, byte[] stop) {
+    ensureTransactionIsStarted();
+    List<KeyRange> keyRanges;
+    try {
+      keyRanges = SplitsUtil.regionGetSplits(numSplits, start, stop, getRegionStartKeys());
+    } catch (IOException e) {
+      throw new DataSetException("Failed to get the regions of table " + hTableName, e);
+    }
+    List<Split> splits = new ArrayList<>(keyRanges.size());
+    for (KeyRange keyRange : keyRanges) {
+      splits.add(new TableSplit(keyRange.getStart(), keyRange.getStop()));
+    }
+    return splits;
+  }
+
   @Override
   protected List<Map<byte[], byte[]>> getPersisted(List<io.cdap.cdap.api.dataset.table.Get> gets) {
     if (gets.isEmpty()) {
@@ -442,8 +489,30 @@ public class HBaseTable extends BufferingTable {
   @ReadOnly
   @Override
   protected Scanner scanPersisted(io.cdap.cdap.api.dataset.table.Scan scan) throws Exception {
+    ScanEvaluator evaluator = new ScanEvaluator(scan);
     ScanBuilder hScan = tableUtil.buildScan();
-    hScan.addFamily(columnFamily);
+    byte[][] columns = evaluator.getColumnsToRead();
+    if (columns == null) {
+      hScan.addFamily(columnFamily);
+    } else if (columns.length == 0) {
+      // no column is selected by the scan
+      return new Scanner() {
+        @Nullable
+        @Override
+        public Row next() {
+          return null;
+        }
+
+        @Override
+        public void close() {
+          // no-op
+        }
+      };
+    } else {
+      for (byte[] column : columns) {
+        hScan.addColumn(columnFamily, column);
+      }
+    }
 
     // TODO (CDAP-11954): use common utility method to extract these configs
     if (scan.getProperties().containsKey(CONFIG_HBASE_CLIENT_CACHE_BLOCKS)) {
@@ -457,48 +526,169 @@ public class HBaseTable extends BufferingTable {
       hScan.setCacheBlocks(false);
     }
 
+    int caching;
     if (scan.getProperties().containsKey(CONFIG_HBASE_CLIENT_SCANNER_CACHING)) {
-      hScan.setCaching(Integer.valueOf(scan.getProperties().get(CONFIG_HBASE_CLIENT_SCANNER_CACHING)));
+      caching = Integer.valueOf(scan.getProperties().get(CONFIG_HBASE_CLIENT_SCANNER_CACHING));
     } else if (arguments.containsKey(CONFIG_HBASE_CLIENT_SCANNER_CACHING)) {
-      hScan.setCaching(Integer.valueOf(arguments.get(CONFIG_HBASE_CLIENT_SCANNER_CACHING)));
+      caching = Integer.valueOf(arguments.get(CONFIG_HBASE_CLIENT_SCANNER_CACHING));
     } else if (properties.containsKey(CONFIG_HBASE_CLIENT_SCANNER_CACHING)) {
-      hScan.setCaching(Integer.valueOf(properties.get(CONFIG_HBASE_CLIENT_SCANNER_CACHING)));
+      caching = Integer.valueOf(properties.get(CONFIG_HBASE_CLIENT_SCANNER_CACHING));
     } else {
       // NOTE: by default we use this hard-coded value, for backwards-compatibility with CDAP<4.1.2|4.2.1|4.3
-      hScan.setCaching(1000);
+      caching = 1000;
     }
+    // no need to fetch more rows than the limit in one RPC
+    hScan.setCaching(scan.getLimit() > 0 ? Math.min(caching, scan.getLimit()) : caching);
+
+    setFilterIfNeeded(hScan, evaluator);
+    hScan.setAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY, getEncodedTx());
 
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
-    if (startRow != null) {
-      hScan.setStartRow(startRow);
+    int parallelism = getScanParallelism(scan);
+    List<KeyRange> ranges = parallelism > 1 && scan.getLimit() <= 0
+      ? SplitsUtil.regionGetSplits(0, startRow, stopRow, getRegionStartKeys())
+      : Collections.<KeyRange>emptyList();
+
+    Scanner scanner;
+    if (ranges.size() > 1) {
+      scanner = createParallelScanner(hScan.build(), ranges, parallelism, caching);
+    } else {
+      if (startRow != null) {
+        hScan.setStartRow(startRow);
+      }
+      if (stopRow != null) {
+        hScan.setStopRow(stopRow);
+      }
+      ResultScanner resultScanner = wrapResultScanner(table.getScanner(hScan.build()));
+      scanner = new HBaseScanner(resultScanner, columnFamily);
     }
-    if (stopRow != null) {
-      hScan.setStopRow(stopRow);
+    if (evaluator.isRowKeyOnly() && evaluator.getFuzzyRowFilters().size() <= 1 && scan.getLimit() <= 0) {
+      return scanner;
     }
+    return new FilteringScanner(scanner, evaluator, scan.getLimit());
+  }
 
-    setFilterIfNeeded(hScan, scan.getFilter());
-    hScan.setAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY, getEncodedTx());
+  /**
+   * Creates a {@link ParallelScanner} that scans each of the given key ranges with a copy of the given scan.
+   */
+  private Scanner createParallelScanner(final Scan template, List<KeyRange> ranges,
+                                        int parallelism, int caching) {
+    List<Callable<Scanner>> rangeScanners = new ArrayList<>(ranges.size());
+    for (final KeyRange range : ranges) {
+      rangeScanners.add(() -> {
+        ScanBuilder hScan = tableUtil.buildScan(template);
+        if (range.getStart() != null) {
+          hScan.setStartRow(range.getStart());
+        }
+        if (range.getStop() != null) {
+          hScan.setStopRow(range.getStop());
+        }
+        ResultScanner resultScanner;
+        // Table instances are not guaranteed to be thread safe, hence serialize opening the scanners.
+        // Each scanner is then only used by the thread that opened it.
+        synchronized (table) {
+          resultScanner = table.getScanner(hScan.build());
+        }
+        return new HBaseScanner(resultScanner, columnFamily);
+      });
+    }
+    final Scanner scanner = new ParallelScanner(rangeScanners, SCAN_EXECUTOR, parallelism, caching);
+    // the rows are read by the scanner threads, hence authorization is enforced when the caller takes them
+    return new Scanner() {
+      @Nullable
+      @Override
+      public Row next() {
+        return HBaseTable.this.next(scanner);
+      }
+
+      @Override
+      public void close() {
+        scanner.close();
+      }
+    };
+  }
 
-    ResultScanner resultScanner = wrapResultScanner(table.getScanner(hScan.build()));
-    return new HBaseScanner(resultScanner, columnFamily);
+  private int getScanParallelism(io.cdap.cdap.api.dataset.table.Scan scan) {
+    if (scan.getProperties().containsKey(SCAN_PARALLELISM)) {
+      return Integer.parseInt(scan.getProperties().get(SCAN_PARALLELISM));
+    } else if (arguments.containsKey(SCAN_PARALLELISM)) {
+      return Integer.parseInt(arguments.get(SCAN_PARALLELISM));
+    } else if (properties.containsKey(SCAN_PARALLELISM)) {
+      return Integer.parseInt(properties.get(SCAN_PARALLELISM));
+    }
+    return 1;
   }
 
-  private void setFilterIfNeeded(ScanBuilder scan, @Nullable Filter filter) {
-    if (filter == null) {
-      return;
+  /**
+   * Returns the start keys of the regions of the table. They are looked up once per transaction, since
+   * splits of regions during a transaction only make the ranges derived from them less balanced.
+   */
+  private byte[][] getRegionStartKeys() throws IOException {
+    if (regionStartKeys == null) {
+      regionStartKeys = tableUtil.getRegionStartKeys(table);
     }
+    return regionStartKeys;
+  }
 
-    if (filter instanceof FuzzyRowFilter) {
-      FuzzyRowFilter fuzzyRowFilter = (FuzzyRowFilter) filter;
+  /**
+   * Pushes down the filters of a scan to HBase. The pushed down filters may return more rows or columns than
+   * needed, for example because of delete markers, therefore the scan result must still be evaluated on the client.
+   */
+  private void setFilterIfNeeded(ScanBuilder scan, ScanEvaluator evaluator) {
+    List<org.apache.hadoop.hbase.filter.Filter> filters = new ArrayList<>();
+    for (FuzzyRowFilter fuzzyRowFilter : evaluator.getFuzzyRowFilters()) {
       List<Pair<byte[], byte[]>> fuzzyPairs =
         Lists.newArrayListWithExpectedSize(fuzzyRowFilter.getFuzzyKeysData().size());
       for (ImmutablePair<byte[], byte[]> pair : fuzzyRowFilter.getFuzzyKeysData()) {
         fuzzyPairs.add(Pair.newPair(pair.getFirst(), pair.getSecond()));
       }
-      scan.setFilter(new org.apache.hadoop.hbase.filter.FuzzyRowFilter(fuzzyPairs));
-    } else {
-      throw new IllegalArgumentException("Unsupported filter: " + filter);
+      filters.add(new org.apache.hadoop.hbase.filter.FuzzyRowFilter(fuzzyPairs));
+    }
+
+    // With readless increments, the latest cell of a column can be an increment delta rather than the value,
+    // hence value filters can only be evaluated on the client
+    boolean pushValueFilters = !TableProperties.getReadlessIncrementSupport(properties);
+    if (pushValueFilters) {
+      for (ColumnValueFilter valueFilter : evaluator.getValueFilters()) {
+        SingleColumnValueFilter filter = new SingleColumnValueFilter(columnFamily, valueFilter.getColumn(),
+                                                                     toCompareOp(valueFilter.getOp()),
+                                                                     valueFilter.getValue());
+        filter.setFilterIfMissing(true);
+        filter.setLatestVersionOnly(true);
+        filters.add(filter);
+      }
+    }
+    // A column prefix filter would drop the columns needed to evaluate the value filters on the client
+    if (evaluator.getValueFilters().isEmpty()) {
+      for (byte[] prefix : evaluator.getColumnPrefixes()) {
+        filters.add(new org.apache.hadoop.hbase.filter.ColumnPrefixFilter(prefix));
+      }
+    }
+
+    if (filters.size() == 1) {
+      scan.setFilter(filters.get(0));
+    } else if (filters.size() > 1) {
+      scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, filters));
+    }
+  }
+
+  private static CompareFilter.CompareOp toCompareOp(ColumnValueFilter.CompareOp op) {
+    switch (op) {
+      case EQUAL:
+        return CompareFilter.CompareOp.EQUAL;
+      case NOT_EQUAL:
+        return CompareFilter.CompareOp.NOT_EQUAL;
+      case LESS:
+        return CompareFilter.CompareOp.LESS;
+      case LESS_OR_EQUAL:
+        return CompareFilter.CompareOp.LESS_OR_EQUAL;
+      case GREATER:
+        return CompareFilter.CompareOp.GREATER;
+      case GREATER_OR_EQUAL:
+        return CompareFilter.CompareOp.GREATER_OR_EQUAL;
+      default:
+        throw new IllegalArgumentException("Unsupported compare operator: " + op);
     }
   }
 
@@ -577,6 +767,11 @@ public class HBaseTable extends BufferingTable {
     return scanner.next();
   }
 
+  @ReadOnly
+  private Row next(Scanner scanner) {
+    return scanner.next();
+  }
+
   @ReadOnly
   private Result[] next(ResultScanner scanner, int nbRows) throws IOException {
     return scanner.next(nbRows);
@@ -621,4 +816,43 @@ public class HBaseTable extends BufferingTable {
       }
     };
   }
+
+  /**
+   * A {@link Scanner} that applies a {@link ScanEvaluator} and a row limit to the rows of another scanner.
+   */
+  private static final class FilteringScanner implements Scanner {
+
+    private final Scanner scanner;
+    private final ScanEvaluator evaluator;
+    private final int limit;
+    private int returned;
+
+    FilteringScanner(Scanner scanner, ScanEvaluator evaluator, int limit) {
+      this.scanner = scanner;
+      this.evaluator = evaluator;
+      this.limit = limit;
+    }
+
+    @Nullable
+    @Override
+    public Row next() {
+      if (limit > 0 && returned >= limit) {
+        return null;
+      }
+      Row row;
+      while ((row = scanner.next()) != null) {
+        NavigableMap<byte[], byte[]> columns = evaluator.apply(row.getRow(), row.getColumns());
+        if (columns != null) {
+          returned++;
+          return new io.cdap.cdap.api.dataset.table.Result(row.getRow(), columns);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void close() {
+      scanner.close();
+    }
+  }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.hbase;
+
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Merges increments to the same row and column, so that they can be written as a single batch. Keeps count of
+ * the cells requested to be incremented and of the cells left after merging, from which the coalescing ratio
+ * follows. All methods are thread safe.
+ */
+final class IncrementCoalescer {
+
+  private final int maxCells;
+  private NavigableMap<byte[], NavigableMap<byte[], Long>> pending;
+  private int cells;
+  private long requestedCells;
+  private long mergedCells;
+
+  IncrementCoalescer(int maxCells) {
+    this.maxCells = maxCells;
+    this.pending = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  }
+
+  /**
+   * Adds the increments of a row.
+   *
+   * @return {@code true} if the number of pending cells reached the maximum and the increments should be drained
+   */
+  synchronized boolean add(byte[] row, Map<byte[], Long> increments) {
+    merge(row, increments);
+    requestedCells += increments.size();
+    return cells >= maxCells;
+  }
+
+  /**
+   * Adds the increments of multiple rows.
+   *
+   * @return {@code true} if the number of pending cells reached the maximum and the increments should be drained
+   */
+  synchronized boolean add(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+    boolean full = false;
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+      full = add(row.getKey(), row.getValue());
+    }
+    return full;
+  }
+
+  /**
+   * Removes and returns all the pending increments.
+   */
+  synchronized NavigableMap<byte[], NavigableMap<byte[], Long>> drain() {
+    NavigableMap<byte[], NavigableMap<byte[], Long>> result = pending;
+    pending = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    mergedCells += cells;
+    cells = 0;
+    return result;
+  }
+
+  /**
+   * Adds back increments that were drained but could not be written, without counting them as requested again.
+   */
+  synchronized void restore(NavigableMap<byte[], NavigableMap<byte[], Long>> drained) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : drained.entrySet()) {
+      merge(row.getKey(), row.getValue());
+      mergedCells -= row.getValue().size();
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  /**
+   * Returns the number of cells requested to be incremented since this coalescer was created.
+   */
+  synchronized long getRequestedCells() {
+    return requestedCells;
+  }
+
+  /**
+   * Returns the number of cells drained since this coalescer was created, after merging.
+   */
+  synchronized long getMergedCells() {
+    return mergedCells;
+  }
+
+  private void merge(byte[] row, Map<byte[], Long> increments) {
+    NavigableMap<byte[], Long> columns = pending.computeIfAbsent(row, k -> new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
+      Long previous = columns.get(increment.getKey());
+      if (previous == null) {
+        columns.put(increment.getKey(), increment.getValue());
+        cells++;
+      } else {
+        columns.put(increment.getKey(), previous + increment.getValue());
+      }
+    }
+  }
+}
@@ -22,21 +22,22 @@ import com.google.common.collect.Maps;
 import io.cdap.cdap.api.annotation.ReadOnly;
 import io.cdap.cdap.api.annotation.WriteOnly;
 import io.cdap.cdap.api.common.Bytes;
-import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetSpecification;
 import io.cdap.cdap.api.dataset.table.ConflictDetection;
-import io.cdap.cdap.api.dataset.table.Filter;
+import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.data2.dataset2.lib.table.BufferingTable;
-import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import io.cdap.cdap.data2.dataset2.lib.table.ScanEvaluator;
 import io.cdap.cdap.data2.dataset2.lib.table.Update;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import javax.annotation.Nullable;
@@ -135,6 +136,26 @@ public class InMemoryTable extends BufferingTable {
     return getInternal(row, columns);
   }
 
+  @ReadOnly
+  @Override
+  protected List<Map<byte[], byte[]>> getPersisted(List<Get> gets) {
+    List<byte[]> rows = new ArrayList<>(gets.size());
+    List<byte[][]> columns = new ArrayList<>(gets.size());
+    for (Get get : gets) {
+      rows.add(get.getRow());
+      List<byte[]> getColumns = get.getColumns();
+      columns.add(getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]));
+    }
+
+    List<NavigableMap<byte[], NavigableMap<Long, byte[]>>> rowMaps =
+      InMemoryTableService.get(getTableName(), rows, columns, tx);
+    List<Map<byte[], byte[]>> results = new ArrayList<>(gets.size());
+    for (int i = 0; i < rowMaps.size(); i++) {
+      results.add(getLatestVisible(rowMaps.get(i), columns.get(i)));
+    }
+    return results;
+  }
+
   @ReadOnly
   @Override
   protected Scanner scanPersisted(Scan scan) {
@@ -147,46 +168,44 @@ public class InMemoryTable extends BufferingTable {
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> visibleRowRange = getLatestNotExcludedRows(rowRange, tx);
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = unwrapDeletesForRows(visibleRowRange);
 
-    rows = applyFilter(rows, scan.getFilter());
+    rows = applyScan(rows, scan);
 
     return new InMemoryScanner(wrapIterator(rows.entrySet().iterator()));
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], byte[]>> applyFilter(
+  private NavigableMap<byte[], NavigableMap<byte[], byte[]>> applyScan(
                                                     NavigableMap<byte[], NavigableMap<byte[], byte[]>> map,
-                                                    @Nullable Filter filter) {
-
-    if (filter == null) {
+                                                    Scan scan) {
+    ScanEvaluator evaluator = new ScanEvaluator(scan);
+    if (evaluator.isRowKeyOnly() && evaluator.getFuzzyRowFilters().isEmpty() && scan.getLimit() <= 0) {
       return map;
     }
 
-    // todo: currently we support only FuzzyRowFilter as an experimental feature
-    if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> entry : map.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
-        }
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> entry : map.entrySet()) {
+      if (scan.getLimit() > 0 && result.size() >= scan.getLimit()) {
+        break;
+      }
+      NavigableMap<byte[], byte[]> columns = evaluator.apply(entry.getKey(), entry.getValue());
+      if (columns != null) {
+        result.put(entry.getKey(), columns);
       }
-      return result;
-    } else {
-      throw new DataSetException("Unknown filter type: " + filter);
     }
+    return result;
   }
 
   @ReadOnly
   private NavigableMap<byte[], byte[]> getInternal(byte[] row, @Nullable byte[][] columns) throws IOException {
+    return getLatestVisible(InMemoryTableService.get(getTableName(), row, tx), columns);
+  }
+
+  private NavigableMap<byte[], byte[]> getLatestVisible(
+    @Nullable NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap, @Nullable byte[][] columns) {
     // no tx logic needed
     if (tx == null) {
-      NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap =
-        InMemoryTableService.get(getTableName(), row, tx);
-
       return unwrapDeletes(filterByColumns(getLatest(rowMap), columns));
     }
 
-    NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap =
-      InMemoryTableService.get(getTableName(), row, tx);
-
     if (rowMap == null) {
       return EMPTY_ROW_MAP;
     }
@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Striped;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.data2.dataset2.lib.table.IncrementValue;
 import io.cdap.cdap.data2.dataset2.lib.table.PutValue;
@@ -29,157 +30,182 @@ import io.cdap.cdap.data2.dataset2.lib.table.Update;
 import io.cdap.cdap.data2.dataset2.lib.table.Updates;
 import org.apache.tephra.Transaction;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
  * Holds all in-memory tables for {@link InMemoryTable}.
+ *
+ * Rows and columns are kept in concurrent maps, so reads don't need any locking. Read-modify-write operations
+ * on a row, such as merging updates and increments, are guarded by a lock striped by table and row, so that
+ * operations on different rows don't block each other.
  */
-// todo: use locks instead of synchronize
 // todo: consider using SortedMap instead of NavigableMap in APIs
 public class InMemoryTableService {
-  private static Map<String, ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>>> tables =
-    Maps.newHashMap();
 
-  public static synchronized boolean exists(String tableName) {
+  // Number of lock stripes for guarding read-modify-write operations on table rows
+  private static final int ROW_LOCK_STRIPES = 1024;
+
+  private static final ConcurrentMap<String,
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>>> tables =
+    new ConcurrentHashMap<>();
+  private static final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
+
+  public static boolean exists(String tableName) {
     return tables.containsKey(tableName);
   }
 
-  public static synchronized void create(String tableName) {
-    if (!tables.containsKey(tableName)) {
-      tables.put(tableName, new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR));
-    }
+  public static void create(String tableName) {
+    tables.putIfAbsent(tableName, new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR));
   }
 
-  public static synchronized void truncate(String tableName) {
+  public static void truncate(String tableName) {
     tables.get(tableName).clear();
   }
 
-  public static synchronized void drop(String tableName) {
+  public static void drop(String tableName) {
     tables.remove(tableName);
   }
 
-  public static synchronized void reset() {
+  public static void reset() {
     tables.clear();
   }
 
   // no nulls
-  public static synchronized void merge(String tableName,
-                                        SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
-                                        long version) {
+  public static void merge(String tableName,
+                           SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                           long version) {
     // todo: handle nulls
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     SortedMap<byte[], ? extends SortedMap<byte[], Update>> changesCopy = deepCopyUpdates(changes);
     for (Map.Entry<byte[], ? extends SortedMap<byte[], Update>> change : changesCopy.entrySet()) {
-      merge(table, change.getKey(), change.getValue(), version);
+      Lock lock = getRowLock(tableName, change.getKey());
+      lock.lock();
+      try {
+        merge(table, change.getKey(), change.getValue(), version);
+      } finally {
+        lock.unlock();
+      }
     }
   }
 
   private static void merge(ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table,
                             byte[] row, Map<byte[], Update> changes, long version) {
     // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
+    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = getOrCreateRow(table, row);
     // now merge the changes into the row, one by one
     for (Map.Entry<byte[], Update> keyVal : changes.entrySet()) {
       // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(keyVal.getKey());
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(keyVal.getKey(), colMap);
-      }
+      NavigableMap<Long, Update> colMap = getOrCreateColumn(rowMap, keyVal.getKey());
       // put into the column with given version
       Update merged = Updates.mergeUpdates(colMap.get(version), keyVal.getValue());
       colMap.put(version, merged);
     }
   }
 
+  private static NavigableMap<byte[], NavigableMap<Long, Update>> getOrCreateRow(
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table, byte[] row) {
+    return table.computeIfAbsent(row, k -> new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR));
+  }
+
+  private static NavigableMap<Long, Update> getOrCreateColumn(NavigableMap<byte[], NavigableMap<Long, Update>> rowMap,
+                                                              byte[] column) {
+    NavigableMap<Long, Update> colMap = rowMap.get(column);
+    if (colMap == null) {
+      // only called with the row lock held, hence no need to worry about concurrent creation
+      colMap = new ConcurrentSkipListMap<>();
+      rowMap.put(column, colMap);
+    }
+    return colMap;
+  }
+
+  /**
+   * Returns the {@link Lock} for guarding read-modify-write operations on the given row of the given table.
+   */
+  private static Lock getRowLock(String tableName, byte[] row) {
+    return rowLocks.get(31 * tableName.hashCode() + Arrays.hashCode(row));
+  }
+
+  @Nullable
+  private static Update getLatest(@Nullable NavigableMap<Long, Update> colMap) {
+    if (colMap == null) {
+      return null;
+    }
+    Map.Entry<Long, Update> entry = colMap.lastEntry();
+    return entry == null ? null : entry.getValue();
+  }
+
   // todo: remove it from here: only used by "system" metrics table, which should be revised
   @Deprecated
-  public static synchronized Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
+  public static Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
     Map<byte[], Long> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now increment each column, one by one
-    long versionForWrite = System.currentTimeMillis();
-    for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
-      IncrementValue increment = new IncrementValue(inc.getValue());
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
-      Update last = null;
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(inc.getKey(), colMap);
-      } else {
-        last = colMap.lastEntry().getValue();
+    Lock lock = getRowLock(tableName, row);
+    lock.lock();
+    try {
+      // get the correct row from the table, create it if it doesn't exist
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = getOrCreateRow(table, row);
+      // now increment each column, one by one
+      long versionForWrite = System.currentTimeMillis();
+      for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
+        IncrementValue increment = new IncrementValue(inc.getValue());
+        // create the column in the row if it does not exist
+        NavigableMap<Long, Update> colMap = getOrCreateColumn(rowMap, inc.getKey());
+        Update merged = Updates.mergeUpdates(getLatest(colMap), increment);
+        // put into the column with given version
+        long newValue = Bytes.toLong(merged.getBytes());
+        resultMap.put(inc.getKey(), newValue);
+        colMap.put(versionForWrite, merged);
       }
-      Update merged = Updates.mergeUpdates(last, increment);
-      // put into the column with given version
-      long newValue = Bytes.toLong(merged.getBytes());
-      resultMap.put(inc.getKey(), newValue);
-      colMap.put(versionForWrite, merged);
+    } finally {
+      lock.unlock();
     }
     return resultMap;
   }
 
-  public static synchronized boolean swap(String tableName, byte[] row, byte[] column,
-                                          byte[] oldValue, byte[] newValue) {
+  public static boolean swap(String tableName, byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    Update existingValue = null;
-    if (rowMap != null) {
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap != null) {
-        existingValue = columnMap.lastEntry().getValue();
-      }
-    }
-    // verify existing value matches
-    if (oldValue == null && existingValue != null) {
-      return false;
-    }
-    if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
-      return false;
-    }
-    // write new value
-    if (newValue == null) {
-      if (rowMap != null) {
-        rowMap.remove(column);
+    Lock lock = getRowLock(tableName, row);
+    lock.lock();
+    try {
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
+      Update existingValue = rowMap == null ? null : getLatest(rowMap.get(column));
+      // verify existing value matches
+      if (oldValue == null && existingValue != null) {
+        return false;
       }
-    } else {
-      if (rowMap == null) {
-        rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        table.put(row, rowMap);
+      if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
+        return false;
       }
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap == null) {
-        columnMap = Maps.newTreeMap();
-        rowMap.put(column, columnMap);
+      // write new value
+      if (newValue == null) {
+        if (rowMap != null) {
+          rowMap.remove(column);
+        }
+      } else {
+        // get the correct row from the table, create it if it doesn't exist
+        rowMap = getOrCreateRow(table, row);
+        getOrCreateColumn(rowMap, column).put(System.currentTimeMillis(), new PutValue(newValue));
       }
-      PutValue newPut = new PutValue(newValue);
-      columnMap.put(System.currentTimeMillis(), newPut);
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public static synchronized void undo(String tableName,
-                                       NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
-                                       long version) {
+  public static void undo(String tableName, NavigableMap<byte[], NavigableMap<byte[], Update>> changes, long version) {
     // todo: handle nulls
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
@@ -188,26 +214,41 @@ public class InMemoryTableService {
       if (rowMap != null) {
         for (byte[] column : change.getValue().keySet()) {
           NavigableMap<Long, Update> values = rowMap.get(column);
-          values.remove(version);
+          if (values != null) {
+            values.remove(version);
+          }
         }
       }
     }
   }
 
-  public static synchronized void delete(String tableName, Iterable<byte[]> rows) {
+  public static void delete(String tableName, Iterable<byte[]> rows) {
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     for (byte[] row : rows) {
-      table.remove(row);
+      // take the row lock, so that a concurrent read-modify-write doesn't write into the removed row
+      Lock lock = getRowLock(tableName, row);
+      lock.lock();
+      try {
+        table.remove(row);
+      } finally {
+        lock.unlock();
+      }
     }
   }
 
-  public static synchronized void deleteColumns(String tableName, byte[] row, byte[] column) {
+  public static void deleteColumns(String tableName, byte[] row, byte[] column) {
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
-    columnValues.remove(column);
+    Lock lock = getRowLock(tableName, row);
+    lock.lock();
+    try {
+      NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
+      columnValues.remove(column);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public static synchronized void delete(String tableName, byte[] rowPrefix) {
+  public static void delete(String tableName, byte[] rowPrefix) {
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     if (rowPrefix.length == 0) {
       table.clear();
@@ -238,9 +279,9 @@ public class InMemoryTableService {
     return null;
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
-                                                                                  byte[] row,
-                                                                                  @Nullable Transaction tx) {
+  public static NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
+                                                                     byte[] row,
+                                                                     @Nullable Transaction tx) {
     // todo: handle nulls
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     Preconditions.checkArgument(table != null, "table not found: " + tableName);
@@ -248,11 +289,45 @@ public class InMemoryTableService {
     return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
-                             getRowRange(String tableName,
-                                         byte[] startRow,
-                                         byte[] stopRow,
-                                         @Nullable Transaction tx) {
+  /**
+   * Reads multiple rows of a table. Only the requested columns of each row are copied.
+   *
+   * @param rows the rows to read
+   * @param columns the columns to read for each row, in the same order as the rows. A {@code null} element means
+   *                all columns of the row are read
+   * @return the visible versions of the columns of each row, in the same order as the given rows. An element is
+   *         {@code null} if the row does not exist
+   */
+  public static List<NavigableMap<byte[], NavigableMap<Long, byte[]>>> get(String tableName,
+                                                                           List<byte[]> rows,
+                                                                           List<byte[][]> columns,
+                                                                           @Nullable Transaction tx) {
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    Preconditions.checkArgument(table != null, "table not found: " + tableName);
+    List<NavigableMap<byte[], NavigableMap<Long, byte[]>>> result = new ArrayList<>(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(rows.get(i));
+      byte[][] rowColumns = columns.get(i);
+      if (rowMap != null && rowColumns != null) {
+        NavigableMap<byte[], NavigableMap<Long, Update>> selected = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        for (byte[] column : rowColumns) {
+          NavigableMap<Long, Update> colMap = rowMap.get(column);
+          if (colMap != null) {
+            selected.put(column, colMap);
+          }
+        }
+        rowMap = selected;
+      }
+      result.add(deepCopy(Updates.rowToBytes(getVisible(rowMap, tx))));
+    }
+    return result;
+  }
+
+  public static NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
+                getRowRange(String tableName,
+                            byte[] startRow,
+                            byte[] stopRow,
+                            @Nullable Transaction tx) {
     // todo: handle nulls
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = tables.get(tableName);
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows;
@@ -277,7 +352,7 @@ public class InMemoryTableService {
     return result;
   }
 
-  public static synchronized Collection<String> list() {
+  public static Collection<String> list() {
     return ImmutableList.copyOf(tables.keySet());
   }
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.cdap.cdap.api.common.Bytes;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory bloom filter over the row keys of a LevelDB table, which lets reads of absent rows return without
+ * seeking in the table. The LevelDB version in use has no filter policy, hence the filter is built from the table
+ * when it is first used, and rows must be added to it before they are written to the table.
+ * <p>
+ * Rows are never removed from the filter. When more rows are added than the filter was sized for, a new filter with
+ * twice the capacity is added for the rows that follow, and a row might be in the table if any of the filters might
+ * contain it. The filter is never rebuilt from the table after it is created, as a rebuild would miss the rows that
+ * were added to the filter but not written to the table yet.
+ */
+final class LevelDBRowFilter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBRowFilter.class);
+
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+  private static final int MIN_EXPECTED_ROWS = 1024;
+
+  private final String tableName;
+  private final DB db;
+  private final AtomicLong lookups = new AtomicLong();
+  private final AtomicLong negatives = new AtomicLong();
+  private final AtomicLong falsePositives = new AtomicLong();
+  // Filters in the order they were created, only the last one receives new rows
+  private final List<BloomFilter<byte[]>> filters = new ArrayList<>();
+  private BloomFilter<byte[]> filter;
+  // Halved for each new filter, so that the false positive probability of all filters together stays below
+  // FALSE_POSITIVE_PROBABILITY
+  private double falsePositiveProbability = FALSE_POSITIVE_PROBABILITY;
+  private int expectedRows;
+  private int addedRows;
+
+  LevelDBRowFilter(String tableName, DB db) throws IOException {
+    this.tableName = tableName;
+    this.db = db;
+    build();
+  }
+
+  /**
+   * Adds a row. This must be called before the row is written to the table.
+   */
+  synchronized void add(byte[] row) {
+    // put() returns true if the filter changed, which only happens for rows that are not in the filter
+    if (filter.put(row) && ++addedRows > expectedRows) {
+      grow(expectedRows * 2);
+    }
+  }
+
+  /**
+   * Adds rows. This must be called before the rows are written to the table.
+   */
+  synchronized void add(Collection<byte[]> rows) {
+    for (byte[] row : rows) {
+      add(row);
+    }
+  }
+
+  /**
+   * Returns {@code false} if the row is definitely not in the table.
+   */
+  boolean mightContain(byte[] row) {
+    boolean result;
+    synchronized (this) {
+      result = false;
+      // The latest filter is the largest one, and most likely to contain the row
+      for (int i = filters.size() - 1; i >= 0 && !result; i--) {
+        result = filters.get(i).mightContain(row);
+      }
+    }
+    lookups.incrementAndGet();
+    if (!result) {
+      negatives.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Records that a row for which {@link #mightContain(byte[])} returned {@code true} was not found in the table.
+   */
+  void falsePositive() {
+    falsePositives.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of lookups since this filter was created.
+   */
+  long getLookups() {
+    return lookups.get();
+  }
+
+  /**
+   * Returns the number of lookups that the filter answered without reading the table.
+   */
+  long getNegatives() {
+    return negatives.get();
+  }
+
+  /**
+   * Returns the number of lookups that passed the filter but found no data in the table.
+   */
+  long getFalsePositives() {
+    return falsePositives.get();
+  }
+
+  /**
+   * Builds the first filter from all the rows of the table.
+   */
+  private void build() throws IOException {
+    grow(Math.max(MIN_EXPECTED_ROWS, countRows() * 2));
+    forEachRow(row -> {
+      filter.put(row);
+      addedRows++;
+    });
+    LOG.debug("Built row filter of table {} with {} rows and capacity of {} rows", tableName, addedRows, expectedRows);
+  }
+
+  /**
+   * Adds a new filter for the given number of rows, which receives all the rows added from now on.
+   */
+  private void grow(int expectedRows) {
+    this.expectedRows = expectedRows;
+    this.falsePositiveProbability /= 2;
+    this.filter = BloomFilter.create(Funnels.byteArrayFunnel(), expectedRows, falsePositiveProbability);
+    this.addedRows = 0;
+    filters.add(filter);
+    LOG.trace("Added row filter of table {} with capacity of {} rows", tableName, expectedRows);
+  }
+
+  private int countRows() throws IOException {
+    int[] count = new int[1];
+    forEachRow(row -> count[0]++);
+    return count[0];
+  }
+
+  private void forEachRow(Consumer<byte[]> consumer) throws IOException {
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      byte[] previousRow = null;
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        byte[] row = KeyValue.fromKey(entry.getKey()).getRow();
+        if (previousRow == null || !Bytes.equals(previousRow, row)) {
+          consumer.accept(row);
+          previousRow = row;
+        }
+      }
+    }
+  }
+}
@@ -20,21 +20,22 @@ import com.google.common.collect.Maps;
 import io.cdap.cdap.api.annotation.ReadOnly;
 import io.cdap.cdap.api.annotation.WriteOnly;
 import io.cdap.cdap.api.common.Bytes;
-import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetSpecification;
+import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.data2.dataset2.lib.table.BufferingTable;
-import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import io.cdap.cdap.data2.dataset2.lib.table.IncrementValue;
 import io.cdap.cdap.data2.dataset2.lib.table.PutValue;
 import io.cdap.cdap.data2.dataset2.lib.table.Update;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import javax.annotation.Nullable;
@@ -53,6 +54,10 @@ public class LevelDBTable extends BufferingTable {
     super(PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), tableName),
           false, spec.getProperties());
     this.core = new LevelDBTableCore(getTableName(), service);
+    // Tables created before the service was restarted are registered for pruning when they are used again
+    if (LevelDBTableAdmin.isVersionPruningEnabled(spec.getProperties())) {
+      service.enableVersionPruning(getTableName());
+    }
   }
 
   @WriteOnly
@@ -128,18 +133,21 @@ public class LevelDBTable extends BufferingTable {
 
   @ReadOnly
   @Override
-  protected Scanner scanPersisted(Scan scan) throws Exception {
-
-    FuzzyRowFilter filter = null;
-    if (scan.getFilter() != null) {
-      // todo: currently we support only FuzzyRowFilter as an experimental feature
-      if (scan.getFilter() instanceof FuzzyRowFilter) {
-        filter = (FuzzyRowFilter) scan.getFilter();
-      } else {
-        throw new DataSetException("Unknown filter type: " + scan.getFilter());
-      }
+  protected List<Map<byte[], byte[]>> getPersisted(List<Get> gets) throws Exception {
+    List<byte[]> rows = new ArrayList<>(gets.size());
+    List<byte[][]> columns = new ArrayList<>(gets.size());
+    for (Get get : gets) {
+      rows.add(get.getRow());
+      List<byte[]> getColumns = get.getColumns();
+      columns.add(getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]));
     }
-    final Scanner scanner = core.scan(scan.getStartRow(), scan.getStopRow(), filter, null, tx);
+    return new ArrayList<>(core.getRows(rows, columns, tx));
+  }
+
+  @ReadOnly
+  @Override
+  protected Scanner scanPersisted(Scan scan) throws Exception {
+    final Scanner scanner = core.scan(scan, tx);
     return new Scanner() {
       @Nullable
       @Override
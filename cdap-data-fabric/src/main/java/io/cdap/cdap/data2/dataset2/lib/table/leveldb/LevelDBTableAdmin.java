@@ -23,12 +23,19 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  *
  */
 public class LevelDBTableAdmin implements DatasetAdmin {
 
+  /**
+   * Table property for enabling the periodic pruning of cell versions that are no longer visible to any transaction.
+   * Pruning is disabled by default.
+   */
+  public static final String PROPERTY_PRUNE_VERSIONS = "dataset.table.leveldb.prune.versions";
+
   private final LevelDBTableService service;
   private final String name;
 
@@ -36,6 +43,16 @@ public class LevelDBTableAdmin implements DatasetAdmin {
                            LevelDBTableService service, CConfiguration cConf) throws IOException {
     this.service = service;
     this.name = PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), spec.getName());
+    if (isVersionPruningEnabled(spec.getProperties())) {
+      service.enableVersionPruning(name);
+    }
+  }
+
+  /**
+   * Returns whether version pruning is enabled by the given table properties.
+   */
+  static boolean isVersionPruningEnabled(Map<String, String> properties) {
+    return Boolean.parseBoolean(properties.get(PROPERTY_PRUNE_VERSIONS));
   }
 
   @Override
@@ -20,9 +20,11 @@ import com.google.common.base.Throwables;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import io.cdap.cdap.data2.dataset2.lib.table.ScanEvaluator;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
@@ -34,13 +36,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -64,6 +69,9 @@ public class LevelDBTableCore {
   // used for obtaining the next row/column for upper bound
   private static final byte[] ONE_ZERO = { 0x00 };
 
+  // maximum number of deletes to accumulate before writing when pruning versions
+  private static final int PRUNE_BATCH_SIZE = 1000;
+
   private static byte[] upperBound(byte[] column) {
     return Bytes.add(column, ONE_ZERO);
   }
@@ -84,31 +92,48 @@ public class LevelDBTableCore {
     return service.getWriteOptions();
   }
 
-
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
+  /**
+   * Adds rows to the row filter of the table. This must be called before writing the rows.
+   */
+  private void addToRowFilter(Collection<byte[]> rows) throws IOException {
+    LevelDBRowFilter rowFilter = service.getRowFilter(tableName);
+    if (rowFilter != null) {
+      rowFilter.add(rows);
     }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), Long.MAX_VALUE);
+  }
+
+
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    List<Lock> locks = lockRows(Collections.singleton(row));
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), Long.MAX_VALUE);
+      }
+      return true;
+    } finally {
+      unlock(locks);
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
     Map<byte[], Long> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
+    addToRowFilter(Collections.singleton(row));
     DB db = getDB();
     WriteBatch writeBatch = db.createWriteBatch();
+    List<Lock> locks = lockRows(Collections.singleton(row));
     try (Snapshot snapshot = db.getSnapshot()) {
       ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
 
@@ -120,19 +145,23 @@ public class LevelDBTableCore {
         writeBatch.put(rowKey, Bytes.toBytes(newValue));
       }
       db.write(writeBatch, service.getWriteOptions());
+    } finally {
+      unlock(locks);
     }
 
     return result;
   }
 
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
     if (updates.isEmpty()) {
       return;
     }
 
+    addToRowFilter(updates.keySet());
     DB db = getDB();
     WriteBatch writeBatch = db.createWriteBatch();
+    List<Lock> locks = lockRows(updates.keySet());
     try (Snapshot snapshot = db.getSnapshot()) {
       ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
 
@@ -145,6 +174,29 @@ public class LevelDBTableCore {
         }
       }
       db.write(writeBatch, service.getWriteOptions());
+    } finally {
+      unlock(locks);
+    }
+  }
+
+  /**
+   * Acquires the locks for read-modify-write operations on the given rows. The snapshot for reading existing values
+   * must be taken after the locks are acquired, so that concurrent updates to the same rows are not lost.
+   *
+   * @return the acquired locks, which must be released with {@link #unlock(List)}
+   */
+  private List<Lock> lockRows(Collection<byte[]> rows) {
+    List<Lock> locks = new ArrayList<>(rows.size());
+    for (Lock lock : service.getRowLocks(tableName, rows)) {
+      lock.lock();
+      locks.add(lock);
+    }
+    return locks;
+  }
+
+  private static void unlock(List<Lock> locks) {
+    for (int i = locks.size() - 1; i >= 0; i--) {
+      locks.get(i).unlock();
     }
   }
 
@@ -161,6 +213,7 @@ public class LevelDBTableCore {
   }
 
   public void persist(Map<byte[], ? extends Map<byte[], byte[]>> changes, long version) throws IOException {
+    addToRowFilter(changes.keySet());
     DB db = getDB();
     // todo support writing null when no transaction
     WriteBatch batch = db.createWriteBatch();
@@ -174,6 +227,7 @@ public class LevelDBTableCore {
   }
 
   public void put(byte[] row, byte[] column, byte[] value, long version) throws IOException {
+    addToRowFilter(Collections.singleton(row));
     getDB().put(createPutKey(row, column, version), value);
   }
 
@@ -206,7 +260,29 @@ public class LevelDBTableCore {
     DBIterator iterator = getDB().iterator();
     seekToStart(iterator, startRow);
     byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
-    return new LevelDBScanner(iterator, endKey, filter, columns, tx);
+    return new LevelDBScanner(iterator, endKey, filter, columns, null, -1, tx);
+  }
+
+  /**
+   * Scans the rows of a {@link Scan}. Only the columns needed by the scan are read, and the filter, the column
+   * projection and the limit of the scan are applied while iterating.
+   */
+  public Scanner scan(Scan scan, @Nullable Transaction tx) throws IOException {
+    ScanEvaluator evaluator = new ScanEvaluator(scan);
+    byte[][] columns = evaluator.getColumnsToRead();
+    if (columns != null && columns.length == 0) {
+      return EMPTY_SCANNER;
+    }
+    // the first fuzzy row filter is used to skip rows, the other filters are evaluated on each row
+    List<FuzzyRowFilter> fuzzyRowFilters = evaluator.getFuzzyRowFilters();
+    FuzzyRowFilter filter = fuzzyRowFilters.isEmpty() ? null : fuzzyRowFilters.get(0);
+
+    DBIterator iterator = getDB().iterator();
+    seekToStart(iterator, scan.getStartRow());
+    byte[] endKey = scan.getStopRow() == null ? null : createEndKey(scan.getStopRow());
+    return new LevelDBScanner(iterator, endKey, filter, columns,
+                              evaluator.isRowKeyOnly() && fuzzyRowFilters.size() <= 1 ? null : evaluator,
+                              scan.getLimit(), tx);
   }
 
   /**
@@ -215,10 +291,70 @@ public class LevelDBTableCore {
   public NavigableMap<byte[], byte[]> getRow(byte[] row, @Nullable byte[][] columns,
                                              @Nullable byte[] startCol, @Nullable byte[] stopCol,
                                              int limit, @Nullable Transaction tx) throws IOException {
-    if (columns != null) {
-      if (columns.length == 0) {
-        return Collections.emptyNavigableMap();
+    if (columns != null && columns.length == 0) {
+      return Collections.emptyNavigableMap();
+    }
+    LevelDBRowFilter rowFilter = service.getRowFilter(tableName);
+    if (rowFilter != null && !rowFilter.mightContain(row)) {
+      return Collections.emptyNavigableMap();
+    }
+    try (DBIterator iterator = getDB().iterator()) {
+      NavigableMap<byte[], byte[]> result = getRow(iterator, row, columns, startCol, stopCol, limit, tx);
+      if (rowFilter != null && result.isEmpty()) {
+        rowFilter.falsePositive();
       }
+      return result;
+    }
+  }
+
+  /**
+   * Reads multiple rows with a single iterator over a snapshot of the table. The rows are read in sorted order,
+   * such that the iterator only seeks forward.
+   *
+   * @param rows the rows to read
+   * @param columns the columns to read for each row, in the same order as the rows. A {@code null} element means
+   *                all columns of the row are read
+   * @return the columns of each row, in the same order as the given rows
+   */
+  public List<NavigableMap<byte[], byte[]>> getRows(List<byte[]> rows, List<byte[][]> columns,
+                                                    @Nullable Transaction tx) throws IOException {
+    Integer[] order = new Integer[rows.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (i1, i2) -> Bytes.compareTo(rows.get(i1), rows.get(i2)));
+
+    List<NavigableMap<byte[], byte[]>> results = new ArrayList<>(Collections.nCopies(rows.size(), null));
+    LevelDBRowFilter rowFilter = service.getRowFilter(tableName);
+    DB db = getDB();
+    try (Snapshot snapshot = db.getSnapshot();
+         DBIterator iterator = db.iterator(new ReadOptions().snapshot(snapshot))) {
+      for (int i : order) {
+        byte[][] rowColumns = columns.get(i);
+        if (rowColumns != null && rowColumns.length == 0) {
+          results.set(i, Collections.emptyNavigableMap());
+        } else if (rowFilter != null && !rowFilter.mightContain(rows.get(i))) {
+          results.set(i, Collections.emptyNavigableMap());
+        } else {
+          NavigableMap<byte[], byte[]> result = getRow(iterator, rows.get(i), rowColumns, null, null, -1, tx);
+          if (rowFilter != null && result.isEmpty()) {
+            rowFilter.falsePositive();
+          }
+          results.set(i, result);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Reads one row by seeking the given iterator to the first column to read.
+   * If columns are not null, then limit param is ignored and limit is columns.length.
+   */
+  private static NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, @Nullable byte[][] columns,
+                                                     @Nullable byte[] startCol, @Nullable byte[] stopCol,
+                                                     int limit, @Nullable Transaction tx) {
+    if (columns != null) {
       columns = Arrays.copyOf(columns, columns.length);
       Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
       limit = columns.length;
@@ -226,10 +362,8 @@ public class LevelDBTableCore {
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
     byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
-    try (DBIterator iterator = getDB().iterator()) {
-      iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
-    }
+    iterator.seek(startKey);
+    return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
   }
 
   private static Scanner createEmptyScanner() {
@@ -391,7 +525,7 @@ public class LevelDBTableCore {
     DBIterator deleteIterator = db.iterator();
     seekToStart(deleteIterator, startRow);
     final int deletesPerRound = 1024; // todo make configurable
-    try (Scanner scanner = new LevelDBScanner(iterator, endKey, filter, columns, null)) {
+    try (Scanner scanner = new LevelDBScanner(iterator, endKey, filter, columns, null, -1, null)) {
       Row rowValues;
       WriteBatch batch = db.createWriteBatch();
       int deletesInBatch = 0;
@@ -431,6 +565,76 @@ public class LevelDBTableCore {
     }
   }
 
+  /**
+   * Deletes cell versions that are no longer visible to any transaction. For each cell, all versions written by
+   * invalid transactions are deleted. Among the versions older than the visibility upper bound, only the latest
+   * one is retained, unless it is a delete marker, in which case it is deleted as well. Versions at or above the
+   * visibility upper bound are never touched.
+   *
+   * @param visibilityUpperBound the version below which all valid versions are visible to all transactions
+   * @param invalids the sorted array of invalid transaction ids
+   * @return the number of bytes deleted from the table
+   */
+  public long pruneVersions(long visibilityUpperBound, long[] invalids) throws IOException {
+    DB db = getDB();
+    long prunedBytes = 0L;
+    int batchSize = 0;
+    WriteBatch batch = db.createWriteBatch();
+
+    byte[] previousRow = null;
+    byte[] previousCol = null;
+    boolean visibleVersionFound = false;
+
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        KeyValue kv = KeyValue.fromKey(entry.getKey());
+        byte[] row = kv.getRow();
+        byte[] column = kv.getQualifier();
+        if (previousRow == null || !Bytes.equals(previousRow, row) || !Bytes.equals(previousCol, column)) {
+          previousRow = row;
+          previousCol = column;
+          visibleVersionFound = false;
+        }
+
+        long version = kv.getTimestamp();
+        if (version >= visibilityUpperBound) {
+          continue;
+        }
+
+        boolean prune;
+        if (Arrays.binarySearch(invalids, version) >= 0) {
+          prune = true;
+        } else if (visibleVersionFound) {
+          // versions are sorted from newest to oldest, hence this version is shadowed by the newer visible one
+          prune = true;
+        } else {
+          visibleVersionFound = true;
+          // all older versions will be pruned, hence the delete marker is no longer needed
+          prune = Bytes.equals(entry.getValue(), DELETE_MARKER);
+        }
+
+        if (prune) {
+          batch.delete(entry.getKey());
+          prunedBytes += entry.getKey().length + entry.getValue().length;
+          if (++batchSize >= PRUNE_BATCH_SIZE) {
+            db.write(batch, getWriteOptions());
+            batch.close();
+            batch = db.createWriteBatch();
+            batchSize = 0;
+          }
+        }
+      }
+      if (batchSize > 0) {
+        db.write(batch, getWriteOptions());
+      }
+    } finally {
+      batch.close();
+    }
+    return prunedBytes;
+  }
+
   /**
    * Helper to add deletes to a batch.  The expected use case is for the caller to be iterating
    * through leveldb keys in sorted order, collecting key values to delete in batch.
@@ -476,18 +680,27 @@ public class LevelDBTableCore {
     private final DBIterator iterator;
     private final byte[][] columns;
     private final FuzzyRowFilter filter;
+    private final ScanEvaluator evaluator;
+    private final int limit;
+    private int returned;
 
     LevelDBScanner(DBIterator iterator, byte[] endKey,
-                   @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx) {
+                   @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns,
+                   @Nullable ScanEvaluator evaluator, int limit, @Nullable Transaction tx) {
       this.tx = tx;
       this.endKey = endKey;
       this.iterator = iterator;
       this.filter = filter;
       this.columns = columns;
+      this.evaluator = evaluator;
+      this.limit = limit;
     }
 
     @Override
     public Row next() {
+      if (limit > 0 && returned >= limit) {
+        return null;
+      }
       try {
         while (true) {
           ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(iterator, endKey, tx, true, columns, -1);
@@ -512,7 +725,15 @@ public class LevelDBTableCore {
               }
             }
           }
-          return new Result(result.getFirst(), result.getSecond());
+          NavigableMap<byte[], byte[]> rowColumns = result.getSecond();
+          if (evaluator != null) {
+            rowColumns = evaluator.apply(result.getFirst(), rowColumns);
+            if (rowColumns == null) {
+              continue;
+            }
+          }
+          returned++;
+          return new Result(result.getFirst(), rowColumns);
         }
       } catch (Exception e) {
         throw Throwables.propagate(e);
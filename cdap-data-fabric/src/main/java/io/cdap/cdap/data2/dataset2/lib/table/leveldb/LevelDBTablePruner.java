@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.data2.util.TableId;
+import org.apache.tephra.Transaction;
+import org.apache.tephra.TransactionSystemClient;
+import org.apache.twill.common.Threads;
+import org.iq80.leveldb.DB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes cell versions of LevelDB tables that are no longer visible to any transaction,
+ * based on the visibility upper bound and the invalid list of the transaction manager. Only tables that
+ * have the {@link LevelDBTableAdmin#PROPERTY_PRUNE_VERSIONS} property set are pruned.
+ */
+public class LevelDBTablePruner extends AbstractScheduledService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBTablePruner.class);
+
+  private final LevelDBTableService tableService;
+  private final TransactionSystemClient txClient;
+  private final MetricsCollectionService metricsCollectionService;
+  private final long pruneIntervalSeconds;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  LevelDBTablePruner(CConfiguration cConf, LevelDBTableService tableService, TransactionSystemClient txClient,
+                     MetricsCollectionService metricsCollectionService) {
+    this.tableService = tableService;
+    this.txClient = txClient;
+    this.metricsCollectionService = metricsCollectionService;
+    this.pruneIntervalSeconds = cConf.getLong(Constants.CFG_DATA_LEVELDB_PRUNE_INTERVAL_SECONDS,
+                                              Constants.DEFAULT_DATA_LEVELDB_PRUNE_INTERVAL_SECONDS);
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  protected void runOneIteration() {
+    try {
+      pruneTables();
+    } catch (Exception e) {
+      LOG.warn("Failed to prune LevelDB tables. Will be retried in {} seconds.", pruneIntervalSeconds, e);
+    }
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(pruneIntervalSeconds, pruneIntervalSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  protected final ScheduledExecutorService executor() {
+    executor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("leveldb-table-pruner"));
+    return executor;
+  }
+
+  /**
+   * Prunes all LevelDB tables that have version pruning enabled.
+   */
+  void pruneTables() throws Exception {
+    Collection<String> tableNames = tableService.listVersionPrunedTables();
+    if (tableNames.isEmpty()) {
+      return;
+    }
+
+    // Use a short transaction to get the current visibility upper bound and invalid list
+    Transaction tx = txClient.startShort();
+    txClient.abort(tx);
+
+    for (String tableName : tableNames) {
+      long prunedBytes = pruneTable(tableName, tx.getVisibilityUpperBound(), tx.getInvalids());
+      if (prunedBytes > 0) {
+        LOG.debug("Pruned {} bytes from LevelDB table {}", prunedBytes, tableName);
+        getMetricsContext(tableName).increment("dataset.leveldb.pruned.bytes", prunedBytes);
+      }
+    }
+  }
+
+  private long pruneTable(String tableName, long visibilityUpperBound, long[] invalids) throws IOException {
+    long prunedBytes = new LevelDBTableCore(tableName, tableService).pruneVersions(visibilityUpperBound, invalids);
+    if (prunedBytes > 0) {
+      DB db = tableService.getTable(tableName);
+      try {
+        db.compactRange(null, null);
+      } catch (UnsupportedOperationException e) {
+        // Not all LevelDB implementations support manual compaction.
+        // Space of the deleted entries will be reclaimed by background compaction.
+        LOG.trace("Manual compaction is not supported for LevelDB table {}", tableName);
+      }
+    }
+    return prunedBytes;
+  }
+
+  private MetricsContext getMetricsContext(String tableName) {
+    TableId tableId = LevelDBNameConverter.from(tableName);
+    return metricsCollectionService.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE,
+                                                               tableId.getNamespace(),
+                                                               Constants.Metrics.Tag.TABLE,
+                                                               tableId.getTableName()));
+  }
+}
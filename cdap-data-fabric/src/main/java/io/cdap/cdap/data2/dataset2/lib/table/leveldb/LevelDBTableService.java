@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.cdap.cdap.common.conf.CConfiguration;
@@ -40,9 +41,17 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.Nullable;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,13 +63,23 @@ public class LevelDBTableService implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // Number of lock stripes for guarding read-modify-write operations on table rows
+  private static final int ROW_LOCK_STRIPES = 1024;
+  // Number of lock stripes for guarding the build of the row filters of tables
+  private static final int ROW_FILTER_LOCK_STRIPES = 64;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
+  private boolean rowFilterEnabled;
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, LevelDBRowFilter> rowFilters = Maps.newConcurrentMap();
+  private final Set<String> versionPrunedTables = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
+  private final Striped<Lock> rowFilterLocks = Striped.lock(ROW_FILTER_LOCK_STRIPES);
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -90,6 +109,8 @@ public class LevelDBTableService implements AutoCloseable {
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
+    rowFilterEnabled = config.getBoolean(Constants.CFG_DATA_LEVELDB_ROW_FILTER_ENABLED,
+                                         Constants.DEFAULT_DATA_LEVELDB_ROW_FILTER_ENABLED);
   }
 
   /**
@@ -100,6 +121,8 @@ public class LevelDBTableService implements AutoCloseable {
       Closeables.closeQuietly(entries);
     }
     tables.clear();
+    rowFilters.clear();
+    versionPrunedTables.clear();
   }
 
   private void ensureOpen() {
@@ -144,7 +167,10 @@ public class LevelDBTableService implements AutoCloseable {
       String tableName = getTableName(dir.getName());
       // NOTE: we are using recursion to traverse file tree as we know that leveldb table fs tree is couple levels deep.
       long size = getSize(dir);
-      builder.put(LevelDBNameConverter.from(tableName), new TableStats(size));
+      LevelDBRowFilter rowFilter = rowFilters.get(tableName);
+      builder.put(LevelDBNameConverter.from(tableName), rowFilter == null
+        ? new TableStats(size)
+        : new TableStats(size, rowFilter.getLookups(), rowFilter.getNegatives(), rowFilter.getFalsePositives()));
     }
     return builder.build();
   }
@@ -171,6 +197,63 @@ public class LevelDBTableService implements AutoCloseable {
     return writeOptions;
   }
 
+  /**
+   * Marks the given table to have its obsolete cell versions pruned by the {@link LevelDBTablePruner}.
+   */
+  void enableVersionPruning(String tableName) {
+    versionPrunedTables.add(tableName);
+  }
+
+  /**
+   * Returns the names of the tables that have version pruning enabled.
+   */
+  Collection<String> listVersionPrunedTables() {
+    return ImmutableList.copyOf(versionPrunedTables);
+  }
+
+  /**
+   * Returns the locks for guarding read-modify-write operations, such as increments, on the given rows of a table.
+   * The locks are shared by all {@link LevelDBTableCore} instances of the same table. They are returned in a
+   * consistent order, hence acquiring them in iteration order is free of deadlock.
+   */
+  Iterable<Lock> getRowLocks(String tableName, Collection<byte[]> rows) {
+    List<Integer> keys = new ArrayList<>(rows.size());
+    for (byte[] row : rows) {
+      keys.add(31 * tableName.hashCode() + Arrays.hashCode(row));
+    }
+    return rowLocks.bulkGet(keys);
+  }
+
+  /**
+   * Returns the row filter of a table, building it from the table if this is the first use since the table was
+   * opened. All writes to the table must add their rows to the filter before writing.
+   *
+   * @return the row filter or {@code null} if row filters are disabled
+   */
+  @Nullable
+  LevelDBRowFilter getRowFilter(String tableName) throws IOException {
+    if (!rowFilterEnabled) {
+      return null;
+    }
+    LevelDBRowFilter rowFilter = rowFilters.get(tableName);
+    if (rowFilter != null) {
+      return rowFilter;
+    }
+    // Building the filter scans the whole table, hence only lock the table being built, not all the tables
+    Lock lock = rowFilterLocks.get(tableName);
+    lock.lock();
+    try {
+      rowFilter = rowFilters.get(tableName);
+      if (rowFilter == null) {
+        rowFilter = new LevelDBRowFilter(tableName, getTable(tableName));
+        rowFilters.put(tableName, rowFilter);
+      }
+      return rowFilter;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   public DB getTable(String tableName) throws IOException {
     ensureOpen();
     DB db = tables.get(tableName);
@@ -238,6 +321,8 @@ public class LevelDBTableService implements AutoCloseable {
 
   public void dropTable(String name) throws IOException {
     ensureOpen();
+    rowFilters.remove(name);
+    versionPrunedTables.remove(name);
     DB db = tables.remove(name);
     if (db != null) {
       db.close();
@@ -289,13 +374,44 @@ public class LevelDBTableService implements AutoCloseable {
    */
   public static final class TableStats {
     private final long diskSizeBytes;
+    private final long rowFilterLookups;
+    private final long rowFilterNegatives;
+    private final long rowFilterFalsePositives;
 
     public TableStats(long sizeInBytes) {
+      this(sizeInBytes, 0L, 0L, 0L);
+    }
+
+    public TableStats(long sizeInBytes, long rowFilterLookups, long rowFilterNegatives, long rowFilterFalsePositives) {
       this.diskSizeBytes = sizeInBytes;
+      this.rowFilterLookups = rowFilterLookups;
+      this.rowFilterNegatives = rowFilterNegatives;
+      this.rowFilterFalsePositives = rowFilterFalsePositives;
     }
 
     public long getDiskSizeBytes() {
       return diskSizeBytes;
     }
+
+    /**
+     * Returns the number of row lookups checked with the row filter of the table since it was opened.
+     */
+    public long getRowFilterLookups() {
+      return rowFilterLookups;
+    }
+
+    /**
+     * Returns the number of row lookups that the row filter answered without reading the table.
+     */
+    public long getRowFilterNegatives() {
+      return rowFilterNegatives;
+    }
+
+    /**
+     * Returns the number of row lookups that passed the row filter but found no data in the table.
+     */
+    public long getRowFilterFalsePositives() {
+      return rowFilterFalsePositives;
+    }
   }
 }
@@ -101,6 +101,25 @@ public final class EntityTable implements Closeable {
     return entityCache.getUnchecked(new EntityName(type, name)) % maxId;
   }
 
+  /**
+   * Returns the id of the given name if one has been assigned to it, without assigning a new id.
+   * @return the id of the name or {@code null} if the name has no id
+   */
+  @Nullable
+  public Long findId(String type, String name) {
+    EntityName entityName = new EntityName(type, name);
+    Long id = entityCache.getIfPresent(entityName);
+    if (id == null) {
+      byte[] result = table.get(Bytes.toBytes(type + '.' + name), ID);
+      if (result == null) {
+        return null;
+      }
+      id = Bytes.toLong(result);
+      entityCache.put(entityName, id);
+    }
+    return id % maxId;
+  }
+
   /**
    * Returns the entity name for the given id and type.
    * @param id The id to lookup
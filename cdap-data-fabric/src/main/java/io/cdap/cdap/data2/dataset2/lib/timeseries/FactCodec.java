@@ -39,6 +39,8 @@ public class FactCodec {
   // encoding types
   private static final String TYPE_MEASURE_NAME = "measureName";
   private static final String TYPE_DIMENSIONS_GROUP = "tagsGroup";
+  // marks the measures of the gauge type, which cannot be told apart from counters by their stored values
+  private static final String TYPE_GAUGE_MEASURE_NAME = "gaugeMeasureName";
 
   private final EntityTable entityTable;
 
@@ -105,6 +107,22 @@ public class FactCodec {
     return entityTable.getId(TYPE_MEASURE_NAME, measureName);
   }
 
+  /**
+   * Records that the given measure is of the gauge type.
+   * @param measureName measure name
+   */
+  public void markGauge(String measureName) {
+    entityTable.getId(TYPE_GAUGE_MEASURE_NAME, measureName);
+  }
+
+  /**
+   * Returns {@code true} if the given measure was recorded to be of the gauge type with {@link #markGauge(String)}.
+   * @param measureName measure name
+   */
+  public boolean isGauge(String measureName) {
+    return entityTable.findId(TYPE_GAUGE_MEASURE_NAME, measureName) != null;
+  }
+
   private byte[] createRowKey(List<DimensionValue> dimensionValues, String measureName, long ts, boolean stopKey,
                               boolean anyAggGroup) {
     // Row key format:
@@ -226,6 +244,27 @@ public class FactCodec {
     return deltaCache[(int) ((ts - timeBase) / resolution)];
   }
 
+  /**
+   * Creates the column of a bucket of a distribution, which is the column of the timestamp followed by the bucket.
+   */
+  public byte[] createDistributionColumn(long ts, int bucket) {
+    return Bytes.concat(createColumn(ts), Bytes.toBytes((short) bucket));
+  }
+
+  /**
+   * Returns {@code true} if the given column was created by {@link #createDistributionColumn(long, int)}.
+   */
+  public boolean isDistributionColumn(byte[] column) {
+    return column.length == 2 * Bytes.SIZEOF_SHORT;
+  }
+
+  /**
+   * Returns the bucket of a column created by {@link #createDistributionColumn(long, int)}.
+   */
+  public int getDistributionBucket(byte[] column) {
+    return Bytes.toShort(column, Bytes.SIZEOF_SHORT);
+  }
+
   public String getMeasureName(byte[] rowKey) {
     // last encoded is measure name
     long encoded = readEncoded(rowKey, rowKey.length - entityTable.getIdSize());
@@ -18,22 +18,33 @@ package io.cdap.cdap.data2.dataset2.lib.timeseries;
 
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.Distribution;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
- * An single result item returned by {@link FactScanner}.
+ * An single result item returned by {@link FactScanner}. For a measure of the distribution type, the time values are
+ * the number of values in the distribution at each timestamp.
  */
 public final class FactScanResult implements Iterable<TimeValue> {
   private final String measureName;
   private final List<DimensionValue> dimensionValues;
   private final Iterable<TimeValue> timeValues;
+  private final Map<Long, Distribution> distributions;
 
   public FactScanResult(String measureName, List<DimensionValue> dimensionValues, Iterable<TimeValue> timeValues) {
+    this(measureName, dimensionValues, timeValues, Collections.emptyMap());
+  }
+
+  public FactScanResult(String measureName, List<DimensionValue> dimensionValues, Iterable<TimeValue> timeValues,
+                        Map<Long, Distribution> distributions) {
     this.measureName = measureName;
     this.dimensionValues = dimensionValues;
     this.timeValues = timeValues;
+    this.distributions = distributions;
   }
 
   public String getMeasureName() {
@@ -44,6 +55,13 @@ public final class FactScanResult implements Iterable<TimeValue> {
     return dimensionValues;
   }
 
+  /**
+   * Returns the distributions by timestamp of a measure of the distribution type, or an empty map for other measures.
+   */
+  public Map<Long, Distribution> getDistributions() {
+    return distributions;
+  }
+
   @Override
   public Iterator<TimeValue> iterator() {
     return timeValues.iterator();
@@ -24,9 +24,13 @@ import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.api.metrics.Distribution;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -108,9 +112,12 @@ public final class FactScanner implements Iterator<FactScanResult> {
 
           boolean exhausted = false;
           List<TimeValue> timeValues = Lists.newLinkedList();
+          Map<Long, Distribution> distributions = Collections.emptyMap();
+          DistributionCollector distributionCollector = null;
           // todo: entry set is ordered by ts?
           for (Map.Entry<byte[], byte[]> columnValue : rowResult.getColumns().entrySet()) {
-            long ts = codec.getTimestamp(rowKey, columnValue.getKey());
+            byte[] column = columnValue.getKey();
+            long ts = codec.getTimestamp(rowKey, column);
             if (ts < startTs) {
               continue;
             }
@@ -120,17 +127,33 @@ public final class FactScanner implements Iterator<FactScanResult> {
               break;
             }
 
+            if (codec.isDistributionColumn(column)) {
+              // the buckets of a distribution are in consecutive columns, ordered by bucket
+              if (distributionCollector == null) {
+                distributionCollector = new DistributionCollector();
+              }
+              distributionCollector.add(ts, codec.getDistributionBucket(column), Bytes.toLong(columnValue.getValue()));
+              continue;
+            }
+
             // todo: move Bytes.toLong into codec?
             TimeValue timeValue = new TimeValue(ts, Bytes.toLong(columnValue.getValue()));
             timeValues.add(timeValue);
           }
 
+          if (distributionCollector != null) {
+            distributions = distributionCollector.finish();
+            for (Map.Entry<Long, Distribution> entry : distributions.entrySet()) {
+              timeValues.add(new TimeValue(entry.getKey(), entry.getValue().getCount()));
+            }
+          }
+
           if (timeValues.isEmpty() && exhausted) {
             break;
           }
 
           // todo: can return empty list, if all data is < startTs or > endTs
-          return new FactScanResult(measureName, dimensionValues, timeValues);
+          return new FactScanResult(measureName, dimensionValues, timeValues, distributions);
         }
 
         scanner.close();
@@ -138,4 +161,44 @@ public final class FactScanner implements Iterator<FactScanResult> {
       }
     };
   }
+
+  /**
+   * Collects the distributions of a row from its bucket columns, which are ordered by timestamp and bucket.
+   */
+  private static final class DistributionCollector {
+    private final Map<Long, Distribution> distributions = new LinkedHashMap<>();
+    private long ts = -1;
+    private int[] buckets = new int[16];
+    private long[] counts = new long[16];
+    private int size;
+
+    void add(long ts, int bucket, long count) {
+      if (ts != this.ts) {
+        flush();
+        this.ts = ts;
+      }
+      // a distribution only has non-empty buckets
+      if (count <= 0) {
+        return;
+      }
+      if (size == buckets.length) {
+        buckets = Arrays.copyOf(buckets, size * 2);
+        counts = Arrays.copyOf(counts, size * 2);
+      }
+      buckets[size] = bucket;
+      counts[size++] = count;
+    }
+
+    Map<Long, Distribution> finish() {
+      flush();
+      return distributions;
+    }
+
+    private void flush() {
+      if (size > 0) {
+        distributions.put(ts, new Distribution(Arrays.copyOf(buckets, size), Arrays.copyOf(counts, size)));
+        size = 0;
+      }
+    }
+  }
 }
@@ -27,8 +27,10 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
 import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.api.metrics.Distribution;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
@@ -111,6 +113,9 @@ public final class FactTable implements Closeable {
 
   public void setMetricsCollector(MetricsCollector metrics) {
     this.metrics = metrics;
+    if (timeSeriesTable instanceof MeteredDataset) {
+      ((MeteredDataset) timeSeriesTable).setMetricsCollector(metrics);
+    }
   }
 
   public void add(List<Fact> facts) {
@@ -128,7 +133,17 @@ public final class FactTable implements Closeable {
         byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
         byte[] column = codec.createColumn(fact.getTimestamp());
 
-        if (MeasureType.COUNTER == measurement.getType()) {
+        if (MeasureType.DISTRIBUTION == measurement.getType()) {
+          // distributions are merged by incrementing the counts of their buckets, each stored in its own column
+          Distribution distribution = measurement.getDistribution();
+          if (distribution != null) {
+            int[] buckets = distribution.getBuckets();
+            long[] counts = distribution.getCounts();
+            for (int i = 0; i < buckets.length; i++) {
+              inc(incrementsTable, rowKey, codec.createDistributionColumn(fact.getTimestamp(), buckets[i]), counts[i]);
+            }
+          }
+        } else if (MeasureType.COUNTER == measurement.getType()) {
           if (factCounterCache != null) {
             // round to the resolution timestamp
             long tsToResolution = fact.getTimestamp() / resolution * resolution;
@@ -155,6 +170,8 @@ public final class FactTable implements Closeable {
             inc(incrementsTable, rowKey, column, measurement.getValue());
           }
         } else {
+          // gauges are marked so that roll-up can tell them apart from counters, see DefaultCube#rollUp
+          codec.markGauge(measurement.getName());
           gaugesTable
             .computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
             .put(column, measurement.getValue());
@@ -175,6 +192,41 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Writes the given facts by replacing the stored values instead of adding to them, so that writing the same facts
+   * again has no effect. Distributions replace the counts of their buckets.
+   */
+  public void put(List<Fact> facts) {
+    NavigableMap<byte[], NavigableMap<byte[], Long>> putsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Fact fact : facts) {
+      for (Measurement measurement : fact.getMeasurements()) {
+        byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
+        NavigableMap<byte[], Long> columns = putsTable.computeIfAbsent(rowKey,
+                                                                       k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR));
+        if (MeasureType.DISTRIBUTION == measurement.getType()) {
+          Distribution distribution = measurement.getDistribution();
+          if (distribution != null) {
+            int[] buckets = distribution.getBuckets();
+            long[] counts = distribution.getCounts();
+            for (int i = 0; i < buckets.length; i++) {
+              columns.put(codec.createDistributionColumn(fact.getTimestamp(), buckets[i]), counts[i]);
+            }
+          }
+        } else {
+          if (MeasureType.GAUGE == measurement.getType()) {
+            codec.markGauge(measurement.getName());
+          }
+          columns.put(codec.createColumn(fact.getTimestamp()), measurement.getValue());
+        }
+      }
+    }
+
+    timeSeriesTable.put(putsTable);
+    if (metrics != null) {
+      metrics.increment(putCountMetric, putsTable.size());
+    }
+  }
+
   private class MeasureNameComparator implements Comparator<String> {
     private final Map<String, Long> measureNameToEntityIdMap;
 
@@ -188,6 +240,13 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Returns {@code true} if the given measure has been added to a fact table as a gauge.
+   */
+  public boolean isGauge(String measureName) {
+    return codec.isGauge(measureName);
+  }
+
   public FactScanner scan(FactScan scan) {
     return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
   }
@@ -439,6 +498,13 @@ public final class FactTable implements Closeable {
     return measureNames;
   }
 
+  /**
+   * Writes the increments that are buffered by the underlying {@link MetricsTable}, if any.
+   */
+  public void flush() {
+    timeSeriesTable.flush();
+  }
+
   @Override
   public void close() throws IOException {
     timeSeriesTable.close();
@@ -34,10 +34,12 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import org.apache.twill.common.Threads;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Collects LevelDB-based dataset's metrics from levelDB.
@@ -50,6 +52,8 @@ public class LevelDBDatasetMetricsReporter extends AbstractScheduledService impl
   private final MetricsCollectionService metricsService;
   private final LevelDBTableService ldbService;
   private final DatasetFramework dsFramework;
+  // the stats of the previous report, for reporting the increase of the row filter counters
+  private final Map<TableId, LevelDBTableService.TableStats> previousStats = new HashMap<>();
   private ScheduledExecutorService executor;
 
   @Inject
@@ -96,11 +100,15 @@ public class LevelDBDatasetMetricsReporter extends AbstractScheduledService impl
   private void report(Map<TableId, LevelDBTableService.TableStats> datasetStat) throws DatasetManagementException {
     for (Map.Entry<TableId, LevelDBTableService.TableStats> statEntry : datasetStat.entrySet()) {
       String namespace = statEntry.getKey().getNamespace();
-      // emit metrics for only user datasets, tables in system namespace are ignored
+      String tableName = statEntry.getKey().getTableName();
+      LevelDBTableService.TableStats previous = previousStats.put(statEntry.getKey(), statEntry.getValue());
+      // emit only row filter metrics for tables in system namespace, as they are not datasets of users
       if (NamespaceId.SYSTEM.getNamespace().equals(namespace)) {
+        reportRowFilter(metricsService.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, namespace,
+                                                                  Constants.Metrics.Tag.TABLE, tableName)),
+                        statEntry.getValue(), previous);
         continue;
       }
-      String tableName = statEntry.getKey().getTableName();
 
       Collection<DatasetSpecificationSummary> instances = dsFramework.getInstances(new NamespaceId(namespace));
       for (DatasetSpecificationSummary spec : instances) {
@@ -111,10 +119,25 @@ public class LevelDBDatasetMetricsReporter extends AbstractScheduledService impl
                                                       Constants.Metrics.Tag.DATASET, spec.getName()));
           int sizeInMb = (int) (statEntry.getValue().getDiskSizeBytes() / BYTES_IN_MB);
           collector.gauge("dataset.size.mb", sizeInMb);
+          reportRowFilter(collector, statEntry.getValue(), previous);
           break;
         }
       }
     }
   }
 
+  private void reportRowFilter(MetricsContext collector, LevelDBTableService.TableStats stats,
+                               @Nullable LevelDBTableService.TableStats previous) {
+    // the counters restart from zero when a table is reopened
+    if (previous == null || stats.getRowFilterLookups() < previous.getRowFilterLookups()) {
+      previous = new LevelDBTableService.TableStats(0L);
+    }
+    collector.increment("dataset.leveldb.row.filter.lookups",
+                        stats.getRowFilterLookups() - previous.getRowFilterLookups());
+    collector.increment("dataset.leveldb.row.filter.negatives",
+                        stats.getRowFilterNegatives() - previous.getRowFilterNegatives());
+    collector.increment("dataset.leveldb.row.filter.false.positives",
+                        stats.getRowFilterFalsePositives() - previous.getRowFilterFalsePositives());
+  }
+
 }
@@ -29,8 +29,10 @@ import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
 import io.cdap.cdap.api.dataset.lib.cube.Interpolator;
 import io.cdap.cdap.api.dataset.lib.cube.Interpolators;
 import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
 import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.Distribution;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -256,6 +258,51 @@ public abstract class AbstractCubeTest {
 
   }
 
+  @Test
+  public void testDistributions() throws Exception {
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1"));
+    Aggregation agg2 = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+
+    int res1 = 1;
+    int res100 = 100;
+    Cube cube = getCube("myDistributionCube", new int[] {res1, res100},
+                        ImmutableMap.of("agg1", agg1, "agg2", agg2));
+
+    // write some data, with values small enough to have a bucket each
+    writeDistribution(cube, "metric1", 1, Distribution.of(1, 2, 3, 4), "1", "1");
+    writeDistribution(cube, "metric1", 1, Distribution.of(5, 6, 7, 8, 9, 10), "1", "2");
+    writeDistribution(cube, "metric1", 1, Distribution.of(15), "2", "1");
+    writeDistribution(cube, "metric1", 10, Distribution.of(11), "1", "1");
+    writeDistribution(cube, "metric1", 101, Distribution.of(12, 13), "1", "1");
+
+    // now let's query! distributions are merged across dimension values and resolutions
+    verifyCountQuery(cube, "agg1", 0, 150, res1, "metric1", AggregationFunction.P50,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(
+                       new TimeSeries("metric1", new HashMap<String, String>(), timeValues(1, 5, 10, 11, 101, 12))));
+
+    verifyCountQuery(cube, "agg1", 0, 150, res1, "metric1", AggregationFunction.P99,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(
+                       new TimeSeries("metric1", new HashMap<String, String>(), timeValues(1, 10, 10, 11, 101, 13))));
+
+    verifyCountQuery(cube, "agg1", 0, 150, res100, "metric1", AggregationFunction.P50,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(
+                       new TimeSeries("metric1", new HashMap<String, String>(), timeValues(0, 6, 100, 12))));
+
+    verifyCountQuery(cube, "agg2", 0, 150, res1, "metric1", AggregationFunction.P50,
+                     ImmutableMap.of("dim1", "1", "dim2", "1"), new ArrayList<String>(),
+                     ImmutableList.of(
+                       new TimeSeries("metric1", new HashMap<String, String>(), timeValues(1, 2, 10, 11, 101, 12))));
+
+    // other functions aggregate the number of values
+    verifyCountQuery(cube, "agg1", 0, 150, res1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(
+                       new TimeSeries("metric1", new HashMap<String, String>(), timeValues(1, 10, 10, 1, 101, 2))));
+  }
+
   @Test
   public void testInterpolate() throws Exception {
     Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1", "dim2", "dim3"),
@@ -585,6 +632,13 @@ public abstract class AbstractCubeTest {
     cube.add(getFact(mearsureName, ts, value, MeasureType.GAUGE, dims));
   }
 
+  protected void writeDistribution(Cube cube, String measureName, long ts, Distribution distribution,
+                                   String... dims) throws Exception {
+    cube.add(new CubeFact(ts)
+               .addDimensionValues(dimValuesByValues(dims))
+               .addMeasurement(new Measurement(measureName, distribution)));
+  }
+
   private void writeIncViaBatchWritable(Cube cube, String measureName, long ts,
                                         long value, String... dims) throws Exception {
     // null for key: it is ignored
@@ -16,14 +16,21 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.metrics.Distribution;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -45,4 +52,68 @@ public class DefaultCubeTest extends AbstractCubeTest {
 
     return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
+
+  @Test
+  public void testRollUp() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+
+    int res1 = 1;
+    int res100 = 100;
+    int res1000 = 1000;
+    DefaultCube cube = (DefaultCube) getCube("myRollUpCube", new int[] {res1, res100, res1000},
+                                             ImmutableMap.of("agg", agg));
+    // facts before the timestamp 500 are too old to be rolled up
+    long currentTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    cube.startRollUp(currentTime - 500);
+
+    // facts too old to be rolled up are written to all resolutions, other facts only to the finest resolution
+    writeInc(cube, "metric1", 50, 1, "1", "1");
+    writeInc(cube, "metric1", 1101, 2, "1", "1");
+    writeInc(cube, "metric1", 1150, 3, "1", "1");
+    writeInc(cube, "metric1", 1250, 6, "1", "1");
+    writeGauge(cube, "metric2", 1110, 4, "1", "1");
+    writeGauge(cube, "metric2", 1120, 5, "1", "1");
+    writeDistribution(cube, "metric3", 1130, Distribution.of(1, 2, 3), "1", "1");
+    writeDistribution(cube, "metric3", 1140, Distribution.of(4, 5), "1", "1");
+
+    verifyCountQuery(cube, 0, 2000, res1, "metric1", AggregationFunction.SUM,
+                     Collections.emptyMap(), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", Collections.emptyMap(),
+                                                     timeValues(50, 1, 1101, 2, 1150, 3, 1250, 6))));
+    verifyCountQuery(cube, 0, 2000, res100, "metric1", AggregationFunction.SUM,
+                     Collections.emptyMap(), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", Collections.emptyMap(), timeValues(0, 1))));
+
+    // counters are summed up, gauges take their latest value and distributions are merged, also when rolling up the
+    // same time range again
+    for (int i = 0; i < 2; i++) {
+      cube.rollUp(1100, 1200);
+      verifyCountQuery(cube, 0, 2000, res100, "metric1", AggregationFunction.SUM,
+                       Collections.emptyMap(), Collections.emptyList(),
+                       ImmutableList.of(new TimeSeries("metric1", Collections.emptyMap(),
+                                                       timeValues(0, 1, 1100, 5))));
+      verifyCountQuery(cube, 0, 2000, res1000, "metric1", AggregationFunction.SUM,
+                       Collections.emptyMap(), Collections.emptyList(),
+                       ImmutableList.of(new TimeSeries("metric1", Collections.emptyMap(),
+                                                       timeValues(0, 1, 1000, 5))));
+      verifyCountQuery(cube, 0, 2000, res100, "metric2", AggregationFunction.LATEST,
+                       Collections.emptyMap(), Collections.emptyList(),
+                       ImmutableList.of(new TimeSeries("metric2", Collections.emptyMap(), timeValues(1100, 5))));
+      verifyCountQuery(cube, 0, 2000, res1000, "metric3", AggregationFunction.P50,
+                       Collections.emptyMap(), Collections.emptyList(),
+                       ImmutableList.of(new TimeSeries("metric3", Collections.emptyMap(), timeValues(1000, 3))));
+    }
+
+    // a late fact is rolled up with the time buckets it falls into
+    writeInc(cube, "metric1", 1199, 7, "1", "1");
+    cube.rollUp(1199, 1300);
+    verifyCountQuery(cube, 0, 2000, res100, "metric1", AggregationFunction.SUM,
+                     Collections.emptyMap(), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", Collections.emptyMap(),
+                                                     timeValues(0, 1, 1100, 12, 1200, 6))));
+    verifyCountQuery(cube, 0, 2000, res1000, "metric1", AggregationFunction.SUM,
+                     Collections.emptyMap(), Collections.emptyList(),
+                     ImmutableList.of(new TimeSeries("metric1", Collections.emptyMap(),
+                                                     timeValues(0, 1, 1000, 18))));
+  }
 }
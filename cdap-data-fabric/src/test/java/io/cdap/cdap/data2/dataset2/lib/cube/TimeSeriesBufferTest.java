@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.Interpolators;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link TimeSeriesBuffer} and {@link TimeSeriesInterpolator}.
+ */
+public class TimeSeriesBufferTest {
+
+  @Test
+  public void testAggregate() {
+    Random random = new Random(0);
+    for (AggregationFunction function : ImmutableList.of(AggregationFunction.SUM, AggregationFunction.MAX,
+                                                         AggregationFunction.MIN, AggregationFunction.LATEST)) {
+      TimeSeriesBuffer timeSeries = new TimeSeriesBuffer();
+      TreeMap<Long, Long> expected = new TreeMap<>();
+      for (int i = 0; i < 1000; i++) {
+        long timestamp = random.nextInt(100);
+        long value = random.nextInt(1000);
+        timeSeries.add(timestamp, value);
+        Long current = expected.get(timestamp);
+        if (current == null || function == AggregationFunction.LATEST) {
+          expected.put(timestamp, value);
+        } else if (function == AggregationFunction.SUM) {
+          expected.put(timestamp, current + value);
+        } else if (function == AggregationFunction.MAX) {
+          expected.put(timestamp, Math.max(current, value));
+        } else {
+          expected.put(timestamp, Math.min(current, value));
+        }
+      }
+      timeSeries.aggregate(function);
+
+      List<TimeValue> expectedTimeValues = new ArrayList<>();
+      expected.forEach((timestamp, value) -> expectedTimeValues.add(new TimeValue(timestamp, value)));
+      Assert.assertEquals(expectedTimeValues, timeSeries.asList());
+    }
+  }
+
+  @Test
+  public void testInterpolate() {
+    TimeSeriesBuffer timeSeries = new TimeSeriesBuffer();
+    timeSeries.add(15, 3);
+    timeSeries.add(5, 5);
+    timeSeries.aggregate(AggregationFunction.SUM);
+
+    new TimeSeriesInterpolator(new Interpolators.Step(), 2).interpolate(timeSeries, 100);
+    Assert.assertEquals(ImmutableList.of(new TimeValue(5, 5), new TimeValue(7, 5), new TimeValue(9, 5),
+                                         new TimeValue(11, 5), new TimeValue(13, 5), new TimeValue(15, 3)),
+                        timeSeries.asList());
+
+    // only the first data points are kept
+    new TimeSeriesInterpolator(new Interpolators.Step(), 1).interpolate(timeSeries, 3);
+    Assert.assertEquals(ImmutableList.of(new TimeValue(5, 5), new TimeValue(6, 5), new TimeValue(7, 5)),
+                        timeSeries.asList());
+
+    new TimeSeriesInterpolator(null, 1).interpolate(timeSeries, 2);
+    Assert.assertEquals(ImmutableList.of(new TimeValue(5, 5), new TimeValue(6, 5)), timeSeries.asList());
+  }
+}
@@ -497,6 +497,55 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testOffHeapWriteBuffer() throws Exception {
+    // No direct memory for the write buffer, so that all the changes get spilled to a file
+    DatasetProperties props = TableProperties.builder()
+      .setReadlessIncrementSupport(isReadlessIncrementSupported())
+      .add(BufferingTable.WRITE_BUFFER_OFF_HEAP_SIZE, "0")
+      .build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE, props);
+    admin.create();
+    try (BufferingTable table = getTable(CONTEXT1, MY_TABLE, props)) {
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      table.put(R1, a(C1, C2), lb(1, 2));
+      table.put(R2, a(C1, C2), lb(3, 4));
+      table.increment(R1, a(C1), new long[] {10L});
+      table.delete(R2, a(C2));
+      table.put(R3, C1, L1);
+
+      // buffered changes should be visible to gets and scans
+      TableAssert.assertRow(table.get(R1), R1, a(C1, C2), lb(11, 2));
+      TableAssert.assertRow(table.get(R2), R2, a(C1), lb(3));
+      TableAssert.assertScan(a(R1, R2), aa(a(C1, Bytes.toBytes(11L), C2, Bytes.toBytes(2L)),
+                                           a(C1, Bytes.toBytes(3L))),
+                             table.scan(R1, R3));
+
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+
+      // changes should be persisted, and the buffer reused by the next transaction
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      TableAssert.assertRow(table.get(R1), R1, a(C1, C2), lb(11, 2));
+      TableAssert.assertRow(table.get(R2), R2, a(C1), lb(3));
+      TableAssert.assertRow(table.get(R3), R3, a(C1), lb(1));
+      table.put(R3, C1, L2);
+      TableAssert.assertRow(table.get(R3), R3, a(C1), lb(2));
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx2);
+
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      TableAssert.assertRow(table.get(R3), R3, a(C1), lb(1));
+    } finally {
+      admin.drop();
+    }
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+
+/**
+ * Unit test for {@link OffHeapWriteBuffer}.
+ */
+public class OffHeapWriteBufferTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSameAsOnHeap() throws Exception {
+    File spillDir = TEMP_FOLDER.newFolder();
+    Random random = new Random(0);
+    WriteBuffer expected = new OnHeapWriteBuffer();
+    // Small memory limit so that changes get spilled to a file
+    OffHeapWriteBuffer actual = new OffHeapWriteBuffer(16 * 1024, 4 * 1024, spillDir);
+    try {
+      // Run a few rounds to verify the buffer is reusable after clear
+      for (int round = 0; round < 3; round++) {
+        for (int i = 0; i < 5000; i++) {
+          byte[] row = Bytes.toBytes("r" + random.nextInt(200));
+          byte[][] columns = new byte[][] { Bytes.toBytes("c" + random.nextInt(10)) };
+          switch (random.nextInt(4)) {
+            case 0:
+              long[] amounts = new long[] { random.nextInt(100) };
+              boolean expectedFailed = false;
+              boolean actualFailed = false;
+              try {
+                expected.increment(row, columns, amounts);
+              } catch (NumberFormatException e) {
+                expectedFailed = true;
+              }
+              try {
+                actual.increment(row, columns, amounts);
+              } catch (NumberFormatException e) {
+                actualFailed = true;
+              }
+              Assert.assertEquals(expectedFailed, actualFailed);
+              break;
+            case 1:
+              byte[][] deletes = new byte[1][];
+              expected.put(row, columns, deletes);
+              actual.put(row, columns, deletes);
+              break;
+            default:
+              // Mix values that can be incremented with large values that don't fit in a chunk
+              byte[] value = random.nextBoolean() ? Bytes.toBytes((long) i) : new byte[random.nextInt(8 * 1024)];
+              byte[][] values = new byte[][] { value };
+              expected.put(row, columns, values);
+              actual.put(row, columns, values);
+              // Changes of the passed arrays should not affect the buffer
+              row[0]++;
+              columns[0][0]++;
+          }
+        }
+
+        Assert.assertTrue(actual.isSpilled());
+        assertSameRows(expected.scan(null, null), actual.scan(null, null));
+        assertSameRows(expected.scan(Bytes.toBytes("r1"), Bytes.toBytes("r5")),
+                       actual.scan(Bytes.toBytes("r1"), Bytes.toBytes("r5")));
+        for (int i = 0; i < 250; i++) {
+          byte[] row = Bytes.toBytes("r" + i);
+          assertSameColumns(expected.getRow(row), actual.getRow(row));
+        }
+
+        int rows = 0;
+        for (NavigableMap<byte[], NavigableMap<byte[], Update>> batch : actual.batches()) {
+          rows += batch.size();
+        }
+        Assert.assertEquals(200, rows);
+
+        expected.clear();
+        actual.clear();
+        Assert.assertTrue(actual.isEmpty());
+        Assert.assertFalse(actual.isSpilled());
+        Assert.assertFalse(actual.scan(null, null).hasNext());
+      }
+    } finally {
+      actual.close();
+    }
+
+    // The spill file should be removed
+    String[] files = spillDir.list();
+    Assert.assertNotNull(files);
+    Assert.assertEquals(0, files.length);
+  }
+
+  @Test
+  public void testModifyWhileScanning() throws Exception {
+    try (OffHeapWriteBuffer buffer = new OffHeapWriteBuffer(1024 * 1024, 1024, TEMP_FOLDER.newFolder())) {
+      for (int i = 0; i < 5; i++) {
+        buffer.put(Bytes.toBytes(i), new byte[][] { Bytes.toBytes("c") }, new byte[][] { Bytes.toBytes(i) });
+      }
+
+      // Insert rows after the rows being scanned, which should be seen by the scan
+      Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> iterator = buffer.scan(null, null);
+      int expected = 0;
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], NavigableMap<byte[], Update>> entry = iterator.next();
+        Assert.assertEquals(expected, Bytes.toInt(entry.getKey()));
+        if (expected < 5) {
+          buffer.put(Bytes.toBytes(expected + 5), new byte[][] { Bytes.toBytes("c") },
+                     new byte[][] { Bytes.toBytes(expected + 5) });
+        }
+        expected++;
+      }
+      Assert.assertEquals(10, expected);
+    }
+  }
+
+  @Test
+  public void testSharedChunkPool() throws Exception {
+    File spillDir = TEMP_FOLDER.newFolder();
+    OffHeapWriteBuffer.ChunkPool chunkPool = new OffHeapWriteBuffer.ChunkPool(8 * 1024, 1024);
+    OffHeapWriteBuffer buffer1 = new OffHeapWriteBuffer(chunkPool, spillDir);
+    OffHeapWriteBuffer buffer2 = new OffHeapWriteBuffer(chunkPool, spillDir);
+
+    // Chunks larger than the regular size are freed when released, while regular ones are kept for reuse
+    buffer1.put(Bytes.toBytes(0), new byte[][] { Bytes.toBytes("c") }, new byte[][] { new byte[2048] });
+    Assert.assertTrue(chunkPool.getAllocatedMemory() > 2048);
+    buffer1.clear();
+    Assert.assertEquals(1024, chunkPool.getAllocatedMemory());
+
+    // Fill up the first buffer, which uses up all the memory of the pool
+    byte[] value = new byte[100];
+    for (int i = 0; i < 200; i++) {
+      buffer1.put(Bytes.toBytes(i), new byte[][] { Bytes.toBytes("c") }, new byte[][] { value });
+    }
+    Assert.assertTrue(buffer1.isSpilled());
+    Assert.assertEquals(8 * 1024, chunkPool.getAllocatedMemory());
+
+    // The second buffer has to spill since the memory is shared
+    buffer2.put(Bytes.toBytes(0), new byte[][] { Bytes.toBytes("c") }, new byte[][] { value });
+    Assert.assertTrue(buffer2.isSpilled());
+
+    // Clearing a buffer returns the memory to the pool, unmaps and deletes the spill file
+    buffer1.clear();
+    buffer2.clear();
+    Assert.assertFalse(buffer1.isSpilled());
+    String[] files = spillDir.list();
+    Assert.assertNotNull(files);
+    Assert.assertEquals(0, files.length);
+
+    // The memory is reused without allocating more
+    buffer2.put(Bytes.toBytes(0), new byte[][] { Bytes.toBytes("c") }, new byte[][] { value });
+    Assert.assertFalse(buffer2.isSpilled());
+    Assert.assertEquals(8 * 1024, chunkPool.getAllocatedMemory());
+
+    buffer1.close();
+    buffer2.close();
+    chunkPool.close();
+    Assert.assertEquals(0L, chunkPool.getAllocatedMemory());
+  }
+
+  private void assertSameRows(Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> expected,
+                              Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> actual) {
+    while (expected.hasNext()) {
+      Assert.assertTrue(actual.hasNext());
+      Map.Entry<byte[], NavigableMap<byte[], Update>> expectedRow = expected.next();
+      Map.Entry<byte[], NavigableMap<byte[], Update>> actualRow = actual.next();
+      Assert.assertArrayEquals(expectedRow.getKey(), actualRow.getKey());
+      assertSameColumns(expectedRow.getValue(), actualRow.getValue());
+    }
+    Assert.assertFalse(actual.hasNext());
+  }
+
+  private void assertSameColumns(NavigableMap<byte[], Update> expected, NavigableMap<byte[], Update> actual) {
+    if (expected == null) {
+      Assert.assertNull(actual);
+      return;
+    }
+    Assert.assertNotNull(actual);
+    Assert.assertEquals(expected.size(), actual.size());
+    Iterator<Map.Entry<byte[], Update>> actualIterator = actual.entrySet().iterator();
+    for (Map.Entry<byte[], Update> expectedColumn : expected.entrySet()) {
+      Map.Entry<byte[], Update> actualColumn = actualIterator.next();
+      Assert.assertArrayEquals(expectedColumn.getKey(), actualColumn.getKey());
+      Assert.assertEquals(expectedColumn.getValue().getClass(), actualColumn.getValue().getClass());
+      if (expectedColumn.getValue() instanceof IncrementValue) {
+        Assert.assertEquals(expectedColumn.getValue().getValue(), actualColumn.getValue().getValue());
+      } else {
+        Assert.assertArrayEquals((byte[]) expectedColumn.getValue().getValue(),
+                                 (byte[]) actualColumn.getValue().getValue());
+      }
+    }
+  }
+}
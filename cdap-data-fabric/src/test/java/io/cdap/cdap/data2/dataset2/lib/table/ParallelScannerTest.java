@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for {@link ParallelScanner}.
+ */
+public class ParallelScannerTest {
+
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void init() {
+    executor = ParallelScanner.createExecutor(4, "parallel-scanner-test-%d");
+  }
+
+  @AfterClass
+  public static void finish() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testRowsInRangeOrder() {
+    // ranges of different sizes, including empty ones
+    List<Callable<Scanner>> ranges = new ArrayList<>();
+    int row = 0;
+    for (int i = 0; i < 10; i++) {
+      List<Row> rows = new ArrayList<>();
+      for (int j = 0; j < i * 7 % 5 * 10; j++) {
+        rows.add(new Result(Bytes.toBytes(row++), Collections.singletonMap(Bytes.toBytes("c"), Bytes.toBytes(i))));
+      }
+      ranges.add(() -> new ListScanner(rows));
+    }
+
+    try (Scanner scanner = new ParallelScanner(ranges, executor, 3, 4)) {
+      int expected = 0;
+      Row next;
+      while ((next = scanner.next()) != null) {
+        Assert.assertEquals(expected++, Bytes.toInt(next.getRow()));
+      }
+      Assert.assertEquals(row, expected);
+      // the scanner stays exhausted
+      Assert.assertNull(scanner.next());
+    }
+  }
+
+  @Test
+  public void testFailure() {
+    List<Callable<Scanner>> ranges = new ArrayList<>();
+    ranges.add(() -> new ListScanner(Collections.singletonList(
+      new Result(Bytes.toBytes(0), Collections.singletonMap(Bytes.toBytes("c"), Bytes.toBytes(0))))));
+    ranges.add(() -> {
+      throw new IllegalStateException("failed to open scanner");
+    });
+
+    try (Scanner scanner = new ParallelScanner(ranges, executor, 2, 10)) {
+      Assert.assertNotNull(scanner.next());
+      try {
+        scanner.next();
+        Assert.fail("Expected the failure of the second range");
+      } catch (DataSetException e) {
+        Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+    }
+  }
+
+  @Test
+  public void testCloseBeforeExhausted() throws Exception {
+    AtomicInteger closed = new AtomicInteger();
+    CountDownLatch opened = new CountDownLatch(2);
+    List<Callable<Scanner>> ranges = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      ranges.add(() -> {
+        opened.countDown();
+        // a scanner with endless rows, which blocks the range scan on the full buffer
+        return new Scanner() {
+          @Override
+          public Row next() {
+            return new Result(Bytes.toBytes(0), Collections.singletonMap(Bytes.toBytes("c"), Bytes.toBytes(0)));
+          }
+
+          @Override
+          public void close() {
+            closed.incrementAndGet();
+          }
+        };
+      });
+    }
+
+    Scanner scanner = new ParallelScanner(ranges, executor, 2, 10);
+    Assert.assertNotNull(scanner.next());
+    Assert.assertTrue(opened.await(10, TimeUnit.SECONDS));
+    scanner.close();
+
+    // only the ranges being scanned are opened, and they should be closed
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (closed.get() < 2 && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assert.assertEquals(2, closed.get());
+  }
+
+  @Test
+  public void testScanWithBusyExecutor() throws Exception {
+    // an executor with a single thread, which is kept busy by another scan
+    ExecutorService executor = ParallelScanner.createExecutor(1, "parallel-scanner-busy-%d");
+    try {
+      CountDownLatch blocked = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      executor.submit(() -> {
+        blocked.countDown();
+        release.await();
+        return null;
+      });
+      Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+      List<Callable<Scanner>> ranges = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        Row row = new Result(Bytes.toBytes(i), Collections.singletonMap(Bytes.toBytes("c"), Bytes.toBytes(i)));
+        ranges.add(() -> new ListScanner(Collections.singletonList(row)));
+      }
+
+      // the ranges are scanned by the calling thread since the executor has no idle thread
+      try (Scanner scanner = new ParallelScanner(ranges, executor, 3, 10)) {
+        for (int i = 0; i < 3; i++) {
+          Assert.assertEquals(i, Bytes.toInt(scanner.next().getRow()));
+        }
+        Assert.assertNull(scanner.next());
+      }
+      release.countDown();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static final class ListScanner implements Scanner {
+
+    private final Iterator<Row> rows;
+
+    ListScanner(List<Row> rows) {
+      this.rows = rows.iterator();
+    }
+
+    @Override
+    public Row next() {
+      return rows.hasNext() ? rows.next() : null;
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Unit test for {@link SplitsUtil}.
+ */
+public class SplitsUtilTest {
+
+  private static final byte[][] REGION_START_KEYS = new byte[][] {
+    new byte[0], Bytes.toBytes("b"), Bytes.toBytes("d"), Bytes.toBytes("f"), Bytes.toBytes("h")
+  };
+
+  @Test
+  public void testRegionSplits() {
+    // one split per region
+    Assert.assertEquals(Arrays.asList(range(null, "b"), range("b", "d"), range("d", "f"), range("f", "h"),
+                                      range("h", null)),
+                        SplitsUtil.regionGetSplits(0, null, null, REGION_START_KEYS));
+
+    // splits are clipped to the range
+    Assert.assertEquals(Arrays.asList(range("c", "d"), range("d", "f"), range("f", "g")),
+                        SplitsUtil.regionGetSplits(0, Bytes.toBytes("c"), Bytes.toBytes("g"), REGION_START_KEYS));
+    Assert.assertEquals(Arrays.asList(range("d", "f")),
+                        SplitsUtil.regionGetSplits(0, Bytes.toBytes("d"), Bytes.toBytes("f"), REGION_START_KEYS));
+
+    // regions are grouped to the requested number of splits
+    Assert.assertEquals(Arrays.asList(range(null, "b"), range("b", "f"), range("f", null)),
+                        SplitsUtil.regionGetSplits(3, null, null, REGION_START_KEYS));
+    Assert.assertEquals(Arrays.asList(range(null, null)),
+                        SplitsUtil.regionGetSplits(1, null, null, REGION_START_KEYS));
+    Assert.assertEquals(5, SplitsUtil.regionGetSplits(10, null, null, REGION_START_KEYS).size());
+
+    // single region table and empty range
+    Assert.assertEquals(Arrays.asList(range("a", "z")),
+                        SplitsUtil.regionGetSplits(0, Bytes.toBytes("a"), Bytes.toBytes("z"), new byte[][] { {} }));
+    Assert.assertTrue(SplitsUtil.regionGetSplits(0, Bytes.toBytes("z"), Bytes.toBytes("a"), REGION_START_KEYS)
+                        .isEmpty());
+  }
+
+  private static KeyRange range(String start, String stop) {
+    return new KeyRange(start == null ? null : Bytes.toBytes(start), stop == null ? null : Bytes.toBytes(stop));
+  }
+}
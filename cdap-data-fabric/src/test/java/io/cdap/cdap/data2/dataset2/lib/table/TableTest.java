@@ -26,8 +26,11 @@ import io.cdap.cdap.api.dataset.DatasetAdmin;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetProperties;
 import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
+import io.cdap.cdap.api.dataset.table.ColumnPrefixFilter;
+import io.cdap.cdap.api.dataset.table.ColumnValueFilter;
 import io.cdap.cdap.api.dataset.table.ConflictDetection;
 import io.cdap.cdap.api.dataset.table.Delete;
+import io.cdap.cdap.api.dataset.table.FilterList;
 import io.cdap.cdap.api.dataset.table.Get;
 import io.cdap.cdap.api.dataset.table.Increment;
 import io.cdap.cdap.api.dataset.table.Put;
@@ -1213,6 +1216,25 @@ public abstract class TableTest<T extends Table> {
           Assert.assertArrayEquals(V2, val2);
         }
       }
+
+      // retrieve rows in unsorted order, with duplicate and missing rows
+      Transaction tx5 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx5);
+      gets = ImmutableList.of(new Get("r99").add(C2), new Get("x"), new Get("r5"), new Get("r5").add(C1),
+                              new Get("r10").add(C1, C2), new Get("a"));
+      results = table.get(gets);
+      txClient.commitOrThrow(tx5);
+      Assert.assertEquals(1, results.get(0).getColumns().size());
+      Assert.assertArrayEquals(V2, results.get(0).get(C2));
+      Assert.assertTrue(results.get(1).isEmpty());
+      Assert.assertEquals(2, results.get(2).getColumns().size());
+      Assert.assertArrayEquals(V1, results.get(2).get(C1));
+      Assert.assertArrayEquals(V2, results.get(2).get(C2));
+      Assert.assertEquals(1, results.get(3).getColumns().size());
+      Assert.assertArrayEquals(V1, results.get(3).get(C1));
+      Assert.assertEquals(2, results.get(4).getColumns().size());
+      Assert.assertArrayEquals(Bytes.toBytes("r10"), results.get(4).getRow());
+      Assert.assertTrue(results.get(5).isEmpty());
     } finally {
       admin.drop();
     }
@@ -1340,6 +1362,99 @@ public abstract class TableTest<T extends Table> {
     Assert.assertEquals(9, count);
   }
 
+  @Test
+  public void testScanWithColumnFiltersAndLimit() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try (Table table = getTable(CONTEXT1, MY_TABLE)) {
+      Transaction tx1 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx1);
+
+      for (int i = 0; i < 10; i++) {
+        table.put(new Put("r" + i).add("a:x", Bytes.toBytes(i)).add("a:y", V1).add("b", V2));
+      }
+
+      // check that filters work against data written in same tx
+      verifyScanWithColumnFilters(table, 5,
+                                  ImmutableList.of("r5", "r6", "r7", "r8", "r9"));
+
+      txClient.canCommitOrThrow(tx1, ((TransactionAware) table).getTxChanges());
+      Assert.assertTrue(((TransactionAware) table).commitTx());
+      txClient.commitOrThrow(tx1);
+      ((TransactionAware) table).postTxCommit();
+
+      // verify against persisted data
+      Transaction tx2 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx2);
+      verifyScanWithColumnFilters(table, 5,
+                                  ImmutableList.of("r5", "r6", "r7", "r8", "r9"));
+
+      // verify against persisted data merged with changes of the tx, which change the rows that pass the filter
+      table.put(new Put("r1").add("a:x", Bytes.toBytes(7)));
+      table.delete(new Delete("r6", "a:x"));
+      table.put(new Put("r8").add("a:x", Bytes.toBytes(0)));
+      table.put(new Put("r91").add("a:x", Bytes.toBytes(9)));
+      verifyScanWithColumnFilters(table, 7,
+                                  ImmutableList.of("r1", "r5", "r7", "r9", "r91"));
+    } finally {
+      admin.drop();
+    }
+  }
+
+  /**
+   * Verifies scans that select the rows with column "a:x" >= 5.
+   */
+  private static void verifyScanWithColumnFilters(Table table, int firstValue, List<String> expectedRows) {
+    ColumnValueFilter valueFilter =
+      new ColumnValueFilter(Bytes.toBytes("a:x"), ColumnValueFilter.CompareOp.GREATER_OR_EQUAL, Bytes.toBytes(5));
+
+    // value filter and column prefix filter
+    List<Row> rows = scanAll(table, new Scan(null, null, new FilterList(valueFilter, new ColumnPrefixFilter("a:"))));
+    Assert.assertEquals(expectedRows, getRowKeys(rows));
+    Assert.assertArrayEquals(Bytes.toBytes(firstValue), rows.get(0).get("a:x"));
+    Assert.assertNull(rows.get(0).get("b"));
+
+    // value filter with projection on a column not used by the filter
+    rows = scanAll(table, new Scan(null, null, valueFilter).setColumns(Bytes.toBytes("b")));
+    List<String> rowsWithB = new ArrayList<>();
+    for (String row : expectedRows) {
+      if (!row.equals("r91")) {
+        rowsWithB.add(row);
+      }
+    }
+    Assert.assertEquals(rowsWithB, getRowKeys(rows));
+    for (Row row : rows) {
+      Assert.assertEquals(1, row.getColumns().size());
+      Assert.assertArrayEquals(V2, row.get("b"));
+    }
+
+    // limit with and without filter
+    rows = scanAll(table, new Scan(null, null, valueFilter).setLimit(2));
+    Assert.assertEquals(expectedRows.subList(0, 2), getRowKeys(rows));
+    rows = scanAll(table, new Scan(Bytes.toBytes("r3"), null).setLimit(3));
+    Assert.assertEquals(3, rows.size());
+    Assert.assertEquals("r3", Bytes.toString(rows.get(0).getRow()));
+  }
+
+  private static List<Row> scanAll(Table table, Scan scan) {
+    List<Row> rows = new ArrayList<>();
+    try (Scanner scanner = table.scan(scan)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        rows.add(row);
+      }
+    }
+    return rows;
+  }
+
+  private static List<String> getRowKeys(List<Row> rows) {
+    List<String> keys = new ArrayList<>();
+    for (Row row : rows) {
+      keys.add(Bytes.toString(row.getRow()));
+    }
+    return keys;
+  }
+
   private static int countRows(Table table) throws Exception {
     Scanner scanner = table.scan(null, null);
     int count = 0;
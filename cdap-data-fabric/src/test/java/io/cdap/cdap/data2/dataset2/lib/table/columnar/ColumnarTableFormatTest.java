@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.columnar;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Result;
+import io.cdap.cdap.api.dataset.table.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link ColumnarTableWriter} and {@link ColumnarTableReader}.
+ */
+public class ColumnarTableFormatTest {
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      // Sparse columns, so that blocks have columns that are missing in some rows
+      for (int c = 0; c < 5; c++) {
+        if ((i + c) % (c + 1) == 0) {
+          columns.put(Bytes.toBytes("c" + c), Bytes.toBytes(i * 10 + c));
+        }
+      }
+      rows.add(new Result(Bytes.toBytes(String.format("r%04d", i)), columns));
+    }
+
+    // Small blocks, bounded by both the number of rows and the size
+    byte[] file = write(rows, 7, 100);
+    assertRows(rows, read(file, null));
+    assertRows(rows, read(write(rows, ColumnarTableWriter.DEFAULT_BLOCK_ROWS,
+                                ColumnarTableWriter.DEFAULT_BLOCK_SIZE), null));
+
+    // Read with projection, which skips the rows without any of the requested columns
+    List<byte[]> projection = Arrays.asList(Bytes.toBytes("c2"), Bytes.toBytes("c4"), Bytes.toBytes("x"));
+    List<Row> expected = new ArrayList<>();
+    for (Row row : rows) {
+      NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : projection) {
+        byte[] value = row.get(column);
+        if (value != null) {
+          columns.put(column, value);
+        }
+      }
+      if (!columns.isEmpty()) {
+        expected.add(new Result(row.getRow(), columns));
+      }
+    }
+    Assert.assertTrue(expected.size() < rows.size());
+    assertRows(expected, read(file, projection));
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    Row empty = new Result(Bytes.toBytes("r"), new TreeMap<>(Bytes.BYTES_COMPARATOR));
+    Assert.assertTrue(read(write(Arrays.asList(empty), 10, 100), null).isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidFile() throws IOException {
+    new ColumnarTableReader(new ByteArrayInputStream(Bytes.toBytes("not a table file")));
+  }
+
+  private byte[] write(Collection<Row> rows, int blockRows, int blockSize) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ColumnarTableWriter writer = new ColumnarTableWriter(output, blockRows, blockSize)) {
+      for (Row row : rows) {
+        writer.write(row);
+      }
+    }
+    return output.toByteArray();
+  }
+
+  private List<Row> read(byte[] file, @Nullable Collection<byte[]> columns) throws IOException {
+    List<Row> rows = new ArrayList<>();
+    try (ColumnarTableReader reader = new ColumnarTableReader(new ByteArrayInputStream(file), columns)) {
+      Row row = reader.next();
+      while (row != null) {
+        rows.add(row);
+        row = reader.next();
+      }
+      // Reading past the end keeps returning null
+      Assert.assertNull(reader.next());
+    }
+    return rows;
+  }
+
+  private void assertRows(List<Row> expected, List<Row> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertArrayEquals(expected.get(i).getRow(), actual.get(i).getRow());
+      Map<byte[], byte[]> expectedColumns = expected.get(i).getColumns();
+      Map<byte[], byte[]> actualColumns = actual.get(i).getColumns();
+      Assert.assertEquals(expectedColumns.size(), actualColumns.size());
+      for (Map.Entry<byte[], byte[]> column : expectedColumns.entrySet()) {
+        Assert.assertArrayEquals(column.getValue(), actualColumns.get(column.getKey()));
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.columnar;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.tephra.Transaction;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link TableSnapshotExporter} and {@link ColumnarTableInputFormat}.
+ */
+public class TableSnapshotExporterTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final byte[] COL_A = Bytes.toBytes("a");
+  private static final byte[] COL_B = Bytes.toBytes("b");
+
+  @Test
+  public void testExportAndRead() throws Exception {
+    String tableName = "export";
+    InMemoryTableService.create(tableName);
+    try {
+      InMemoryTable table = new InMemoryTable(tableName);
+
+      // Write the rows in one transaction. Only every other row has column b.
+      table.startTx(new Transaction(0L, 1L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS));
+      for (int i = 0; i < 100; i++) {
+        table.put(getRowKey(i), COL_A, Bytes.toBytes(i));
+        if (i % 2 == 0) {
+          table.put(getRowKey(i), COL_B, Bytes.toBytes(i * 10));
+        }
+      }
+      Assert.assertTrue(table.commitTx());
+      table.postTxCommit();
+
+      // Export in a later transaction, which also deletes a row without committing.
+      // The export sees the rows as of the transaction.
+      table.startTx(new Transaction(1L, 2L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS));
+      table.delete(getRowKey(0));
+      Location directory = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("export");
+      Assert.assertEquals(99L, TableSnapshotExporter.export(table, directory, 4));
+      table.rollbackTx();
+      table.close();
+
+      // One file per split, and no temporary file is left
+      List<String> names = new ArrayList<>();
+      for (Location location : directory.list()) {
+        names.add(location.getName());
+      }
+      Assert.assertFalse(names.isEmpty());
+      for (String name : names) {
+        Assert.assertTrue(name, name.startsWith("part-"));
+      }
+
+      // Read all the columns with the input format
+      NavigableMap<byte[], Row> rows = readAll(directory, null);
+      Assert.assertEquals(99, rows.size());
+      for (int i = 1; i < 100; i++) {
+        Row row = rows.get(getRowKey(i));
+        Assert.assertNotNull(row);
+        Assert.assertEquals(i, Bytes.toInt(row.get(COL_A)));
+        if (i % 2 == 0) {
+          Assert.assertEquals(i * 10, Bytes.toInt(row.get(COL_B)));
+        } else {
+          Assert.assertNull(row.get(COL_B));
+        }
+      }
+
+      // Read only column b, which skips the rows without it
+      rows = readAll(directory, COL_B);
+      Assert.assertEquals(49, rows.size());
+      for (Map.Entry<byte[], Row> entry : rows.entrySet()) {
+        Assert.assertEquals(1, entry.getValue().getColumns().size());
+        Assert.assertEquals(Bytes.toInt(entry.getKey()) * 10, Bytes.toInt(entry.getValue().get(COL_B)));
+      }
+    } finally {
+      InMemoryTableService.drop(tableName);
+    }
+  }
+
+  private NavigableMap<byte[], Row> readAll(Location directory, @Nullable byte[] column) throws Exception {
+    Job job = Job.getInstance(new Configuration());
+    FileInputFormat.addInputPath(job, new Path(directory.toURI()));
+    if (column != null) {
+      ColumnarTableInputFormat.setColumns(job.getConfiguration(), column);
+    }
+    TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+
+    ColumnarTableInputFormat inputFormat = new ColumnarTableInputFormat();
+    NavigableMap<byte[], Row> rows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (InputSplit split : inputFormat.getSplits(job)) {
+      try (RecordReader<byte[], Row> reader = inputFormat.createRecordReader(split, context)) {
+        reader.initialize(split, context);
+        while (reader.nextKeyValue()) {
+          Assert.assertNull(rows.put(reader.getCurrentKey(), reader.getCurrentValue()));
+        }
+      }
+    }
+    return rows;
+  }
+
+  private byte[] getRowKey(int i) {
+    return Bytes.toBytes(i);
+  }
+}
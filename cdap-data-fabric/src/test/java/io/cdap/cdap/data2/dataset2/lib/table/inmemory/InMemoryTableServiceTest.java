@@ -24,7 +24,14 @@ import org.apache.tephra.Transaction;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NavigableMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -97,6 +104,40 @@ public class InMemoryTableServiceTest {
     verify123();
   }
 
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    InMemoryTableService.create("counters");
+    byte[] column = new byte[] {0};
+    int threads = 8;
+    int incrementsPerThread = 1000;
+    int rows = 4;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < incrementsPerThread; j++) {
+            InMemoryTableService.increment("counters", Bytes.toBytes(j % rows), Collections.singletonMap(column, 1L));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // No increment should be lost
+    for (int i = 0; i < rows; i++) {
+      NavigableMap<byte[], NavigableMap<Long, byte[]>> row = InMemoryTableService.get("counters", Bytes.toBytes(i),
+                                                                                      null);
+      Assert.assertEquals(threads * incrementsPerThread / rows, Bytes.toLong(row.get(column).firstEntry().getValue()));
+    }
+    InMemoryTableService.drop("counters");
+  }
+
   private void verify123() {
     NavigableMap<byte[], NavigableMap<Long, byte[]>> rowFromGet =
       InMemoryTableService.get("table", new byte[]{1}, new Transaction(1L, 2L, new long[0], new long[0], 1L));
@@ -19,6 +19,8 @@ package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DatasetContext;
+import io.cdap.cdap.api.dataset.DatasetSpecification;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
@@ -26,24 +28,39 @@ import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
 import io.cdap.cdap.common.guice.NonCustomLocationUnitTestModule;
 import io.cdap.cdap.data.runtime.DataFabricLevelDBModule;
 import io.cdap.cdap.data.runtime.TransactionMetricsModule;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import io.cdap.cdap.data2.util.TableId;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.authorization.AuthorizationTestModule;
+import org.iq80.leveldb.DBIterator;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 public class LevelDBTableServiceTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableServiceTest.class);
+
   @ClassRule
   public static TemporaryFolder tmpFolder = new TemporaryFolder();
 
@@ -110,6 +127,201 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    String tableName = "cdap_default.increments";
+    service.ensureTableExists(tableName);
+
+    int rows = 16;
+    int incrementsPerThread = 2000;
+    byte[] column = Bytes.toBytes("c");
+    long expected = 0L;
+
+    for (int threads : new int[] { 1, 4, 16, 32 }) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          int threadId = i;
+          futures.add(executor.submit(() -> {
+            // Each thread uses its own core instance, the same as different dataset instances of the same table
+            LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+            barrier.await();
+            for (int j = 0; j < incrementsPerThread; j++) {
+              table.increment(Bytes.toBytes((threadId + j) % rows), Collections.singletonMap(column, 1L));
+            }
+            return null;
+          }));
+        }
+        barrier.await();
+        long startTime = System.nanoTime();
+        for (Future<?> future : futures) {
+          future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = Math.max(1L, System.nanoTime() - startTime);
+        LOG.info("Increments per second with {} threads: {}",
+                 threads, threads * incrementsPerThread * TimeUnit.SECONDS.toNanos(1) / elapsed);
+      } finally {
+        executor.shutdownNow();
+      }
+
+      // No increment should be lost
+      expected += threads * incrementsPerThread;
+      LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+      long total = 0L;
+      for (int i = 0; i < rows; i++) {
+        byte[] value = table.getRow(Bytes.toBytes(i), new byte[][] { column }, null, null, -1, null).get(column);
+        total += value == null ? 0L : Bytes.toLong(value);
+      }
+      Assert.assertEquals(expected, total);
+    }
+  }
+
+  @Test
+  public void testPruneVersions() throws Exception {
+    String tableName = "cdap_default.prune";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+
+    byte[] row = Bytes.toBytes("r");
+    byte[] col1 = Bytes.toBytes("c1");
+    byte[] col2 = Bytes.toBytes("c2");
+    for (long version = 1; version <= 5; version++) {
+      table.put(row, col1, Bytes.toBytes(version), version);
+    }
+    // col2 is deleted in version 2
+    table.put(row, col2, Bytes.toBytes(1L), 1L);
+    table.persist(Collections.singletonMap(row, Collections.singletonMap(col2, (byte[]) null)), 2L);
+    Assert.assertEquals(7, countEntries(tableName));
+
+    // Prune with visibility upper bound 5 and invalid transaction 4.
+    // For col1, only version 3 and 5 should be left. For col2, both the delete marker and version 1 are removed.
+    Assert.assertTrue(table.pruneVersions(5L, new long[] { 4L }) > 0);
+    Assert.assertEquals(2, countEntries(tableName));
+    Assert.assertArrayEquals(Bytes.toBytes(5L),
+                             table.getRow(row, new byte[][] { col1 }, null, null, -1, null).get(col1));
+    Assert.assertTrue(table.getRow(row, new byte[][] { col2 }, null, null, -1, null).isEmpty());
+
+    // Prune again should be a no-op
+    Assert.assertEquals(0L, table.pruneVersions(5L, new long[] { 4L }));
+    Assert.assertEquals(2, countEntries(tableName));
+  }
+
+  @Test
+  public void testRowFilter() throws Exception {
+    String tableName = "cdap_default.rowfilter";
+    TableId tableId = TableId.from("default", "rowfilter");
+    service.ensureTableExists(tableName);
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+
+    byte[] column = Bytes.toBytes("c");
+    byte[][] columns = new byte[][] { column };
+    // Write more rows than the initial capacity of the filter, so that it grows
+    int rows = 5000;
+    for (int i = 0; i < rows; i += 2) {
+      table.put(Bytes.toBytes(i), column, Bytes.toBytes(i), 1L);
+    }
+
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < rows; i++) {
+        byte[] value = table.getRow(Bytes.toBytes(i), columns, null, null, -1, null).get(column);
+        if (i % 2 == 0) {
+          Assert.assertArrayEquals(Bytes.toBytes(i), value);
+        } else {
+          Assert.assertNull(value);
+        }
+      }
+      List<byte[]> keys = new ArrayList<>();
+      for (int i = rows; i >= 0; i--) {
+        keys.add(Bytes.toBytes(i));
+      }
+      List<NavigableMap<byte[], byte[]>> results = table.getRows(keys, Collections.nCopies(keys.size(), columns), null);
+      for (int i = 0; i < keys.size(); i++) {
+        Assert.assertEquals(Bytes.toInt(keys.get(i)) % 2 == 0 && Bytes.toInt(keys.get(i)) < rows,
+                            results.get(i).containsKey(column));
+      }
+
+      // Most of the absent rows should be answered by the filter
+      LevelDBTableService.TableStats stats = service.getTableStats().get(tableId);
+      Assert.assertEquals(2L * rows + 1, stats.getRowFilterLookups());
+      Assert.assertTrue(stats.getRowFilterNegatives() > rows * 9 / 10);
+      Assert.assertEquals(rows + 1 - stats.getRowFilterNegatives(), stats.getRowFilterFalsePositives());
+
+      // Reopen the table, which should rebuild the filter from the table
+      service.clearTables();
+    }
+  }
+
+  @Test
+  public void testRowFilterConcurrentWrites() throws Exception {
+    String tableName = "cdap_default.rowfilterconcurrent";
+    service.ensureTableExists(tableName);
+
+    int threads = 8;
+    int rowsPerThread = 2000;
+    byte[] column = Bytes.toBytes("c");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CyclicBarrier barrier = new CyclicBarrier(threads);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int threadId = i;
+        futures.add(executor.submit(() -> {
+          LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+          barrier.await();
+          // Each row must be readable right after it is written, while the filter grows from writes of other threads
+          for (int j = 0; j < rowsPerThread; j++) {
+            byte[] row = Bytes.toBytes(threadId * rowsPerThread + j);
+            table.put(row, column, row, 1L);
+            Assert.assertArrayEquals(row, table.getRow(row, new byte[][] { column }, null, null, -1, null).get(column));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testVersionPruningOptIn() throws Exception {
+    CConfiguration cConf = injector.getInstance(CConfiguration.class);
+    DatasetContext datasetContext = DatasetContext.from("default");
+
+    LevelDBTableAdmin prunedAdmin = new LevelDBTableAdmin(
+      datasetContext, DatasetSpecification.builder("pruned", "table")
+        .property(LevelDBTableAdmin.PROPERTY_PRUNE_VERSIONS, "true").build(), service, cConf);
+    LevelDBTableAdmin unprunedAdmin = new LevelDBTableAdmin(
+      datasetContext, DatasetSpecification.builder("unpruned", "table").build(), service, cConf);
+    prunedAdmin.create();
+    unprunedAdmin.create();
+
+    // Only the table with the property set is pruned
+    String prunedTable = PrefixedNamespaces.namespace(cConf, "default", "pruned");
+    Assert.assertEquals(Collections.singletonList(prunedTable), service.listVersionPrunedTables());
+
+    // Dropping the table removes it from pruning
+    prunedAdmin.drop();
+    unprunedAdmin.drop();
+    Assert.assertTrue(service.listVersionPrunedTables().isEmpty());
+  }
+
+  private int countEntries(String tableName) throws IOException {
+    int count = 0;
+    try (DBIterator iterator = service.getTable(tableName).iterator()) {
+      iterator.seekToFirst();
+      while (iterator.hasNext()) {
+        iterator.next();
+        count++;
+      }
+    }
+    return count;
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
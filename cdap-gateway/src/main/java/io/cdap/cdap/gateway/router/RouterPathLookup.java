@@ -169,7 +169,12 @@ public final class RouterPathLookup extends AbstractHttpHandler {
         case Constants.Service.METADATA_SERVICE: return METADATA_SERVICE;
         case Constants.Service.EXPLORE_HTTP_USER_SERVICE: return EXPLORE_HTTP_USER_SERVICE;
         case Constants.Service.MESSAGING_SERVICE: return MESSAGING;
-        default: return null;
+        default:
+          // Each messaging shard is discovered with its own service name
+          if (uriParts[3].startsWith(Constants.Service.MESSAGING_SERVICE + ".shard")) {
+            return new RouteDestination(uriParts[3]);
+          }
+          return null;
       }
     } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
       (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
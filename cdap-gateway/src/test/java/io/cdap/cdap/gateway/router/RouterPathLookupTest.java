@@ -407,6 +407,8 @@ public class RouterPathLookupTest {
                   RouterPathLookup.EXPLORE_HTTP_USER_SERVICE);
     assertRouting(String.format("/v3/system/services/%s/status", Constants.Service.MESSAGING_SERVICE),
                   RouterPathLookup.MESSAGING);
+    assertRouting(String.format("/v3/system/services/%s.shard1/status", Constants.Service.MESSAGING_SERVICE),
+                  new RouteDestination(Constants.Service.MESSAGING_SERVICE + ".shard1"));
     assertRouting(String.format("/v3/system/services/%s/status", "unknown.service"), null);
   }
 
@@ -430,6 +432,8 @@ public class RouterPathLookupTest {
                   RouterPathLookup.EXPLORE_HTTP_USER_SERVICE);
     assertRouting(String.format("/v3/system/services/%s/stacks", Constants.Service.MESSAGING_SERVICE),
                   RouterPathLookup.MESSAGING);
+    assertRouting(String.format("/v3/system/services/%s.shard1/stacks", Constants.Service.MESSAGING_SERVICE),
+                  new RouteDestination(Constants.Service.MESSAGING_SERVICE + ".shard1"));
     assertRouting(String.format("/v3/system/services/%s/stacks", "unknown.service"), null);
   }
 
@@ -54,6 +54,7 @@ import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
@@ -386,6 +387,35 @@ public abstract class HBaseTableUtil {
     };
   }
 
+  /**
+   * Returns the start keys of all the regions of the given table, sorted. The start key of the first region
+   * is an empty byte array.
+   *
+   * @param table the {@link Table} to get the region start keys for
+   * @return the start keys of the regions
+   * @throws IOException if failed to locate the regions of the table
+   */
+  public byte[][] getRegionStartKeys(Table table) throws IOException {
+    TableName tableName = table.getTableDescriptor().getTableName();
+
+    // Try to reuse the connection from the Table
+    if (table instanceof TableWithConnection) {
+      Connection connection = ((TableWithConnection) table).acquireConnection();
+      if (connection != null) {
+        try (RegionLocator locator = connection.getRegionLocator(tableName)) {
+          return locator.getStartKeys();
+        } finally {
+          ((TableWithConnection) table).releaseConnection();
+        }
+      }
+    }
+
+    try (Connection connection = ConnectionFactory.createConnection(table.getConfiguration());
+         RegionLocator locator = connection.getRegionLocator(tableName)) {
+      return locator.getStartKeys();
+    }
+  }
+
   /**
    * Creates a new {@link HTableDescriptorBuilder} which may contain an HBase namespace depending on the HBase version
    *
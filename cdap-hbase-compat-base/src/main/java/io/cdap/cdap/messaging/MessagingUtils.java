@@ -43,6 +43,11 @@ public final class MessagingUtils {
     public static final byte[] TX_COL = Bytes.toBytes('t');
     public static final byte[] PAYLOAD_COL = Bytes.toBytes('p');
     public static final long METADATA_CACHE_UPDATE_FREQUENCY_SECS = TimeUnit.MINUTES.toSeconds(5);
+    // Row key prefix for consumer group offsets in the metadata table. Topic metadata row keys always start
+    // with the namespace name, hence never start with this prefix.
+    public static final byte[] CONSUMER_OFFSET_ROW_PREFIX = {0};
+    // The smallest row key of topic metadata in the metadata table
+    public static final byte[] TOPIC_METADATA_START_ROW = Bytes.stopKeyForPrefix(CONSUMER_OFFSET_ROW_PREFIX);
   }
 
   /**
@@ -56,6 +61,28 @@ public final class MessagingUtils {
     return Bytes.toBytes(topic);
   }
 
+  /**
+   * Convert {@link TopicId} and consumer group name to byte array to be used as the row key in the metadata table
+   * for storing the consumer group offset.
+   *
+   * @param topicId {@link TopicId}
+   * @param consumerGroup name of the consumer group
+   * @return byte array representation for the consumer group offset row key
+   */
+  public static byte[] toConsumerOffsetRowKey(TopicId topicId, String consumerGroup) {
+    return Bytes.concat(consumerOffsetScanKey(topicId), Bytes.toBytes(consumerGroup));
+  }
+
+  /**
+   * Construct the scan key for consumer group offsets of a particular {@link TopicId}.
+   *
+   * @param topicId {@link TopicId}
+   * @return prefix key of consumer group offset rows of the given topic
+   */
+  public static byte[] consumerOffsetScanKey(TopicId topicId) {
+    return Bytes.concat(Constants.CONSUMER_OFFSET_ROW_PREFIX, toMetadataRowKey(topicId));
+  }
+
   /**
    * Convert {@link TopicId} and generation id to byte array to be used for data tables (message and payload) as
    * row key prefix.
@@ -142,6 +142,10 @@ public class TopicMetadataCache extends AbstractIdleService {
           for (Result result : scanner) {
             ByteBuffer topicId = ByteBuffer.wrap(result.getRow());
             byte[] value = result.getValue(COL_FAMILY, COL);
+            if (value == null) {
+              // Skip rows that are not topic metadata, such as consumer group offsets
+              continue;
+            }
             Map<String, String> properties = GSON.fromJson(Bytes.toString(value), MAP_TYPE);
             String ttl = properties.get(MessagingUtils.Constants.TTL_KEY);
             long ttlInMes = TimeUnit.SECONDS.toMillis(Long.parseLong(ttl));
@@ -51,6 +51,7 @@ import io.cdap.cdap.metrics.process.MessagingMetricsProcessorServiceFactory;
 import io.cdap.cdap.metrics.process.MetricsAdminSubscriberService;
 import io.cdap.cdap.metrics.process.MetricsProcessorStatusService;
 import io.cdap.cdap.metrics.runtime.MessagingMetricsProcessorRuntimeService;
+import io.cdap.cdap.metrics.store.MetricsRollUpService;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
@@ -99,6 +100,8 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
   public void addServices(List<? super Service> services) {
     services.add(injector.getInstance(MessagingMetricsProcessorRuntimeService.class));
     services.add(injector.getInstance(MetricsProcessorStatusService.class));
+    // All instances roll up metrics, since only one of them at a time can start a roll-up
+    services.add(injector.getInstance(MetricsRollUpService.class));
 
     // Only starts the MetricsAdminSubscriberService in instance 0
     if (instanceId == 0) {
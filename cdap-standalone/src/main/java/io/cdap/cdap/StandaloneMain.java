@@ -56,6 +56,7 @@ import io.cdap.cdap.data.runtime.DataSetsModules;
 import io.cdap.cdap.data2.audit.AuditModule;
 import io.cdap.cdap.data2.datafabric.dataset.service.DatasetService;
 import io.cdap.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorService;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTablePruner;
 import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
 import io.cdap.cdap.explore.client.ExploreClient;
 import io.cdap.cdap.explore.executor.ExploreExecutorService;
@@ -141,6 +142,7 @@ public class StandaloneMain {
   private final TwillRunnerService remoteExecutionTwillRunnerService;
   private final MetadataSubscriberService metadataSubscriberService;
   private final LevelDBTableService levelDBTableService;
+  private final LevelDBTablePruner levelDBTablePruner;
   private final SecureStoreService secureStoreService;
   private final PreviewHttpServer previewHttpServer;
   private final MetadataStorage metadataStorage;
@@ -156,6 +158,9 @@ public class StandaloneMain {
     injector = Guice.createInjector(modules);
 
     levelDBTableService = injector.getInstance(LevelDBTableService.class);
+    levelDBTablePruner = cConf.getLong(Constants.CFG_DATA_LEVELDB_PRUNE_INTERVAL_SECONDS,
+                                       Constants.DEFAULT_DATA_LEVELDB_PRUNE_INTERVAL_SECONDS) > 0
+      ? injector.getInstance(LevelDBTablePruner.class) : null;
     messagingService = injector.getInstance(MessagingService.class);
     authorizerInstantiator = injector.getInstance(AuthorizerInstantiator.class);
     router = injector.getInstance(NettyRouter.class);
@@ -292,6 +297,10 @@ public class StandaloneMain {
 
     secureStoreService.startAndWait();
 
+    if (levelDBTablePruner != null) {
+      levelDBTablePruner.startAndWait();
+    }
+
     String protocol = sslEnabled ? "https" : "http";
     int dashboardPort = sslEnabled ?
       cConf.getInt(Constants.Dashboard.SSL_BIND_PORT) :
@@ -319,6 +328,9 @@ public class StandaloneMain {
       operationalStatsService.stopAndWait();
 
       // Stop all services that requires tx service
+      if (levelDBTablePruner != null) {
+        levelDBTablePruner.stopAndWait();
+      }
       metadataSubscriberService.stopAndWait();
       if (exploreExecutorService != null) {
         exploreExecutorService.stopAndWait();
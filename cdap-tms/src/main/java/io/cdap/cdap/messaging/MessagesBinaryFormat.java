@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.io.DataInput;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Helper class for encoding and decoding messages in the compact binary format used for streaming fetch responses.
+ * It is an alternative to the avro encoding based on {@link Schemas.V1.ConsumeResponse#SCHEMA}, which is
+ * negotiated through the {@link #CONTENT_TYPE} content type.
+ *
+ * Each message is encoded as
+ *
+ * <pre>
+ * [id length (int)][id bytes][payload length (int)][payload bytes]
+ * </pre>
+ *
+ * with all integers in big-endian. The end of the message stream is marked by an id length of {@code -1}.
+ */
+public final class MessagesBinaryFormat {
+
+  public static final String CONTENT_TYPE = "application/x-cdap-messages";
+
+  private static final int END_OF_MESSAGES = -1;
+
+  /**
+   * Returns the number of bytes needed to encode the given message.
+   */
+  public static int getEncodedSize(RawMessage message) {
+    return 2 * Integer.BYTES + message.getId().length + message.getPayload().length;
+  }
+
+  /**
+   * Encodes the given message to the given {@link ByteBuf}.
+   */
+  public static void encode(RawMessage message, ByteBuf buffer) {
+    byte[] id = message.getId();
+    byte[] payload = message.getPayload();
+    buffer.writeInt(id.length);
+    buffer.writeBytes(id);
+    buffer.writeInt(payload.length);
+    buffer.writeBytes(payload);
+  }
+
+  /**
+   * Writes the end of messages marker to the given {@link ByteBuf}.
+   */
+  public static void encodeEnd(ByteBuf buffer) {
+    buffer.writeInt(END_OF_MESSAGES);
+  }
+
+  /**
+   * Decodes the next message from the given {@link DataInput}.
+   *
+   * @return the decoded {@link RawMessage} or {@code null} if reached the end of messages marker
+   * @throws IOException if failed to read from the input
+   */
+  @Nullable
+  public static RawMessage decode(DataInput input) throws IOException {
+    int idLength = input.readInt();
+    if (idLength == END_OF_MESSAGES) {
+      return null;
+    }
+    if (idLength < 0) {
+      throw new IOException("Invalid message id length " + idLength);
+    }
+    byte[] id = new byte[idLength];
+    input.readFully(id);
+
+    int payloadLength = input.readInt();
+    if (payloadLength < 0) {
+      throw new IOException("Invalid message payload length " + payloadLength);
+    }
+    byte[] payload = new byte[payloadLength];
+    input.readFully(payload);
+    return new RawMessage(id, payload);
+  }
+
+  private MessagesBinaryFormat() {
+    // no-op
+  }
+}
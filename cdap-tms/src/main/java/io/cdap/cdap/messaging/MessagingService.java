@@ -23,7 +23,10 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 /**
@@ -108,6 +111,23 @@ public interface MessagingService {
   @Nullable
   RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException;
 
+  /**
+   * Publishes lists of messages to multiple topics in one call. Requests to the same topic are published
+   * in the order they appear in the given collection. Only non-transactional requests are supported.
+   * The requests are not published atomically, they can be published in several groups one after another.
+   * The given listener is called with each request once it is published, also when this method fails
+   * afterwards, so that only the requests that were not passed to the listener need to be retried.
+   *
+   * @param requests the {@link StoreRequest}s containing messages to be published
+   * @param publishedListener called with each of the given requests once it is published
+   * @throws IllegalArgumentException if any of the given requests is transactional
+   * @throws TopicNotFoundException if any of the topics doesn't exist
+   * @throws IOException if failed to publish messages
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  void publish(Collection<? extends StoreRequest> requests,
+               Consumer<? super StoreRequest> publishedListener) throws TopicNotFoundException, IOException;
+
   /**
    * Stores a list of messages to the messaging system. It is for long / distributed transactional publishing use case.
    *
@@ -130,4 +150,49 @@ public interface MessagingService {
    * @throws ServiceUnavailableException if the messaging service is not available
    */
   void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException;
+
+  /**
+   * Returns the offset committed by the given consumer group for the given topic. The offset is the id of the last
+   * message processed by the consumer group, which can be used with {@link MessageFetcher#setStartMessage}.
+   *
+   * @param topicId the topic to consume from
+   * @param consumerGroup name of the consumer group
+   * @return the committed offset or {@code null} if the consumer group has not committed any offset
+   * @throws TopicNotFoundException if the topic doesn't exist
+   * @throws IOException if failed to retrieve the offset
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  @Nullable
+  byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws TopicNotFoundException, IOException;
+
+  /**
+   * Commits the offset of the given consumer group for the given topic. The commit is a compare-and-set operation,
+   * which allows multiple instances of the same consumer group to share the work of consuming a topic.
+   *
+   * @param topicId the topic to consume from
+   * @param consumerGroup name of the consumer group
+   * @param expectedOffset the offset that is expected to be committed currently, or {@code null} to commit
+   *                       unconditionally
+   * @param offset the new offset to commit
+   * @return {@code true} if the offset was committed, {@code false} if the currently committed offset is not
+   *         the same as the expected one
+   * @throws TopicNotFoundException if the topic doesn't exist
+   * @throws IOException if failed to commit the offset
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  boolean commitConsumerOffset(TopicId topicId, String consumerGroup, @Nullable byte[] expectedOffset,
+                               byte[] offset) throws TopicNotFoundException, IOException;
+
+  /**
+   * Returns the lag of all consumer groups of the given topic, which is the number of messages published after
+   * the offset committed by the consumer group.
+   *
+   * @param topicId the topic to consume from
+   * @param maxLag the maximum lag to compute; lags larger than this value are reported as this value
+   * @return a {@link Map} from consumer group name to the lag
+   * @throws TopicNotFoundException if the topic doesn't exist
+   * @throws IOException if failed to compute the lags
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  Map<String, Integer> getConsumerLags(TopicId topicId, int maxLag) throws TopicNotFoundException, IOException;
 }
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -105,6 +106,43 @@ public final class MessagingServiceUtils {
     return Collections.unmodifiableSet(systemTopics);
   }
 
+  /**
+   * Returns the number of shards that topics are partitioned into, as configured by the
+   * {@link Constants.MessagingSystem#NUM_SHARDS} property.
+   */
+  public static int getNumShards(CConfiguration cConf) {
+    int numShards = cConf.getInt(Constants.MessagingSystem.NUM_SHARDS, 1);
+    if (numShards <= 0) {
+      throw new IllegalArgumentException("The number of messaging shards must be positive. Configured value is "
+                                           + numShards + " for " + Constants.MessagingSystem.NUM_SHARDS);
+    }
+    return numShards;
+  }
+
+  /**
+   * Returns the shard that the given topic belongs to.
+   *
+   * @param topicId the topic to get the shard for
+   * @param numShards total number of shards
+   * @return the shard number, which is in the range of [0, numShards)
+   */
+  public static int getShard(TopicId topicId, int numShards) {
+    if (numShards == 1) {
+      return 0;
+    }
+    // Only hash on the string values, which has a stable hash code across processes
+    return Math.floorMod(Objects.hash(topicId.getNamespace(), topicId.getTopic()), numShards);
+  }
+
+  /**
+   * Returns the service name of the given shard. It is used for both discovery and leader election of the shard.
+   * The first shard uses the {@link Constants.Service#MESSAGING_SERVICE} name, so that it is compatible with
+   * the non-sharded setup.
+   */
+  public static String getShardServiceName(int shard) {
+    return shard == 0 ? Constants.Service.MESSAGING_SERVICE : Constants.Service.MESSAGING_SERVICE + ".shard" + shard;
+  }
+
 
   private MessagingServiceUtils() {
     // no-op
@@ -44,6 +44,13 @@ public final class Schemas {
       public static final Schema SCHEMA = loadSchema(PublishRequest.class);
     }
 
+    /**
+     * Contains schema for batch publish request to multiple topics.
+     */
+    public static final class BatchPublishRequest {
+      public static final Schema SCHEMA = loadSchema(BatchPublishRequest.class);
+    }
+
     /**
      * Contains schema for publish response.
      */
@@ -30,6 +30,7 @@ public class TopicMetadata {
 
   public static final String GENERATION_KEY = MessagingUtils.Constants.GENERATION_KEY;
   public static final String TTL_KEY = MessagingUtils.Constants.TTL_KEY;
+  public static final String MAX_SIZE_MB_KEY = "max.size.mb";
 
   private final TopicId topicId;
   private final Map<String, String> properties;
@@ -109,6 +110,18 @@ public class TopicMetadata {
     return Integer.parseInt(properties.get(TTL_KEY));
   }
 
+  /**
+   * Returns the maximum size in bytes of data retained for the topic, or {@code 0} if there is no size limit.
+   * Oldest messages are removed when the topic data exceeds this size.
+   */
+  public long getMaxSizeBytes() {
+    if (!validated) {
+      validateMaxSize();
+    }
+    String maxSize = properties.get(MAX_SIZE_MB_KEY);
+    return maxSize == null ? 0L : Long.parseLong(maxSize) * 1024L * 1024L;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -142,6 +155,7 @@ public class TopicMetadata {
   private void validateProperties() {
     validateTTL();
     validateGeneration();
+    validateMaxSize();
   }
 
   /**
@@ -163,6 +177,26 @@ public class TopicMetadata {
     }
   }
 
+  /**
+   * Validates the optional "max.size.mb" property of the given topic.
+   *
+   * @throws IllegalArgumentException if the max size value is present but not a number or < 0.
+   */
+  private void validateMaxSize() {
+    String maxSize = properties.get(MAX_SIZE_MB_KEY);
+    if (maxSize == null) {
+      return;
+    }
+    try {
+      if (Long.parseLong(maxSize) < 0) {
+        throw new IllegalArgumentException("The max.size.mb property must not be negative for topic " + topicId);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The max.size.mb property must be a non-negative number for topic "
+                                           + topicId, e);
+    }
+  }
+
   /**
    * Validates the "generation" property of the given topic.
    *
@@ -61,6 +61,10 @@ import javax.annotation.Nullable;
  *     it if needed. This essentially is to amortize the cost of the blocking weight reduction operations among all
  *     fetchers (which typically has multiple of them), without blocking the single publish as much as possible.
  *
+ * The limits can be changed at runtime through the {@link #resize(Limits)} method. Multiple caches can share
+ * a global memory budget through the {@link MessageCacheBalancer}, which redistributes the budget based on
+ * the lookups recorded through the {@link #recordLookup(boolean)} method.
+ *
  * @param <T> type of entry stored in the cache
  */
 public class MessageCache<T> {
@@ -72,6 +76,9 @@ public class MessageCache<T> {
   private static final String METRICS_ADD_REDUCE_WEIGHT = "cache.add.reduce.weight";
   private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
   private static final String METRICS_SCAN_REDUCE_WEIGHT = "cache.scan.reduce.weight";
+  private static final String METRICS_HITS = "cache.hits";
+  private static final String METRICS_MISSES = "cache.misses";
+  private static final String METRICS_HARD_LIMIT = "cache.hard.limit";
 
   private final NavigableSet<CacheEntry<T>> cache;
   private final Comparator<T> comparator;
@@ -82,6 +89,7 @@ public class MessageCache<T> {
   private final AtomicBoolean adding;
   private final Weigher<T> weigher;
   private final ReadWriteLock cacheLock;
+  private final AtomicLong lookups;
 
   /**
    * Creates a new instance of the cache.
@@ -101,6 +109,7 @@ public class MessageCache<T> {
     this.adding = new AtomicBoolean();
     this.weigher = weigher;
     this.cacheLock = new ReentrantReadWriteLock();
+    this.lookups = new AtomicLong();
   }
 
   /**
@@ -230,6 +239,24 @@ public class MessageCache<T> {
     };
   }
 
+  /**
+   * Records the result of a lookup to this cache.
+   *
+   * @param hit {@code true} if the lookup was fully served by the cache; {@code false} if the lookup needs to
+   *            go to the underlying storage
+   */
+  public void recordLookup(boolean hit) {
+    lookups.incrementAndGet();
+    metricsContext.increment(hit ? METRICS_HITS : METRICS_MISSES, 1L);
+  }
+
+  /**
+   * Returns the number of lookups recorded since the last call to this method.
+   */
+  long drainLookups() {
+    return lookups.getAndSet(0L);
+  }
+
   /**
    * Updates entries in the cache. Update to each entry shouldn't change the ordering of the entry based on the
    * {@link Comparator} provided to this cache.
@@ -300,6 +327,7 @@ public class MessageCache<T> {
     } finally {
       cacheLock.writeLock().unlock();
     }
+    metricsContext.gauge(METRICS_HARD_LIMIT, limits.getHardLimit());
   }
 
   /**
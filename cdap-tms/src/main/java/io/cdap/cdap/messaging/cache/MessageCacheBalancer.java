@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Distributes a global memory budget among a set of {@link MessageCache}s.
+ *
+ * Part of the budget is reserved and evenly distributed among all caches, so that every cache keeps
+ * a minimum size. The rest of the budget is distributed based on the number of lookups recorded by each cache
+ * through the {@link MessageCache#recordLookup(boolean)} method, smoothed across rebalances, so that caches
+ * of topics that are fetched frequently get a larger share than the ones that are rarely fetched.
+ *
+ * @param <T> type of entry stored in the caches
+ */
+@ThreadSafe
+public final class MessageCacheBalancer<T> {
+
+  /**
+   * The percentage of the budget that is evenly distributed among all caches.
+   */
+  private static final int RESERVED_PERCENT = 20;
+
+  private final long budget;
+  private final List<MessageCache<T>> caches;
+  private final double[] demands;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param budget the total weight that the given caches can hold
+   * @param caches the caches sharing the budget
+   */
+  public MessageCacheBalancer(long budget, Collection<MessageCache<T>> caches) {
+    Preconditions.checkArgument(budget >= 0, "The budget must not be negative");
+    this.budget = budget;
+    this.caches = new ArrayList<>(caches);
+    this.demands = new double[this.caches.size()];
+  }
+
+  /**
+   * Creates the {@link MessageCache.Limits} with the given hard limit. The reduce trigger is 70% of the hard limit
+   * and the min retain is 50% of the hard limit.
+   */
+  public static MessageCache.Limits createLimits(long hardLimit) {
+    return new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+  }
+
+  /**
+   * Redistributes the budget among the caches based on the lookups recorded since the last rebalance.
+   */
+  public synchronized void rebalance() {
+    if (caches.isEmpty()) {
+      return;
+    }
+
+    double totalDemand = 0d;
+    for (int i = 0; i < caches.size(); i++) {
+      // Exponentially decay the previous demand so that the distribution adapts to changes in the fetch pattern
+      demands[i] = demands[i] / 2 + caches.get(i).drainLookups();
+      totalDemand += demands[i];
+    }
+
+    // If there is no lookup at all, evenly distribute the whole budget
+    long reserved = totalDemand > 0 ? budget * RESERVED_PERCENT / 100 : budget;
+    long reservedShare = reserved / caches.size();
+    long demandBudget = budget - reserved;
+
+    for (int i = 0; i < caches.size(); i++) {
+      long demandShare = totalDemand > 0 ? (long) (demandBudget * demands[i] / totalDemand) : 0L;
+      MessageCache<T> cache = caches.get(i);
+      long hardLimit = reservedShare + demandShare;
+      if (cache.getLimits().getHardLimit() != hardLimit) {
+        cache.resize(createLimits(hardLimit));
+      }
+    }
+  }
+}
@@ -23,6 +23,7 @@ import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.common.Bytes;
@@ -31,12 +32,15 @@ import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.ServiceUnavailableException;
+import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.http.DefaultHttpRequestConfig;
 import io.cdap.cdap.common.internal.remote.RemoteClient;
 import io.cdap.cdap.common.security.HttpsEnabler;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessagesBinaryFormat;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.StoreRequest;
@@ -62,7 +66,9 @@ import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
@@ -73,8 +79,11 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -95,20 +104,40 @@ public final class ClientMessagingService implements MessagingService {
   // These types for only for Gson to use, hence using the gson TypeToken instead of guava one
   private static final Type TOPIC_PROPERTY_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Type CONSUMER_LAGS_TYPE = new TypeToken<Map<String, Integer>>() { }.getType();
 
-  private final RemoteClient remoteClient;
+  private final List<RemoteClient> remoteClients;
 
   @VisibleForTesting
-  @Inject
   public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient) {
-    this.remoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
-                                         HTTP_REQUEST_CONFIG, "/v1/namespaces/");
+    this(discoveryServiceClient, 1);
+  }
+
+  @Inject
+  ClientMessagingService(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient) {
+    this(discoveryServiceClient, MessagingServiceUtils.getNumShards(cConf));
+  }
+
+  /**
+   * Creates an instance that routes requests for each topic to the shard that the topic belongs to.
+   *
+   * @param discoveryServiceClient the {@link DiscoveryServiceClient} for discovering the messaging service shards
+   * @param numShards total number of shards
+   */
+  public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient, int numShards) {
+    List<RemoteClient> remoteClients = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      remoteClients.add(new RemoteClient(discoveryServiceClient, MessagingServiceUtils.getShardServiceName(i),
+                                         HTTP_REQUEST_CONFIG, "/v1/namespaces/"));
+    }
+    this.remoteClients = remoteClients;
   }
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
     TopicId topicId = topicMetadata.getTopicId();
 
+    RemoteClient remoteClient = getRemoteClient(topicId);
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.PUT, createTopicPath(topicId))
       .withBody(GSON.toJson(topicMetadata.getProperties()))
       .build();
@@ -124,6 +153,7 @@ public final class ClientMessagingService implements MessagingService {
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
     TopicId topicId = topicMetadata.getTopicId();
 
+    RemoteClient remoteClient = getRemoteClient(topicId);
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.PUT, createTopicPath(topicId) + "/properties")
       .withBody(GSON.toJson(topicMetadata.getProperties()))
       .build();
@@ -137,6 +167,7 @@ public final class ClientMessagingService implements MessagingService {
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
+    RemoteClient remoteClient = getRemoteClient(topicId);
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.DELETE, createTopicPath(topicId)).build();
     HttpResponse response = remoteClient.execute(request);
 
@@ -148,6 +179,7 @@ public final class ClientMessagingService implements MessagingService {
 
   @Override
   public TopicMetadata getTopic(TopicId topicId) throws TopicNotFoundException, IOException {
+    RemoteClient remoteClient = getRemoteClient(topicId);
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET, createTopicPath(topicId)).build();
     HttpResponse response = remoteClient.execute(request);
 
@@ -162,6 +194,8 @@ public final class ClientMessagingService implements MessagingService {
 
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
+    // Topics of all shards are stored in the same metadata table, hence can be listed from any shard
+    RemoteClient remoteClient = remoteClients.get(0);
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET, namespaceId.getNamespace() + "/topics").build();
     HttpResponse response = remoteClient.execute(request);
 
@@ -195,6 +229,71 @@ public final class ClientMessagingService implements MessagingService {
     return new ClientRollbackDetail(body);
   }
 
+  @Override
+  public void publish(Collection<? extends StoreRequest> requests,
+                      Consumer<? super StoreRequest> publishedListener) throws TopicNotFoundException, IOException {
+    // Group the requests by shard and namespace, and make one call per group
+    Map<Integer, Map<NamespaceId, List<StoreRequest>>> shardRequests = new LinkedHashMap<>();
+    for (StoreRequest request : requests) {
+      if (request.isTransactional()) {
+        throw new IllegalArgumentException("Transactional publish is not supported in batch publish. Topic: "
+                                             + request.getTopicId());
+      }
+      TopicId topicId = request.getTopicId();
+      shardRequests
+        .computeIfAbsent(MessagingServiceUtils.getShard(topicId, remoteClients.size()), shard -> new LinkedHashMap<>())
+        .computeIfAbsent(topicId.getNamespaceId(), ns -> new ArrayList<>())
+        .add(request);
+    }
+
+    for (Map.Entry<Integer, Map<NamespaceId, List<StoreRequest>>> shardEntry : shardRequests.entrySet()) {
+      RemoteClient remoteClient = remoteClients.get(shardEntry.getKey());
+      for (Map.Entry<NamespaceId, List<StoreRequest>> entry : shardEntry.getValue().entrySet()) {
+        publish(remoteClient, entry.getKey(), entry.getValue());
+        // The groups are published one after another, hence report each group as soon as it is published
+        entry.getValue().forEach(publishedListener);
+      }
+    }
+  }
+
+  /**
+   * Publishes the given non-transactional {@link StoreRequest}s of the given namespace in one call
+   * with the given {@link RemoteClient}.
+   */
+  private void publish(RemoteClient remoteClient, NamespaceId namespaceId,
+                       List<StoreRequest> requests) throws TopicNotFoundException, IOException {
+    Schema schema = Schemas.V1.BatchPublishRequest.SCHEMA;
+    List<GenericRecord> records = new ArrayList<>(requests.size());
+    for (StoreRequest request : requests) {
+      GenericRecord record = new GenericData.Record(schema.getElementType());
+      record.put("topic", request.getTopicId().getTopic());
+      record.put("messages", convertPayloads(request));
+      records.add(record);
+    }
+
+    // Encode the request as avro
+    ExposedByteArrayOutputStream os = new ExposedByteArrayOutputStream();
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    DatumWriter<List<GenericRecord>> datumWriter = new GenericDatumWriter<>(schema);
+    datumWriter.write(records, encoder);
+
+    HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, namespaceId.getNamespace() + "/publish")
+      .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
+      .withBody(os.toByteBuffer())
+      .build();
+
+    HttpResponse response = remoteClient.execute(httpRequest);
+
+    // For batch publish, the response body contains the id of the topic that doesn't exist
+    if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      Map<String, String> error = decodeError(response);
+      if (error.containsKey("namespace") && error.containsKey("topic")) {
+        throw new TopicNotFoundException(error.get("namespace"), error.get("topic"));
+      }
+    }
+    handleError(response, "Failed to publish messages to namespace " + namespaceId);
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     performWriteRequest(request, false);
@@ -206,6 +305,7 @@ public final class ClientMessagingService implements MessagingService {
       ? ByteBuffer.wrap(((ClientRollbackDetail) rollbackDetail).getEncoded())
       : encodeRollbackDetail(rollbackDetail);
 
+    RemoteClient remoteClient = getRemoteClient(topicId);
     HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, createTopicPath(topicId) + "/rollback")
       .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
       .withBody(requestBody)
@@ -220,6 +320,67 @@ public final class ClientMessagingService implements MessagingService {
                                       + " with rollback detail " + rollbackDetail);
   }
 
+  @Nullable
+  @Override
+  public byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws TopicNotFoundException, IOException {
+    RemoteClient remoteClient = getRemoteClient(topicId);
+    HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET,
+                                                      createConsumerOffsetPath(topicId, consumerGroup)).build();
+    HttpResponse response = remoteClient.execute(request);
+
+    if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+    }
+    if (response.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+      return null;
+    }
+    handleError(response, "Failed to get offset of consumer group " + consumerGroup + " in topic " + topicId);
+
+    Map<String, String> body = GSON.fromJson(response.getResponseBodyAsString(), TOPIC_PROPERTY_TYPE);
+    return Bytes.fromHexString(body.get("offset"));
+  }
+
+  @Override
+  public boolean commitConsumerOffset(TopicId topicId, String consumerGroup, @Nullable byte[] expectedOffset,
+                                      byte[] offset) throws TopicNotFoundException, IOException {
+    Map<String, String> body = new HashMap<>();
+    body.put("offset", Bytes.toHexString(offset));
+    if (expectedOffset != null) {
+      body.put("expected", Bytes.toHexString(expectedOffset));
+    }
+
+    RemoteClient remoteClient = getRemoteClient(topicId);
+    HttpRequest request = remoteClient.requestBuilder(HttpMethod.PUT, createConsumerOffsetPath(topicId, consumerGroup))
+      .withBody(GSON.toJson(body, TOPIC_PROPERTY_TYPE))
+      .build();
+    HttpResponse response = remoteClient.execute(request);
+
+    if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+    }
+    if (response.getResponseCode() == HttpURLConnection.HTTP_CONFLICT) {
+      return false;
+    }
+    handleError(response, "Failed to commit offset of consumer group " + consumerGroup + " in topic " + topicId);
+    return true;
+  }
+
+  @Override
+  public Map<String, Integer> getConsumerLags(TopicId topicId,
+                                              int maxLag) throws TopicNotFoundException, IOException {
+    RemoteClient remoteClient = getRemoteClient(topicId);
+    HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET,
+                                                      createTopicPath(topicId) + "/consumers/lags?max=" + maxLag)
+      .build();
+    HttpResponse response = remoteClient.execute(request);
+
+    if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+    }
+    handleError(response, "Failed to get consumer lags in topic " + topicId);
+    return GSON.fromJson(response.getResponseBodyAsString(), CONSUMER_LAGS_TYPE);
+  }
+
   /**
    * Makes a request to the server for writing to the messaging system
    *
@@ -247,6 +408,7 @@ public final class ClientMessagingService implements MessagingService {
     // Make the publish request
     String writeType = publish ? "publish" : "store";
     TopicId topicId = request.getTopicId();
+    RemoteClient remoteClient = getRemoteClient(topicId);
     HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, createTopicPath(topicId) + "/" + writeType)
       .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
       .withBody(os.toByteBuffer())
@@ -261,6 +423,13 @@ public final class ClientMessagingService implements MessagingService {
     return response;
   }
 
+  /**
+   * Returns the {@link RemoteClient} for the shard that the given topic belongs to.
+   */
+  private RemoteClient getRemoteClient(TopicId topicId) {
+    return remoteClients.get(MessagingServiceUtils.getShard(topicId, remoteClients.size()));
+  }
+
   /**
    * Creates the URL path for making HTTP requests for the given topic.
    */
@@ -268,6 +437,13 @@ public final class ClientMessagingService implements MessagingService {
     return topicId.getNamespace() + "/topics/" + topicId.getTopic();
   }
 
+  /**
+   * Creates the URL path for making HTTP requests for the offset of the given consumer group.
+   */
+  private String createConsumerOffsetPath(TopicId topicId, String consumerGroup) {
+    return createTopicPath(topicId) + "/consumers/" + consumerGroup + "/offset";
+  }
+
   /**
    * Handles error response from the given {@link HttpResponse}.
    */
@@ -275,6 +451,18 @@ public final class ClientMessagingService implements MessagingService {
     handleError(response.getResponseCode(), response::toString, errorPrefix);
   }
 
+  /**
+   * Decodes the json error body of the given response. An empty map is returned if the body is not a json object.
+   */
+  private Map<String, String> decodeError(HttpResponse response) {
+    try {
+      Map<String, String> error = GSON.fromJson(response.getResponseBodyAsString(), TOPIC_PROPERTY_TYPE);
+      return error == null ? Collections.emptyMap() : error;
+    } catch (JsonSyntaxException e) {
+      return Collections.emptyMap();
+    }
+  }
+
   /**
    * Handles error response based on the given response code.
    */
@@ -337,18 +525,24 @@ public final class ClientMessagingService implements MessagingService {
    * Verifies the content-type in the header matches with the required type.
    */
   private void verifyContentType(Map<String, ? extends Collection<String>> headers, String requiredContentType) {
+    if (!requiredContentType.equalsIgnoreCase(getContentType(headers))) {
+      throw new IllegalArgumentException("Only " + requiredContentType + " content type is support.");
+    }
+  }
+
+  /**
+   * Returns the content-type in the header or {@code null} if it is absent.
+   */
+  @Nullable
+  private String getContentType(Map<String, ? extends Collection<String>> headers) {
     // Netty 4.1 has all headers set with lower case name
     // However, the cdap-http library doesn't handle it well, hence we iterate all headers instead of lookup in here
-    boolean passed = false;
     for (Map.Entry<String, ? extends Collection<String>> entry : headers.entrySet()) {
       if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(entry.getKey())) {
-        passed = requiredContentType.equalsIgnoreCase(Iterables.getFirst(entry.getValue(), null));
-        break;
+        return Iterables.getFirst(entry.getValue(), null);
       }
     }
-    if (!passed) {
-      throw new IllegalArgumentException("Only " + requiredContentType + " content type is support.");
-    }
+    return null;
   }
 
   /**
@@ -400,16 +594,29 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      URL url = remoteClient.resolve(createTopicPath(topicId) + "/poll");
+      // If poll timeout is set, the server holds the request until there are messages or timeout passed.
+      long pollTimeoutMillis = getPollTimeoutMillis();
+      String path = createTopicPath(topicId) + "/poll";
+      if (pollTimeoutMillis > 0) {
+        path += "?timeout=" + pollTimeoutMillis;
+      }
+      RemoteClient remoteClient = getRemoteClient(topicId);
+      URL url = remoteClient.resolve(path);
 
       HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       if (urlConn instanceof HttpsURLConnection) {
         new HttpsEnabler().setTrustAll(true).enable((HttpsURLConnection) urlConn);
       }
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      // Extends the read timeout to cover the time the server may wait for messages. Zero means infinite timeout.
+      int readTimeout = HTTP_REQUEST_CONFIG.getReadTimeout();
+      urlConn.setReadTimeout(readTimeout <= 0
+                               ? readTimeout
+                               : (int) Math.min(Integer.MAX_VALUE, readTimeout + pollTimeoutMillis));
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      // Prefer the binary format, which is cheaper to decode. Older servers ignore it and respond with avro.
+      urlConn.setRequestProperty(HttpHeaders.ACCEPT, MessagesBinaryFormat.CONTENT_TYPE + ", avro/binary");
       urlConn.setDoInput(true);
       urlConn.setDoOutput(true);
 
@@ -436,6 +643,10 @@ public final class ClientMessagingService implements MessagingService {
           urlConn.disconnect();
         }
       }, "Failed to update topic " + topicId);
+
+      if (MessagesBinaryFormat.CONTENT_TYPE.equalsIgnoreCase(getContentType(urlConn.getHeaderFields()))) {
+        return createBinaryIterator(urlConn);
+      }
       verifyContentType(urlConn.getHeaderFields(), "avro/binary");
 
       // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
@@ -482,5 +693,30 @@ public final class ClientMessagingService implements MessagingService {
         }
       };
     }
+
+    /**
+     * Creates a {@link CloseableIterator} that decodes messages encoded with the {@link MessagesBinaryFormat}
+     * from the response of the given connection.
+     */
+    private CloseableIterator<RawMessage> createBinaryIterator(HttpURLConnection urlConn) throws IOException {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(urlConn.getInputStream()));
+      return new AbstractCloseableIterator<RawMessage>() {
+        @Override
+        protected RawMessage computeNext() {
+          try {
+            RawMessage message = MessagesBinaryFormat.decode(input);
+            return message == null ? endOfData() : message;
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
+
+        @Override
+        public void close() {
+          Closeables.closeQuietly(input);
+          urlConn.disconnect();
+        }
+      };
+    }
   }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.context;
+
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.messaging.Message;
+import io.cdap.cdap.api.messaging.MessageFetcher;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageFetcher} that can have the messaging system wait for new messages when there is no message
+ * available to fetch.
+ */
+public interface PollingMessageFetcher extends MessageFetcher {
+
+  /**
+   * Fetches messages from the given topic that were published after a message, identified by the given
+   * message id. If there is no such message, waits for new messages up to the given timeout.
+   *
+   * @param namespace namespace of the topic
+   * @param topic name of the topic
+   * @param limit maximum number of messages to fetch
+   * @param afterMessageId message id returned from the {@link Message#getId()} method from a prior call to
+   *                       one of the {@code fetch} methods. If it is {@code null}, it will fetch from
+   *                       the first available message.
+   * @param pollTimeoutMillis maximum number of milliseconds to wait for new messages, {@code 0} to not wait
+   * @return a {@link CloseableIterator} of {@link Message}
+   * @throws IOException if there was a failure to communicate with the messaging system
+   * @throws TopicNotFoundException if the give topic doesn't exist
+   */
+  CloseableIterator<Message> fetch(String namespace, String topic, int limit, @Nullable String afterMessageId,
+                                   long pollTimeoutMillis) throws TopicNotFoundException, IOException;
+}
@@ -19,13 +19,19 @@ package io.cdap.cdap.messaging.distributed;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.ServiceUnavailableException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.conf.SConfiguration;
 import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -37,24 +43,37 @@ import io.cdap.cdap.messaging.store.cache.MessageTableCacheProvider;
 import io.cdap.cdap.messaging.store.hbase.HBaseTableFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
+import io.cdap.http.HttpHandler;
 import org.apache.twill.api.ElectionHandler;
 import org.apache.twill.common.Threads;
+import org.apache.twill.discovery.DiscoveryService;
 import org.apache.twill.internal.zookeeper.LeaderElection;
 import org.apache.twill.zookeeper.ZKClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 /**
  * A {@link MessagingService} that performs lead-election and only operates if it is currently a leader.
+ *
+ * Topics are partitioned into the number of shards as configured by {@link Constants.MessagingSystem#NUM_SHARDS}.
+ * Each shard has its own leader election, {@link CoreMessagingService} and {@link MessagingHttpService}, hence
+ * different instances can be the leaders of different shards. Operations on a topic are only served if
+ * this instance is currently the leader of the shard that the topic belongs to.
  */
 public class LeaderElectionMessagingService extends AbstractIdleService implements MessagingService {
 
@@ -64,9 +83,8 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
   private final CConfiguration cConf;
   private final MessageTableCacheProvider cacheProvider;
   private final ZKClient zkClient;
-  private final AtomicMarkableReference<DelegateService> delegate;
-  private boolean tableUpgraded;
-  private LeaderElection leaderElection;
+  private final List<Shard> shards;
+  private boolean tablesUpgraded;
   private ScheduledExecutorService delayExecutor;
 
   @Inject
@@ -76,54 +94,33 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     this.cConf = cConf;
     this.cacheProvider = cacheProvider;
     this.zkClient = zkClient;
-    this.delegate = new AtomicMarkableReference<>(null, false);
+
+    int numShards = MessagingServiceUtils.getNumShards(cConf);
+    List<Shard> shards = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      shards.add(new Shard(i));
+    }
+    this.shards = shards;
   }
 
   @Override
   protected void startUp() throws Exception {
     delayExecutor = Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("fencing-delay"));
 
-    // Starts leader election
-    final CountDownLatch latch = new CountDownLatch(1);
-    leaderElection = new LeaderElection(zkClient, Constants.Service.MESSAGING_SERVICE, new ElectionHandler() {
-      @Override
-      public void leader() {
-        if (!tableUpgraded) {
-          upgradeTable();
-          tableUpgraded = true;
-        }
-
-        final DelegateService delegateService = new DelegateService(injector.getInstance(CoreMessagingService.class),
-                                                                    injector.getInstance(MessagingHttpService.class));
-        updateDelegate(delegateService);
-        LOG.info("Messaging service instance {} running at {} becomes leader",
-                 cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID),
-                 cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS));
-
-        fencingStart(delegateService);
-        latch.countDown();
-      }
-
-      @Override
-      public void follower() {
-        updateDelegate(null);
-        LOG.info("Messaging service instance {} running at {} becomes follower",
-                 cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID),
-                 cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS));
-        latch.countDown();
-      }
-    });
-    leaderElection.startAndWait();
+    // Starts leader election for all shards and wait for the first election results
+    CountDownLatch latch = new CountDownLatch(shards.size());
+    for (Shard shard : shards) {
+      shard.startElection(latch);
+    }
     latch.await();
   }
 
   @Override
   protected void shutDown() throws Exception {
     try {
-      leaderElection.stopAndWait();
-    } catch (Exception e) {
-      // It can happen if it is currently disconnected from ZK. There is no harm in just continue the shutdown process.
-      LOG.warn("Exception during shutting down leader election", e);
+      for (Shard shard : shards) {
+        shard.stopElection();
+      }
     } finally {
       delayExecutor.shutdownNow();
     }
@@ -131,48 +128,101 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
-    getMessagingService().createTopic(topicMetadata);
+    getMessagingService(topicMetadata.getTopicId()).createTopic(topicMetadata);
   }
 
   @Override
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
-    getMessagingService().updateTopic(topicMetadata);
+    getMessagingService(topicMetadata.getTopicId()).updateTopic(topicMetadata);
   }
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
-    getMessagingService().deleteTopic(topicId);
+    getMessagingService(topicId).deleteTopic(topicId);
   }
 
   @Override
   public TopicMetadata getTopic(TopicId topicId) throws TopicNotFoundException, IOException {
-    return getMessagingService().getTopic(topicId);
+    return getMessagingService(topicId).getTopic(topicId);
   }
 
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
-    return getMessagingService().listTopics(namespaceId);
+    // All shards share the same metadata table, hence can be served by any shard
+    for (Shard shard : shards) {
+      MessagingService messagingService = shard.getMessagingService();
+      if (messagingService != null) {
+        return messagingService.listTopics(namespaceId);
+      }
+    }
+    throw createServiceUnavailableException();
   }
 
   @Override
   public MessageFetcher prepareFetch(TopicId topicId) throws TopicNotFoundException, IOException {
-    return getMessagingService().prepareFetch(topicId);
+    return getMessagingService(topicId).prepareFetch(topicId);
   }
 
   @Override
   @Nullable
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
-    return getMessagingService().publish(request);
+    return getMessagingService(request.getTopicId()).publish(request);
+  }
+
+  @Override
+  public void publish(Collection<? extends StoreRequest> requests,
+                      Consumer<? super StoreRequest> publishedListener) throws TopicNotFoundException, IOException {
+    if (shards.size() == 1) {
+      getMessagingService(shards.get(0)).publish(requests, publishedListener);
+      return;
+    }
+
+    Map<Shard, List<StoreRequest>> shardRequests = new LinkedHashMap<>();
+    for (StoreRequest request : requests) {
+      shardRequests.computeIfAbsent(getShard(request.getTopicId()), shard -> new ArrayList<>()).add(request);
+    }
+    for (Map.Entry<Shard, List<StoreRequest>> entry : shardRequests.entrySet()) {
+      getMessagingService(entry.getKey()).publish(entry.getValue(), publishedListener);
+    }
   }
 
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
-    getMessagingService().storePayload(request);
+    getMessagingService(request.getTopicId()).storePayload(request);
   }
 
   @Override
   public void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException {
-    getMessagingService().rollback(topicId, rollbackDetail);
+    getMessagingService(topicId).rollback(topicId, rollbackDetail);
+  }
+
+  @Nullable
+  @Override
+  public byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws TopicNotFoundException, IOException {
+    return getMessagingService(topicId).getConsumerOffset(topicId, consumerGroup);
+  }
+
+  @Override
+  public boolean commitConsumerOffset(TopicId topicId, String consumerGroup, @Nullable byte[] expectedOffset,
+                                      byte[] offset) throws TopicNotFoundException, IOException {
+    return getMessagingService(topicId).commitConsumerOffset(topicId, consumerGroup, expectedOffset, offset);
+  }
+
+  @Override
+  public Map<String, Integer> getConsumerLags(TopicId topicId,
+                                              int maxLag) throws TopicNotFoundException, IOException {
+    return getMessagingService(topicId).getConsumerLags(topicId, maxLag);
+  }
+
+  /**
+   * Upgrades the TMS tables once per instance. It is called by whichever shard this instance first becomes
+   * the leader of, so that the tables get upgraded no matter which shards this instance is leading.
+   */
+  private synchronized void ensureTablesUpgraded() {
+    if (!tablesUpgraded) {
+      upgradeTable();
+      tablesUpgraded = true;
+    }
   }
 
   private void upgradeTable() {
@@ -205,50 +255,148 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     return factory instanceof HBaseTableFactory ? (HBaseTableFactory) factory : null;
   }
 
+  private Shard getShard(TopicId topicId) {
+    return shards.get(MessagingServiceUtils.getShard(topicId, shards.size()));
+  }
+
+  private MessagingService getMessagingService(TopicId topicId) {
+    return getMessagingService(getShard(topicId));
+  }
+
+  private MessagingService getMessagingService(Shard shard) {
+    MessagingService messagingService = shard.getMessagingService();
+    if (messagingService == null) {
+      throw createServiceUnavailableException();
+    }
+    return messagingService;
+  }
+
+  private ServiceUnavailableException createServiceUnavailableException() {
+    return new ServiceUnavailableException(Constants.Service.MESSAGING_SERVICE,
+                                           "Messaging service is temporarily unavailable due to leader transition");
+  }
+
   /**
-   * Updates the delegate with the given {@link DelegateService} and stop the old one.
-   * It also mark the delegate not usable.
+   * Creates a {@link MessagingHttpService} for serving requests of the given shard.
    */
-  private void updateDelegate(@Nullable DelegateService newService) {
-    DelegateService oldService = delegate.getReference();
-    while (!delegate.compareAndSet(oldService, newService, delegate.isMarked(), false)) {
-      oldService = delegate.getReference();
-    }
+  private MessagingHttpService createHttpService(int shard) {
+    Set<HttpHandler> handlers = injector.getInstance(
+      Key.get(new TypeLiteral<Set<HttpHandler>>() { }, Names.named(Constants.MessagingSystem.HANDLER_BINDING_NAME)));
+    return new MessagingHttpService(cConf, injector.getInstance(SConfiguration.class),
+                                    injector.getInstance(DiscoveryService.class),
+                                    injector.getInstance(MetricsCollectionService.class), handlers, shard);
+  }
+
+  /**
+   * Private class to hold the leader election and the active {@link DelegateService} for a shard.
+   */
+  private final class Shard {
 
-    if (oldService != null) {
-      oldService.stopAndWait();
+    private final int shard;
+    private final AtomicMarkableReference<DelegateService> delegate;
+    private LeaderElection leaderElection;
+
+    Shard(int shard) {
+      this.shard = shard;
+      this.delegate = new AtomicMarkableReference<>(null, false);
     }
-  }
 
-  private void fencingStart(final DelegateService service) {
-    Runnable runnable = new Runnable() {
-      @Override
-      public void run() {
-        service.startAndWait();
-        // If failed to mark the service to become available, this means the follower() call happened before this,
-        // so just go ahead and shutdown the service.
-        if (!delegate.attemptMark(service, true)) {
-          service.stopAndWait();
+    void startElection(CountDownLatch latch) {
+      String name = MessagingServiceUtils.getShardServiceName(shard);
+      leaderElection = new LeaderElection(zkClient, name, new ElectionHandler() {
+        @Override
+        public void leader() {
+          ensureTablesUpgraded();
+
+          // Each shard only creates the system topics that it owns
+          CoreMessagingService messagingService = injector.getInstance(CoreMessagingService.class);
+          int numShards = shards.size();
+          if (numShards > 1) {
+            messagingService.setSystemTopicFilter(
+              topicId -> MessagingServiceUtils.getShard(topicId, numShards) == shard);
+          }
+
+          DelegateService delegateService = new DelegateService(shard, messagingService, createHttpService(shard));
+          updateDelegate(delegateService);
+          LOG.info("Messaging service instance {} running at {} becomes leader of {}",
+                   cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID),
+                   cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS), name);
+
+          fencingStart(delegateService);
+          latch.countDown();
         }
+
+        @Override
+        public void follower() {
+          updateDelegate(null);
+          LOG.info("Messaging service instance {} running at {} becomes follower of {}",
+                   cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID),
+                   cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS), name);
+          latch.countDown();
+        }
+      });
+      leaderElection.startAndWait();
+    }
+
+    void stopElection() {
+      try {
+        leaderElection.stopAndWait();
+      } catch (Exception e) {
+        // It can happen if it is currently disconnected from ZK.
+        // There is no harm in just continue the shutdown process.
+        LOG.warn("Exception during shutting down leader election of shard {}", shard, e);
       }
-    };
-
-    long fencingDelaySeconds = cConf.getLong(Constants.MessagingSystem.HA_FENCING_DELAY_SECONDS);
-    if (fencingDelaySeconds <= 0) {
-      // No-fencing, so just start synchronously. Should only for unit-testing.
-      runnable.run();
-    } else {
-      delayExecutor.schedule(runnable, fencingDelaySeconds, TimeUnit.SECONDS);
     }
-  }
 
-  private MessagingService getMessagingService() {
-    DelegateService delegateService = delegate.getReference();
-    if (delegateService == null || !delegate.isMarked()) {
-      throw new ServiceUnavailableException(Constants.Service.MESSAGING_SERVICE,
-                                            "Messaging service is temporarily unavailable due to leader transition");
+    /**
+     * Returns the {@link MessagingService} of this shard or {@code null} if this instance is not
+     * currently the active leader of this shard.
+     */
+    @Nullable
+    MessagingService getMessagingService() {
+      DelegateService delegateService = delegate.getReference();
+      if (delegateService == null || !delegate.isMarked()) {
+        return null;
+      }
+      return delegateService.getMessagingService();
+    }
+
+    /**
+     * Updates the delegate with the given {@link DelegateService} and stop the old one.
+     * It also mark the delegate not usable.
+     */
+    private void updateDelegate(@Nullable DelegateService newService) {
+      DelegateService oldService = delegate.getReference();
+      while (!delegate.compareAndSet(oldService, newService, delegate.isMarked(), false)) {
+        oldService = delegate.getReference();
+      }
+
+      if (oldService != null) {
+        oldService.stopAndWait();
+      }
+    }
+
+    private void fencingStart(final DelegateService service) {
+      Runnable runnable = new Runnable() {
+        @Override
+        public void run() {
+          service.startAndWait();
+          // If failed to mark the service to become available, this means the follower() call happened before this,
+          // so just go ahead and shutdown the service.
+          if (!delegate.attemptMark(service, true)) {
+            service.stopAndWait();
+          }
+        }
+      };
+
+      long fencingDelaySeconds = cConf.getLong(Constants.MessagingSystem.HA_FENCING_DELAY_SECONDS);
+      if (fencingDelaySeconds <= 0) {
+        // No-fencing, so just start synchronously. Should only for unit-testing.
+        runnable.run();
+      } else {
+        delayExecutor.schedule(runnable, fencingDelaySeconds, TimeUnit.SECONDS);
+      }
     }
-    return delegateService.getMessagingService();
   }
 
   /**
@@ -256,10 +404,12 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
    */
   private final class DelegateService extends AbstractIdleService {
 
+    private final int shard;
     private final CoreMessagingService messagingService;
     private final MessagingHttpService httpService;
 
-    DelegateService(CoreMessagingService messagingService, MessagingHttpService httpService) {
+    DelegateService(int shard, CoreMessagingService messagingService, MessagingHttpService httpService) {
+      this.shard = shard;
       this.messagingService = messagingService;
       this.httpService = httpService;
     }
@@ -276,8 +426,9 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
         httpService.stopAndWait();
         messagingService.stopAndWait();
       } finally {
-        // Clear the table cache on shutting down.
-        cacheProvider.clear();
+        // Clear the table cache of topics in this shard on shutting down.
+        int numShards = shards.size();
+        cacheProvider.clear(topicId -> MessagingServiceUtils.getShard(topicId, numShards) == shard);
       }
     }
 
@@ -49,6 +49,7 @@ import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.HttpHandler;
 
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
 /**
@@ -119,6 +120,11 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
         public void clear() {
           // no-op
         }
+
+        @Override
+        public void clear(Predicate<TopicId> topicFilter) {
+          // no-op
+        }
       });
 
       bind(TableFactory.class).to(LevelDBTableFactory.class).in(Scopes.SINGLETON);
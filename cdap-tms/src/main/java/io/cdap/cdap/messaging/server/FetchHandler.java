@@ -28,6 +28,7 @@ import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessagesBinaryFormat;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.data.RawMessage;
@@ -65,10 +66,14 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -86,19 +91,31 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
+  private final long maxPollTimeoutMillis;
+  // Limits the number of threads that can be held by poll requests waiting for messages
+  private final Semaphore pollPermits;
   private int messageChunkSize;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxPollTimeoutMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_MAX_POLL_TIMEOUT_MS);
+    // Requests are handled in the IO threads if there is no executor thread.
+    // Keep at least half of the threads handling requests for the requests that don't wait.
+    int executorThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_EXECUTOR_THREADS);
+    int requestThreads = executorThreads > 0
+      ? executorThreads : cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS);
+    this.pollPermits = new Semaphore(Math.min(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_MAX_POLL_REQUESTS),
+                                              requestThreads / 2));
   }
 
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeoutMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -111,11 +128,33 @@ public final class FetchHandler extends AbstractHttpHandler {
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    if (timeoutMillis < 0) {
+      throw new BadRequestException("Poll timeout must be >= 0. Topic: " + topicId);
+    }
+
+    // Fetch the messages. Only wait for messages if there is a thread available for waiting, otherwise returns
+    // immediately and let the client poll again.
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+    boolean waiting = timeoutMillis > 0 && maxPollTimeoutMillis > 0 && pollPermits.tryAcquire();
+    CloseableIterator<RawMessage> iterator;
+    try {
+      iterator = fetchMessages(fetchRequest, topicId, waiting ? Math.min(timeoutMillis, maxPollTimeoutMillis) : 0L);
+    } finally {
+      if (waiting) {
+        pollPermits.release();
+      }
+    }
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
-                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      // Use the binary format if the client accepts it
+      String accept = request.headers().get(HttpHeaderNames.ACCEPT);
+      if (accept != null && accept.contains(MessagesBinaryFormat.CONTENT_TYPE)) {
+        responder.sendContent(HttpResponseStatus.OK, new BinaryMessagesBodyProducer(iterator, messageChunkSize),
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE,
+                                                           MessagesBinaryFormat.CONTENT_TYPE));
+      } else {
+        responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      }
     } catch (Throwable t) {
       iterator.close();
       throw t;
@@ -123,11 +162,14 @@ public final class FetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
+   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request. If the poll timeout
+   * is positive, this method blocks until there are messages available or the timeout has passed.
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest, TopicId topicId,
+                                                      long pollTimeoutMillis)
+    throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
+    fetcher.setPollTimeout(pollTimeoutMillis, TimeUnit.MILLISECONDS);
 
     Object startFrom = fetchRequest.get("startFrom");
     if (startFrom != null) {
@@ -250,18 +292,71 @@ public final class FetchHandler extends AbstractHttpHandler {
     @Override
     public void handleError(@Nullable Throwable cause) {
       iterator.close();
-      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
-      if (cause instanceof SocketException
-        || cause instanceof ClosedChannelException
-        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
-        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
-      } else {
-        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
-        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
-        // Also log a trace to provide a way to see every error if needed
-        LOG.trace("Exception raised when sending messages back to client", cause);
+      logSendError(cause);
+    }
+  }
+
+  /**
+   * A {@link BodyProducer} to send back messages encoded with the {@link MessagesBinaryFormat}.
+   * Messages are written directly into a new buffer for each chunk, which is handed to Netty without copying.
+   */
+  private static class BinaryMessagesBodyProducer extends BodyProducer {
+
+    private final CloseableIterator<RawMessage> iterator;
+    private final int messageChunkSize;
+    private boolean ended;
+
+    BinaryMessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+      this.iterator = iterator;
+      this.messageChunkSize = messageChunkSize;
+    }
+
+    @Override
+    public ByteBuf nextChunk() throws Exception {
+      // Already sent all messages, return empty to signal the end of response
+      if (ended) {
+        return Unpooled.EMPTY_BUFFER;
+      }
+
+      ByteBuf chunk = Unpooled.buffer(messageChunkSize);
+      while (iterator.hasNext() && chunk.writerIndex() < messageChunkSize) {
+        MessagesBinaryFormat.encode(iterator.next(), chunk);
       }
+
+      if (!iterator.hasNext()) {
+        ended = true;
+        MessagesBinaryFormat.encodeEnd(chunk);
+      }
+      return chunk;
+    }
+
+    @Override
+    public void finished() throws Exception {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      logSendError(cause);
+    }
+  }
+
+  /**
+   * Logs the failure in sending messages back to client.
+   */
+  private static void logSendError(@Nullable Throwable cause) {
+    // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+    if (cause instanceof SocketException
+      || cause instanceof ClosedChannelException
+      || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
+      // This can easily caused by client close connection prematurely. Don't want to flood the log.
+      LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
+    } else {
+      // Use sampling logger to log to avoid flooding the log if there is any systematic failure
+      SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
+      // Also log a trace to provide a way to see every error if needed
+      LOG.trace("Exception raised when sending messages back to client", cause);
     }
   }
 }
@@ -31,6 +31,7 @@ import io.cdap.cdap.common.discovery.URIScheme;
 import io.cdap.cdap.common.http.CommonNettyHttpServiceBuilder;
 import io.cdap.cdap.common.metrics.MetricsReporterHook;
 import io.cdap.cdap.common.security.HttpsEnabler;
+import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.security.spi.authentication.SecurityRequestContext;
 import io.cdap.http.HttpHandler;
 import io.cdap.http.HttpResponder;
@@ -42,7 +43,12 @@ import org.apache.twill.discovery.DiscoveryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * The http server for supporting messaging system REST API.
@@ -52,18 +58,46 @@ public class MessagingHttpService extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(MessagingHttpService.class);
 
   private final DiscoveryService discoveryService;
+  private final List<String> discoverableNames;
   private final NettyHttpService httpService;
-  private Cancellable cancelDiscovery;
+  private final List<Cancellable> cancelDiscoveries;
 
   @Inject
   public MessagingHttpService(CConfiguration cConf, SConfiguration sConf, DiscoveryService discoveryService,
                               MetricsCollectionService metricsCollectionService,
                               @Named(Constants.MessagingSystem.HANDLER_BINDING_NAME) Set<HttpHandler> handlers) {
+    // This instance serves all topics, hence announces itself for all shards
+    this(cConf, sConf, discoveryService, metricsCollectionService, handlers, 0,
+         IntStream.range(0, MessagingServiceUtils.getNumShards(cConf))
+           .mapToObj(MessagingServiceUtils::getShardServiceName)
+           .collect(Collectors.toList()));
+  }
+
+  /**
+   * Creates an instance that serves requests for topics of the given shard.
+   * It announces itself with the discoverable name of the shard.
+   *
+   * @see MessagingServiceUtils#getShardServiceName(int)
+   */
+  public MessagingHttpService(CConfiguration cConf, SConfiguration sConf, DiscoveryService discoveryService,
+                              MetricsCollectionService metricsCollectionService,
+                              Set<HttpHandler> handlers, int shard) {
+    this(cConf, sConf, discoveryService, metricsCollectionService, handlers, shard,
+         Collections.singletonList(MessagingServiceUtils.getShardServiceName(shard)));
+  }
+
+  private MessagingHttpService(CConfiguration cConf, SConfiguration sConf, DiscoveryService discoveryService,
+                               MetricsCollectionService metricsCollectionService,
+                               Set<HttpHandler> handlers, int shard, List<String> discoverableNames) {
     this.discoveryService = discoveryService;
+    this.discoverableNames = discoverableNames;
+    this.cancelDiscoveries = new ArrayList<>();
 
+    // If a fixed port is configured, each shard uses a different port
+    int port = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_BIND_PORT);
     NettyHttpService.Builder builder = new CommonNettyHttpServiceBuilder(cConf, Constants.Service.MESSAGING_SERVICE)
       .setHost(cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS))
-      .setPort(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_BIND_PORT))
+      .setPort(port == 0 ? 0 : port + shard)
       .setHandlerHooks(ImmutableList.of(
         new MetricsReporterHook(metricsCollectionService, Constants.Service.MESSAGING_SERVICE)))
       .setWorkerThreadPoolSize(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS))
@@ -98,15 +132,18 @@ public class MessagingHttpService extends AbstractIdleService {
   @Override
   protected void startUp() throws Exception {
     httpService.start();
-    cancelDiscovery = discoveryService.register(
-      ResolvingDiscoverable.of(URIScheme.createDiscoverable(Constants.Service.MESSAGING_SERVICE, httpService)));
-    LOG.info("Messaging HTTP server started on {}", httpService.getBindAddress());
+    for (String discoverableName : discoverableNames) {
+      cancelDiscoveries.add(discoveryService.register(
+        ResolvingDiscoverable.of(URIScheme.createDiscoverable(discoverableName, httpService))));
+    }
+    LOG.info("Messaging HTTP server for {} started on {}", discoverableNames, httpService.getBindAddress());
   }
 
   @Override
   protected void shutDown() throws Exception {
     try {
-      cancelDiscovery.cancel();
+      cancelDiscoveries.forEach(Cancellable::cancel);
+      cancelDiscoveries.clear();
     } finally {
       httpService.stop();
     }
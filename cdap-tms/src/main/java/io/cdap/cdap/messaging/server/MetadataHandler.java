@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -41,10 +42,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for metadata REST API for the messaging system.
@@ -55,6 +58,7 @@ public final class MetadataHandler extends AbstractHttpHandler {
   private static final Gson GSON = new Gson();
   private static final Type TOPIC_PROPERTY_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Type CONSUMER_LAGS_TYPE = new TypeToken<Map<String, Integer>>() { }.getType();
   private static final Function<TopicId, String> TOPIC_TO_NAME = new Function<TopicId, String>() {
     @Override
     public String apply(TopicId topicId) {
@@ -119,6 +123,55 @@ public final class MetadataHandler extends AbstractHttpHandler {
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
+  @GET
+  @Path("/topics/{topic}/consumers/{group}/offset")
+  public void getConsumerOffset(HttpRequest request, HttpResponder responder,
+                                @PathParam("namespace") String namespace,
+                                @PathParam("topic") String topic,
+                                @PathParam("group") String group) throws Exception {
+    TopicId topicId = new NamespaceId(namespace).topic(topic);
+    byte[] offset = messagingService.getConsumerOffset(topicId, group);
+    if (offset == null) {
+      responder.sendStatus(HttpResponseStatus.NO_CONTENT);
+      return;
+    }
+    responder.sendJson(HttpResponseStatus.OK,
+                       GSON.toJson(Collections.singletonMap("offset", Bytes.toHexString(offset)), TOPIC_PROPERTY_TYPE));
+  }
+
+  @PUT
+  @Path("/topics/{topic}/consumers/{group}/offset")
+  public void commitConsumerOffset(FullHttpRequest request, HttpResponder responder,
+                                   @PathParam("namespace") String namespace,
+                                   @PathParam("topic") String topic,
+                                   @PathParam("group") String group) throws Exception {
+    TopicId topicId = new NamespaceId(namespace).topic(topic);
+    Map<String, String> body = decodeTopicProperties(request.content());
+    String offset = body.get("offset");
+    if (offset == null) {
+      throw new BadRequestException("Missing offset in the request body.");
+    }
+    String expected = body.get("expected");
+    boolean committed = messagingService.commitConsumerOffset(topicId, group,
+                                                              expected == null ? null : Bytes.fromHexString(expected),
+                                                              Bytes.fromHexString(offset));
+    responder.sendStatus(committed ? HttpResponseStatus.OK : HttpResponseStatus.CONFLICT);
+  }
+
+  @GET
+  @Path("/topics/{topic}/consumers/lags")
+  public void getConsumerLags(HttpRequest request, HttpResponder responder,
+                              @PathParam("namespace") String namespace,
+                              @PathParam("topic") String topic,
+                              @QueryParam("max") @DefaultValue("10000") int maxLag) throws Exception {
+    if (maxLag <= 0) {
+      throw new BadRequestException("The max lag must be a positive integer.");
+    }
+    TopicId topicId = new NamespaceId(namespace).topic(topic);
+    responder.sendJson(HttpResponseStatus.OK,
+                       GSON.toJson(messagingService.getConsumerLags(topicId, maxLag), CONSUMER_LAGS_TYPE));
+  }
+
   /**
    * Decodes the topic property map from the given request body.
    */
@@ -16,7 +16,10 @@
 
 package io.cdap.cdap.messaging.server;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.messaging.MessagingService;
@@ -50,6 +53,7 @@ import org.apache.avro.io.EncoderFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import javax.ws.rs.POST;
@@ -59,9 +63,11 @@ import javax.ws.rs.PathParam;
 /**
  * A netty http handler for handling message storage REST API for the messaging system.
  */
-@Path("/v1/namespaces/{namespace}/topics/{topic}")
+@Path("/v1/namespaces/{namespace}")
 public final class StoreHandler extends AbstractHttpHandler {
 
+  private static final Gson GSON = new Gson();
+
   private final MessagingService messagingService;
 
   @Inject
@@ -70,7 +76,7 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   @POST
-  @Path("/publish")
+  @Path("/topics/{topic}/publish")
   public void publish(FullHttpRequest request, HttpResponder responder,
                       @PathParam("namespace") String namespace,
                       @PathParam("topic") String topic) throws Exception {
@@ -97,7 +103,34 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   @POST
-  @Path("/store")
+  @Path("/publish")
+  public void batchPublish(FullHttpRequest request, HttpResponder responder,
+                           @PathParam("namespace") String namespace) throws Exception {
+    NamespaceId namespaceId = new NamespaceId(namespace);
+    List<StoreRequest> storeRequests = createBatchStoreRequests(namespaceId, request);
+
+    for (StoreRequest storeRequest : storeRequests) {
+      if (!storeRequest.hasPayload()) {
+        throw new BadRequestException("Empty payload is not allowed for batch publish. Topic: "
+                                        + storeRequest.getTopicId());
+      }
+    }
+
+    try {
+      // The client retries the whole call on failure, hence there is no need to track the published requests
+      messagingService.publish(storeRequests, published -> { });
+    } catch (TopicNotFoundException e) {
+      // Response with the topic id so that the client knows which topic is missing
+      responder.sendJson(HttpResponseStatus.NOT_FOUND,
+                         GSON.toJson(ImmutableMap.of("namespace", e.getNamespace(), "topic", e.getTopic(),
+                                                     "message", e.getMessage())));
+      return;
+    }
+    responder.sendStatus(HttpResponseStatus.OK);
+  }
+
+  @POST
+  @Path("/topics/{topic}/store")
   public void store(FullHttpRequest request, HttpResponder responder,
                     @PathParam("namespace") String namespace,
                     @PathParam("topic") String topic) throws Exception {
@@ -115,7 +148,7 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   @POST
-  @Path("/rollback")
+  @Path("/topics/{topic}/rollback")
   public void rollback(FullHttpRequest request, HttpResponder responder,
                        @PathParam("namespace") String namespace,
                        @PathParam("topic") String topic) throws Exception {
@@ -141,6 +174,26 @@ public final class StoreHandler extends AbstractHttpHandler {
     return new GenericRecordStoreRequest(topicId, datumReader.read(null, decoder));
   }
 
+  /**
+   * Creates a list of {@link StoreRequest} for the given namespace based on the given batch publish request,
+   * which is encoded with the {@link Schemas.V1.BatchPublishRequest#SCHEMA}.
+   */
+  private List<StoreRequest> createBatchStoreRequests(NamespaceId namespaceId,
+                                                      FullHttpRequest request) throws Exception {
+    if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
+      throw new BadRequestException("Only avro/binary content type is supported.");
+    }
+
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
+    DatumReader<List<GenericRecord>> datumReader = new GenericDatumReader<>(Schemas.V1.BatchPublishRequest.SCHEMA);
+    List<StoreRequest> storeRequests = new ArrayList<>();
+    for (GenericRecord record : datumReader.read(null, decoder)) {
+      // The record doesn't have the transactionWritePointer field, hence it is always non-transactional
+      storeRequests.add(new GenericRecordStoreRequest(namespaceId.topic(record.get("topic").toString()), record));
+    }
+    return storeRequests;
+  }
+
   /**
    * Encodes the {@link RollbackDetail} object as avro record based on the {@link Schemas.V1.PublishResponse#SCHEMA}.
    */
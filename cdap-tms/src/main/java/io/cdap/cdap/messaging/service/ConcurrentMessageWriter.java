@@ -20,6 +20,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.ServiceUnavailableException;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -31,7 +33,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -52,21 +57,35 @@ import javax.annotation.concurrent.ThreadSafe;
  * 4. Provides an Iterator of PendingStoreRequest, which consumes from the ConcurrentLinkedQueue mentioned in step 1.
  * 5. The message table store method will consume the Iterator until it is empty
  * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 7. Set the AtomicBoolean flag back to false, and wake up the thread owning the head of the queue if it is not empty.
+ * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, park until woken up and go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * The loop between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
+ * get written and flushed. Threads that failed to become the writer are parked instead of spinning, and are woken up
+ * either when their requests are completed in step 6, or when they need to take over as the writer in step 7.
+ *
+ * The number of requests waiting in the queue can be bounded. When the limit is reached, new requests are rejected
+ * with {@link ServiceUnavailableException} so that publishers can back off and retry.
+ *
+ * Optionally, the writer can operate in group commit mode. In that mode, the thread that becomes the writer in step 3
+ * lingers for up to a configured amount of time, or until a configured number of requests are pending, before
+ * draining the queue in step 4. This allows requests from more threads to be persisted with a single synced write
+ * to the underlying table, at the cost of higher latency for each individual request. The writer only lingers if
+ * there are other requests queued, so that requests without contention are persisted right away.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  // Upper bound for how long a thread parks before re-checking its request. Threads are normally woken up explicitly.
+  private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
   private final PendingStoreQueue pendingStoreQueue;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
+  private final int maxPendingRequests;
 
   /**
    * Constructor with a {@link NoopMetricsContext}. This constructor should only be used in unit-testing.
@@ -83,11 +102,30 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, 0L, 1, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param groupCommitLingerMillis maximum number of milliseconds to wait for more requests to arrive before
+   *                                persisting; {@code 0} to disable group commit
+   * @param groupCommitMaxRequests number of pending requests that triggers a write without further waiting
+   * @param maxPendingRequests maximum number of requests that can be waiting to be persisted;
+   *                           {@code 0} for no limit
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          long groupCommitLingerMillis, int groupCommitMaxRequests, int maxPendingRequests) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector,
+                                                   TimeUnit.MILLISECONDS.toNanos(Math.max(0L, groupCommitLingerMillis)),
+                                                   Math.max(1, groupCommitMaxRequests));
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
+    this.maxPendingRequests = maxPendingRequests;
   }
 
   /**
@@ -99,21 +137,62 @@ final class ConcurrentMessageWriter implements Closeable {
    * @return if the store request is transactional, then returns a {@link RollbackDetail} containing
    *         information for rollback; otherwise {@code null} will be returned.
    * @throws IOException if failed to persist the data
+   * @throws ServiceUnavailableException if there are too many requests waiting to be persisted
    */
   @Nullable
   RollbackDetail persist(StoreRequest storeRequest, TopicMetadata metadata) throws IOException {
+    checkAvailable(storeRequest);
+    return awaitPersisted(enqueue(storeRequest, metadata));
+  }
+
+  /**
+   * Checks if the given {@link StoreRequest} can be accepted by this writer.
+   *
+   * @throws IOException if this writer is already closed
+   * @throws ServiceUnavailableException if there are too many requests waiting to be persisted
+   */
+  void checkAvailable(StoreRequest storeRequest) throws IOException {
     if (closed.get()) {
       throw new IOException("Message writer is already closed");
     }
+    if (maxPendingRequests > 0 && pendingStoreQueue.size() >= maxPendingRequests) {
+      metricsCollector.increment("persist.rejected", 1L);
+      throw new ServiceUnavailableException(Constants.Service.MESSAGING_SERVICE,
+                                            "Too many pending requests for writing to topic "
+                                              + storeRequest.getTopicId() + ". Please retry later.");
+    }
+  }
 
+  /**
+   * Enqueues the given {@link StoreRequest} to be persisted without waiting for it. The returned
+   * {@link PendingStoreRequest} must be passed to {@link #awaitPersisted(PendingStoreRequest)}, which also
+   * persists it if no other thread does. Enqueuing requests to multiple writers before waiting allows them to be
+   * persisted together with the requests from other threads.
+   *
+   * @param storeRequest contains information about payload to be store
+   * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
+   * @return the {@link PendingStoreRequest} for waiting for the completion of the store request
+   */
+  PendingStoreRequest enqueue(StoreRequest storeRequest, TopicMetadata metadata) {
     PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
     pendingStoreQueue.enqueue(pendingStoreRequest);
-
     metricsCollector.increment("persist.requested", 1L);
+    return pendingStoreRequest;
+  }
 
+  /**
+   * Waits for the given {@link PendingStoreRequest} returned from {@link #enqueue(StoreRequest, TopicMetadata)}
+   * to be persisted.
+   *
+   * @return if the store request is transactional, then returns a {@link RollbackDetail} containing
+   *         information for rollback; otherwise {@code null} will be returned.
+   * @throws IOException if failed to persist the data
+   */
+  @Nullable
+  RollbackDetail awaitPersisted(PendingStoreRequest pendingStoreRequest) throws IOException {
     while (!pendingStoreRequest.isCompleted()) {
       if (!tryWrite()) {
-        Thread.yield();
+        pendingStoreRequest.await(WAIT_NANOS);
       }
     }
 
@@ -128,26 +207,60 @@ final class ConcurrentMessageWriter implements Closeable {
     } else {
       metricsCollector.increment("persist.failure", 1L);
       Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
-      throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
+      throw new IOException("Unable to write message to " + pendingStoreRequest.getTopicId(),
                             pendingStoreRequest.getFailureCause());
     }
   }
 
+  /**
+   * Waits for the given {@link PendingStoreRequest}s, each returned from
+   * {@link #enqueue(StoreRequest, TopicMetadata)} of the writer at the same position, to be completed.
+   * The calling thread must be the thread that enqueued all of them. It can be woken up to take over as the writer
+   * of any of the given writers, hence it tries to write with every writer it still waits for before parking again.
+   * The result of each request is then available through {@link #awaitPersisted(PendingStoreRequest)}.
+   */
+  static void awaitCompleted(List<ConcurrentMessageWriter> writers, List<PendingStoreRequest> pendingStoreRequests) {
+    while (true) {
+      PendingStoreRequest waiting = null;
+      boolean written = false;
+      for (int i = 0; i < pendingStoreRequests.size(); i++) {
+        PendingStoreRequest pendingStoreRequest = pendingStoreRequests.get(i);
+        if (!pendingStoreRequest.isCompleted()) {
+          written |= writers.get(i).tryWrite();
+          if (!pendingStoreRequest.isCompleted()) {
+            waiting = pendingStoreRequest;
+          }
+        }
+      }
+      if (waiting == null) {
+        return;
+      }
+      if (!written) {
+        waiting.await(WAIT_NANOS);
+      }
+    }
+  }
+
   /**
    * Tries to acquire the writer flag and persist the pending requests.
    *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
-   *         otherwise {@code false} will be returned.
+   * @return {@code true} if acquired the writer flag and called
+   *         {@link PendingStoreQueue#persist(StoreRequestWriter, AtomicBoolean)}; otherwise {@code false} will be
+   *         returned.
    */
   private boolean tryWrite() {
     if (!writerFlag.compareAndSet(false, true)) {
       return false;
     }
     try {
-      pendingStoreQueue.persist(messagesWriter);
+      pendingStoreQueue.persist(messagesWriter, closed);
     } finally {
       writerFlag.set(false);
     }
+    // Requests enqueued while this thread was writing have owners that failed to acquire the writer flag.
+    // Wake up one of them to take over as the writer. A thread waiting on requests of several writers retries
+    // all of them when woken up, see awaitCompleted.
+    pendingStoreQueue.signalHead();
     return true;
   }
 
@@ -159,6 +272,7 @@ final class ConcurrentMessageWriter implements Closeable {
     // Flush everything in the queue.
     // When this thread can grab the writer flag, all pending write requests must be completed since the closed
     // flag was already set to false.
+    pendingStoreQueue.wakeup();
     while (!tryWrite()) {
       Thread.yield();
     }
@@ -174,12 +288,19 @@ final class ConcurrentMessageWriter implements Closeable {
 
     private final MetricsCollector metricsCollector;
     private final Queue<PendingStoreRequest> writeQueue;
+    private final AtomicInteger writeQueueSize;
     private final List<PendingStoreRequest> inflightRequests;
+    private final long lingerNanos;
+    private final int maxLingerRequests;
+    private volatile Thread lingeringThread;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, long lingerNanos, int maxLingerRequests) {
       this.metricsCollector = metricsCollector;
       this.writeQueue = new ConcurrentLinkedQueue<>();
+      this.writeQueueSize = new AtomicInteger();
       this.inflightRequests = new ArrayList<>(100);
+      this.lingerNanos = lingerNanos;
+      this.maxLingerRequests = maxLingerRequests;
     }
 
     /**
@@ -187,12 +308,48 @@ final class ConcurrentMessageWriter implements Closeable {
      */
     void enqueue(PendingStoreRequest storeRequest) {
       writeQueue.add(storeRequest);
+      if (writeQueueSize.incrementAndGet() >= maxLingerRequests) {
+        wakeup();
+      }
+    }
+
+    /**
+     * Returns the number of requests waiting in the queue.
+     */
+    int size() {
+      return writeQueueSize.get();
+    }
+
+    /**
+     * Wakes up the owner thread of the request at the head of the queue, if there is one.
+     */
+    void signalHead() {
+      PendingStoreRequest head = writeQueue.peek();
+      if (head != null) {
+        head.signal();
+      }
+    }
+
+    /**
+     * Wakes up the writer thread if it is lingering for group commit.
+     */
+    void wakeup() {
+      Thread thread = lingeringThread;
+      if (thread != null) {
+        LockSupport.unpark(thread);
+      }
     }
 
     /**
      * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
      */
-    void persist(StoreRequestWriter<?> writer) {
+    void persist(StoreRequestWriter<?> writer, AtomicBoolean closed) {
+      // Only linger if other requests are queued besides the one of the writer thread, so that a request without
+      // contention is persisted without the added latency
+      if (lingerNanos > 0 && writeQueueSize.get() > 1) {
+        linger(closed);
+      }
+
       // Capture all current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
@@ -202,18 +359,44 @@ final class ConcurrentMessageWriter implements Closeable {
       inflightRequests.clear();
       PendingStoreRequest request = writeQueue.poll();
       while (request != null) {
+        writeQueueSize.decrementAndGet();
         inflightRequests.add(request);
         request = writeQueue.poll();
       }
 
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
+      if (inflightRequests.isEmpty()) {
+        return;
+      }
 
+      long startNanos = System.nanoTime();
       try {
         writer.write(inflightRequests.iterator());
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
       }
+      metricsCollector.increment("persist.commit.count", 1L);
+      metricsCollector.gauge("persist.commit.latency.ms",
+                             TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Blocks until the number of pending requests reaches the group commit limit, the linger time has passed,
+     * or the writer is closed.
+     */
+    private void linger(AtomicBoolean closed) {
+      long deadline = System.nanoTime() + lingerNanos;
+      lingeringThread = Thread.currentThread();
+      try {
+        long remaining = lingerNanos;
+        while (remaining > 0 && writeQueueSize.get() < maxLingerRequests && !closed.get()) {
+          LockSupport.parkNanos(this, remaining);
+          remaining = deadline - System.nanoTime();
+        }
+      } finally {
+        lingeringThread = null;
+      }
     }
 
     /**
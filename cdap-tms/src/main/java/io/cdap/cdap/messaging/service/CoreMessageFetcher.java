@@ -29,13 +29,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MessageFetcher} that fetch messages directly
- * from {@link MessageTable} and {@link PayloadTable}.
+ * from {@link MessageTable} and {@link PayloadTable}. If a poll timeout is set, it uses the {@link PublishNotifier}
+ * to wait for new messages being published to the topic when there is no message available.
  */
 final class CoreMessageFetcher extends MessageFetcher {
 
@@ -44,17 +46,55 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final PublishNotifier publishNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     PublishNotifier publishNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishNotifier = publishNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long timeoutMillis = getPollTimeoutMillis();
+    if (timeoutMillis <= 0) {
+      return fetchMessages();
+    }
+
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      // Acquire the version before fetching so that no publish in between can be missed
+      long version = publishNotifier.getVersion(topicId);
+      CloseableIterator<RawMessage> iterator = fetchMessages();
+      long remaining = deadline - System.currentTimeMillis();
+      try {
+        if (remaining <= 0 || iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        closeQuietly(iterator);
+        throw t;
+      }
+      iterator.close();
+
+      try {
+        publishNotifier.await(topicId, version, remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for messages from topic " + topicId);
+      }
+    }
+  }
+
+  /**
+   * Fetches messages from the tables without waiting.
+   */
+  private CloseableIterator<RawMessage> fetchMessages() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
@@ -25,8 +25,10 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
@@ -41,6 +43,7 @@ import io.cdap.cdap.messaging.MessagingUtils;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.MetadataTable;
 import io.cdap.cdap.messaging.store.PayloadTable;
@@ -54,8 +57,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +71,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -84,7 +92,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
+  private final PublishNotifier publishNotifier;
   private final long txMaxLifeTimeInMillis;
+  private volatile Predicate<TopicId> systemTopicFilter = topicId -> true;
 
   @Inject
   protected CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -112,10 +122,19 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     //        messaging service ->
     //          "metrics collection"
     this.metricsCollectionService = metricsCollectionService;
+    this.publishNotifier = new PublishNotifier();
     this.txMaxLifeTimeInMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME,
                                                                          TxConstants.Manager.DEFAULT_TX_MAX_LIFETIME));
   }
 
+  /**
+   * Sets the filter for selecting which system topics are created by this service when it starts.
+   * By default all system topics are created. This method must be called before this service is started.
+   */
+  public void setSystemTopicFilter(Predicate<TopicId> systemTopicFilter) {
+    this.systemTopicFilter = systemTopicFilter;
+  }
+
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
@@ -142,6 +161,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       topicCache.invalidate(topicId);
       messageTableWriterCache.invalidate(topicId);
       payloadTableWriterCache.invalidate(topicId);
+      publishNotifier.remove(topicId);
     }
   }
 
@@ -168,7 +188,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     final TopicMetadata metadata = getTopic(topicId);
     return new CoreMessageFetcher(metadata,
                                   () -> createMessageTable(metadata),
-                                  () -> createPayloadTable(metadata));
+                                  () -> createPayloadTable(metadata),
+                                  publishNotifier);
   }
 
   @Nullable
@@ -179,12 +200,79 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      RollbackDetail rollbackDetail = messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      publishNotifier.published(request.getTopicId());
+      return rollbackDetail;
+    } catch (ExecutionException e) {
+      Throwable cause = Objects.firstNonNull(e.getCause(), e);
+      Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Override
+  public void publish(Collection<? extends StoreRequest> requests,
+                      Consumer<? super StoreRequest> publishedListener) throws TopicNotFoundException, IOException {
+    // Group the requests by topic, so that messages for the same topic are persisted with one table write
+    Map<TopicId, List<StoreRequest>> topicRequests = new LinkedHashMap<>();
+    for (StoreRequest request : requests) {
+      if (request.isTransactional()) {
+        throw new IllegalArgumentException("Transactional publish is not supported in batch publish. Topic: "
+                                             + request.getTopicId());
+      }
+      topicRequests.computeIfAbsent(request.getTopicId(), topicId -> new ArrayList<>()).add(request);
+    }
+
+    // Resolve all topics and writers before enqueuing any request, so that nothing is published on failure
+    List<List<StoreRequest>> requestLists = new ArrayList<>(topicRequests.size());
+    List<StoreRequest> storeRequests = new ArrayList<>(topicRequests.size());
+    List<TopicMetadata> topicMetadatas = new ArrayList<>(topicRequests.size());
+    List<ConcurrentMessageWriter> writers = new ArrayList<>(topicRequests.size());
+    try {
+      for (Map.Entry<TopicId, List<StoreRequest>> entry : topicRequests.entrySet()) {
+        List<StoreRequest> requestList = entry.getValue();
+        StoreRequest storeRequest = requestList.size() == 1
+          ? requestList.get(0)
+          : new CompositeStoreRequest(entry.getKey(), requestList);
+        topicMetadatas.add(topicCache.get(entry.getKey()));
+        ConcurrentMessageWriter writer = messageTableWriterCache.get(entry.getKey());
+        writer.checkAvailable(storeRequest);
+        requestLists.add(requestList);
+        storeRequests.add(storeRequest);
+        writers.add(writer);
+      }
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
       throw Throwables.propagate(e);
     }
+
+    // Enqueue the requests of all topics first, so that they can be persisted together with the requests from
+    // other publishers to the same topics while this thread is waiting for the other topics.
+    List<PendingStoreRequest> pendingRequests = new ArrayList<>(storeRequests.size());
+    for (int i = 0; i < storeRequests.size(); i++) {
+      pendingRequests.add(writers.get(i).enqueue(storeRequests.get(i), topicMetadatas.get(i)));
+    }
+
+    // Wait for all of them, even if some failed, so that no request is left in the queues without a waiting thread
+    ConcurrentMessageWriter.awaitCompleted(writers, pendingRequests);
+    IOException failure = null;
+    for (int i = 0; i < pendingRequests.size(); i++) {
+      try {
+        writers.get(i).awaitPersisted(pendingRequests.get(i));
+        publishNotifier.published(storeRequests.get(i).getTopicId());
+        requestLists.get(i).forEach(publishedListener);
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
   }
 
   @Override
@@ -216,13 +304,60 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     }
   }
 
+  @Nullable
+  @Override
+  public byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws TopicNotFoundException, IOException {
+    // Make sure the topic exists
+    getTopic(topicId);
+    try (MetadataTable metadataTable = createMetadataTable()) {
+      return metadataTable.getConsumerOffset(topicId, consumerGroup);
+    }
+  }
+
+  @Override
+  public boolean commitConsumerOffset(TopicId topicId, String consumerGroup, @Nullable byte[] expectedOffset,
+                                      byte[] offset) throws TopicNotFoundException, IOException {
+    getTopic(topicId);
+    try (MetadataTable metadataTable = createMetadataTable()) {
+      return metadataTable.commitConsumerOffset(topicId, consumerGroup, expectedOffset, offset);
+    }
+  }
+
+  @Override
+  public Map<String, Integer> getConsumerLags(TopicId topicId,
+                                              int maxLag) throws TopicNotFoundException, IOException {
+    Map<String, byte[]> offsets;
+    getTopic(topicId);
+    try (MetadataTable metadataTable = createMetadataTable()) {
+      offsets = metadataTable.getConsumerOffsets(topicId);
+    }
+
+    Map<String, Integer> lags = new HashMap<>();
+    for (Map.Entry<String, byte[]> entry : offsets.entrySet()) {
+      int lag = 0;
+      try (CloseableIterator<RawMessage> iterator = prepareFetch(topicId)
+        .setStartMessage(entry.getValue(), false)
+        .setLimit(maxLag)
+        .fetch()) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          lag++;
+        }
+      }
+      lags.put(entry.getKey(), lag);
+    }
+    return lags;
+  }
+
   @Override
   protected void startUp() throws Exception {
     Queue<TopicId> asyncCreationTopics = new LinkedList<>();
 
     Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
     for (TopicId topic : systemTopics) {
-      createSystemTopic(topic, asyncCreationTopics);
+      if (systemTopicFilter.test(topic)) {
+        createSystemTopic(topic, asyncCreationTopics);
+      }
     }
 
     if (!asyncCreationTopics.isEmpty()) {
@@ -365,7 +500,10 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext,
+                                             cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_LINGER_MS, 0L),
+                                             cConf.getInt(Constants.MessagingSystem.GROUP_COMMIT_MAX_REQUESTS, 1),
+                                             cConf.getInt(Constants.MessagingSystem.MAX_PENDING_STORE_REQUESTS, 0));
         }
       });
   }
@@ -396,4 +534,28 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     properties.put(TopicMetadata.GENERATION_KEY, MessagingUtils.Constants.DEFAULT_GENERATION);
     return properties;
   }
+
+  /**
+   * A non-transactional {@link StoreRequest} that contains payloads from multiple {@link StoreRequest}s
+   * of the same topic.
+   */
+  private static final class CompositeStoreRequest extends StoreRequest {
+
+    private final List<StoreRequest> requests;
+
+    CompositeStoreRequest(TopicId topicId, List<StoreRequest> requests) {
+      super(topicId, false, -1L);
+      this.requests = requests;
+    }
+
+    @Override
+    public boolean hasPayload() {
+      return requests.stream().anyMatch(StoreRequest::hasPayload);
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+      return Iterables.concat(requests).iterator();
+    }
+  }
 }
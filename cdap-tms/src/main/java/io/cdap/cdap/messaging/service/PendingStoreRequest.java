@@ -20,6 +20,7 @@ import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 
 import java.util.Iterator;
+import java.util.concurrent.locks.LockSupport;
 import javax.annotation.Nullable;
 
 /**
@@ -29,8 +30,9 @@ final class PendingStoreRequest extends StoreRequest {
 
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
+  private final Thread owner;
 
-  private boolean completed;
+  private volatile boolean completed;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -42,6 +44,7 @@ final class PendingStoreRequest extends StoreRequest {
           originalRequest.getTransactionWritePointer());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.owner = Thread.currentThread();
   }
 
   TopicMetadata getTopicMetadata() {
@@ -65,8 +68,26 @@ final class PendingStoreRequest extends StoreRequest {
   }
 
   void completed(@Nullable Throwable failureCause) {
-    completed = true;
     this.failureCause = failureCause;
+    completed = true;
+    signal();
+  }
+
+  /**
+   * Parks the calling thread, which must be the thread that created this request, until it is signalled,
+   * or the given timeout has passed. It may also return spuriously.
+   */
+  void await(long timeoutNanos) {
+    if (!completed) {
+      LockSupport.parkNanos(this, timeoutNanos);
+    }
+  }
+
+  /**
+   * Wakes up the thread that created this request if it is blocked in {@link #await(long)}.
+   */
+  void signal() {
+    LockSupport.unpark(owner);
   }
 
   void setStartTimestamp(long startTimestamp) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Tracks publishing to topics so that fetchers can block until new messages are published.
+ *
+ * Each topic has a version that gets incremented on every publish. A fetcher acquires the current version
+ * through {@link #getVersion(TopicId)} before fetching, and if nothing was fetched, calls
+ * {@link #await(TopicId, long, long)} with the acquired version to wait for the next publish.
+ */
+@ThreadSafe
+final class PublishNotifier {
+
+  private final ConcurrentMap<TopicId, TopicVersion> versions = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current publish version of the given topic.
+   */
+  long getVersion(TopicId topicId) {
+    return getTopicVersion(topicId).get();
+  }
+
+  /**
+   * Notifies all waiting threads that new messages were published to the given topic.
+   */
+  void published(TopicId topicId) {
+    TopicVersion version = versions.get(topicId);
+    // If no one ever acquired the version, there cannot be anyone waiting.
+    if (version != null) {
+      version.increment();
+    }
+  }
+
+  /**
+   * Blocks until the publish version of the given topic is different from the given version,
+   * or the given timeout has passed.
+   *
+   * @param topicId the topic to wait for
+   * @param version the version returned from an earlier call to {@link #getVersion(TopicId)}
+   * @param timeoutMillis maximum number of milliseconds to wait
+   * @return {@code true} if the version has changed; {@code false} if timeout passed without any change
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  boolean await(TopicId topicId, long version, long timeoutMillis) throws InterruptedException {
+    return getTopicVersion(topicId).await(version, timeoutMillis);
+  }
+
+  /**
+   * Removes the tracking of the given topic. Threads waiting on the topic are woken up.
+   */
+  void remove(TopicId topicId) {
+    TopicVersion version = versions.remove(topicId);
+    if (version != null) {
+      version.increment();
+    }
+  }
+
+  private TopicVersion getTopicVersion(TopicId topicId) {
+    return versions.computeIfAbsent(topicId, id -> new TopicVersion());
+  }
+
+  /**
+   * A monotonic version number for a topic, with support of waiting for changes.
+   */
+  private static final class TopicVersion {
+
+    private long version;
+
+    synchronized long get() {
+      return version;
+    }
+
+    synchronized void increment() {
+      version++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long oldVersion, long timeoutMillis) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      while (version == oldVersion && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+      return version != oldVersion;
+    }
+  }
+}
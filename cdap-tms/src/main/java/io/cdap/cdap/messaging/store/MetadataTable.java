@@ -25,6 +25,8 @@ import io.cdap.cdap.proto.id.TopicId;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Table to store information about the topics and their properties.
@@ -84,4 +86,40 @@ public interface MetadataTable extends Closeable {
    * @throws IOException if failed to retrieve topics
    */
   List<TopicId> listTopics() throws IOException;
+
+  /**
+   * Fetch the committed offset of a consumer group of the given topic.
+   *
+   * @param topicId message topic
+   * @param consumerGroup name of the consumer group
+   * @return the committed offset or {@code null} if the consumer group has no committed offset
+   * @throws IOException if failed to retrieve the offset
+   */
+  @Nullable
+  byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws IOException;
+
+  /**
+   * Fetch the committed offsets of all consumer groups of the given topic.
+   *
+   * @param topicId message topic
+   * @return a {@link Map} from consumer group name to the committed offset
+   * @throws IOException if failed to retrieve the offsets
+   */
+  Map<String, byte[]> getConsumerOffsets(TopicId topicId) throws IOException;
+
+  /**
+   * Atomically commits the offset of a consumer group of the given topic if the currently committed offset
+   * is the same as the expected one.
+   *
+   * @param topicId message topic
+   * @param consumerGroup name of the consumer group
+   * @param expectedOffset the offset expected to be committed currently; if it is {@code null},
+   *                       the offset will be committed unconditionally
+   * @param offset the new offset to commit
+   * @return {@code true} if the offset was committed, {@code false} if the currently committed offset is not
+   *         the same as the expected one
+   * @throws IOException if failed to commit the offset
+   */
+  boolean commitConsumerOffset(TopicId topicId, String consumerGroup,
+                               @Nullable byte[] expectedOffset, byte[] offset) throws IOException;
 }
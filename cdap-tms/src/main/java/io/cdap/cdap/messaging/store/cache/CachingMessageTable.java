@@ -88,10 +88,12 @@ final class CachingMessageTable implements MessageTable {
 
     // No need to scan the table if there is no adjustment on the start time and the cache has everything needed
     if (lookupEntry == adjustedEntry && cacheHasAllEntries(lookupEntry, scanner, messageCache.getComparator())) {
+      messageCache.recordLookup(true);
       return scanner;
     }
 
     // Otherwise scan the table and return a combine result.
+    messageCache.recordLookup(false);
     CloseableIterator<Entry> tableIterator = messageTable.fetch(metadata, startTime, limit, transaction);
     return new CombineMessageEntryIterator(tableIterator, scanner, messageCache.getComparator(), limit);
   }
@@ -117,10 +119,12 @@ final class CachingMessageTable implements MessageTable {
 
     // No need to scan the table if there is no adjustment on the start messageId and the cache has everything needed
     if (lookupEntry == adjustedEntry && cacheHasAllEntries(lookupEntry, scanner, messageCache.getComparator())) {
+      messageCache.recordLookup(true);
       return scanner;
     }
 
     // Otherwise scan the table and return a combine result.
+    messageCache.recordLookup(false);
     CloseableIterator<Entry> tableIterator = messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
     return new CombineMessageEntryIterator(tableIterator, scanner, messageCache.getComparator(), limit);
   }
@@ -24,6 +24,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.MessageCacheBalancer;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
@@ -31,16 +32,25 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
 /**
- * The default implementation of {@link MessageTableCacheProvider}.
+ * The default implementation of {@link MessageTableCacheProvider}. All topic caches share the memory budget
+ * configured by {@link Constants.MessagingSystem#CACHE_SIZE_MB}, which gets redistributed periodically based on
+ * how frequently each topic is fetched.
  */
 public class DefaultMessageTableCacheProvider implements MessageTableCacheProvider {
 
   private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
+  private final long rebalanceIntervalNanos;
+  private final AtomicBoolean rebalancing;
   private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
+  private MessageCacheBalancer<MessageTable.Entry> balancer;
+  private volatile long nextRebalanceNanos;
   private volatile boolean initialized;
 
   @Inject
@@ -49,9 +59,11 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     // constructor, hence delay the cache initialization to later time.
     this.cConf = cConf;
     this.metricsCollectionService = metricsCollectionService;
+    this.rebalanceIntervalNanos =
+      TimeUnit.SECONDS.toNanos(cConf.getLong(Constants.MessagingSystem.CACHE_REBALANCE_INTERVAL_SECONDS));
+    this.rebalancing = new AtomicBoolean();
   }
 
-
   @Nullable
   @Override
   public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
@@ -66,15 +78,11 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
             MessageTableEntryWeigher weigher = new MessageTableEntryWeigher();
             MessageTableEntryComparator comparator = new MessageTableEntryComparator();
 
-            // Just evenly distributed the cache among all system topics.
-            // More sophisticated logic can be employed at runtime to monitor the metrics from MessageCache
-            // for each topic and adjust the soft/hard limit accordingly to maximize efficiency in
-            // memory usage and performance
+            // Initially evenly distributed the cache among all system topics.
+            // The balancer will adjust the limits based on the lookups of each topic cache.
             long hardLimit = cacheSize / systemTopics.size();
             if (hardLimit > 0) {
-              // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
-              // In future, it can be adjusted dynamically based on metrics
-              MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              MessageCache.Limits limits = MessageCacheBalancer.createLimits(hardLimit);
               for (TopicId topic : systemTopics) {
                 caches.put(topic, new MessageCache<>(comparator, weigher, limits,
                                                      createMetricsContext(cConf, topic, metricsCollectionService)));
@@ -83,11 +91,16 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
           }
 
           topicMessageCaches = caches;
+          balancer = new MessageCacheBalancer<>(cacheSize, caches.values());
+          nextRebalanceNanos = System.nanoTime() + rebalanceIntervalNanos;
           initialized = true;
         }
       }
     }
 
+    if (rebalanceIntervalNanos > 0 && System.nanoTime() - nextRebalanceNanos >= 0) {
+      rebalance();
+    }
     return topicMessageCaches.get(topicId);
   }
 
@@ -99,6 +112,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
       initialized = false;
       caches = topicMessageCaches == null ? null : topicMessageCaches.values();
       topicMessageCaches = null;
+      balancer = null;
     }
 
     if (caches != null) {
@@ -108,6 +122,44 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     }
   }
 
+  @Override
+  public void clear(Predicate<TopicId> topicFilter) {
+    Map<TopicId, MessageCache<MessageTable.Entry>> caches;
+    synchronized (this) {
+      caches = topicMessageCaches;
+    }
+    if (caches == null) {
+      return;
+    }
+
+    for (Map.Entry<TopicId, MessageCache<MessageTable.Entry>> entry : caches.entrySet()) {
+      if (topicFilter.test(entry.getKey())) {
+        entry.getValue().clear();
+      }
+    }
+  }
+
+  /**
+   * Redistributes the cache budget among topics. Only one thread performs the rebalance.
+   */
+  private void rebalance() {
+    if (!rebalancing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      MessageCacheBalancer<MessageTable.Entry> balancer;
+      synchronized (this) {
+        balancer = this.balancer;
+      }
+      if (balancer != null) {
+        balancer.rebalance();
+      }
+      nextRebalanceNanos = System.nanoTime() + rebalanceIntervalNanos;
+    } finally {
+      rebalancing.set(false);
+    }
+  }
+
   /**
    * Creates a {@link MetricsContext} for {@link MessageCache} to use for the given topic.
    */
@@ -20,6 +20,7 @@ import io.cdap.cdap.messaging.cache.MessageCache;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
 /**
@@ -40,4 +41,12 @@ public interface MessageTableCacheProvider {
    * Resets all {@link MessageCache} created by this cache provider.
    */
   void clear();
+
+  /**
+   * Resets the {@link MessageCache} of topics that match the given filter. The caller is responsible to make sure
+   * there is no concurrent write to the caches being reset.
+   *
+   * @param topicFilter a {@link Predicate} to select the topics to reset
+   */
+  void clear(Predicate<TopicId> topicFilter);
 }
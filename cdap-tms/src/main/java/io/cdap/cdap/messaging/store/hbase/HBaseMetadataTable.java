@@ -29,6 +29,7 @@ import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.store.MetadataTable;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
@@ -41,10 +42,12 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import javax.annotation.Nullable;
 
 /**
  * HBase implementation of {@link MetadataTable}.
@@ -52,6 +55,7 @@ import java.util.TreeMap;
 public final class HBaseMetadataTable implements MetadataTable {
 
   public static final byte[] COL = MessagingUtils.Constants.METADATA_COLUMN;
+  private static final byte[] OFFSET_COL = Bytes.toBytes("o");
   private static final Gson GSON = new Gson();
 
   // It has to be a sorted map since we depends on the serialized map for compareAndPut operation for topic update.
@@ -178,6 +182,24 @@ public final class HBaseMetadataTable implements MetadataTable {
         byte[] oldValue = Bytes.toBytes(GSON.toJson(new TreeMap<>(oldMetadata.getProperties()), MAP_TYPE));
         completed = table.checkAndPut(rowKey, columnFamily, COL, oldValue, put);
       }
+
+      // Remove all consumer group offsets of the deleted topic
+      byte[] startRow = MessagingUtils.consumerOffsetScanKey(topicId);
+      Scan scan = tableUtil.buildScan()
+        .setStartRow(startRow)
+        .setStopRow(Bytes.stopKeyForPrefix(startRow))
+        .setFilter(new FirstKeyOnlyFilter())
+        .setCaching(scanCacheRows)
+        .build();
+      List<Delete> deletes = new ArrayList<>();
+      try (ResultScanner resultScanner = table.getScanner(scan)) {
+        for (Result result : resultScanner) {
+          deletes.add(tableUtil.buildDelete(result.getRow()).build());
+        }
+      }
+      if (!deletes.isEmpty()) {
+        table.delete(deletes);
+      }
     } catch (IOException e) {
       throw exceptionHandler.handle(e);
     }
@@ -194,7 +216,63 @@ public final class HBaseMetadataTable implements MetadataTable {
 
   @Override
   public List<TopicId> listTopics() throws IOException {
-    return scanTopics(tableUtil.buildScan());
+    return scanTopics(tableUtil.buildScan().setStartRow(MessagingUtils.Constants.TOPIC_METADATA_START_ROW));
+  }
+
+  @Nullable
+  @Override
+  public byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws IOException {
+    Get get = tableUtil.buildGet(MessagingUtils.toConsumerOffsetRowKey(topicId, consumerGroup))
+      .addColumn(columnFamily, OFFSET_COL)
+      .build();
+    try {
+      return table.get(get).getValue(columnFamily, OFFSET_COL);
+    } catch (IOException e) {
+      throw exceptionHandler.handle(e);
+    }
+  }
+
+  @Override
+  public Map<String, byte[]> getConsumerOffsets(TopicId topicId) throws IOException {
+    byte[] startRow = MessagingUtils.consumerOffsetScanKey(topicId);
+    Scan scan = tableUtil.buildScan()
+      .setStartRow(startRow)
+      .setStopRow(Bytes.stopKeyForPrefix(startRow))
+      .addColumn(columnFamily, OFFSET_COL)
+      .setCaching(scanCacheRows)
+      .build();
+
+    try {
+      Map<String, byte[]> offsets = new HashMap<>();
+      try (ResultScanner resultScanner = table.getScanner(scan)) {
+        for (Result result : resultScanner) {
+          byte[] row = result.getRow();
+          offsets.put(Bytes.toString(row, startRow.length, row.length - startRow.length),
+                      result.getValue(columnFamily, OFFSET_COL));
+        }
+      }
+      return offsets;
+    } catch (IOException e) {
+      throw exceptionHandler.handle(e);
+    }
+  }
+
+  @Override
+  public boolean commitConsumerOffset(TopicId topicId, String consumerGroup,
+                                      @Nullable byte[] expectedOffset, byte[] offset) throws IOException {
+    byte[] rowKey = MessagingUtils.toConsumerOffsetRowKey(topicId, consumerGroup);
+    Put put = tableUtil.buildPut(rowKey)
+      .add(columnFamily, OFFSET_COL, offset)
+      .build();
+    try {
+      if (expectedOffset == null) {
+        table.put(put);
+        return true;
+      }
+      return table.checkAndPut(rowKey, columnFamily, OFFSET_COL, expectedOffset, put);
+    } catch (IOException e) {
+      throw exceptionHandler.handle(e);
+    }
   }
 
   /**
@@ -194,6 +194,18 @@ final class LevelDBMessageTable extends AbstractMessageTable {
     }
   }
 
+  /**
+   * Returns the transaction write pointer if the given message table value is a reference to the payload table,
+   * or {@code null} otherwise.
+   */
+  @Nullable
+  static Long getPayloadReference(byte[] value) {
+    if (value[0] != EncodeType.PAYLOAD_REFERENCE.getType()) {
+      return null;
+    }
+    return Bytes.toLong(value, 1);
+  }
+
   // Encoding:
   // If the returned byte array starts with 0, then it is a non-tx message and all the subsequent bytes are payload
   // If the returned byte array starts with 1, then next 8 bytes correspond to txWritePtr and rest are payload bytes
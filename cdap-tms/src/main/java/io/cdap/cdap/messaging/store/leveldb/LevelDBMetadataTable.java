@@ -30,11 +30,14 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -145,10 +148,20 @@ final class LevelDBMetadataTable implements MetadataTable {
           throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
         }
 
-        // Mark the topic as deleted
+        // Mark the topic as deleted and remove all consumer group offsets of the topic
         TreeMap<String, String> newProperties = new TreeMap<>(metadata.getProperties());
         newProperties.put(TopicMetadata.GENERATION_KEY, Integer.toString(-1 * metadata.getGeneration()));
-        levelDB.put(rowKey, Bytes.toBytes(GSON.toJson(newProperties, MAP_TYPE)), WRITE_OPTIONS);
+        try (WriteBatch writeBatch = levelDB.createWriteBatch()) {
+          writeBatch.put(rowKey, Bytes.toBytes(GSON.toJson(newProperties, MAP_TYPE)));
+          byte[] startKey = MessagingUtils.consumerOffsetScanKey(topicId);
+          try (CloseableIterator<Map.Entry<byte[], byte[]>> iterator =
+                 new DBScanIterator(levelDB, startKey, Bytes.stopKeyForPrefix(startKey))) {
+            while (iterator.hasNext()) {
+              writeBatch.delete(iterator.next().getKey());
+            }
+          }
+          levelDB.write(writeBatch, WRITE_OPTIONS);
+        }
       }
     } catch (DBException e) {
       throw new IOException(e);
@@ -164,7 +177,7 @@ final class LevelDBMetadataTable implements MetadataTable {
 
   @Override
   public List<TopicId> listTopics() throws IOException {
-    return listTopics(null, null);
+    return listTopics(MessagingUtils.Constants.TOPIC_METADATA_START_ROW, null);
   }
 
   /**
@@ -174,7 +187,7 @@ final class LevelDBMetadataTable implements MetadataTable {
    * @throws IOException if failed to scan topics
    */
   public CloseableIterator<TopicMetadata> scanTopics() throws IOException {
-    return scanTopics(null, null);
+    return scanTopics(MessagingUtils.Constants.TOPIC_METADATA_START_ROW, null);
   }
 
   private List<TopicId> listTopics(@Nullable byte[] startKey, @Nullable byte[] stopKey) throws IOException {
@@ -220,6 +233,50 @@ final class LevelDBMetadataTable implements MetadataTable {
     };
   }
 
+  @Nullable
+  @Override
+  public byte[] getConsumerOffset(TopicId topicId, String consumerGroup) throws IOException {
+    try {
+      return levelDB.get(MessagingUtils.toConsumerOffsetRowKey(topicId, consumerGroup));
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public Map<String, byte[]> getConsumerOffsets(TopicId topicId) throws IOException {
+    byte[] startKey = MessagingUtils.consumerOffsetScanKey(topicId);
+    Map<String, byte[]> offsets = new HashMap<>();
+    try (CloseableIterator<Map.Entry<byte[], byte[]>> iterator =
+           new DBScanIterator(levelDB, startKey, Bytes.stopKeyForPrefix(startKey))) {
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        byte[] key = entry.getKey();
+        offsets.put(Bytes.toString(key, startKey.length, key.length - startKey.length), entry.getValue());
+      }
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+    return offsets;
+  }
+
+  @Override
+  public boolean commitConsumerOffset(TopicId topicId, String consumerGroup,
+                                      @Nullable byte[] expectedOffset, byte[] offset) throws IOException {
+    byte[] key = MessagingUtils.toConsumerOffsetRowKey(topicId, consumerGroup);
+    try {
+      synchronized (this) {
+        if (expectedOffset != null && !Arrays.equals(expectedOffset, levelDB.get(key))) {
+          return false;
+        }
+        levelDB.put(key, offset, WRITE_OPTIONS);
+        return true;
+      }
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+  }
+
   @Override
   public void close() throws IOException {
     // no op
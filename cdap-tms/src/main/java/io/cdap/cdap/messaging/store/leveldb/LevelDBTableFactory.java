@@ -204,16 +204,25 @@ public final class LevelDBTableFactory implements TableFactory {
           // Prune the current generation
           // Message table
           File dataDBPath = getDataDBPath(messageTableName, metadata.getTopicId(), metadata.getGeneration());
-          DB levelDB = levelDBs.get(dataDBPath);
-          if (levelDB != null && dataDBPath.exists()) {
-            new LevelDBMessageTable(levelDB, metadata).pruneMessages(now);
+          DB messageDB = levelDBs.get(dataDBPath);
+          if (messageDB != null && dataDBPath.exists()) {
+            new LevelDBMessageTable(messageDB, metadata).pruneMessages(now);
+          } else {
+            messageDB = null;
           }
 
           // Payload table
           dataDBPath = getDataDBPath(payloadTableName, metadata.getTopicId(), metadata.getGeneration());
-          levelDB = levelDBs.get(dataDBPath);
-          if (levelDB != null && dataDBPath.exists()) {
-            new LevelDBPayloadTable(levelDB, metadata).pruneMessages(now);
+          DB payloadDB = levelDBs.get(dataDBPath);
+          if (payloadDB != null && dataDBPath.exists()) {
+            new LevelDBPayloadTable(payloadDB, metadata).pruneMessages(now);
+          } else {
+            payloadDB = null;
+          }
+
+          // Size based retention, with one size limit across both tables
+          if (messageDB != null) {
+            SizeRetentionPruner.prune(messageDB, payloadDB, metadata);
           }
         }
       } catch (IOException ex) {
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.leveldb;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.messaging.MessagingUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Removes the oldest messages of a topic so that the total size of the topic data in the message and payload tables
+ * is within the maximum size of the topic. Since entries in the message table are sorted by publish time, the first
+ * entries of a topic are the oldest ones. The payload table entries are only removed together with the last
+ * message table entry that references them, hence payload of retained messages and of uncommitted transactions
+ * is never removed.
+ */
+final class SizeRetentionPruner {
+
+  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
+
+  /**
+   * Deletes messages of the given topic, starting from the oldest one, until the total size of the remaining
+   * messages is not larger than the maximum size of the topic. The size of a message is the size of its message
+   * table entry, plus the size of the payload table entries it references. The message table is scanned once,
+   * with the deletion trailing the scan, and the payload table is only read for the referenced transactions.
+   *
+   * @param messageDB the LevelDB of the message table
+   * @param payloadDB the LevelDB of the payload table or {@code null} if there is no payload table for the topic
+   * @param topicMetadata the {@link TopicMetadata} of the topic to prune
+   * @return number of bytes deleted
+   * @throws IOException if failed to delete
+   */
+  static long prune(DB messageDB, @Nullable DB payloadDB, TopicMetadata topicMetadata) throws IOException {
+    long maxSizeBytes = topicMetadata.getMaxSizeBytes();
+    if (maxSizeBytes <= 0) {
+      return 0L;
+    }
+
+    byte[] startRow = MessagingUtils.toDataKeyPrefix(topicMetadata.getTopicId(), topicMetadata.getGeneration());
+    byte[] stopRow = Bytes.stopKeyForPrefix(startRow);
+
+    // Map from transaction write pointer to the index of the last message entry that references it
+    Map<Long, Long> lastReferences = new HashMap<>();
+    Set<Long> deletedReferences = new HashSet<>();
+    WriteBatch messageBatch = messageDB.createWriteBatch();
+    long deleted = 0L;
+    long deletedCount = 0L;
+    long retainedSize = 0L;
+
+    try (
+      CloseableIterator<Map.Entry<byte[], byte[]>> scanIterator = new DBScanIterator(messageDB, startRow, stopRow);
+      CloseableIterator<Map.Entry<byte[], byte[]>> deleteIterator = new DBScanIterator(messageDB, startRow, stopRow)
+    ) {
+      long index = 0L;
+      while (scanIterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = scanIterator.next();
+        Long txWritePointer = LevelDBMessageTable.getPayloadReference(entry.getValue());
+        if (txWritePointer != null) {
+          lastReferences.put(txWritePointer, index);
+        }
+        retainedSize += getSize(entry, txWritePointer, payloadDB, startRow);
+        index++;
+
+        // The oldest entries can't be retained once the entries from them up to the current one exceed the limit
+        while (retainedSize > maxSizeBytes && deleteIterator.hasNext()) {
+          Map.Entry<byte[], byte[]> deleteEntry = deleteIterator.next();
+          Long deleteTxWritePointer = LevelDBMessageTable.getPayloadReference(deleteEntry.getValue());
+          long size = getSize(deleteEntry, deleteTxWritePointer, payloadDB, startRow);
+          messageBatch.delete(deleteEntry.getKey());
+          if (deleteTxWritePointer != null) {
+            deletedReferences.add(deleteTxWritePointer);
+          }
+          retainedSize -= size;
+          deleted += size;
+          deletedCount++;
+        }
+      }
+    }
+
+    if (deletedCount == 0) {
+      return 0L;
+    }
+
+    try {
+      // Delete the message entries first, so that there is never a retained message without its payload
+      messageDB.write(messageBatch, WRITE_OPTIONS);
+      if (payloadDB != null) {
+        WriteBatch payloadBatch = payloadDB.createWriteBatch();
+        for (long txWritePointer : deletedReferences) {
+          if (lastReferences.get(txWritePointer) < deletedCount) {
+            byte[] prefix = getPayloadPrefix(startRow, txWritePointer);
+            try (CloseableIterator<Map.Entry<byte[], byte[]>> iterator =
+                   new DBScanIterator(payloadDB, prefix, Bytes.stopKeyForPrefix(prefix))) {
+              while (iterator.hasNext()) {
+                payloadBatch.delete(iterator.next().getKey());
+              }
+            }
+          }
+        }
+        payloadDB.write(payloadBatch, WRITE_OPTIONS);
+      }
+    } catch (DBException ex) {
+      throw new IOException(ex);
+    }
+    return deleted;
+  }
+
+  /**
+   * Returns the size of the given message table entry, including the payload table entries it references.
+   */
+  private static long getSize(Map.Entry<byte[], byte[]> entry, @Nullable Long txWritePointer,
+                              @Nullable DB payloadDB, byte[] topicPrefix) {
+    long size = entry.getKey().length + entry.getValue().length;
+    if (txWritePointer == null || payloadDB == null) {
+      return size;
+    }
+    byte[] prefix = getPayloadPrefix(topicPrefix, txWritePointer);
+    try (CloseableIterator<Map.Entry<byte[], byte[]>> iterator =
+           new DBScanIterator(payloadDB, prefix, Bytes.stopKeyForPrefix(prefix))) {
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> payloadEntry = iterator.next();
+        size += payloadEntry.getKey().length + payloadEntry.getValue().length;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the row prefix of the payload table entries of the given transaction.
+   */
+  private static byte[] getPayloadPrefix(byte[] topicPrefix, long txWritePointer) {
+    byte[] prefix = new byte[topicPrefix.length + Bytes.SIZEOF_LONG];
+    Bytes.putBytes(prefix, 0, topicPrefix, 0, topicPrefix.length);
+    Bytes.putLong(prefix, topicPrefix.length, txWritePointer);
+    return prefix;
+  }
+
+  private SizeRetentionPruner() {
+    // no-op
+  }
+}
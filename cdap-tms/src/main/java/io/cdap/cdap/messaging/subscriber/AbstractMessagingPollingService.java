@@ -30,6 +30,7 @@ import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.common.service.AbstractRetryableScheduledService;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.messaging.context.PollingMessageFetcher;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.proto.id.TopicId;
 import org.slf4j.Logger;
@@ -150,14 +151,18 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
   }
 
   /**
-   * Fetching messages from TMS.
+   * Fetching messages from TMS. If the {@link MessageFetcher} supports it, TMS waits for new messages up to the
+   * empty fetch delay, so that new messages are fetched as soon as they are published.
    */
   protected List<Message> fetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", topicId, messageId);
     MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
-    try (CloseableIterator<Message> iterator = messageFetcher.fetch(getTopicId().getNamespace(),
-                                                                    getTopicId().getTopic(), fetchSize, messageId)) {
+    String namespace = getTopicId().getNamespace();
+    String topic = getTopicId().getTopic();
+    try (CloseableIterator<Message> iterator = messageFetcher instanceof PollingMessageFetcher
+      ? ((PollingMessageFetcher) messageFetcher).fetch(namespace, topic, fetchSize, messageId, emptyFetchDelayMillis)
+      : messageFetcher.fetch(namespace, topic, fetchSize, messageId)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -185,6 +190,8 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     metricsContext.increment("tms.fetch.messages", messages.size());
 
     // Return if stopping or request to sleep for configured number of milliseconds if there is no message fetched.
+    // The time TMS held the fetch waiting for messages counts towards the delay, hence there is no sleep after
+    // a fetch that waited for the full delay.
     if (messages.isEmpty() || state() != State.RUNNING) {
       return Math.max(0L, emptyFetchDelayMillis - (System.currentTimeMillis() - startTime));
     }
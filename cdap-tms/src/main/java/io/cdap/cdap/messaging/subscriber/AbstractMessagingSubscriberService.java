@@ -17,6 +17,7 @@
 package io.cdap.cdap.messaging.subscriber;
 
 import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.Futures;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
@@ -26,10 +27,17 @@ import io.cdap.cdap.spi.data.StructuredTableContext;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 import io.cdap.cdap.spi.data.transaction.TxCallable;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 
 /**
@@ -37,6 +45,14 @@ import javax.annotation.Nullable;
  * This service allows optional transactional fetch from TMS.
  * It always process messages and persisting consumer states in the same transaction.
  *
+ * Optionally, messages can be processed in multiple lanes in parallel by constructing this service with more than
+ * one processing lane. Each message is routed to a lane based on the key returned by {@link #getLaneKey(Object)},
+ * such that messages with the same key are always processed in order by the same lane. Each lane processes messages
+ * in its own transaction, and the message id is persisted in a separate transaction afterward, up to the message
+ * before the first one that is not yet processed across all lanes. This means messages can be replayed to a lane
+ * after failure, hence {@link #processMessages(StructuredTableContext, Iterator)} must be idempotent when
+ * running with multiple lanes.
+ *
  * @param <T> the type that each message will be decoded to.
  */
 public abstract class AbstractMessagingSubscriberService<T> extends AbstractMessagingPollingService<T> {
@@ -44,6 +60,9 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
   private static final Logger LOG = LoggerFactory.getLogger(AbstractMessagingSubscriberService.class);
 
   private final int txTimeoutSeconds;
+  private final int processingLanes;
+  // only created if there are more than one lanes
+  private volatile ExecutorService laneExecutor;
 
   /**
    * Constructor.
@@ -58,8 +77,30 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
   protected AbstractMessagingSubscriberService(TopicId topicId, int fetchSize,
                                                int txTimeoutSeconds, long emptyFetchDelayMillis,
                                                RetryStrategy retryStrategy, MetricsContext metricsContext) {
+    this(topicId, fetchSize, txTimeoutSeconds, emptyFetchDelayMillis, retryStrategy, metricsContext, 1);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param topicId the topic to consume from
+   * @param fetchSize number of messages to fetch in each batch
+   * @param txTimeoutSeconds transaction timeout in seconds to use when processing messages
+   * @param emptyFetchDelayMillis number of milliseconds to sleep after a fetch returns empty result
+   * @param retryStrategy the {@link RetryStrategy} to determine retry on failure
+   * @param metricsContext the {@link MetricsContext} for emitting metrics about the message consumption.
+   * @param processingLanes number of lanes to process messages in parallel
+   */
+  protected AbstractMessagingSubscriberService(TopicId topicId, int fetchSize,
+                                               int txTimeoutSeconds, long emptyFetchDelayMillis,
+                                               RetryStrategy retryStrategy, MetricsContext metricsContext,
+                                               int processingLanes) {
     super(topicId, metricsContext, fetchSize, emptyFetchDelayMillis, retryStrategy);
+    if (processingLanes <= 0) {
+      throw new IllegalArgumentException("Number of processing lanes must be > 0");
+    }
     this.txTimeoutSeconds = txTimeoutSeconds;
+    this.processingLanes = processingLanes;
   }
 
   /**
@@ -102,6 +143,18 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
     return false;
   }
 
+  /**
+   * Returns the key for routing the given message to a processing lane. Messages with the same key are
+   * processed in order by the same lane. This method is only used when there are more than one processing lanes.
+   *
+   * @param message the decoded message
+   * @return the routing key; messages with {@code null} key are all routed to the same lane
+   */
+  @Nullable
+  protected Object getLaneKey(T message) {
+    return null;
+  }
+
   /**
    * Processes the give list of messages. This method will be called from the same transaction as the
    * {@link #storeMessageId(StructuredTableContext, String)} call. If {@link Exception} is raised from this method,
@@ -131,9 +184,31 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
     return TransactionRunners.run(getTransactionRunner(), (TxCallable<String>) this::loadMessageId);
   }
 
+  @Override
+  protected void doStartUp() throws Exception {
+    super.doStartUp();
+    if (processingLanes > 1) {
+      laneExecutor = Executors.newFixedThreadPool(processingLanes,
+                                                  Threads.createDaemonThreadFactory(getServiceName() + "-lane-%d"));
+    }
+  }
+
+  @Override
+  protected void doShutdown() throws Exception {
+    ExecutorService laneExecutor = this.laneExecutor;
+    if (laneExecutor != null) {
+      laneExecutor.shutdownNow();
+    }
+    super.doShutdown();
+  }
+
   @Nullable
   @Override
   protected String processMessages(Iterator<ImmutablePair<String, T>> messages) throws Exception {
+    if (processingLanes > 1) {
+      return processMessagesInLanes(messages);
+    }
+
     MessageTrackingIterator iterator;
 
     // Process the notifications and record the message id of where the processing is up to.
@@ -156,6 +231,97 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
     return iterator.getLastMessageId();
   }
 
+  /**
+   * Processes the given messages by routing them to multiple lanes and processing each lane in its own transaction.
+   *
+   * @return the message id that all messages up to it (inclusively) were processed
+   */
+  @Nullable
+  private String processMessagesInLanes(Iterator<ImmutablePair<String, T>> messages) throws Exception {
+    // Partition the messages. For each lane, remember the position of the messages in the whole batch.
+    List<ImmutablePair<String, T>> batch = new ArrayList<>();
+    List<List<Integer>> lanes = new ArrayList<>(processingLanes);
+    for (int i = 0; i < processingLanes; i++) {
+      lanes.add(new ArrayList<>());
+    }
+    while (messages.hasNext()) {
+      ImmutablePair<String, T> message = messages.next();
+      Object key = getLaneKey(message.getSecond());
+      int lane = key == null ? 0 : Math.floorMod(key.hashCode(), processingLanes);
+      lanes.get(lane).add(batch.size());
+      batch.add(message);
+    }
+
+    ExecutorService laneExecutor = this.laneExecutor;
+    if (laneExecutor == null) {
+      throw new IllegalStateException("Messages can only be processed in lanes after the service is started");
+    }
+
+    List<Future<Integer>> futures = new ArrayList<>(processingLanes);
+    for (List<Integer> lane : lanes) {
+      if (lane.isEmpty()) {
+        futures.add(Futures.immediateFuture(0));
+      } else {
+        futures.add(laneExecutor.submit(() -> processLane(batch, lane)));
+      }
+    }
+
+    // Find the first message in the batch that is not yet processed across all lanes
+    int firstUnprocessed = batch.size();
+    Exception failure = null;
+    for (int i = 0; i < processingLanes; i++) {
+      List<Integer> lane = lanes.get(i);
+      int processed;
+      try {
+        processed = futures.get(i).get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        LOG.warn("Failed to process messages in lane {} for topic {}. Will be retried from message {}.",
+                 i, getTopicId(), batch.get(lane.get(0)).getFirst(), cause);
+        if (failure == null) {
+          failure = cause instanceof Exception ? (Exception) cause : e;
+        }
+        processed = 0;
+      }
+      if (processed < lane.size()) {
+        firstUnprocessed = Math.min(firstUnprocessed, lane.get(processed));
+      }
+    }
+
+    // Propagate the failure only if there was no progress, so that the retry strategy can be applied
+    if (firstUnprocessed == 0) {
+      if (failure != null) {
+        throw failure;
+      }
+      return null;
+    }
+
+    String lastMessageId = batch.get(firstUnprocessed - 1).getFirst();
+    TransactionRunners.run(getTransactionRunner(), context -> {
+      storeMessageId(context, lastMessageId);
+    }, Exception.class);
+    return lastMessageId;
+  }
+
+  /**
+   * Processes messages for one lane in a transaction.
+   *
+   * @param batch the whole batch of messages
+   * @param lane the positions in the batch of the messages routed to the lane
+   * @return number of messages in the lane that were processed
+   */
+  private int processLane(List<ImmutablePair<String, T>> batch, List<Integer> lane) throws Exception {
+    // 90% of the tx timeout is .9 * 1000 * txTimeoutSeconds = 900 * txTimeoutSeconds
+    long timeBoundMillis = 900L * txTimeoutSeconds;
+    return TransactionRunners.run(getTransactionRunner(), context -> {
+      Iterator<ImmutablePair<String, T>> laneMessages = lane.stream().map(batch::get).iterator();
+      MessageTrackingIterator trackingIterator =
+        new MessageTrackingIterator(new TimeBoundIterator<>(laneMessages, timeBoundMillis));
+      processMessages(context, trackingIterator);
+      return trackingIterator.getConsumedCount();
+    }, Exception.class);
+  }
+
   /**
    * An {@link Iterator} that remembers the message id that has been consumed up to.
    */
@@ -200,5 +366,9 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
     String getLastMessageId() {
       return lastMessageId;
     }
+
+    int getConsumedCount() {
+      return consumedCount;
+    }
   }
 }
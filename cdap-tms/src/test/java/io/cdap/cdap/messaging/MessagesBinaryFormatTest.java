@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link MessagesBinaryFormat}.
+ */
+public class MessagesBinaryFormatTest {
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    List<RawMessage> messages = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      byte[] id = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(i, (short) i, 0L, (short) 0, id, 0);
+      // Include an empty payload
+      messages.add(new RawMessage(id, i == 0 ? new byte[0] : Bytes.toBytes("Message " + i)));
+    }
+
+    ByteBuf buffer = Unpooled.buffer();
+    int size = 0;
+    for (RawMessage message : messages) {
+      MessagesBinaryFormat.encode(message, buffer);
+      size += MessagesBinaryFormat.getEncodedSize(message);
+    }
+    Assert.assertEquals(size, buffer.readableBytes());
+    MessagesBinaryFormat.encodeEnd(buffer);
+
+    DataInput input = new ByteBufInputStream(buffer);
+    for (RawMessage message : messages) {
+      RawMessage decoded = MessagesBinaryFormat.decode(input);
+      Assert.assertNotNull(decoded);
+      Assert.assertArrayEquals(message.getId(), decoded.getId());
+      Assert.assertArrayEquals(message.getPayload(), decoded.getPayload());
+    }
+    Assert.assertNull(MessagesBinaryFormat.decode(input));
+  }
+}
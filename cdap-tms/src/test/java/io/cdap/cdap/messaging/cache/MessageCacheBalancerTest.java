@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Unit test for {@link MessageCacheBalancer}.
+ */
+public class MessageCacheBalancerTest {
+
+  @Test
+  public void testRebalance() {
+    MessageCache<Integer> hotCache = createCache(500);
+    MessageCache<Integer> coldCache = createCache(500);
+    MessageCacheBalancer<Integer> balancer = new MessageCacheBalancer<>(1000, Arrays.asList(hotCache, coldCache));
+
+    // Without any lookup, the budget is evenly distributed
+    balancer.rebalance();
+    Assert.assertEquals(500, hotCache.getLimits().getHardLimit());
+    Assert.assertEquals(500, coldCache.getLimits().getHardLimit());
+
+    // Fill the cold cache, which should get shrunk after rebalance
+    coldCache.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10).iterator());
+    Assert.assertEquals(500L, coldCache.getCurrentWeight());
+
+    // Only lookup on the hot cache. It should get all the budget except the reserved part.
+    for (int i = 0; i < 10; i++) {
+      hotCache.recordLookup(i % 2 == 0);
+    }
+    balancer.rebalance();
+    Assert.assertEquals(900, hotCache.getLimits().getHardLimit());
+    Assert.assertEquals(100, coldCache.getLimits().getHardLimit());
+    Assert.assertTrue(coldCache.getCurrentWeight() <= 100L);
+
+    // Same number of lookups on both caches. The previous demand of the hot cache is decayed by half.
+    for (int i = 0; i < 10; i++) {
+      hotCache.recordLookup(true);
+      coldCache.recordLookup(true);
+    }
+    balancer.rebalance();
+    Assert.assertEquals(100 + 800 * 15 / 25, hotCache.getLimits().getHardLimit());
+    Assert.assertEquals(100 + 800 * 10 / 25, coldCache.getLimits().getHardLimit());
+  }
+
+  private MessageCache<Integer> createCache(long hardLimit) {
+    return new MessageCache<>(Comparator.<Integer>naturalOrder(), entry -> 50,
+                              MessageCacheBalancer.createLimits(hardLimit), new NoopMetricsContext());
+  }
+}
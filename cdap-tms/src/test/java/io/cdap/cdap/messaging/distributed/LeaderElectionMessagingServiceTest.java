@@ -39,6 +39,9 @@ import io.cdap.cdap.common.service.Retries;
 import io.cdap.cdap.common.service.RetryStrategies;
 import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MessagingServiceUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.client.ClientMessagingService;
 import io.cdap.cdap.messaging.client.StoreRequestBuilder;
 import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
@@ -49,6 +52,7 @@ import io.cdap.cdap.messaging.store.cache.MessageTableCacheProvider;
 import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.apache.twill.internal.zookeeper.InMemoryZKServer;
 import org.apache.twill.internal.zookeeper.KillZKSession;
 import org.apache.twill.zookeeper.ZKClientService;
@@ -235,10 +239,72 @@ public class LeaderElectionMessagingServiceTest {
     }
   }
 
+  @Test
+  public void testSharding() throws Exception {
+    // Find two topics that belong to different shards
+    TopicId topic1 = NamespaceId.DEFAULT.topic("shard0");
+    TopicId topic2 = NamespaceId.DEFAULT.topic("shard1");
+    for (int i = 0; MessagingServiceUtils.getShard(topic1, 2) == MessagingServiceUtils.getShard(topic2, 2); i++) {
+      topic2 = NamespaceId.DEFAULT.topic("shard" + i);
+    }
+
+    Injector injector = createInjector(0, 2);
+    ZKClientService zkClient = injector.getInstance(ZKClientService.class);
+    zkClient.startAndWait();
+
+    // The only instance becomes leader of both shards
+    MessagingService service = injector.getInstance(MessagingService.class);
+    if (service instanceof Service) {
+      ((Service) service).startAndWait();
+    }
+
+    try {
+      // Use a client that routes requests through discovery of the shards
+      MessagingService client = new ClientMessagingService(injector.getInstance(DiscoveryServiceClient.class), 2);
+
+      // Each shard creates the system topics it owns, hence all of them exist when leading all shards
+      for (TopicId topicId : MessagingServiceUtils.getSystemTopics(cConf, true)) {
+        client.getTopic(topicId);
+      }
+
+      for (TopicId topicId : Arrays.asList(topic1, topic2)) {
+        client.createTopic(new TopicMetadata(topicId));
+      }
+      client.publish(Arrays.asList(StoreRequestBuilder.of(topic1).addPayload("m1").build(),
+                                   StoreRequestBuilder.of(topic2).addPayload("m2").build()));
+      client.publish(StoreRequestBuilder.of(topic2).addPayload("m3").build());
+
+      Assert.assertEquals(Arrays.asList("m1"), fetchPayloads(client, topic1));
+      Assert.assertEquals(Arrays.asList("m2", "m3"), fetchPayloads(client, topic2));
+
+      // Listing topics is served by any shard
+      Assert.assertTrue(client.listTopics(NamespaceId.DEFAULT).containsAll(Arrays.asList(topic1, topic2)));
+    } finally {
+      if (service instanceof Service) {
+        ((Service) service).stopAndWait();
+      }
+      zkClient.stopAndWait();
+    }
+  }
+
+  private List<String> fetchPayloads(MessagingService messagingService, TopicId topicId) throws Exception {
+    List<String> payloads = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(topicId).fetch()) {
+      while (iterator.hasNext()) {
+        payloads.add(new String(iterator.next().getPayload(), "UTF-8"));
+      }
+    }
+    return payloads;
+  }
 
   private Injector createInjector(int instanceId) {
+    return createInjector(instanceId, 1);
+  }
+
+  private Injector createInjector(int instanceId, int numShards) {
     CConfiguration cConf = CConfiguration.copy(LeaderElectionMessagingServiceTest.cConf);
     cConf.setInt(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, instanceId);
+    cConf.setInt(Constants.MessagingSystem.NUM_SHARDS, numShards);
 
     return Guice.createInjector(
       new ConfigModule(cConf),
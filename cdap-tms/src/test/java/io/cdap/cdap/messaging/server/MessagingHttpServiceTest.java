@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.messaging.server;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
@@ -58,7 +59,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -79,6 +85,8 @@ public class MessagingHttpServiceTest {
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
     cConf.set(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS, InetAddress.getLocalHost().getHostName());
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE, 128);
+    // Use executor threads so that long polling requests don't block the IO threads
+    cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_EXECUTOR_THREADS, 10);
     // Set max life time to a high value so that dummy tx ids that we create in the tests still work
     cConf.setLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME, 10000000000L);
 
@@ -254,6 +262,104 @@ public class MessagingHttpServiceTest {
     }
   }
 
+  @Test
+  public void testBatchPublish() throws Exception {
+    TopicId topic1 = new NamespaceId("ns1").topic("batch1");
+    TopicId topic2 = new NamespaceId("ns1").topic("batch2");
+    TopicId topic3 = new NamespaceId("ns2").topic("batch3");
+
+    // Batch publish with a non-existing topic should get not found exception
+    try {
+      client.publish(Arrays.asList(StoreRequestBuilder.of(topic1).addPayload("a").build()), published -> { });
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      Assert.assertEquals(topic1.getNamespace(), e.getNamespace());
+      Assert.assertEquals(topic1.getTopic(), e.getTopic());
+    }
+
+    for (TopicId topicId : Arrays.asList(topic1, topic2, topic3)) {
+      client.createTopic(new TopicMetadata(topicId));
+    }
+
+    // Transactional publish is not supported in batch
+    try {
+      client.publish(Arrays.asList(StoreRequestBuilder.of(topic1).setTransaction(1L).addPayload("a").build()),
+                     published -> { });
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    List<StoreRequest> requests = Arrays.asList(StoreRequestBuilder.of(topic1).addPayload("1").addPayload("2").build(),
+                                                StoreRequestBuilder.of(topic2).addPayload("3").build(),
+                                                StoreRequestBuilder.of(topic3).addPayload("4").build(),
+                                                StoreRequestBuilder.of(topic1).addPayload("5").build());
+    List<StoreRequest> publishedRequests = new ArrayList<>();
+    client.publish(requests, publishedRequests::add);
+    // All requests are reported as published
+    Assert.assertEquals(new HashSet<>(requests), new HashSet<>(publishedRequests));
+    Assert.assertEquals(requests.size(), publishedRequests.size());
+
+    // Messages to the same topic should be published in order
+    Assert.assertEquals(Arrays.asList("1", "2", "5"), fetchPayloads(topic1));
+    Assert.assertEquals(Arrays.asList("3"), fetchPayloads(topic2));
+    Assert.assertEquals(Arrays.asList("4"), fetchPayloads(topic3));
+
+    for (TopicId topicId : Arrays.asList(topic1, topic2, topic3)) {
+      client.deleteTopic(topicId);
+    }
+  }
+
+  @Test
+  public void testConsumerOffsets() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("consumed");
+    client.createTopic(new TopicMetadata(topicId));
+    client.publish(StoreRequestBuilder.of(topicId).addPayload("1").addPayload("2").addPayload("3").build());
+
+    List<byte[]> messageIds = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).fetch()) {
+      while (iterator.hasNext()) {
+        messageIds.add(iterator.next().getId());
+      }
+    }
+    Assert.assertEquals(3, messageIds.size());
+
+    Assert.assertNull(client.getConsumerOffset(topicId, "group"));
+    Assert.assertTrue(client.commitConsumerOffset(topicId, "group", null, messageIds.get(0)));
+    Assert.assertArrayEquals(messageIds.get(0), client.getConsumerOffset(topicId, "group"));
+
+    // Compare and set commit
+    Assert.assertFalse(client.commitConsumerOffset(topicId, "group", messageIds.get(1), messageIds.get(2)));
+    Assert.assertTrue(client.commitConsumerOffset(topicId, "group", messageIds.get(0), messageIds.get(1)));
+    Assert.assertArrayEquals(messageIds.get(1), client.getConsumerOffset(topicId, "group"));
+
+    // Lags are the number of messages after the committed offset, capped by the max lag
+    Assert.assertTrue(client.commitConsumerOffset(topicId, "slow", null, messageIds.get(0)));
+    Map<String, Integer> lags = client.getConsumerLags(topicId, 10);
+    Assert.assertEquals(2, lags.size());
+    Assert.assertEquals(1, (int) lags.get("group"));
+    Assert.assertEquals(2, (int) lags.get("slow"));
+    Assert.assertEquals(1, (int) client.getConsumerLags(topicId, 1).get("slow"));
+
+    client.deleteTopic(topicId);
+    try {
+      client.getConsumerOffset(topicId, "group");
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+  }
+
+  private List<String> fetchPayloads(TopicId topicId) throws Exception {
+    List<String> payloads = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).fetch()) {
+      while (iterator.hasNext()) {
+        payloads.add(Bytes.toString(iterator.next().getPayload()));
+      }
+    }
+    return payloads;
+  }
+
   @Test
   public void testBasicPubSub() throws Exception {
     TopicId topicId = new NamespaceId("ns1").topic("testBasicPubSub");
@@ -442,6 +548,45 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetch from an empty topic with a short timeout should return nothing after the timeout
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setPollTimeout(200, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 200);
+
+    // Publish a message from a separate thread while the fetch is waiting
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> publishFuture = executor.submit(() -> {
+        TimeUnit.MILLISECONDS.sleep(500);
+        return client.publish(StoreRequestBuilder.of(topicId).addPayload("m").build());
+      });
+
+      // The fetch should return as soon as the message is published, well before the timeout
+      stopwatch = new Stopwatch().start();
+      List<RawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setPollTimeout(30, TimeUnit.SECONDS).fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(30));
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m", Bytes.toString(messages.get(0).getPayload()));
+      publishFuture.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topicId);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
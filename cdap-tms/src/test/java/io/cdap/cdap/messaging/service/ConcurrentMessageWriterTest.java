@@ -22,6 +22,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.common.ServiceUnavailableException;
 import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -37,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -45,7 +47,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
 /**
@@ -268,6 +272,165 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testAwaitCompleted() throws Exception {
+    int threadCount = 10;
+    final int requestPerThread = 20;
+
+    // Each thread publishes to two topics at once, while the other threads are writing to the same topics
+    final TopicId topicId1 = NamespaceId.DEFAULT.topic("t1");
+    final TopicId topicId2 = NamespaceId.DEFAULT.topic("t2");
+    final TopicMetadata metadata1 = new TopicMetadata(topicId1, new HashMap<String, String>(), 1);
+    final TopicMetadata metadata2 = new TopicMetadata(topicId2, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter1 = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 5L);
+    TestStoreRequestWriter testWriter2 = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 5L);
+    final List<ConcurrentMessageWriter> writers = Arrays.asList(new ConcurrentMessageWriter(testWriter1),
+                                                                new ConcurrentMessageWriter(testWriter2));
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      futures.add(executor.submit(() -> {
+        for (int j = 0; j < requestPerThread; j++) {
+          List<PendingStoreRequest> pendingRequests = Arrays.asList(
+            writers.get(0).enqueue(new TestStoreRequest(topicId1, Collections.singletonList("a")), metadata1),
+            writers.get(1).enqueue(new TestStoreRequest(topicId2, Collections.singletonList("b")), metadata2));
+          ConcurrentMessageWriter.awaitCompleted(writers, pendingRequests);
+          for (int k = 0; k < pendingRequests.size(); k++) {
+            Assert.assertTrue(pendingRequests.get(k).isCompleted());
+            Assert.assertNull(writers.get(k).awaitPersisted(pendingRequests.get(k)));
+          }
+        }
+        return null;
+      }));
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    for (Future<?> future : futures) {
+      future.get();
+    }
+
+    Assert.assertEquals(threadCount * requestPerThread, testWriter1.getMessages().get(topicId1).size());
+    Assert.assertEquals(threadCount * requestPerThread, testWriter2.getMessages().get(topicId2).size());
+  }
+
+  @Test
+  public void testGroupCommit() throws InterruptedException {
+    int threadCount = 10;
+
+    final TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+
+    // Use a long linger time so that the commit is only triggered by reaching the max number of requests.
+    // The first write is blocked until the requests of all threads are queued.
+    final CountDownLatch writeStarted = new CountDownLatch(1);
+    final CountDownLatch requested = new CountDownLatch(threadCount + 1);
+    final AtomicInteger commits = new AtomicInteger();
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        if ("persist.requested".equals(metricName)) {
+          requested.countDown();
+        } else if ("persist.commit.count".equals(metricName)) {
+          commits.addAndGet((int) value);
+        }
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        if ("persist.queue.size".equals(metricName) && commits.get() == 0) {
+          writeStarted.countDown();
+          Uninterruptibles.awaitUninterruptibly(requested);
+        }
+      }
+    }, TimeUnit.MINUTES.toMillis(1), threadCount, 0);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount + 1);
+    // A request without contention is persisted without lingering
+    executor.submit(() -> writer.persist(new TestStoreRequest(topicId, Collections.singletonList("first")), metadata));
+    Assert.assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+    for (int i = 0; i < threadCount; i++) {
+      final String payload = Integer.toString(i);
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            writer.persist(new TestStoreRequest(topicId, Collections.singletonList(payload)), metadata);
+          } catch (IOException e) {
+            LOG.error("Failed to persist", e);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    // The queued requests should be persisted with one commit after the first one
+    Assert.assertEquals(threadCount + 1, testWriter.getMessages().get(topicId).size());
+    Assert.assertEquals(2, commits.get());
+  }
+
+  @Test
+  public void testMaxPendingRequests() throws Exception {
+    final TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+
+    // Block the writer thread right before it writes, and count the number of requests enqueued.
+    final CountDownLatch writeStarted = new CountDownLatch(1);
+    final CountDownLatch writeLatch = new CountDownLatch(1);
+    final CountDownLatch requested = new CountDownLatch(2);
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        if ("persist.requested".equals(metricName)) {
+          requested.countDown();
+        }
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        if ("persist.queue.size".equals(metricName)) {
+          writeStarted.countDown();
+          Uninterruptibles.awaitUninterruptibly(writeLatch);
+        }
+      }
+    }, 0L, 1, 1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // The first request becomes the writer and blocks
+      Future<?> first = executor.submit(() -> writer.persist(new TestStoreRequest(topicId,
+                                                                                 Collections.singletonList("1")),
+                                                             metadata));
+      Assert.assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+      // The second request is pending in the queue
+      Future<?> second = executor.submit(() -> writer.persist(new TestStoreRequest(topicId,
+                                                                                  Collections.singletonList("2")),
+                                                              metadata));
+      Assert.assertTrue(requested.await(10, TimeUnit.SECONDS));
+
+      // The third request should be rejected
+      try {
+        writer.persist(new TestStoreRequest(topicId, Collections.singletonList("3")), metadata);
+        Assert.fail("Expected ServiceUnavailableException");
+      } catch (ServiceUnavailableException e) {
+        // expected
+      }
+
+      // Unblock the writer. Both pending requests should be completed.
+      writeLatch.countDown();
+      first.get(10, TimeUnit.SECONDS);
+      second.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(2, testWriter.getMessages().get(topicId).size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.messaging.store;
 
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -24,6 +25,8 @@ import io.cdap.cdap.proto.id.TopicId;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Map;
+
 /**
  * Base class for Metadata Table tests.
  */
@@ -154,5 +157,43 @@ public abstract class MetadataTableTest {
     }
   }
 
+  @Test
+  public void testConsumerOffsets() throws Exception {
+    try (MetadataTable table = createMetadataTable()) {
+      TopicId topicId = NamespaceId.DEFAULT.topic("consumed");
+      table.createTopic(new TopicMetadata(topicId, "ttl", 10));
+
+      Assert.assertNull(table.getConsumerOffset(topicId, "g1"));
+      Assert.assertTrue(table.getConsumerOffsets(topicId).isEmpty());
+
+      // Unconditional commit
+      Assert.assertTrue(table.commitConsumerOffset(topicId, "g1", null, Bytes.toBytes(1L)));
+      Assert.assertArrayEquals(Bytes.toBytes(1L), table.getConsumerOffset(topicId, "g1"));
+
+      // Conditional commit with the wrong expected offset should fail
+      Assert.assertFalse(table.commitConsumerOffset(topicId, "g1", Bytes.toBytes(2L), Bytes.toBytes(3L)));
+      Assert.assertArrayEquals(Bytes.toBytes(1L), table.getConsumerOffset(topicId, "g1"));
+
+      // Conditional commit with the right expected offset should succeed
+      Assert.assertTrue(table.commitConsumerOffset(topicId, "g1", Bytes.toBytes(1L), Bytes.toBytes(3L)));
+      Assert.assertArrayEquals(Bytes.toBytes(3L), table.getConsumerOffset(topicId, "g1"));
+
+      Assert.assertTrue(table.commitConsumerOffset(topicId, "g2", null, Bytes.toBytes(2L)));
+      Map<String, byte[]> offsets = table.getConsumerOffsets(topicId);
+      Assert.assertEquals(2, offsets.size());
+      Assert.assertArrayEquals(Bytes.toBytes(3L), offsets.get("g1"));
+      Assert.assertArrayEquals(Bytes.toBytes(2L), offsets.get("g2"));
+
+      // Consumer offsets shouldn't show up as topics
+      Assert.assertEquals(1, table.listTopics().size());
+      Assert.assertEquals(1, table.listTopics(NamespaceId.DEFAULT).size());
+
+      // Deleting the topic removes all the consumer offsets
+      table.deleteTopic(topicId);
+      Assert.assertTrue(table.getConsumerOffsets(topicId).isEmpty());
+      Assert.assertTrue(table.listTopics().isEmpty());
+    }
+  }
+
   protected abstract MetadataTable createMetadataTable() throws Exception;
 }
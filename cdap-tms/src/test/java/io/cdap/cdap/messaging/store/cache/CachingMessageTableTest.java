@@ -45,6 +45,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Unit test for {@link CachingMessageTable}.
@@ -84,6 +86,11 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
       public void clear() {
         caches.invalidateAll();
       }
+
+      @Override
+      public void clear(Predicate<TopicId> topicFilter) {
+        caches.invalidateAll(caches.asMap().keySet().stream().filter(topicFilter).collect(Collectors.toList()));
+      }
     };
   }
 
@@ -16,20 +16,37 @@
 
 package io.cdap.cdap.messaging.store.leveldb;
 
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.messaging.MessagingUtils;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.store.DataCleanupTest;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.MetadataTable;
 import io.cdap.cdap.messaging.store.PayloadTable;
+import io.cdap.cdap.messaging.store.RawMessageTableEntry;
+import io.cdap.cdap.messaging.store.RawPayloadTableEntry;
 import io.cdap.cdap.messaging.store.TableFactory;
+import io.cdap.cdap.proto.id.NamespaceId;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 /**
  * Tests for TTL Cleanup logic in LevelDB.
@@ -50,6 +67,77 @@ public class LevelDBTTLCleanupTest extends DataCleanupTest {
     tableFactory = new LevelDBTableFactory(cConf);
   }
 
+  @Test
+  public void testSizeRetention() throws Exception {
+    TopicMetadata metadata = new TopicMetadata(NamespaceId.DEFAULT.topic("sizeRetention"),
+                                               TopicMetadata.GENERATION_KEY, "1",
+                                               TopicMetadata.TTL_KEY, "3600",
+                                               TopicMetadata.MAX_SIZE_MB_KEY, "1");
+    byte[] topicPrefix = MessagingUtils.toDataKeyPrefix(metadata.getTopicId(), metadata.getGeneration());
+    byte[] payload = new byte[100 * 1024];
+
+    Options options = new Options().createIfMissing(true);
+    try (DB messageDB = Iq80DBFactory.factory.open(tmpFolder.newFolder(), options);
+         DB payloadDB = Iq80DBFactory.factory.open(tmpFolder.newFolder(), options)) {
+
+      // Write 20 messages of 100KB each. Messages 2 and 5 reference the payload of transaction 2 and 5 respectively,
+      // and messages 12 and 15 reference the payload of transaction 5 and 15 respectively.
+      // Each transaction has two payloads of 100KB each.
+      List<RawMessageTableEntry> messages = new ArrayList<>();
+      List<RawPayloadTableEntry> payloads = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        byte[] messageKey = Bytes.concat(topicPrefix, Bytes.toBytes((long) i), Bytes.toBytes((short) 0));
+        long txWritePointer = i == 12 ? 5L : i;
+        if (i == 2 || i == 5 || i == 12 || i == 15) {
+          messages.add(new RawMessageTableEntry().set(messageKey, Bytes.toBytes(txWritePointer), null));
+        } else {
+          messages.add(new RawMessageTableEntry().set(messageKey, null, payload));
+        }
+        if (i == 2 || i == 5 || i == 15) {
+          payloads.add(createPayloadEntry(topicPrefix, txWritePointer, 0, payload));
+          payloads.add(createPayloadEntry(topicPrefix, txWritePointer, 1, payload));
+        }
+      }
+      // Payload of transaction 100, which is not committed yet, hence not referenced by any message
+      payloads.add(createPayloadEntry(topicPrefix, 100L, 0, payload));
+      payloads.add(createPayloadEntry(topicPrefix, 100L, 1, payload));
+
+      new LevelDBMessageTable(messageDB, metadata).persist(messages.iterator());
+      new LevelDBPayloadTable(payloadDB, metadata).persist(payloads.iterator());
+
+      // Messages 12 to 19 have 10 payloads of 100KB in total, which are within the 1MB limit.
+      Assert.assertTrue(SizeRetentionPruner.prune(messageDB, payloadDB, metadata) > 0);
+      Assert.assertEquals(LongStream.range(12, 20).boxed().collect(Collectors.toList()),
+                          scanKeyLongs(messageDB, topicPrefix));
+
+      // The payload of transaction 2 is removed, while the payload of transaction 5 is still referenced by message 12
+      Assert.assertEquals(Arrays.asList(5L, 5L, 15L, 15L, 100L, 100L), scanKeyLongs(payloadDB, topicPrefix));
+
+      // Pruning again should be a no-op
+      Assert.assertEquals(0L, SizeRetentionPruner.prune(messageDB, payloadDB, metadata));
+    }
+  }
+
+  private RawPayloadTableEntry createPayloadEntry(byte[] topicPrefix, long txWritePointer, int seqId, byte[] payload) {
+    byte[] key = Bytes.concat(topicPrefix, Bytes.toBytes(txWritePointer),
+                              Bytes.toBytes(0L), Bytes.toBytes((short) seqId));
+    return new RawPayloadTableEntry().set(key, payload);
+  }
+
+  /**
+   * Returns the long values following the topic prefix of all the row keys in the given LevelDB.
+   */
+  private List<Long> scanKeyLongs(DB levelDB, byte[] topicPrefix) {
+    List<Long> result = new ArrayList<>();
+    try (CloseableIterator<Map.Entry<byte[], byte[]>> iterator =
+           new DBScanIterator(levelDB, topicPrefix, Bytes.stopKeyForPrefix(topicPrefix))) {
+      while (iterator.hasNext()) {
+        result.add(Bytes.toLong(iterator.next().getKey(), topicPrefix.length));
+      }
+    }
+    return result;
+  }
+
   @Override
   protected void forceFlushAndCompact(Table table) throws Exception {
     // since we have a periodic thread doing the clean up, we don't/can't do much here.
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.subscriber;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.messaging.Message;
+import io.cdap.cdap.api.messaging.MessagingContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.service.RetryStrategies;
+import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.spi.data.StructuredTableContext;
+import io.cdap.cdap.spi.data.transaction.TransactionException;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for processing messages in multiple lanes with {@link AbstractMessagingSubscriberService}.
+ */
+public class AbstractMessagingSubscriberServiceTest {
+
+  private static final int LANES = 3;
+  private static final int KEYS = 10;
+
+  @Test
+  public void testLanes() throws Exception {
+    List<Message> messages = createMessages(200);
+    TestSubscriberService service = new TestSubscriberService(messages, -1);
+    service.startAndWait();
+    try {
+      Tasks.waitFor(messages.size() - 1, service::getStoredIndex, 10, TimeUnit.SECONDS,
+                    10, TimeUnit.MILLISECONDS);
+    } finally {
+      service.stopAndWait();
+    }
+
+    Assert.assertEquals(messages.size(), service.committed.size());
+    Assert.assertTrue("Messages should be processed by multiple lanes", service.laneThreads.size() > 1);
+    Assert.assertEquals(Collections.emptyList(), service.violations);
+  }
+
+  @Test
+  public void testLaneFailure() throws Exception {
+    List<Message> messages = createMessages(200);
+    int poisonIndex = 42;
+    TestSubscriberService service = new TestSubscriberService(messages, poisonIndex);
+    service.startAndWait();
+    try {
+      // The other lanes keep processing messages after the failed message
+      Tasks.waitFor(true, () -> service.committed.contains(poisonIndex + 1), 10, TimeUnit.SECONDS,
+                    10, TimeUnit.MILLISECONDS);
+      // The message id is persisted up to the message before the failed message, but never beyond it
+      Tasks.waitFor(poisonIndex - 1, service::getStoredIndex, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+      TimeUnit.MILLISECONDS.sleep(200);
+      Assert.assertEquals(poisonIndex - 1, service.getStoredIndex());
+      Assert.assertFalse(service.committed.contains(poisonIndex));
+
+      // Once the failure is gone, all messages get processed
+      service.failing.set(false);
+      Tasks.waitFor(messages.size() - 1, service::getStoredIndex, 10, TimeUnit.SECONDS,
+                    10, TimeUnit.MILLISECONDS);
+    } finally {
+      service.stopAndWait();
+    }
+
+    Assert.assertEquals(messages.size(), service.committed.size());
+    Assert.assertEquals(Collections.emptyList(), service.violations);
+  }
+
+  /**
+   * Creates messages with the payload of the message index, keyed by the index modulo {@link #KEYS}.
+   */
+  private List<Message> createMessages(int count) {
+    List<Message> messages = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < count; i++) {
+      byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(now, (short) i, 0L, (short) 0, rawId, 0);
+      messages.add(new TestMessage(Bytes.toHexString(rawId), Integer.toString(i)));
+    }
+    return messages;
+  }
+
+  /**
+   * A subscriber that fetches from a list of messages and records how messages are processed. The messages
+   * processed in a transaction are only committed if the processing completes successfully.
+   */
+  private static final class TestSubscriberService extends AbstractMessagingSubscriberService<Integer> {
+
+    private final List<Message> messages;
+    private final int poisonIndex;
+    private final AtomicBoolean failing = new AtomicBoolean(true);
+    private final Set<Integer> committed = ConcurrentHashMap.newKeySet();
+    private final Set<String> laneThreads = ConcurrentHashMap.newKeySet();
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+    private volatile String storedMessageId;
+
+    TestSubscriberService(List<Message> messages, int poisonIndex) {
+      super(NamespaceId.SYSTEM.topic("test"), 50, 30, 10L,
+            RetryStrategies.fixDelay(10, TimeUnit.MILLISECONDS), new NoopMetricsContext(), LANES);
+      this.messages = messages;
+      this.poisonIndex = poisonIndex;
+    }
+
+    int getStoredIndex() {
+      String messageId = storedMessageId;
+      return messageId == null ? -1 : indexOf(messageId);
+    }
+
+    @Override
+    protected List<Message> fetchMessages(@Nullable String messageId) {
+      int start = messageId == null ? 0 : indexOf(messageId) + 1;
+      return new ArrayList<>(messages.subList(start, Math.min(messages.size(), start + 50)));
+    }
+
+    @Override
+    protected MessagingContext getMessagingContext() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Integer decodeMessage(Message message) {
+      return Integer.parseInt(message.getPayloadAsString());
+    }
+
+    @Override
+    protected Object getLaneKey(Integer message) {
+      return message % KEYS;
+    }
+
+    @Override
+    protected TransactionRunner getTransactionRunner() {
+      return runnable -> {
+        try {
+          runnable.run(null);
+        } catch (Exception e) {
+          throw new TransactionException("Failed to run transaction", e);
+        }
+      };
+    }
+
+    @Nullable
+    @Override
+    protected String loadMessageId(StructuredTableContext context) {
+      return storedMessageId;
+    }
+
+    @Override
+    protected void storeMessageId(StructuredTableContext context, String messageId) {
+      int index = indexOf(messageId);
+      for (int i = 0; i <= index; i++) {
+        if (!committed.contains(i)) {
+          violations.add("Message id " + index + " is persisted before message " + i + " is processed");
+        }
+      }
+      storedMessageId = messageId;
+    }
+
+    @Override
+    protected void processMessages(StructuredTableContext context,
+                                   Iterator<ImmutablePair<String, Integer>> messages) throws Exception {
+      laneThreads.add(Thread.currentThread().getName());
+      List<Integer> processed = new ArrayList<>();
+      while (messages.hasNext()) {
+        int index = messages.next().getSecond();
+        if (index == poisonIndex && failing.get()) {
+          throw new Exception("Failed to process message " + index);
+        }
+        // All the earlier messages with the same key must have been processed
+        for (int i = index - KEYS; i >= 0; i -= KEYS) {
+          if (!committed.contains(i) && !processed.contains(i)) {
+            violations.add("Message " + index + " is processed before message " + i);
+          }
+        }
+        processed.add(index);
+      }
+      committed.addAll(processed);
+    }
+
+    private int indexOf(String messageId) {
+      for (int i = 0; i < messages.size(); i++) {
+        if (messages.get(i).getId().equals(messageId)) {
+          return i;
+        }
+      }
+      throw new IllegalArgumentException("Unknown message id " + messageId);
+    }
+  }
+
+  /**
+   * A {@link Message} with a string payload.
+   */
+  private static final class TestMessage implements Message {
+
+    private final String id;
+    private final String payload;
+
+    TestMessage(String id, String payload) {
+      this.id = id;
+      this.payload = payload;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public String getPayloadAsString(Charset charset) {
+      return payload;
+    }
+
+    @Override
+    public String getPayloadAsString() {
+      return payload;
+    }
+
+    @Override
+    public byte[] getPayload() {
+      return payload.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
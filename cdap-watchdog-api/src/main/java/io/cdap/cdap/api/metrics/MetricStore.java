@@ -61,6 +61,18 @@ public interface MetricStore {
    */
   void deleteTTLExpired();
 
+  /**
+   * Rolls up the metric data that was only written to the minimum resolution into the coarser resolutions, if metrics
+   * are configured to be rolled up.
+   */
+  void rollUp();
+
+  /**
+   * Writes the metric data that was added but is still buffered in memory, so that it is durable when this method
+   * returns.
+   */
+  void flush();
+
   /**
    * Deletes all metric data specified by the {@link MetricDeleteQuery}
    * @param query specifies what to delete
@@ -72,6 +84,12 @@ public interface MetricStore {
    */
   void deleteAll();
 
+  /**
+   * Returns the number of times metric data was deleted with {@link #delete(MetricDeleteQuery)},
+   * {@link #deleteAll()} or {@link #deleteTTLExpired()} by any process, which changes once the deletion is done.
+   */
+  long getDeleteCount();
+
   /**
    * Given a list of tags in the {@link MetricSearchQuery}, returns the list of next available tags
    * @param query specifies where to search
@@ -17,6 +17,8 @@ package io.cdap.cdap.api.metrics;
 
 import com.google.common.base.Objects;
 
+import javax.annotation.Nullable;
+
 /**
  * Carries the "raw" emitted metric data point: metric name, type, and value
  */
@@ -25,6 +27,8 @@ public class MetricValue {
   String name;
   MetricType type;
   long value;
+  // only set for the DISTRIBUTION type, in which case the value is the number of values in the distribution
+  Distribution distribution;
 
   public MetricValue (String name, MetricType type, long value) {
     this.name = name;
@@ -32,6 +36,13 @@ public class MetricValue {
     this.value = value;
   }
 
+  public MetricValue(String name, Distribution distribution) {
+    this.name = name;
+    this.type = MetricType.DISTRIBUTION;
+    this.value = distribution.getCount();
+    this.distribution = distribution;
+  }
+
   public String getName() {
     return name;
   }
@@ -44,12 +55,21 @@ public class MetricValue {
     return value;
   }
 
+  /**
+   * Returns the distribution of the values of a DISTRIBUTION metric, or {@code null} for the other types.
+   */
+  @Nullable
+  public Distribution getDistribution() {
+    return distribution;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
       .add("name", name)
       .add("type", type)
       .add("value", value)
+      .add("distribution", distribution)
       .toString();
   }
 }
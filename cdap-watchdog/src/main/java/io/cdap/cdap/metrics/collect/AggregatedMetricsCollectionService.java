@@ -24,6 +24,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.Uninterruptibles;
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.MetricType;
 import io.cdap.cdap.api.metrics.MetricValue;
 import io.cdap.cdap.api.metrics.MetricValues;
@@ -33,12 +35,19 @@ import io.cdap.cdap.common.conf.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
@@ -52,6 +61,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
   private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  // emitters of the metrics collected through Counter and Gauge handles, which are kept as long as the handles
+  // are reachable instead of expiring after access, since increments through handles don't access the caches
+  private final ConcurrentMap<HandleKey, HandleEmitter> handleEmitters;
   // maximum number of milliseconds to sleep between each publish
   private final long publishIntervalInMillis;
   private final CountDownLatch shutdownLatch;
@@ -60,6 +72,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     // the longest sleep time will be 1 min
     this.publishIntervalInMillis = Math.min(publishIntervalInMillis, Constants.Metrics.PROCESS_INTERVAL_MILLIS);
     this.shutdownLatch = new CountDownLatch(1);
+    this.handleEmitters = new ConcurrentHashMap<>();
     this.collectors = CacheBuilder.newBuilder()
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
       .build(createCollectorLoader());
@@ -172,11 +185,16 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
+    Map<Map<String, String>, List<MetricValue>> handleMetricValues = getHandleMetricValues();
     // NOTE : emitters.asMap does not reset the access time in cache,
     // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
     final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
       emitters.asMap().entrySet().iterator();
     return new AbstractIterator<MetricValues>() {
+
+      // the metric values of the contexts that only have handle emitters, after the cached emitters are done
+      private Iterator<Map.Entry<Map<String, String>, List<MetricValue>>> handleIterator;
+
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
@@ -186,29 +204,115 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
           for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
             MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
+            // skip increment by 0 and empty distributions
+            if (metricValue.getType() != MetricType.GAUGE && metricValue.getValue() == 0) {
               continue;
             }
             metricValues.add(metricValue);
           }
-
-          if (metricValues.isEmpty()) {
-            // skip if there are no metric values to send
-            continue;
+          List<MetricValue> handleValues = handleMetricValues.remove(entry.getKey());
+          if (handleValues != null) {
+            addHandleMetricValues(metricValues, handleValues);
           }
 
-          // number of emitted metrics
-          metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
+          MetricValues result = createMetricValues(entry.getKey(), timestamp, metricValues);
+          if (result != null) {
+            return result;
+          }
+        }
 
-          LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+        if (handleIterator == null) {
+          handleIterator = handleMetricValues.entrySet().iterator();
+        }
+        while (handleIterator.hasNext()) {
+          Map.Entry<Map<String, String>, List<MetricValue>> entry = handleIterator.next();
+          MetricValues result = createMetricValues(entry.getKey(), timestamp, entry.getValue());
+          if (result != null) {
+            return result;
+          }
         }
         return endOfData();
       }
     };
   }
 
+  /**
+   * Adds the values emitted through handles to the values of the same context, summing the counters that are also
+   * incremented without handles.
+   */
+  private void addHandleMetricValues(List<MetricValue> metricValues, List<MetricValue> handleValues) {
+    int size = metricValues.size();
+    for (MetricValue handleValue : handleValues) {
+      boolean merged = false;
+      for (int i = 0; i < size && !merged; i++) {
+        MetricValue metricValue = metricValues.get(i);
+        if (handleValue.getType() == MetricType.COUNTER && metricValue.getType() == MetricType.COUNTER
+          && handleValue.getName().equals(metricValue.getName())) {
+          metricValues.set(i, new MetricValue(metricValue.getName(), MetricType.COUNTER,
+                                              metricValue.getValue() + handleValue.getValue()));
+          merged = true;
+        }
+      }
+      if (!merged) {
+        metricValues.add(handleValue);
+      }
+    }
+  }
+
+  @Nullable
+  private MetricValues createMetricValues(Map<String, String> tags, long timestamp, List<MetricValue> metricValues) {
+    if (metricValues.isEmpty()) {
+      // skip if there are no metric values to send
+      return null;
+    }
+
+    // number of emitted metrics
+    metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
+
+    LOG.trace("Emit metric {}", metricValues);
+    return new MetricValues(tags, timestamp, metricValues);
+  }
+
+  /**
+   * Emits the metric values of all handle emitters, grouped by tags. Emitters whose handles are no longer reachable
+   * are removed after their last values are emitted.
+   */
+  private Map<Map<String, String>, List<MetricValue>> getHandleMetricValues() {
+    Map<Map<String, String>, List<MetricValue>> result = new HashMap<>();
+    for (Map.Entry<HandleKey, HandleEmitter> entry : handleEmitters.entrySet()) {
+      HandleEmitter handleEmitter = entry.getValue();
+      // checks for reachability before emitting, such that there is no increment after the last emit
+      boolean removed = handleEmitter.removeIfUnreachable();
+      MetricValue metricValue = handleEmitter.emitter.emit();
+      if (removed) {
+        handleEmitters.remove(entry.getKey(), handleEmitter);
+      }
+      // skip increment by 0 and empty distributions
+      if (metricValue.getType() != MetricType.GAUGE && metricValue.getValue() == 0) {
+        continue;
+      }
+      result.computeIfAbsent(entry.getKey().tags, k -> new ArrayList<>()).add(metricValue);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the handle of the given metric, creating it if there is no reachable one.
+   */
+  private MetricHandle getHandle(Map<String, String> tags, String metricName) {
+    HandleKey key = new HandleKey(tags, metricName);
+    while (true) {
+      HandleEmitter handleEmitter = handleEmitters.computeIfAbsent(
+        key, k -> new HandleEmitter(new AggregatedMetricsEmitter(metricName)));
+      MetricHandle handle = handleEmitter.getHandle();
+      if (handle != null) {
+        return handle;
+      }
+      // the emitter is being removed after its handle became unreachable, hence it cannot be reused
+      handleEmitters.remove(key, handleEmitter);
+    }
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -236,6 +340,21 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
     }
 
+    @Override
+    public void distribution(String metricName, long value) {
+      emitters.getUnchecked(tags).getUnchecked(metricName).distribution(value);
+    }
+
+    @Override
+    public Counter counter(String metricName) {
+      return getHandle(tags, metricName);
+    }
+
+    @Override
+    public Gauge gauge(String metricName) {
+      return getHandle(tags, metricName);
+    }
+
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
@@ -260,4 +379,100 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       return collectors.getUnchecked(allTags);
     }
   }
+
+  /**
+   * Identifies the emitter of a metric in a context.
+   */
+  private static final class HandleKey {
+    private final Map<String, String> tags;
+    private final String metricName;
+    private final int hashCode;
+
+    private HandleKey(Map<String, String> tags, String metricName) {
+      this.tags = tags;
+      this.metricName = metricName;
+      this.hashCode = Objects.hash(tags, metricName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      HandleKey other = (HandleKey) o;
+      return metricName.equals(other.metricName) && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * An {@link AggregatedMetricsEmitter} with a weak reference to its handle, which is shared by all the users of
+   * the metric.
+   */
+  private static final class HandleEmitter {
+    private final AggregatedMetricsEmitter emitter;
+    private WeakReference<MetricHandle> handle;
+    private boolean removed;
+
+    private HandleEmitter(AggregatedMetricsEmitter emitter) {
+      this.emitter = emitter;
+      this.handle = new WeakReference<>(null);
+    }
+
+    /**
+     * Returns the handle of this emitter, or {@code null} if this emitter was removed.
+     */
+    @Nullable
+    synchronized MetricHandle getHandle() {
+      if (removed) {
+        return null;
+      }
+      MetricHandle result = handle.get();
+      if (result == null) {
+        result = new MetricHandle(emitter);
+        handle = new WeakReference<>(result);
+      }
+      return result;
+    }
+
+    /**
+     * Marks this emitter as removed if its handle is no longer reachable, after which it can no longer change.
+     *
+     * @return {@code true} if this emitter is removed
+     */
+    synchronized boolean removeIfUnreachable() {
+      if (handle.get() == null) {
+        removed = true;
+      }
+      return removed;
+    }
+  }
+
+  /**
+   * A {@link Counter} and {@link Gauge} that updates an emitter directly.
+   */
+  private static final class MetricHandle implements Counter, Gauge {
+    private final AggregatedMetricsEmitter emitter;
+
+    private MetricHandle(AggregatedMetricsEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    @Override
+    public void increment(long delta) {
+      emitter.increment(delta);
+    }
+
+    @Override
+    public void set(long value) {
+      emitter.gauge(value);
+    }
+  }
 }
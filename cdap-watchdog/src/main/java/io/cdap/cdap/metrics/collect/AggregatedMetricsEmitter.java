@@ -15,6 +15,7 @@
  */
 package io.cdap.cdap.metrics.collect;
 
+import io.cdap.cdap.api.metrics.Distribution;
 import io.cdap.cdap.api.metrics.MetricType;
 import io.cdap.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
@@ -22,6 +23,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
@@ -31,10 +34,14 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
+  // sum of the increments, striped to keep concurrent increments from contending
+  private final LongAdder increments;
+  // the last gauged value
+  private final AtomicLong gaugeValue;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
+  // count of the distribution values in each bucket, which is only created if the metric type is distribution
+  private volatile AtomicLongArray distributionCounts;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +49,55 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
+    this.increments = new LongAdder();
+    this.gaugeValue = new AtomicLong();
     this.gaugeUsed = new AtomicBoolean(false);
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    increments.add(value);
+  }
+
+  void distribution(long value) {
+    AtomicLongArray counts = distributionCounts;
+    if (counts == null) {
+      synchronized (this) {
+        counts = distributionCounts;
+        if (counts == null) {
+          counts = new AtomicLongArray(Distribution.MAX_BUCKET + 1);
+          distributionCounts = counts;
+        }
+      }
+    }
+    counts.incrementAndGet(Distribution.getBucket(value));
   }
 
 
   @Override
   public MetricValue emit() {
+    AtomicLongArray counts = distributionCounts;
+    if (counts != null) {
+      long[] bucketCounts = new long[counts.length()];
+      for (int i = 0; i < bucketCounts.length; i++) {
+        if (counts.get(i) != 0) {
+          bucketCounts[i] = counts.getAndSet(i, 0);
+        }
+      }
+      return new MetricValue(name, Distribution.fromBucketCounts(bucketCounts));
+    }
     // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    boolean gauge = gaugeUsed.getAndSet(false);
+    long value = increments.sumThenReset();
+    if (gauge) {
+      // increments after the gauge are added to the gauged value
+      return new MetricValue(name, MetricType.GAUGE, gaugeValue.get() + value);
+    }
+    return new MetricValue(name, MetricType.COUNTER, value);
   }
 
   public void gauge(long value) {
-    this.value.set(value);
+    increments.reset();
+    this.gaugeValue.set(value);
     this.gaugeUsed.set(true);
   }
 }
@@ -31,6 +31,7 @@ import io.cdap.cdap.common.io.Encoder;
 import io.cdap.cdap.common.service.RetryStrategies;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.client.StoreRequestBuilder;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
@@ -40,6 +41,7 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -60,11 +62,12 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
   private final ByteArrayOutputStream encoderOutputStream;
   private final Encoder encoder;
   private final Map<Integer, TopicPayload> topicPayloads;
+  private final RetryStrategy retryStrategy;
 
   @Inject
-  MessagingMetricsCollectionService(CConfiguration cConf,
-                                    MessagingService messagingService,
-                                    DatumWriter<MetricValues> recordWriter) {
+  public MessagingMetricsCollectionService(CConfiguration cConf,
+                                           MessagingService messagingService,
+                                           DatumWriter<MetricValues> recordWriter) {
     super(TimeUnit.SECONDS.toMillis(cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS)));
 
     String topicPrefix = cConf.get(Constants.Metrics.TOPIC_PREFIX);
@@ -78,10 +81,10 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
     this.encoderOutputStream = new ByteArrayOutputStream(1024);
     this.encoder = new BinaryEncoder(encoderOutputStream);
 
-    RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.metrics.");
+    this.retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.metrics.");
     this.topicPayloads = new LinkedHashMap<>(totalTopicNum);
     for (int i = 0; i < totalTopicNum; i++) {
-      topicPayloads.put(i, new TopicPayload(NamespaceId.SYSTEM.topic(topicPrefix + i), retryStrategy));
+      topicPayloads.put(i, new TopicPayload(NamespaceId.SYSTEM.topic(topicPrefix + i)));
     }
   }
 
@@ -92,7 +95,7 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
       encoderOutputStream.reset();
       MetricValues metricValues = metrics.next();
       // Encode MetricValues into bytes
-      recordWriter.encode(metricValues, encoder);
+      MetricValuesCodec.encode(metricValues, recordWriter, encoder);
       TopicPayload topicPayload = topicPayloads.get(Math.abs(metricValues.getTags().hashCode() % size));
       // Calculate the topic number with the hashcode of MetricValues' tags and store the encoded payload in the
       // corresponding list of the topic number
@@ -102,27 +105,90 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
     publishMetric(topicPayloads.values());
   }
 
-  private void publishMetric(Iterable<TopicPayload> topicPayloads) throws IOException {
+  private void publishMetric(Collection<TopicPayload> topicPayloads) throws IOException {
+    // Publish the payloads of all topics with one batch call. The requests that are not published yet are kept
+    // along with their payloads, since the batch can be published partially.
+    Map<StoreRequest, TopicPayload> pending = new LinkedHashMap<>();
     for (TopicPayload topicPayload : topicPayloads) {
-      topicPayload.publish(messagingService);
+      if (!topicPayload.payloads.isEmpty()) {
+        pending.put(StoreRequestBuilder.of(topicPayload.topicId).addPayloads(topicPayload.payloads).build(),
+                    topicPayload);
+      }
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    int failureCount = 0;
+    long startTime = -1L;
+    boolean done = false;
+    boolean interrupted = false;
+    while (!done) {
+      try {
+        // Clear the thread interrupt flag when doing the actual publish.
+        // Otherwise publish might get interrupted during shutdown, which has the thread interrupted
+        interrupted = Thread.interrupted();
+        messagingService.publish(new ArrayList<>(pending.keySet()), published -> pending.remove(published).reset());
+        done = true;
+      } catch (TopicNotFoundException | ServiceUnavailableException e) {
+        // These exceptions are retryable due to TMS not completely started.
+        // Only the requests that were not published are retried, so that no metric is published twice.
+        if (startTime < 0) {
+          startTime = System.currentTimeMillis();
+        }
+        long retryMillis = getRetryStrategy().nextRetry(++failureCount, startTime);
+        if (retryMillis < 0) {
+          throw new IOException("Failed to publish metrics to TMS and exceeded retry limit.", e);
+        }
+        LOG.debug("Failed to publish metrics to TMS due to {}. Will be retried in {} ms.",
+                  e.getMessage(), retryMillis);
+        if (interrupted) {
+          LOG.warn("Retry of publish metrics interrupted. There will be loss of metrics.");
+          done = true;
+        } else {
+          try {
+            TimeUnit.MILLISECONDS.sleep(retryMillis);
+          } catch (InterruptedException e1) {
+            // Something explicitly stopping this thread. Simply just break and reset the interrupt flag.
+            Thread.currentThread().interrupt();
+            done = true;
+          }
+        }
+      } catch (IOException ioe) {
+        StringBuilder details = new StringBuilder();
+        for (TopicPayload topicPayload : pending.values()) {
+          details.append(details.length() == 0 ? "" : ", ").append(topicPayload);
+        }
+        throw new IOException("Exception while publishing metrics to topics: " + details, ioe);
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
   }
 
+  private RetryStrategy getRetryStrategy() {
+    if (isRunning()) {
+      return retryStrategy;
+    }
+    // If failure happen during shutdown, use a retry strategy that only retry fixed number of times
+    return RetryStrategies.timeLimit(5, TimeUnit.SECONDS, RetryStrategies.fixDelay(200, TimeUnit.MILLISECONDS));
+  }
+
   /**
    * Private to carry payloads to be published to a topic.
    */
-  private final class TopicPayload {
+  private static final class TopicPayload {
     private final TopicId topicId;
     private final List<byte[]> payloads;
-    private final RetryStrategy retryStrategy;
     private int payloadSize;
     private int metricsCount;
     private Map<String, String> metricsTags;
 
 
-    private TopicPayload(TopicId topicId, RetryStrategy retryStrategy) {
+    private TopicPayload(TopicId topicId) {
       this.topicId = topicId;
-      this.retryStrategy = retryStrategy;
       this.payloads = new ArrayList<>();
       this.payloadSize = 0;
       this.metricsCount = 0;
@@ -137,59 +203,11 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
       payloads.add(payload);
     }
 
-    void publish(MessagingService messagingService) throws IOException {
-      if (payloads.isEmpty()) {
-        return;
-      }
-
-      int failureCount = 0;
-      long startTime = -1L;
-      boolean done = false;
-      boolean interrupted = false;
-      while (!done) {
-        try {
-          // Clear the thread interrupt flag when doing the actual publish.
-          // Otherwise publish might get interrupted during shutdown, which has the thread interrupted
-          interrupted = Thread.interrupted();
-          messagingService.publish(StoreRequestBuilder.of(topicId).addPayloads(payloads).build());
-          reset();
-          done = true;
-        } catch (TopicNotFoundException | ServiceUnavailableException e) {
-          // These exceptions are retryable due to TMS not completely started
-          if (startTime < 0) {
-            startTime = System.currentTimeMillis();
-          }
-          long retryMillis = getRetryStrategy().nextRetry(++failureCount, startTime);
-          if (retryMillis < 0) {
-            throw new IOException("Failed to publish metrics to TMS and exceeded retry limit.", e);
-          }
-          LOG.debug("Failed to publish metrics to TMS due to {}. Will be retried in {} ms.",
-                    e.getMessage(), retryMillis);
-          if (interrupted) {
-            LOG.warn("Retry of publish metrics interrupted. There will be loss of metrics.");
-            done = true;
-          } else {
-            try {
-              TimeUnit.MILLISECONDS.sleep(retryMillis);
-            } catch (InterruptedException e1) {
-              // Something explicitly stopping this thread. Simply just break and reset the interrupt flag.
-              Thread.currentThread().interrupt();
-              done = true;
-            }
-          }
-        } catch (IOException ioe) {
-          String exceptionMessage =
-            String.format("Exception while publishing metrics for tags: [%s] to topic '%s' " +
-                            "with %s metrics and %s bytes payload",
-                          MAP_JOINER.join(metricsTags == null ? Collections.emptyMap() : metricsTags),
-                          topicId.getTopic(), metricsCount, payloadSize);
-          throw new IOException(exceptionMessage, ioe);
-        }
-      }
-
-      if (interrupted) {
-        Thread.currentThread().interrupt();
-      }
+    @Override
+    public String toString() {
+      return String.format("'%s' with %s metrics and %s bytes payload for tags: [%s]", topicId.getTopic(),
+                           metricsCount, payloadSize,
+                           MAP_JOINER.join(metricsTags == null ? Collections.emptyMap() : metricsTags));
     }
 
     private void reset() {
@@ -199,13 +217,5 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
       metricsCount = 0;
       metricsTags = null;
     }
-
-    private RetryStrategy getRetryStrategy() {
-      if (isRunning()) {
-        return retryStrategy;
-      }
-      // If failure happen during shutdown, use a retry strategy that only retry fixed number of times
-      return RetryStrategies.timeLimit(5, TimeUnit.SECONDS, RetryStrategies.fixDelay(200, TimeUnit.MILLISECONDS));
-    }
   }
 }
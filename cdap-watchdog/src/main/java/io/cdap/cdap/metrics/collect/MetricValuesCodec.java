@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.collect;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.UnsupportedTypeException;
+import io.cdap.cdap.api.metrics.MetricValues;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.common.io.Decoder;
+import io.cdap.cdap.common.io.Encoder;
+import io.cdap.cdap.internal.io.DatumReaderFactory;
+import io.cdap.cdap.internal.io.SchemaGenerator;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the {@link MetricValues} published to the metrics topics.
+ * <p>
+ * A message starts with the version of the schema of {@link MetricValues} it was encoded with, written as a negative
+ * int, followed by the {@link MetricValues}. Messages published before the version was added have no version and
+ * are encoded with the schema of {@link #VERSION_1}. They are told apart by the lowest bit of the first byte, which is
+ * set for a negative int, and unset for the non-negative int that starts an encoded {@link MetricValues}.
+ */
+public final class MetricValuesCodec {
+
+  /**
+   * Version of the schema without distribution metrics.
+   */
+  static final int VERSION_1 = 1;
+
+  /**
+   * Version of the schema with distribution metrics.
+   */
+  static final int VERSION_2 = 2;
+
+  private static final int CURRENT_VERSION = VERSION_2;
+
+  private final DatumReader<MetricValues> reader;
+  private final Map<Integer, Schema> schemas;
+
+  public MetricValuesCodec(SchemaGenerator schemaGenerator,
+                           DatumReaderFactory readerFactory) throws UnsupportedTypeException {
+    Schema schema = schemaGenerator.generate(MetricValues.class);
+    this.reader = readerFactory.create(TypeToken.of(MetricValues.class), schema);
+    this.schemas = ImmutableMap.of(VERSION_1, schemaGenerator.generate(MetricValuesV1.class),
+                                   VERSION_2, schema);
+  }
+
+  /**
+   * Encodes a {@link MetricValues} with the current version.
+   */
+  public static void encode(MetricValues metricValues, DatumWriter<MetricValues> writer,
+                            Encoder encoder) throws IOException {
+    encoder.writeInt(-CURRENT_VERSION);
+    writer.encode(metricValues, encoder);
+  }
+
+  /**
+   * Decodes a {@link MetricValues} encoded with any version.
+   *
+   * @param payload the payload of the message
+   * @param decoder a decoder that reads the payload from the beginning
+   * @throws IOException if the payload cannot be decoded
+   */
+  public MetricValues decode(byte[] payload, Decoder decoder) throws IOException {
+    int version = payload.length > 0 && (payload[0] & 1) != 0 ? -decoder.readInt() : VERSION_1;
+    Schema schema = schemas.get(version);
+    if (schema == null) {
+      throw new IOException("Unsupported version " + version + " of metric values");
+    }
+    return reader.read(decoder, schema);
+  }
+
+  // The classes below are only used to generate the schema of VERSION_1, and must not be changed.
+  // The schema generator orders the fields by name, hence only the names and types of the fields matter.
+
+  @SuppressWarnings("unused")
+  private static final class MetricValuesV1 {
+    private Map<String, String> tags;
+    private Collection<MetricValueV1> metrics;
+    private long timestamp;
+  }
+
+  @SuppressWarnings("unused")
+  private static final class MetricValueV1 {
+    private String name;
+    private MetricTypeV1 type;
+    private long value;
+  }
+
+  @SuppressWarnings("unused")
+  private enum MetricTypeV1 {
+    COUNTER,
+    GAUGE
+  }
+}
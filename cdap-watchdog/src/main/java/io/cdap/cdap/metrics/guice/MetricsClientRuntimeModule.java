@@ -31,6 +31,7 @@ import io.cdap.cdap.metrics.process.DirectMetricsSystemClient;
 import io.cdap.cdap.metrics.process.MessagingMetricsProcessorService;
 import io.cdap.cdap.metrics.process.MessagingMetricsProcessorServiceFactory;
 import io.cdap.cdap.metrics.store.MetricsCleanUpService;
+import io.cdap.cdap.metrics.store.MetricsRollUpService;
 
 /**
  * A {@link RuntimeModule} that defines Guice modules for metrics collection in different runtime mode.
@@ -82,6 +83,7 @@ public final class MetricsClientRuntimeModule extends RuntimeModule {
     binder.install(new MetricsStoreModule());
     binder.expose(MetricStore.class);
     binder.expose(MetricsCleanUpService.class);
+    binder.expose(MetricsRollUpService.class);
 
     binder.bind(MetricsCollectionService.class).to(LocalMetricsCollectionService.class).in(Scopes.SINGLETON);
     binder.expose(MetricsCollectionService.class);
@@ -23,6 +23,7 @@ import com.google.inject.name.Names;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.gateway.handlers.CommonHandlers;
 import io.cdap.cdap.metrics.query.MetricsHandler;
+import io.cdap.cdap.metrics.query.MetricsQueryCache;
 import io.cdap.cdap.metrics.query.MetricsQueryService;
 import io.cdap.http.HttpHandler;
 
@@ -34,6 +35,7 @@ public class MetricsHandlerModule extends PrivateModule {
   protected void configure() {
     bind(MetricsQueryService.class).in(Scopes.SINGLETON);
     expose(MetricsQueryService.class);
+    bind(MetricsQueryCache.class).in(Scopes.SINGLETON);
 
     Multibinder<HttpHandler> handlerBinder = Multibinder.newSetBinder(binder(), HttpHandler.class,
                                                                       Names.named(Constants.Service.METRICS));
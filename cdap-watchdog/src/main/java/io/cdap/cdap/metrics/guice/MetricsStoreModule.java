@@ -23,6 +23,7 @@ import io.cdap.cdap.metrics.store.DefaultMetricDatasetFactory;
 import io.cdap.cdap.metrics.store.DefaultMetricStore;
 import io.cdap.cdap.metrics.store.MetricDatasetFactory;
 import io.cdap.cdap.metrics.store.MetricsCleanUpService;
+import io.cdap.cdap.metrics.store.MetricsRollUpService;
 
 /**
  * Guice module for providing bindings for {@link MetricStore} and {@link MetricDatasetFactory}.
@@ -34,5 +35,6 @@ public final class MetricsStoreModule extends AbstractModule {
     bind(MetricDatasetFactory.class).to(DefaultMetricDatasetFactory.class).in(Scopes.SINGLETON);
     bind(MetricStore.class).to(DefaultMetricStore.class);
     bind(MetricsCleanUpService.class).in(Scopes.SINGLETON);
+    bind(MetricsRollUpService.class).in(Scopes.SINGLETON);
   }
 }
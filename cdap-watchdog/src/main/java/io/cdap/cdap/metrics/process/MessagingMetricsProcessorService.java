@@ -18,12 +18,10 @@ package io.cdap.cdap.metrics.process;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
-import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import io.cdap.cdap.api.common.Bytes;
-import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.data.schema.UnsupportedTypeException;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.metrics.MetricStore;
@@ -35,7 +33,6 @@ import io.cdap.cdap.common.ServiceUnavailableException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.BinaryDecoder;
-import io.cdap.cdap.common.io.DatumReader;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.internal.io.DatumReaderFactory;
@@ -43,6 +40,7 @@ import io.cdap.cdap.internal.io.SchemaGenerator;
 import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.metrics.collect.MetricValuesCodec;
 import io.cdap.cdap.metrics.store.MetricDatasetFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
@@ -51,6 +49,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
@@ -79,8 +78,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final MetricDatasetFactory metricDatasetFactory;
   private final List<TopicId> metricsTopics;
   private final MessagingService messagingService;
-  private final DatumReader<MetricValues> metricReader;
-  private final Schema metricSchema;
+  private final MetricValuesCodec metricValuesCodec;
   private final MetricStore metricStore;
   private final Map<String, String> metricsContextMap;
   private final int fetcherLimit;
@@ -136,8 +134,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       .collect(Collectors.toList());
     this.messagingService = messagingService;
     try {
-      this.metricSchema = schemaGenerator.generate(MetricValues.class);
-      this.metricReader = readerFactory.create(TypeToken.of(MetricValues.class), metricSchema);
+      this.metricValuesCodec = new MetricValuesCodec(schemaGenerator, readerFactory);
     } catch (UnsupportedTypeException e) {
       // This should never happen
       throw Throwables.propagate(e);
@@ -256,6 +253,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       // messageIds can be empty if the current thread fetches nothing while other threads keep fetching new metrics
       // and haven't updated messageId's of the corresponding topics
       if (!messageIds.isEmpty()) {
+        // The message ids must only be persisted once the metrics they cover are durable, otherwise metrics that
+        // are still buffered would be lost if the processor stops before writing them
+        metricStore.flush();
         metaTable.saveMetricsProcessorStats(messageIds);
       }
     } catch (Exception e) {
@@ -353,6 +353,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       try {
         MessageFetcher fetcher = messagingService.prepareFetch(topicIdMetaKey.getTopicId());
         fetcher.setLimit(fetcherLimit);
+        // Wait for new metrics if there is none instead of sleeping, so that they are processed once published.
+        // The time spent on waiting is deducted from the sleep time before the next run.
+        fetcher.setPollTimeout(metricsProcessIntervalMillis, TimeUnit.MILLISECONDS);
         TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topicIdMetaKey);
         byte[] lastMessageId = null;
 
@@ -376,7 +379,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
             RawMessage input = iterator.next();
             try {
               payloadInput.reset(input.getPayload());
-              MetricValues metricValues = metricReader.read(decoder, metricSchema);
+              MetricValues metricValues = metricValuesCodec.decode(input.getPayload(), decoder);
               if (!metricsFromAllTopics.offer(metricValues)) {
                 break;
               }
@@ -413,6 +416,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         }
       } catch (ServiceUnavailableException e) {
         LOG.trace("Could not fetch metrics. Will be retried in next iteration.", e);
+      } catch (InterruptedIOException e) {
+        // It's triggered by stop while waiting for new metrics
+        Thread.currentThread().interrupt();
+        return 0L;
       } catch (Exception e) {
         LOG.warn("Failed to process metrics. Will be retried in next iteration.", e);
       }
@@ -19,6 +19,7 @@ package io.cdap.cdap.metrics.process;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -35,6 +36,12 @@ public class MetricsConsumerMetaTable {
   private static final byte[] LAST_PROCESS_TIMESTAMP = Bytes.toBytes("lpt");
   private static final byte[] PROCESS_TIMESTAMP_LATEST = Bytes.toBytes("ptl");
 
+  private static final byte[] ROLL_UP_ROW = Bytes.toBytes("metrics.rollUp");
+  private static final byte[] ROLL_UP_STATE = Bytes.toBytes("rs");
+
+  private static final byte[] DELETE_ROW = Bytes.toBytes("metrics.delete");
+  private static final byte[] DELETE_COUNT = Bytes.toBytes("dc");
+
   private final MetricsTable metaTable;
 
   public MetricsConsumerMetaTable(MetricsTable metaTable) {
@@ -80,6 +87,43 @@ public class MetricsConsumerMetaTable {
   }
 
 
+  /**
+   * Gets the progress of rolling up the metrics into the coarser resolutions.
+   *
+   * @return the state or {@code null} if metrics are not rolled up
+   */
+  @Nullable
+  public synchronized RollUpState getRollUpState() {
+    byte[] result = metaTable.get(ROLL_UP_ROW, ROLL_UP_STATE);
+    return result == null ? null : RollUpState.fromBytes(result);
+  }
+
+  /**
+   * Atomically replaces the roll-up state if it has the expected value.
+   *
+   * @param oldState the expected state, {@code null} if there should be none
+   * @param newState the new state, {@code null} to remove the state
+   * @return {@code true} if the state was replaced
+   */
+  public boolean swapRollUpState(@Nullable RollUpState oldState, @Nullable RollUpState newState) {
+    return metaTable.swap(ROLL_UP_ROW, ROLL_UP_STATE, oldState == null ? null : oldState.toBytes(),
+                          newState == null ? null : newState.toBytes());
+  }
+
+  /**
+   * Gets the number of times metrics were deleted.
+   */
+  public long getDeleteCount() {
+    return getLong(DELETE_ROW, DELETE_COUNT);
+  }
+
+  /**
+   * Increments the number of times metrics were deleted.
+   */
+  public void incrementDeleteCount() {
+    metaTable.increment(DELETE_ROW, Collections.singletonMap(DELETE_COUNT, 1L));
+  }
+
   private synchronized long getLong(byte[] rowKey, byte[] column) {
     byte[] result = metaTable.get(rowKey, column);
     if (result == null) {
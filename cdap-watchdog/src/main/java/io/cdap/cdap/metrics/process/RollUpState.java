@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import io.cdap.cdap.api.common.Bytes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Progress of rolling up the metrics into the coarser resolutions, shared by all the metrics processors. Every change
+ * creates a new version, so that a swap of the state fails if it was changed concurrently.
+ */
+public final class RollUpState {
+  private static final long NO_LATE_FACTS = Long.MAX_VALUE;
+
+  private final long rolledUpTs;
+  private final long lateTs;
+  private final long startTime;
+  private final long version;
+
+  private RollUpState(long rolledUpTs, long lateTs, long startTime, long version) {
+    this.rolledUpTs = rolledUpTs;
+    this.lateTs = lateTs;
+    this.startTime = startTime;
+    this.version = version;
+  }
+
+  /**
+   * Creates the state of metrics that have been written to all resolutions before the given timestamp.
+   */
+  public static RollUpState create(long rolledUpTs) {
+    return new RollUpState(rolledUpTs, NO_LATE_FACTS, 0L, 0L);
+  }
+
+  /**
+   * Returns the timestamp in seconds up to which metrics are rolled up, or are being rolled up if
+   * {@link #isRunning()}.
+   */
+  public long getRolledUpTs() {
+    return rolledUpTs;
+  }
+
+  /**
+   * Returns the start in seconds of the time range that has to be rolled up, which includes the facts added before
+   * {@link #getRolledUpTs()} since they were rolled up.
+   */
+  public long getStartTs() {
+    return Math.min(lateTs, rolledUpTs);
+  }
+
+  /**
+   * Returns {@code true} if a roll-up was started and has not finished yet.
+   */
+  public boolean isRunning() {
+    return startTime > 0L;
+  }
+
+  /**
+   * Returns the time in milliseconds when the running roll-up was started.
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Records that facts with timestamps before {@link #getRolledUpTs()}, and at or after the given timestamp, were
+   * added, so that they are rolled up again.
+   */
+  public RollUpState addLateFacts(long minTs) {
+    return new RollUpState(rolledUpTs, Math.min(lateTs, minTs), startTime, version + 1);
+  }
+
+  /**
+   * Starts rolling up the time range from {@link #getStartTs()} to the given timestamp.
+   */
+  public RollUpState start(long endTs, long startTime) {
+    return new RollUpState(Math.max(rolledUpTs, endTs), getStartTs(), startTime, version + 1);
+  }
+
+  /**
+   * Finishes the roll-up started with this state.
+   */
+  public RollUpState finish() {
+    return new RollUpState(rolledUpTs, NO_LATE_FACTS, 0L, version + 1);
+  }
+
+  /**
+   * Finishes the roll-up without clearing the late facts, which were added while it was running.
+   */
+  public RollUpState abort() {
+    return new RollUpState(rolledUpTs, lateTs, 0L, version + 1);
+  }
+
+  public byte[] toBytes() {
+    return ByteBuffer.allocate(4 * Bytes.SIZEOF_LONG)
+      .putLong(rolledUpTs).putLong(lateTs).putLong(startTime).putLong(version)
+      .array();
+  }
+
+  public static RollUpState fromBytes(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    return new RollUpState(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+  }
+
+  @Override
+  public String toString() {
+    return "RollUpState{" +
+      "rolledUpTs=" + rolledUpTs +
+      ", lateTs=" + lateTs +
+      ", startTime=" + startTime +
+      ", version=" + version +
+      '}';
+  }
+}
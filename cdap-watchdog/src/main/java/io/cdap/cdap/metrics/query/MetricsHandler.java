@@ -18,11 +18,20 @@ package io.cdap.cdap.metrics.query;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.HttpResponder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
@@ -30,6 +39,7 @@ import io.netty.handler.codec.http.QueryStringDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
@@ -49,8 +59,8 @@ public class MetricsHandler extends AbstractHttpHandler {
   private final MetricsQueryHelper metricsQueryHelper;
 
   @Inject
-  public MetricsHandler(MetricsQueryHelper metricsQueryHelper) {
-    this.metricsQueryHelper = metricsQueryHelper;
+  public MetricsHandler(MetricStore metricStore, CConfiguration cConf, MetricsQueryCache queryCache) {
+    this.metricsQueryHelper = new MetricsQueryHelper(metricStore, cConf, queryCache);
   }
 
   @POST
@@ -103,13 +113,12 @@ public class MetricsHandler extends AbstractHttpHandler {
           Map<String, MetricsQueryHelper.QueryRequestFormat> queries =
             GSON.fromJson(request.content().toString(StandardCharsets.UTF_8),
                           new TypeToken<Map<String, MetricsQueryHelper.QueryRequestFormat>>() { }.getType());
-          responder.sendJson(HttpResponseStatus.OK, GSON.toJson(metricsQueryHelper.executeBatchQueries(queries)));
+          sendBatchQueryResults(responder, queries);
           return;
         }
         responder.sendJson(HttpResponseStatus.BAD_REQUEST, "Batch request with empty content");
       }
-      responder.sendJson(HttpResponseStatus.OK,
-                         GSON.toJson(metricsQueryHelper.executeTagQuery(tags, metrics, groupBy, queryParams)));
+      sendQueryResult(responder, metricsQueryHelper.executeTagQuery(tags, metrics, groupBy, queryParams));
     } catch (IllegalArgumentException e) {
       LOG.warn("Invalid request", e);
       responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
@@ -119,6 +128,52 @@ public class MetricsHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Sends the result of a query, encoded directly into the response content.
+   */
+  private void sendQueryResult(HttpResponder responder, MetricQueryResult result) throws Exception {
+    ByteBuf content = Unpooled.buffer();
+    try {
+      try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(new ByteBufOutputStream(content),
+                                                                     StandardCharsets.UTF_8))) {
+        GSON.toJson(result, MetricQueryResult.class, writer);
+      }
+    } catch (Exception e) {
+      content.release();
+      throw e;
+    }
+    sendJsonContent(responder, content);
+  }
+
+  /**
+   * Sends the results of a batch of queries as a JSON object from query name to result. Each result is encoded into
+   * the response content as its query is executed, so that only the result of a single query is kept at a time.
+   */
+  private void sendBatchQueryResults(HttpResponder responder,
+                                     Map<String, MetricsQueryHelper.QueryRequestFormat> queries) throws Exception {
+    ByteBuf content = Unpooled.buffer();
+    try {
+      try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(new ByteBufOutputStream(content),
+                                                                     StandardCharsets.UTF_8))) {
+        writer.beginObject();
+        for (Map.Entry<String, MetricsQueryHelper.QueryRequestFormat> query : queries.entrySet()) {
+          writer.name(query.getKey());
+          GSON.toJson(metricsQueryHelper.executeQuery(query.getValue()), MetricQueryResult.class, writer);
+        }
+        writer.endObject();
+      }
+    } catch (Exception e) {
+      content.release();
+      throw e;
+    }
+    sendJsonContent(responder, content);
+  }
+
+  private void sendJsonContent(HttpResponder responder, ByteBuf content) {
+    responder.sendContent(HttpResponseStatus.OK, content,
+                          new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "application/json"));
+  }
+
   @GET
   @Path("/processor/status")
   public void processorStatus(HttpRequest request, HttpResponder responder) throws Exception {
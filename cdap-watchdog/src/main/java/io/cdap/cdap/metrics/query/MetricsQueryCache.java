@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Table;
+import com.google.inject.Inject;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.proto.id.NamespaceId;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the results of metric queries at coarse resolutions. The time buckets that can no longer receive metrics,
+ * which are the buckets that ended more than a configured delay ago, are kept in the cache and never read from the
+ * {@link MetricStore} again. Only the buckets of a query that are not in the cache, which are usually the open buckets
+ * at the end of the query, are read from the {@link MetricStore}.
+ * <p>
+ * Queries are cached by everything but their time range and limit, so that polling the same query with a moving time
+ * range reuses the cached buckets. The cache is bounded by the number of cached data points. The cached queries
+ * are read again from the {@link MetricStore} once metrics are deleted by any process. Since metrics that arrive
+ * later than the configured delay still change a closed bucket, a cached query is also read again once it reaches
+ * a configured age.
+ */
+public class MetricsQueryCache {
+
+  private final MetricStore metricStore;
+  private final MetricsContext metricsContext;
+  private final Clock clock;
+  private final boolean enabled;
+  private final int minResolution;
+  private final long closedDelaySeconds;
+  private final long maxAgeSeconds;
+  private final Cache<QueryKey, CachedResult> cache;
+
+  @Inject
+  MetricsQueryCache(CConfiguration cConf, MetricStore metricStore,
+                    @Nullable MetricsCollectionService metricsCollectionService) {
+    this(cConf, metricStore, metricsCollectionService == null ? new NoopMetricsContext() :
+           metricsCollectionService.getContext(ImmutableMap.of(
+             Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+             Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS)),
+         Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  MetricsQueryCache(CConfiguration cConf, MetricStore metricStore, MetricsContext metricsContext, Clock clock) {
+    this.metricStore = metricStore;
+    this.metricsContext = metricsContext;
+    this.clock = clock;
+    this.enabled = cConf.getBoolean(Constants.Metrics.QUERY_CACHE_ENABLED);
+    this.minResolution = cConf.getInt(Constants.Metrics.QUERY_CACHE_MIN_RESOLUTION_SECONDS);
+    long closedDelaySeconds = cConf.getLong(Constants.Metrics.QUERY_CACHE_CLOSED_DELAY_SECONDS);
+    if (cConf.getBoolean(Constants.Metrics.ROLL_UP_ENABLED)) {
+      // the coarse resolutions only receive the metrics of a bucket once the bucket is rolled up
+      closedDelaySeconds = Math.max(closedDelaySeconds, cConf.getLong(Constants.Metrics.ROLL_UP_DELAY_SECONDS)
+        + cConf.getLong(Constants.Metrics.ROLL_UP_INTERVAL_SECONDS));
+    }
+    this.closedDelaySeconds = closedDelaySeconds;
+    this.maxAgeSeconds = cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_AGE_SECONDS);
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_DATA_POINTS))
+      .weigher((QueryKey key, CachedResult result) -> result.size)
+      .removalListener(notification -> {
+        if (notification.getCause() == RemovalCause.SIZE) {
+          metricsContext.increment("query.cache.evictions", 1);
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Executes the given query, using the cached time buckets of the query if possible.
+   *
+   * @param query the query to execute
+   * @return the time series of the query, same as returned by {@link MetricStore#query(MetricDataQuery)}
+   */
+  public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (!isCacheable(query)) {
+      return metricStore.query(query);
+    }
+
+    int resolution = query.getResolution();
+    long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(clock.millis());
+    // the buckets before this timestamp can no longer receive metrics
+    long closedTs = (nowSeconds - closedDelaySeconds) / resolution * resolution;
+    // the time range of the query, end exclusive
+    long startTs = query.getStartTs();
+    long endTs = query.getEndTs() + 1;
+    // read before the metric store, so that a deletion during the query invalidates the result
+    long deleteCount = metricStore.getDeleteCount();
+
+    QueryKey key = new QueryKey(query);
+    CachedResult cached = cache.getIfPresent(key);
+    if (cached == null || cached.deleteCount != deleteCount || nowSeconds - cached.createTimeSeconds >= maxAgeSeconds
+      || endTs < cached.startTs || startTs > cached.endTs) {
+      // the cached buckets cannot be used, hence read all the buckets of the query
+      metricsContext.increment("query.cache.misses", 1);
+      Table<Map<String, String>, String, List<TimeValue>> timeSeries = HashBasedTable.create();
+      addTimeSeries(timeSeries, queryStore(query, startTs, endTs), Long.MAX_VALUE);
+      if (startTs < closedTs) {
+        CachedResult result = new CachedResult(nowSeconds, deleteCount, startTs, Math.min(endTs, closedTs));
+        result.add(timeSeries, result.endTs);
+        cache.put(key, result);
+      }
+      return toMetricTimeSeries(timeSeries, query.getLimit());
+    }
+
+    metricsContext.increment("query.cache.hits", 1);
+    // the buckets before the cached buckets are always closed, since the cached buckets are closed
+    Collection<MetricTimeSeries> head = startTs < cached.startTs
+      ? queryStore(query, startTs, cached.startTs) : Collections.emptyList();
+    Collection<MetricTimeSeries> tail = endTs > cached.endTs
+      ? queryStore(query, cached.endTs, endTs) : Collections.emptyList();
+
+    Table<Map<String, String>, String, List<TimeValue>> timeSeries = HashBasedTable.create();
+    addTimeSeries(timeSeries, head, Long.MAX_VALUE);
+    for (Table.Cell<Map<String, String>, String, List<TimeValue>> cell : cached.timeSeries.cellSet()) {
+      List<TimeValue> timeValues = null;
+      for (TimeValue timeValue : cell.getValue()) {
+        if (timeValue.getTimestamp() >= startTs && timeValue.getTimestamp() < endTs) {
+          if (timeValues == null) {
+            timeValues = getTimeValues(timeSeries, cell.getRowKey(), cell.getColumnKey());
+          }
+          timeValues.add(timeValue);
+        }
+      }
+    }
+    addTimeSeries(timeSeries, tail, Long.MAX_VALUE);
+
+    long cachedEndTs = Math.max(cached.endTs, Math.min(endTs, closedTs));
+    if (startTs < cached.startTs || cachedEndTs > cached.endTs) {
+      // keep the newly read buckets that are closed along with the cached buckets
+      CachedResult result = new CachedResult(cached.createTimeSeconds, deleteCount,
+                                             Math.min(startTs, cached.startTs), cachedEndTs);
+      result.add(toTable(head), Long.MAX_VALUE);
+      result.add(cached.timeSeries, Long.MAX_VALUE);
+      result.add(toTable(tail), result.endTs);
+      cache.put(key, result);
+    }
+    return toMetricTimeSeries(timeSeries, query.getLimit());
+  }
+
+  /**
+   * Returns {@code true} if the data points of the result of the given query only depend on the metrics in their
+   * time bucket, which is required to combine the cached buckets with the buckets read from the {@link MetricStore}.
+   */
+  private boolean isCacheable(MetricDataQuery query) {
+    return enabled && query.getResolution() >= minResolution && query.getResolution() != Integer.MAX_VALUE
+      && query.getInterpolator() == null && query.getAggregationOption() == AggregationOption.FALSE
+      && query.getEndTs() < Long.MAX_VALUE && query.getStartTs() <= query.getEndTs();
+  }
+
+  /**
+   * Reads the buckets of the given query in the given time range from the {@link MetricStore}.
+   */
+  private Collection<MetricTimeSeries> queryStore(MetricDataQuery query, long startTs, long endTs) {
+    return metricStore.query(new MetricDataQuery(startTs, endTs - 1, query.getResolution(), Integer.MAX_VALUE,
+                                                 query.getMetrics(), query.getSliceByTags(), query.getGroupByTags(),
+                                                 AggregationOption.FALSE, null));
+  }
+
+  private static Table<Map<String, String>, String, List<TimeValue>> toTable(Collection<MetricTimeSeries> series) {
+    Table<Map<String, String>, String, List<TimeValue>> table = HashBasedTable.create();
+    addTimeSeries(table, series, Long.MAX_VALUE);
+    return table;
+  }
+
+  /**
+   * Appends the data points before the given timestamp of the given time series to the given table.
+   */
+  private static void addTimeSeries(Table<Map<String, String>, String, List<TimeValue>> table,
+                                    Collection<MetricTimeSeries> series, long endTs) {
+    for (MetricTimeSeries timeSeries : series) {
+      List<TimeValue> timeValues = getTimeValues(table, timeSeries.getTagValues(), timeSeries.getMetricName());
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        if (timeValue.getTimestamp() < endTs) {
+          timeValues.add(timeValue);
+        }
+      }
+    }
+  }
+
+  private static List<TimeValue> getTimeValues(Table<Map<String, String>, String, List<TimeValue>> table,
+                                               Map<String, String> tagValues, String metricName) {
+    List<TimeValue> timeValues = table.get(tagValues, metricName);
+    if (timeValues == null) {
+      timeValues = new ArrayList<>();
+      table.put(tagValues, metricName, timeValues);
+    }
+    return timeValues;
+  }
+
+  /**
+   * Converts the given table into time series, keeping at most the given number of data points of each time series
+   * the same way as the {@link MetricStore} does.
+   */
+  private static Collection<MetricTimeSeries> toMetricTimeSeries(Table<Map<String, String>, String,
+                                                                   List<TimeValue>> table, int limit) {
+    List<MetricTimeSeries> result = new ArrayList<>();
+    for (Table.Cell<Map<String, String>, String, List<TimeValue>> cell : table.cellSet()) {
+      List<TimeValue> timeValues = cell.getValue();
+      if (timeValues.isEmpty()) {
+        continue;
+      }
+      if (timeValues.size() > limit) {
+        timeValues = timeValues.subList(0, limit);
+      }
+      result.add(new MetricTimeSeries(cell.getColumnKey(), cell.getRowKey(), timeValues));
+    }
+    return result;
+  }
+
+  /**
+   * The part of a query that is the same for all the time ranges queried.
+   */
+  private static final class QueryKey {
+
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    // the order of the group by tags doesn't change the result
+    private final Set<String> groupByTags;
+
+    QueryKey(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      this.metrics = new HashMap<>(query.getMetrics());
+      this.sliceByTags = new HashMap<>(query.getSliceByTags());
+      this.groupByTags = new HashSet<>(query.getGroupByTags());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      QueryKey that = (QueryKey) o;
+      return resolution == that.resolution
+        && metrics.equals(that.metrics)
+        && sliceByTags.equals(that.sliceByTags)
+        && groupByTags.equals(that.groupByTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(resolution, metrics, sliceByTags, groupByTags);
+    }
+  }
+
+  /**
+   * The closed buckets of a query in a time range. It is not modified once it is in the cache.
+   */
+  private static final class CachedResult {
+
+    private final long createTimeSeconds;
+    // the delete count of the metric store when the buckets were read
+    private final long deleteCount;
+    private final long startTs;
+    // exclusive
+    private final long endTs;
+    private final Table<Map<String, String>, String, List<TimeValue>> timeSeries;
+    private int size;
+
+    CachedResult(long createTimeSeconds, long deleteCount, long startTs, long endTs) {
+      this.createTimeSeconds = createTimeSeconds;
+      this.deleteCount = deleteCount;
+      this.startTs = startTs;
+      this.endTs = endTs;
+      this.timeSeries = HashBasedTable.create();
+    }
+
+    /**
+     * Appends the data points before the given timestamp of the given time series.
+     */
+    void add(Table<Map<String, String>, String, List<TimeValue>> table, long endTs) {
+      for (Table.Cell<Map<String, String>, String, List<TimeValue>> cell : table.cellSet()) {
+        List<TimeValue> timeValues = null;
+        for (TimeValue timeValue : cell.getValue()) {
+          if (timeValue.getTimestamp() < endTs) {
+            if (timeValues == null) {
+              timeValues = getTimeValues(timeSeries, cell.getRowKey(), cell.getColumnKey());
+            }
+            timeValues.add(timeValue);
+            size++;
+          }
+        }
+      }
+    }
+  }
+}
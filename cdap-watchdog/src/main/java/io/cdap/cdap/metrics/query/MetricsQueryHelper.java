@@ -45,8 +45,10 @@ import io.cdap.cdap.proto.MetricTagValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -73,8 +75,12 @@ public class MetricsQueryHelper {
   private static final String PARAM_AGGREGATE = "aggregate";
   private static final String PARAM_AUTO_RESOLUTION = "auto";
   private static final String ANY_TAG_VALUE = "*";
+  // separates the name of a distribution metric from the percentile to query, e.g. "metric:p95"
+  private static final String PERCENTILE_SEPARATOR = ":";
 
   private final MetricStore metricStore;
+  @Nullable
+  private final MetricsQueryCache queryCache;
   private final int minResolution;
 
   private static final Map<String, String> tagNameToHuman;
@@ -124,7 +130,15 @@ public class MetricsQueryHelper {
 
   @Inject
   public MetricsQueryHelper(MetricStore metricStore, CConfiguration cConf) {
+    this(metricStore, cConf, null);
+  }
+
+  /**
+   * Creates a helper that executes the metric queries through the given cache, if it is not {@code null}.
+   */
+  public MetricsQueryHelper(MetricStore metricStore, CConfiguration cConf, @Nullable MetricsQueryCache queryCache) {
     this.metricStore = metricStore;
+    this.queryCache = queryCache;
     int minimumResolution = cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS);
     this.minResolution = minimumResolution < 60 ? minimumResolution : 60;
   }
@@ -145,12 +159,18 @@ public class MetricsQueryHelper {
     LOG.trace("Received Queries {}", queries);
     Map<String, MetricQueryResult> queryFinalResponse = Maps.newHashMap();
     for (Map.Entry<String, QueryRequestFormat> query : queries.entrySet()) {
-      MetricQueryRequest queryRequest = getQueryRequestFromFormat(query.getValue());
-      queryFinalResponse.put(query.getKey(), executeQuery(queryRequest));
+      queryFinalResponse.put(query.getKey(), executeQuery(query.getValue()));
     }
     return queryFinalResponse;
   }
 
+  /**
+   * Executes a single query of a batch, so that the results of a batch can be sent as each query is executed.
+   */
+  public MetricQueryResult executeQuery(QueryRequestFormat query) throws Exception {
+    return executeQuery(getQueryRequestFromFormat(query));
+  }
+
   public MetricQueryResult executeTagQuery(List<String> tags, List<String> metrics, List<String> groupByTags,
                                            Map<String, List<String>> queryTimeParams) throws Exception {
     MetricQueryRequest queryRequest = new MetricQueryRequest(parseTagValuesAsMap(tags), metrics, groupByTags);
@@ -362,12 +382,27 @@ public class MetricsQueryHelper {
 
     Map<String, String> tagsSliceBy = humanToTagNames(transformTagMap(queryRequest.getTags()));
 
-    MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
-                                                timeRange.getResolutionInSeconds(),
-                                                timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
-                                                tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
-                                                aggregation, timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    // a metric can be queried with different functions, which are done in separate queries
+    Collection<MetricTimeSeries> queryResult = new ArrayList<>();
+    for (Map.Entry<AggregationFunction, Map<String, AggregationFunction>> entry
+      : toMetrics(queryRequest.getMetrics()).entrySet()) {
+      MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
+                                                  timeRange.getResolutionInSeconds(),
+                                                  timeRange.getCount(), entry.getValue(),
+                                                  tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
+                                                  aggregation, timeRange.getInterpolate());
+      AggregationFunction function = entry.getKey();
+      Collection<MetricTimeSeries> timeSeriesList = queryCache == null
+        ? metricStore.query(query) : queryCache.query(query);
+      for (MetricTimeSeries timeSeries : timeSeriesList) {
+        if (function.isPercentile()) {
+          // return the percentile with the name it was queried by
+          timeSeries = new MetricTimeSeries(getPercentileMetricName(timeSeries.getMetricName(), function),
+                                            timeSeries.getTagValues(), timeSeries.getTimeValues());
+        }
+        queryResult.add(timeSeries);
+      }
+    }
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
@@ -420,15 +455,43 @@ public class MetricsQueryHelper {
     return result;
   }
 
-  private Map<String, AggregationFunction> toMetrics(List<String> metrics) {
-    Map<String, AggregationFunction> result = Maps.newHashMap();
+  /**
+   * Returns the metrics to query grouped by aggregation function. Metrics are aggregated by {@code SUM}, unless
+   * their name ends with a percentile such as {@code :p95}, which is queried from a distribution metric.
+   */
+  private Map<AggregationFunction, Map<String, AggregationFunction>> toMetrics(List<String> metrics) {
+    Map<AggregationFunction, Map<String, AggregationFunction>> result = new EnumMap<>(AggregationFunction.class);
     for (String metric : metrics) {
       // todo: figure out metric type
-      result.put(metric, AggregationFunction.SUM);
+      String metricName = metric;
+      AggregationFunction function = AggregationFunction.SUM;
+      int idx = metric.lastIndexOf(PERCENTILE_SEPARATOR);
+      if (idx > 0) {
+        AggregationFunction percentileFunction = getPercentileFunction(metric.substring(idx + 1));
+        if (percentileFunction != null) {
+          metricName = metric.substring(0, idx);
+          function = percentileFunction;
+        }
+      }
+      result.computeIfAbsent(function, k -> Maps.newHashMap()).put(metricName, function);
     }
     return result;
   }
 
+  @Nullable
+  private AggregationFunction getPercentileFunction(String suffix) {
+    for (AggregationFunction function : AggregationFunction.values()) {
+      if (function.isPercentile() && function.name().equalsIgnoreCase(suffix)) {
+        return function;
+      }
+    }
+    return null;
+  }
+
+  private String getPercentileMetricName(String metricName, AggregationFunction function) {
+    return metricName + PERCENTILE_SEPARATOR + function.name().toLowerCase();
+  }
+
   private MetricQueryResult decorate(Collection<MetricTimeSeries> series, long startTs, long endTs,
                                      int resolution) {
     MetricQueryResult.TimeSeries[] serieses = new MetricQueryResult.TimeSeries[series.size()];
@@ -24,7 +24,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
-import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
@@ -54,6 +53,7 @@ import io.cdap.cdap.data2.dataset2.lib.cube.DefaultCube;
 import io.cdap.cdap.data2.dataset2.lib.cube.FactTableSupplier;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.metrics.process.MetricsConsumerMetaTable;
+import io.cdap.cdap.metrics.process.RollUpState;
 import io.cdap.cdap.metrics.process.TopicIdMetaKey;
 import io.cdap.cdap.metrics.process.TopicProcessMeta;
 import io.cdap.cdap.proto.id.NamespaceId;
@@ -90,11 +90,16 @@ public class DefaultMetricStore implements MetricStore {
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
   private final Map<Integer, Long> resolutionTTLMap;
+  private final int finestResolution;
+  private final boolean rollUpEnabled;
+  private final long rollUpDelaySecs;
+  private final long rollUpTimeoutMillis;
+  private final long rollUpMaxLateSecs;
 
 
   static {
@@ -212,21 +217,29 @@ public class DefaultMetricStore implements MetricStore {
       builder.put(minimumResolution, cConf.getLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS));
     }
     this.resolutionTTLMap = builder.build();
+    this.finestResolution = resolutions[0];
+    this.rollUpEnabled = cConf.getBoolean(Constants.Metrics.ROLL_UP_ENABLED);
+    this.rollUpDelaySecs = cConf.getLong(Constants.Metrics.ROLL_UP_DELAY_SECONDS);
+    this.rollUpTimeoutMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.Metrics.ROLL_UP_TIMEOUT_SECONDS));
+    // facts are rolled up from the finest resolution, hence they must be rolled up well before their retention ends
+    long finestRetentionSecs = resolutionTTLMap.get(finestResolution);
+    this.rollUpMaxLateSecs = finestRetentionSecs > 0 ? finestRetentionSecs / 4 : Long.MAX_VALUE;
     FactTableSupplier factTableSupplier = (resolution, ignoredRollTime) -> {
       // roll time will be taken from configuration
       // TODO: remove roll time from the supplier api, https://issues.cask.co/browse/CDAP-14730
       return dsFactory.getOrCreateFactTable(resolution);
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    this.metaTableSupplier = Suppliers.memoize(dsFactory::createConsumerMeta);
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
+      public DefaultCube get() {
         DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
         cube.setMetricsCollector(metricsContext);
+        initRollUp(cube);
         return cube;
       }
     });
 
-    this.metaTableSupplier = Suppliers.memoize(dsFactory::createConsumerMeta);
     int topicNumbers = cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM);
     String topicPrefix = cConf.get(Constants.Metrics.TOPIC_PREFIX);
     metricsTopics = new ArrayList<>();
@@ -254,7 +267,11 @@ public class DefaultMetricStore implements MetricStore {
       // todo improve this logic?
       for (MetricValue metric : metricValue.getMetrics()) {
         String measureName = (scope == null ? "system." : scope + ".") + metric.getName();
-        MeasureType type = metric.getType() == MetricType.COUNTER ? MeasureType.COUNTER : MeasureType.GAUGE;
+        if (metric.getType() == MetricType.DISTRIBUTION && metric.getDistribution() != null) {
+          metrics.add(new Measurement(measureName, metric.getDistribution()));
+          continue;
+        }
+        MeasureType type = metric.getType() == MetricType.GAUGE ? MeasureType.GAUGE : MeasureType.COUNTER;
         metrics.add(new Measurement(measureName, type, metric.getValue()));
       }
 
@@ -264,6 +281,30 @@ public class DefaultMetricStore implements MetricStore {
       facts.add(fact);
     }
     cube.get().add(facts);
+
+    if (rollUpEnabled && !metricValues.isEmpty()) {
+      long minTs = Long.MAX_VALUE;
+      for (MetricValues metricValue : metricValues) {
+        minTs = Math.min(minTs, metricValue.getTimestamp());
+      }
+      addLateFacts(minTs);
+    }
+  }
+
+  /**
+   * Records that facts were added with timestamps from the given one, if their time range has already been rolled up
+   * or is being rolled up, so that it is rolled up again. This must happen after the facts are written, so that the
+   * running roll-up either reads them or fails to finish.
+   */
+  private void addLateFacts(long minTs) {
+    MetricsConsumerMetaTable metaTable = metaTableSupplier.get();
+    RollUpState state = metaTable.getRollUpState();
+    while (state != null && minTs < state.getRolledUpTs()) {
+      if (metaTable.swapRollUpState(state, state.addLateFacts(minTs))) {
+        return;
+      }
+      state = metaTable.getRollUpState();
+    }
   }
 
   @Override
@@ -299,11 +340,107 @@ public class DefaultMetricStore implements MetricStore {
     for (Map.Entry<Integer, Long> resolutionTTL : resolutionTTLMap.entrySet()) {
       deleteMetricsBeforeTimestamp(currentTime - resolutionTTL.getValue(), resolutionTTL.getKey());
     }
+    metaTableSupplier.get().incrementDeleteCount();
+  }
+
+  @Override
+  public void flush() {
+    cube.get().flush();
+  }
+
+  @Override
+  public void rollUp() {
+    if (!rollUpEnabled) {
+      return;
+    }
+    DefaultCube cube = this.cube.get();
+    MetricsConsumerMetaTable metaTable = metaTableSupplier.get();
+    RollUpState state = metaTable.getRollUpState();
+    long currentTime = System.currentTimeMillis();
+    // only roll up the time buckets of the finest resolution that are not expected to receive more metrics
+    long endTs = (TimeUnit.MILLISECONDS.toSeconds(currentTime) - rollUpDelaySecs) / finestResolution * finestResolution;
+    if (state == null || endTs <= state.getStartTs()
+      || (state.isRunning() && currentTime - state.getStartTime() < rollUpTimeoutMillis)) {
+      return;
+    }
+    // facts added from now on before the end of the range mark it to be rolled up again
+    RollUpState started = state.start(endTs, currentTime);
+    if (!metaTable.swapRollUpState(state, started)) {
+      // another metrics processor started to roll up, or late facts were added
+      return;
+    }
+
+    boolean rolledUp = false;
+    try {
+      rollUp(cube, started);
+      rolledUp = true;
+    } finally {
+      finishRollUp(metaTable, started, rolledUp);
+    }
+  }
+
+  /**
+   * Finishes the roll-up of the given state. If it failed, or facts were added to its time range meanwhile, the time
+   * range is rolled up again in the next iteration.
+   */
+  private void finishRollUp(MetricsConsumerMetaTable metaTable, RollUpState started, boolean rolledUp) {
+    RollUpState state = started;
+    RollUpState finished = rolledUp ? started.finish() : started.abort();
+    while (!metaTable.swapRollUpState(state, finished)) {
+      state = metaTable.getRollUpState();
+      if (state == null || state.getStartTime() != started.getStartTime()) {
+        // the roll-up timed out and another metrics processor took over
+        return;
+      }
+      finished = state.abort();
+    }
+  }
+
+  /**
+   * Rolls up the time range of the given state, except for the facts too old to be read from the finest resolution,
+   * which are written to the coarser resolutions when they are added.
+   */
+  private void rollUp(DefaultCube cube, RollUpState state) {
+    long startTs = state.getStartTs();
+    if (rollUpMaxLateSecs != Long.MAX_VALUE) {
+      long currentTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+      startTs = Math.max(startTs, currentTime - 2 * rollUpMaxLateSecs);
+    }
+    if (startTs < state.getRolledUpTs()) {
+      cube.rollUp(startTs, state.getRolledUpTs());
+    }
+  }
+
+  /**
+   * Starts rolling up the metrics of the given cube if roll-up is enabled. If it was disabled since the last run,
+   * rolls up the metrics that were only written to the finest resolution.
+   */
+  private void initRollUp(DefaultCube cube) {
+    MetricsConsumerMetaTable metaTable = metaTableSupplier.get();
+    long currentTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    RollUpState state = metaTable.getRollUpState();
+    if (rollUpEnabled) {
+      if (state == null) {
+        // all metrics so far are written to all resolutions
+        metaTable.swapRollUpState(null, RollUpState.create(currentTime / finestResolution * finestResolution));
+      }
+      cube.startRollUp(rollUpMaxLateSecs);
+      return;
+    }
+    while (state != null) {
+      long endTs = (currentTime / finestResolution + 1) * finestResolution;
+      rollUp(cube, state.start(endTs, currentTime));
+      if (metaTable.swapRollUpState(state, null)) {
+        break;
+      }
+      state = metaTable.getRollUpState();
+    }
   }
 
   @Override
   public void delete(MetricDeleteQuery query) {
     cube.get().delete(buildCubeDeleteQuery(query));
+    metaTableSupplier.get().incrementDeleteCount();
   }
 
   @Override
@@ -313,6 +450,12 @@ public class DefaultMetricStore implements MetricStore {
                                  Collections.emptyMap(), Collections.emptyList()));
     // this will delete all timeseries data
     deleteBefore(System.currentTimeMillis() / 1000);
+    metaTableSupplier.get().incrementDeleteCount();
+  }
+
+  @Override
+  public long getDeleteCount() {
+    return metaTableSupplier.get().getDeleteCount();
   }
 
   private CubeDeleteQuery buildCubeDeleteQuery(MetricDeleteQuery query) {
@@ -17,6 +17,8 @@ package io.cdap.cdap.metrics.collect;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.MetricValue;
 import io.cdap.cdap.api.metrics.MetricValues;
 import io.cdap.cdap.api.metrics.MetricsContext;
@@ -139,6 +141,48 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testHandles() throws InterruptedException {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(1000L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+
+      // handles of the same metric are aggregated with each other and with increments without handle
+      Counter counter = context.counter(METRIC);
+      Counter sameCounter = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE))
+        .counter(METRIC);
+      counter.increment(Integer.MAX_VALUE);
+      sameCounter.increment(2);
+      context.increment(METRIC, 3);
+      counter.increment(4);
+
+      verifyCounterMetricsValue(published, ImmutableMap.of(1, ImmutableMap.of(METRIC, 9L + Integer.MAX_VALUE)));
+
+      // No publishing for 0 value metrics
+      Assert.assertNull(published.poll(3, TimeUnit.SECONDS));
+
+      // the handle keeps aggregating after emitting
+      counter.increment(5);
+      verifyCounterMetricsValue(published, ImmutableMap.of(1, ImmutableMap.of(METRIC, 5L)));
+
+      Gauge gauge = context.gauge(GAUGE_METRIC);
+      gauge.set(1);
+      gauge.set(Integer.MAX_VALUE);
+      verifyGaugeMetricsValue(published, ImmutableMap.of(1, (long) Integer.MAX_VALUE));
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   private void verifyCounterMetricsValue(BlockingQueue<MetricValues> published,
                                          Map<Integer, Map<String, Long>> expected) throws InterruptedException {
     Map<Integer, Map<String, Long>> received = new HashMap<>();
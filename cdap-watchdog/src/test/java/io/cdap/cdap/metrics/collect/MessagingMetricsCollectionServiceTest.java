@@ -17,19 +17,26 @@ package io.cdap.cdap.metrics.collect;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.inject.Module;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.UnsupportedTypeException;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.api.metrics.Distribution;
+import io.cdap.cdap.api.metrics.MetricType;
 import io.cdap.cdap.api.metrics.MetricValue;
 import io.cdap.cdap.api.metrics.MetricValues;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.BinaryDecoder;
-import io.cdap.cdap.internal.io.ReflectionDatumReader;
+import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.internal.io.ReflectionDatumReaderFactory;
+import io.cdap.cdap.internal.io.ReflectionDatumWriter;
+import io.cdap.cdap.internal.io.ReflectionSchemaGenerator;
 import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.metrics.MetricsTestBase;
 import io.cdap.cdap.proto.id.NamespaceId;
@@ -40,7 +47,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -53,7 +63,7 @@ public class MessagingMetricsCollectionServiceTest extends MetricsTestBase {
   private static final Logger LOG = LoggerFactory.getLogger(MessagingMetricsCollectionServiceTest.class);
 
   @Test
-  public void testMessagingPublish() throws TopicNotFoundException {
+  public void testMessagingPublish() throws TopicNotFoundException, UnsupportedTypeException {
 
     MetricsCollectionService collectionService = new MessagingMetricsCollectionService(CConfiguration.create(),
                                                                                        messagingService,
@@ -73,12 +83,68 @@ public class MessagingMetricsCollectionServiceTest extends MetricsTestBase {
     expected.put("tag.2", "processed", 2L);
     expected.put("tag.3", "processed", 3L);
 
-    ReflectionDatumReader<MetricValues> recordReader = new ReflectionDatumReader<>(schema, metricValueType);
-    assertMetricsFromMessaging(schema, recordReader, expected);
+    MetricValuesCodec codec = new MetricValuesCodec(new ReflectionSchemaGenerator(),
+                                                    new ReflectionDatumReaderFactory());
+    assertMetricsFromMessaging(codec, expected);
   }
 
-  private void assertMetricsFromMessaging(final Schema schema,
-                                          ReflectionDatumReader recordReader,
+  @Test
+  public void testDecodeVersion1() throws Exception {
+    // The schema of MetricValues that was used before the messages were versioned
+    Schema schemaV1 = Schema.parseJson(
+      "{\"type\":\"record\",\"name\":\"io.cdap.cdap.api.metrics.MetricValues\",\"fields\":["
+        + "{\"name\":\"metrics\",\"type\":[{\"type\":\"array\",\"items\":[{\"type\":\"record\","
+        + "\"name\":\"io.cdap.cdap.api.metrics.MetricValue\",\"fields\":["
+        + "{\"name\":\"name\",\"type\":[\"string\",\"null\"]},"
+        + "{\"name\":\"type\",\"type\":[{\"type\":\"enum\",\"symbols\":[\"COUNTER\",\"GAUGE\"]},\"null\"]},"
+        + "{\"name\":\"value\",\"type\":\"long\"}]},\"null\"]},\"null\"]},"
+        + "{\"name\":\"tags\",\"type\":[{\"type\":\"map\",\"keys\":\"string\",\"values\":[\"string\",\"null\"]},"
+        + "\"null\"]},"
+        + "{\"name\":\"timestamp\",\"type\":\"long\"}]}");
+    MetricValuesCodec codec = new MetricValuesCodec(new ReflectionSchemaGenerator(),
+                                                    new ReflectionDatumReaderFactory());
+
+    for (Map<String, String> tags : Arrays.<Map<String, String>>asList(ImmutableMap.of("tag", "1"),
+                                                                        Collections.emptyMap())) {
+      MetricValues metricValues = new MetricValues(tags, "processed", 10L, 5L, MetricType.GAUGE);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new ReflectionDatumWriter<MetricValues>(schemaV1).encode(metricValues, new BinaryEncoder(os));
+      byte[] payload = os.toByteArray();
+
+      MetricValues decoded = codec.decode(payload, new BinaryDecoder(new ByteArrayInputStream(payload)));
+      Assert.assertEquals(tags, decoded.getTags());
+      Assert.assertEquals(10L, decoded.getTimestamp());
+      MetricValue metricValue = Iterables.getOnlyElement(decoded.getMetrics());
+      Assert.assertEquals("processed", metricValue.getName());
+      Assert.assertEquals(MetricType.GAUGE, metricValue.getType());
+      Assert.assertEquals(5L, metricValue.getValue());
+      Assert.assertNull(metricValue.getDistribution());
+    }
+  }
+
+  @Test
+  public void testEncodeDistribution() throws Exception {
+    MetricValuesCodec codec = new MetricValuesCodec(new ReflectionSchemaGenerator(),
+                                                    new ReflectionDatumReaderFactory());
+    Distribution distribution = Distribution.of(1L, 5L, 50L, 100L);
+    MetricValues metricValues = new MetricValues(ImmutableMap.of("tag", "1"), 10L,
+                                                 Arrays.asList(new MetricValue("count", MetricType.COUNTER, 3L),
+                                                               new MetricValue("latency", distribution)));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    MetricValuesCodec.encode(metricValues, recordWriter, new BinaryEncoder(os));
+    byte[] payload = os.toByteArray();
+
+    MetricValues decoded = codec.decode(payload, new BinaryDecoder(new ByteArrayInputStream(payload)));
+    Assert.assertEquals(metricValues.getTags(), decoded.getTags());
+    List<MetricValue> decodedValues = new ArrayList<>(decoded.getMetrics());
+    Assert.assertEquals(2, decodedValues.size());
+    Assert.assertNull(decodedValues.get(0).getDistribution());
+    Assert.assertEquals(3L, decodedValues.get(0).getValue());
+    Assert.assertEquals(MetricType.DISTRIBUTION, decodedValues.get(1).getType());
+    Assert.assertEquals(distribution, decodedValues.get(1).getDistribution());
+  }
+
+  private void assertMetricsFromMessaging(MetricValuesCodec codec,
                                           Table<String, String, Long> expected) throws TopicNotFoundException {
 
     // Consume from kafka
@@ -88,8 +154,8 @@ public class MessagingMetricsCollectionServiceTest extends MetricsTestBase {
       try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(topicId).fetch()) {
         while (iterator.hasNext()) {
           RawMessage message = iterator.next();
-          MetricValues metricsRecord = (MetricValues) recordReader.read(
-            new BinaryDecoder(new ByteArrayInputStream(message.getPayload())), schema);
+          MetricValues metricsRecord = codec.decode(message.getPayload(),
+                                                    new BinaryDecoder(new ByteArrayInputStream(message.getPayload())));
           StringBuilder flattenContext = new StringBuilder();
           // for verifying expected results, sorting tags
           Map<String, String> tags = Maps.newTreeMap();
@@ -212,6 +212,21 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
       // no-op
     }
 
+    @Override
+    public void rollUp() {
+      // no-op
+    }
+
+    @Override
+    public long getDeleteCount() {
+      return 0L;
+    }
+
+    @Override
+    public void flush() {
+      // no-op
+    }
+
     @Override
     public void delete(MetricDeleteQuery query) {
       // no-op
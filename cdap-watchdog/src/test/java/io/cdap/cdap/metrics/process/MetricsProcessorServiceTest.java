@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.Distribution;
 import io.cdap.cdap.api.metrics.MetricDataQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
@@ -33,7 +34,10 @@ import io.cdap.cdap.data2.datafabric.dataset.service.DatasetService;
 import io.cdap.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorService;
 import io.cdap.cdap.internal.io.DatumReaderFactory;
 import io.cdap.cdap.internal.io.SchemaGenerator;
+import io.cdap.cdap.metrics.collect.MessagingMetricsCollectionService;
+import io.cdap.cdap.metrics.query.MetricsQueryHelper;
 import io.cdap.cdap.metrics.store.MetricDatasetFactory;
+import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.store.StoreDefinition;
@@ -43,6 +47,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -60,19 +65,10 @@ public class MetricsProcessorServiceTest extends MetricsProcessorServiceTestBase
 
   @Test
   public void testMetricsProcessor() throws Exception {
-    injector.getInstance(TransactionManager.class).startAndWait();
-    StructuredTableRegistry structuredTableRegistry = injector.getInstance(StructuredTableRegistry.class);
-    structuredTableRegistry.initialize();
-    StoreDefinition.createAllTables(injector.getInstance(StructuredTableAdmin.class), structuredTableRegistry);
-    injector.getInstance(DatasetOpExecutorService.class).startAndWait();
-    injector.getInstance(DatasetService.class).startAndWait();
+    startServices();
 
     final MetricStore metricStore = injector.getInstance(MetricStore.class);
-
-    Set<Integer> partitions = new HashSet<>();
-    for (int i = 0; i < cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM); i++) {
-      partitions.add(i);
-    }
+    Set<Integer> partitions = getPartitions();
 
     // Start KafkaMetricsProcessorService after metrics are published to Kafka
 
@@ -144,6 +140,68 @@ public class MetricsProcessorServiceTest extends MetricsProcessorServiceTestBase
     metricStore.deleteAll();
   }
 
+  @Test
+  public void testDistributionMetrics() throws Exception {
+    startServices();
+
+    MetricStore metricStore = injector.getInstance(MetricStore.class);
+    MessagingMetricsProcessorService messagingMetricsProcessorService =
+      new MessagingMetricsProcessorService(cConf, injector.getInstance(MetricDatasetFactory.class),
+                                           messagingService, injector.getInstance(SchemaGenerator.class),
+                                           injector.getInstance(DatumReaderFactory.class), metricStore,
+                                           getPartitions(), new NoopMetricsContext(), 50, 0);
+    messagingMetricsProcessorService.startAndWait();
+
+    // Emit the distribution through TMS, the same way as program containers do
+    MessagingMetricsCollectionService collectionService =
+      new MessagingMetricsCollectionService(cConf, messagingService, recordWriter);
+    collectionService.startAndWait();
+    long[] values = new long[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i + 1;
+      collectionService.getContext(METRICS_CONTEXT).distribution("latency", values[i]);
+    }
+    collectionService.stopAndWait();
+
+    List<String> tags = new ArrayList<>();
+    for (Map.Entry<String, String> tag : METRICS_CONTEXT.entrySet()) {
+      tags.add(tag.getKey() + ":" + tag.getValue());
+    }
+    MetricsQueryHelper queryHelper = new MetricsQueryHelper(metricStore, cConf);
+    long expected = Distribution.of(values).getPercentile(95);
+    Tasks.waitFor(expected, () -> {
+      MetricQueryResult result = queryHelper.executeTagQuery(
+        tags, Collections.singletonList(SYSTEM_METRIC_PREFIX + "latency:p95"), Collections.emptyList(),
+        Collections.singletonMap("aggregate", Collections.singletonList("true")));
+      if (result.getSeries().length == 0) {
+        return null;
+      }
+      MetricQueryResult.TimeSeries series = result.getSeries()[0];
+      Assert.assertEquals(SYSTEM_METRIC_PREFIX + "latency:p95", series.getMetricName());
+      return series.getData()[0].getValue();
+    }, 10, TimeUnit.SECONDS);
+
+    messagingMetricsProcessorService.stopAndWait();
+    metricStore.deleteAll();
+  }
+
+  private void startServices() throws Exception {
+    injector.getInstance(TransactionManager.class).startAndWait();
+    StructuredTableRegistry structuredTableRegistry = injector.getInstance(StructuredTableRegistry.class);
+    structuredTableRegistry.initialize();
+    StoreDefinition.createAllTables(injector.getInstance(StructuredTableAdmin.class), structuredTableRegistry);
+    injector.getInstance(DatasetOpExecutorService.class).startAndWait();
+    injector.getInstance(DatasetService.class).startAndWait();
+  }
+
+  private Set<Integer> getPartitions() {
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM); i++) {
+      partitions.add(i);
+    }
+    return partitions;
+  }
+
   /**
    * Checks whether all expected metrics can be obtained with query
    */
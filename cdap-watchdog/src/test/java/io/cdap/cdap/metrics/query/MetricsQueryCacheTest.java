@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDeleteQuery;
+import io.cdap.cdap.api.metrics.MetricSearchQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricValues;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.MetricsProcessorStatus;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.api.metrics.TagValue;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link MetricsQueryCache}.
+ */
+public class MetricsQueryCacheTest {
+
+  private static final int RESOLUTION = 60;
+  private static final Map<String, AggregationFunction> METRICS = ImmutableMap.of("reads", AggregationFunction.SUM);
+
+  @Test
+  public void testTailQueried() {
+    CConfiguration cConf = createCConf();
+    TestMetricStore metricStore = new TestMetricStore();
+    ManualClock clock = new ManualClock();
+    MetricsQueryCache cache = new MetricsQueryCache(cConf, metricStore, new NoopMetricsContext(), clock);
+
+    // one data point per minute for two tags, up to the current time
+    long now = 100000 * RESOLUTION + 30;
+    clock.setSeconds(now);
+    for (long ts = 0; ts <= now; ts += RESOLUTION) {
+      metricStore.add("a", ts, ts);
+      metricStore.add("b", ts, 2 * ts);
+    }
+
+    // the first query reads all the buckets
+    MetricDataQuery query = createQuery(now - 3600, now, 1000);
+    assertSameResult(metricStore.query(query), cache.query(query));
+    Assert.assertEquals(Collections.singletonList(now - 3600), metricStore.getQueriedStartTs());
+
+    // the same query only reads the buckets that were not closed when it was cached
+    long closedTs = (now - 120) / RESOLUTION * RESOLUTION;
+    metricStore.getQueriedStartTs().clear();
+    assertSameResult(metricStore.query(query), cache.query(query));
+    Assert.assertEquals(Collections.singletonList(closedTs), metricStore.getQueriedStartTs());
+
+    // moving the time range forward only reads the new buckets
+    now += 10 * RESOLUTION;
+    clock.setSeconds(now);
+    for (long ts = closedTs; ts <= now; ts += RESOLUTION) {
+      metricStore.add("a", ts, ts);
+      metricStore.add("b", ts, 2 * ts);
+    }
+    query = createQuery(now - 3600, now, 1000);
+    metricStore.getQueriedStartTs().clear();
+    assertSameResult(metricStore.query(query), cache.query(query));
+    Assert.assertEquals(Collections.singletonList(closedTs), metricStore.getQueriedStartTs());
+
+    // querying earlier buckets reads the buckets before the cached buckets
+    closedTs = (now - 120) / RESOLUTION * RESOLUTION;
+    query = createQuery(now - 7200, now, 1000);
+    metricStore.getQueriedStartTs().clear();
+    assertSameResult(metricStore.query(query), cache.query(query));
+    Assert.assertEquals(2, metricStore.getQueriedStartTs().size());
+    Assert.assertEquals(now - 7200, (long) metricStore.getQueriedStartTs().get(0));
+    Assert.assertEquals(closedTs, (long) metricStore.getQueriedStartTs().get(1));
+
+    // a query within the cached buckets doesn't read any bucket, and is limited the same way as the store
+    query = createQuery(now - 5000, now - 1000, 10);
+    metricStore.getQueriedStartTs().clear();
+    assertSameResult(metricStore.query(query), cache.query(query));
+    Assert.assertTrue(metricStore.getQueriedStartTs().isEmpty());
+
+    // a query that doesn't touch the cached buckets reads all its buckets
+    query = createQuery(1000, 5000, 1000);
+    metricStore.getQueriedStartTs().clear();
+    assertSameResult(metricStore.query(query), cache.query(query));
+    Assert.assertEquals(Collections.singletonList(1000L), metricStore.getQueriedStartTs());
+  }
+
+  @Test
+  public void testMaxAge() {
+    CConfiguration cConf = createCConf();
+    TestMetricStore metricStore = new TestMetricStore();
+    ManualClock clock = new ManualClock();
+    MetricsQueryCache cache = new MetricsQueryCache(cConf, metricStore, new NoopMetricsContext(), clock);
+
+    long now = 100000 * RESOLUTION;
+    clock.setSeconds(now);
+    metricStore.add("a", now - 3000, 1);
+    MetricDataQuery query = createQuery(now - 3600, now, 1000);
+    assertSameResult(metricStore.query(query), cache.query(query));
+
+    // a change of a cached bucket is not seen until the cached query is too old
+    metricStore.add("a", now - 3000, 2);
+    Collection<MetricTimeSeries> result = cache.query(query);
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(1, result.iterator().next().getTimeValues().get(0).getValue());
+
+    clock.setSeconds(now + cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_AGE_SECONDS));
+    assertSameResult(metricStore.query(query), cache.query(query));
+  }
+
+  @Test
+  public void testDelete() {
+    TestMetricStore metricStore = new TestMetricStore();
+    ManualClock clock = new ManualClock();
+    MetricsQueryCache cache = new MetricsQueryCache(createCConf(), metricStore, new NoopMetricsContext(), clock);
+
+    long now = 100000 * RESOLUTION;
+    clock.setSeconds(now);
+    metricStore.add("a", now - 3000, 1);
+    MetricDataQuery query = createQuery(now - 3600, now, 1000);
+    assertSameResult(metricStore.query(query), cache.query(query));
+
+    // deleting metrics invalidates the cached queries
+    metricStore.deleteAll();
+    metricStore.add("a", now - 2000, 2);
+    assertSameResult(metricStore.query(query), cache.query(query));
+  }
+
+  @Test
+  public void testNotCached() {
+    CConfiguration cConf = createCConf();
+    TestMetricStore metricStore = new TestMetricStore();
+    ManualClock clock = new ManualClock();
+    MetricsQueryCache cache = new MetricsQueryCache(cConf, metricStore, new NoopMetricsContext(), clock);
+
+    long now = 100000 * RESOLUTION;
+    clock.setSeconds(now);
+    metricStore.add("a", now - 3000, 1);
+
+    // queries at fine resolutions are not cached
+    MetricDataQuery query = new MetricDataQuery(now - 3600, now, 1, 1000, METRICS, Collections.emptyMap(),
+                                                Collections.singletonList("tag"), null);
+    cache.query(query);
+    cache.query(query);
+    Assert.assertEquals(2, metricStore.getQueriedStartTs().size());
+
+    // queries are not cached if the cache is full
+    cConf.setLong(Constants.Metrics.QUERY_CACHE_MAX_DATA_POINTS, 0);
+    cache = new MetricsQueryCache(cConf, metricStore, new NoopMetricsContext(), clock);
+    query = createQuery(now - 3600, now, 1000);
+    metricStore.getQueriedStartTs().clear();
+    cache.query(query);
+    cache.query(query);
+    Assert.assertEquals(Collections.nCopies(2, now - 3600), metricStore.getQueriedStartTs());
+  }
+
+  private CConfiguration createCConf() {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setBoolean(Constants.Metrics.QUERY_CACHE_ENABLED, true);
+    cConf.setBoolean(Constants.Metrics.ROLL_UP_ENABLED, false);
+    cConf.setLong(Constants.Metrics.QUERY_CACHE_CLOSED_DELAY_SECONDS, 120);
+    return cConf;
+  }
+
+  private MetricDataQuery createQuery(long startTs, long endTs, int limit) {
+    return new MetricDataQuery(startTs, endTs, RESOLUTION, limit, METRICS, Collections.emptyMap(),
+                               Collections.singletonList("tag"), null);
+  }
+
+  private void assertSameResult(Collection<MetricTimeSeries> expected, Collection<MetricTimeSeries> actual) {
+    Assert.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+  }
+
+  /**
+   * A {@link Clock} that is set by the test.
+   */
+  private static final class ManualClock extends Clock {
+
+    private long millis;
+
+    void setSeconds(long seconds) {
+      millis = seconds * 1000;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+
+  /**
+   * A {@link MetricStore} of a single metric grouped by a single tag, which records the start of the queries.
+   */
+  private static final class TestMetricStore implements MetricStore {
+
+    private final Map<String, NavigableMap<Long, Long>> timeSeries = new TreeMap<>();
+    private final List<Long> queriedStartTs = new ArrayList<>();
+    private long deleteCount;
+
+    void add(String tagValue, long ts, long value) {
+      timeSeries.computeIfAbsent(tagValue, k -> new TreeMap<>()).put(ts / RESOLUTION * RESOLUTION, value);
+    }
+
+    List<Long> getQueriedStartTs() {
+      return queriedStartTs;
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      queriedStartTs.add(query.getStartTs());
+      List<MetricTimeSeries> result = new ArrayList<>();
+      for (Map.Entry<String, NavigableMap<Long, Long>> entry : timeSeries.entrySet()) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        for (Map.Entry<Long, Long> value
+          : entry.getValue().subMap(query.getStartTs(), true, query.getEndTs(), true).entrySet()) {
+          if (timeValues.size() < query.getLimit()) {
+            timeValues.add(new TimeValue(value.getKey(), value.getValue()));
+          }
+        }
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries("reads", ImmutableMap.of("tag", entry.getKey()), timeValues));
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTTLExpired() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void rollUp() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void flush() {
+      // no-op
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() {
+      timeSeries.clear();
+      deleteCount++;
+    }
+
+    @Override
+    public long getDeleteCount() {
+      return deleteCount;
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, MetricsProcessorStatus> getMetricsProcessorStats() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}